@@ -1,11 +1,18 @@
 package com.algotrading.tinkoffinvestgui;
 
 import com.algotrading.tinkoffinvestgui.config.AppConstants;
+import com.algotrading.tinkoffinvestgui.metrics.MetricsExporter;
+import com.algotrading.tinkoffinvestgui.service.BondMetricsService;
+import com.algotrading.tinkoffinvestgui.service.CouponScheduleStore;
+import com.algotrading.tinkoffinvestgui.service.MarketDataStreamManager;
 import com.algotrading.tinkoffinvestgui.service.OrdersScheduler;
 import com.algotrading.tinkoffinvestgui.service.OrdersStartupService;
+import com.algotrading.tinkoffinvestgui.service.StopOnFillEngine;
 import com.algotrading.tinkoffinvestgui.repository.ParametersRepository;
 import com.algotrading.tinkoffinvestgui.repository.InstrumentsRepository;
 import com.algotrading.tinkoffinvestgui.repository.OrdersRepository;
+import com.algotrading.tinkoffinvestgui.repository.SchemaMigrator;
+import com.algotrading.tinkoffinvestgui.ui.panels.DiagnosticsPanel;
 import com.algotrading.tinkoffinvestgui.ui.panels.ExportAnalysisPanel;
 import com.algotrading.tinkoffinvestgui.ui.panels.InstrumentsPanel;
 import com.algotrading.tinkoffinvestgui.ui.panels.PortfolioPanel;
@@ -30,6 +37,7 @@ public class TinkoffInvestGui extends JFrame {
     private InstrumentsPanel instrumentsPanel;
     private PortfolioPanel portfolioPanel;
     private ExportAnalysisPanel exportPanel;
+    private DiagnosticsPanel diagnosticsPanel;
 
     // Компоненты
     private JTabbedPane tabbedPane;
@@ -37,6 +45,8 @@ public class TinkoffInvestGui extends JFrame {
 
     public TinkoffInvestGui() {
         log.info("🚀🚀🚀🚀🚀🚀🚀🚀🚀🚀🚀🚀🚀🚀 Инициализация Tinkoff Invest GUI 🚀🚀🚀🚀🚀🚀🚀🚀🚀🚀🚀🚀🚀🚀🚀🚀🚀🚀🚀");
+        // Схема БД (миграции) — до того, как панели начнут читать таблицы
+        SchemaMigrator.migrateOnStartup();
         initializeUI();
         startServices();
     }
@@ -63,12 +73,14 @@ public class TinkoffInvestGui extends JFrame {
         instrumentsPanel = new InstrumentsPanel(this);
         portfolioPanel = new PortfolioPanel(this);
         exportPanel = new ExportAnalysisPanel(this);
+        diagnosticsPanel = new DiagnosticsPanel();
 
         // Добавление вкладок
         tabbedPane = new JTabbedPane();
         tabbedPane.addTab("Инструменты", instrumentsPanel);
         tabbedPane.addTab("Портфель", portfolioPanel);
         tabbedPane.addTab("Экспорт и Анализ", exportPanel);
+        tabbedPane.addTab("Диагностика", diagnosticsPanel);
 
         add(tabbedPane, BorderLayout.CENTER);
     }
@@ -77,6 +89,12 @@ public class TinkoffInvestGui extends JFrame {
      * Запуск сервисов
      */
     private void startServices() {
+        // Метрики: JMX + Prometheus endpoint (вкладка «Диагностика» читает реестр напрямую)
+        MetricsExporter.getInstance().start();
+
+        // Стрим цен: подписки добавляют панели инструментов и портфеля по мере загрузки
+        MarketDataStreamManager.getInstance().start();
+
         portfolioPanel.startAutoUpdate();
         instrumentsPanel.loadInstruments();
         portfolioPanel.updateAccountsAndPortfolio();
@@ -89,6 +107,11 @@ public class TinkoffInvestGui extends JFrame {
         }
 
         initOrdersScheduler();
+
+        // Ночной снимок метрик облигаций для анализа и фильтра объёма в бэктесте
+        BondMetricsService.getInstance().start();
+        // Купонные графики для НКД и доходности (фоновая догрузка из GetBondCoupons)
+        CouponScheduleStore.getInstance().start();
         log.info("✅ GUI инициализирован");
     }
 
@@ -137,8 +160,14 @@ public class TinkoffInvestGui extends JFrame {
         if (ordersScheduler != null) {
             ordersScheduler.stop();
         }
+        StopOnFillEngine.getInstance().shutdown();
+        BondMetricsService.getInstance().stop();
+        CouponScheduleStore.getInstance().stop();
 
         portfolioPanel.stopAutoUpdate();
+        diagnosticsPanel.stopAutoRefresh();
+        MetricsExporter.getInstance().stop();
+        MarketDataStreamManager.getInstance().stop();
         System.exit(0);
     }
 
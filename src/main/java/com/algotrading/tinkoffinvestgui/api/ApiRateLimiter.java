@@ -0,0 +1,208 @@
+package com.algotrading.tinkoffinvestgui.api;
+
+import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
+import io.grpc.ClientInterceptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Общий клиентский лимитер запросов к Tinkoff Invest API.
+ * Держит отдельный token bucket на каждый gRPC сервис (MarketData, Orders, Operations,
+ * Instruments, Users) — все сервисы приложения делят одни и те же бакеты.
+ *
+ * Лимиты (запросов в минуту) задаются в invest.properties:
+ *   api.ratelimit.marketdata=600
+ *   api.ratelimit.orders=100
+ *   api.ratelimit.operations=200
+ *   api.ratelimit.instruments=200
+ *   api.ratelimit.users=100
+ */
+public class ApiRateLimiter {
+    private static final Logger log = LoggerFactory.getLogger(ApiRateLimiter.class);
+    private static final ApiRateLimiter INSTANCE = new ApiRateLimiter();
+
+    public static final String MARKET_DATA = "MarketDataService";
+    public static final String ORDERS = "OrdersService";
+    public static final String OPERATIONS = "OperationsService";
+    public static final String INSTRUMENTS = "InstrumentsService";
+    public static final String USERS = "UsersService";
+
+    /** Ожидания короче этого порога не считаем троттлингом */
+    private static final long THROTTLE_LOG_THRESHOLD_MS = 50;
+
+    private final Map<String, TokenBucket> buckets = new LinkedHashMap<>();
+    private final ClientInterceptor interceptor = new RateLimitInterceptor(this);
+
+    private ApiRateLimiter() {
+        buckets.put(MARKET_DATA, new TokenBucket(MARKET_DATA, readLimit("api.ratelimit.marketdata", 600)));
+        buckets.put(ORDERS, new TokenBucket(ORDERS, readLimit("api.ratelimit.orders", 100)));
+        buckets.put(OPERATIONS, new TokenBucket(OPERATIONS, readLimit("api.ratelimit.operations", 200)));
+        buckets.put(INSTRUMENTS, new TokenBucket(INSTRUMENTS, readLimit("api.ratelimit.instruments", 200)));
+        buckets.put(USERS, new TokenBucket(USERS, readLimit("api.ratelimit.users", 100)));
+        log.info("✅ Лимитер API инициализирован: {}", buckets.values());
+    }
+
+    public static ApiRateLimiter getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Interceptor для подключения к каналу или стабу
+     */
+    public ClientInterceptor interceptor() {
+        return interceptor;
+    }
+
+    /**
+     * Забирает один токен из бакета сервиса, при необходимости ожидая.
+     * Неизвестные сервисы (например, стримы) не лимитируются.
+     *
+     * @param fullServiceName полное имя gRPC сервиса
+     * @return время ожидания в наносекундах
+     */
+    public long acquire(String fullServiceName) {
+        TokenBucket bucket = findBucket(fullServiceName);
+        if (bucket == null) {
+            return 0;
+        }
+
+        long waitNanos = bucket.reserve();
+        if (waitNanos > 0) {
+            long waitMs = TimeUnit.NANOSECONDS.toMillis(waitNanos);
+            if (waitMs >= THROTTLE_LOG_THRESHOLD_MS) {
+                log.debug("⏳ Троттлинг {}: ожидание {} мс", bucket.name, waitMs);
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Ожидание лимита API прервано", e);
+            }
+        }
+        return waitNanos;
+    }
+
+    private TokenBucket findBucket(String fullServiceName) {
+        if (fullServiceName == null) {
+            return null;
+        }
+        int dot = fullServiceName.lastIndexOf('.');
+        String simpleName = dot >= 0 ? fullServiceName.substring(dot + 1) : fullServiceName;
+        return buckets.get(simpleName);
+    }
+
+    /**
+     * Статистика ожиданий по сервисам (для логов и диагностики)
+     */
+    public Map<String, ThrottleStats> getStats() {
+        Map<String, ThrottleStats> stats = new LinkedHashMap<>();
+        for (TokenBucket bucket : buckets.values()) {
+            stats.put(bucket.name, new ThrottleStats(
+                    bucket.permitsPerMinute,
+                    bucket.calls.sum(),
+                    bucket.throttledCalls.sum(),
+                    TimeUnit.NANOSECONDS.toMillis(bucket.waitNanos.sum())
+            ));
+        }
+        return Collections.unmodifiableMap(stats);
+    }
+
+    private static int readLimit(String key, int defaultValue) {
+        String value = ConnectorConfig.getPropertyValue(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            int limit = Integer.parseInt(value.trim());
+            return limit > 0 ? limit : defaultValue;
+        } catch (NumberFormatException e) {
+            log.warn("⚠️ Некорректное значение {}={}, используется {}", key, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Token bucket с резервированием: токены могут уйти в минус,
+     * тогда вызывающий поток ждёт, пока «долг» не восполнится.
+     * Ёмкость бакета — секундный объём лимита (но не меньше 1).
+     */
+    private static class TokenBucket {
+        private final String name;
+        private final int permitsPerMinute;
+        private final double permitsPerNano;
+        private final double capacity;
+
+        private double tokens;
+        private long lastRefillNanos;
+
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder throttledCalls = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+
+        TokenBucket(String name, int permitsPerMinute) {
+            this.name = name;
+            this.permitsPerMinute = permitsPerMinute;
+            this.permitsPerNano = permitsPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+            this.capacity = Math.max(1.0, permitsPerMinute / 60.0);
+            this.tokens = capacity;
+            this.lastRefillNanos = System.nanoTime();
+        }
+
+        long reserve() {
+            long wait;
+            synchronized (this) {
+                long now = System.nanoTime();
+                tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * permitsPerNano);
+                lastRefillNanos = now;
+
+                tokens -= 1.0;
+                wait = tokens >= 0 ? 0 : (long) Math.ceil(-tokens / permitsPerNano);
+            }
+
+            calls.increment();
+            if (wait > 0) {
+                throttledCalls.increment();
+                waitNanos.add(wait);
+            }
+            return wait;
+        }
+
+        @Override
+        public String toString() {
+            return name + "=" + permitsPerMinute + "/мин";
+        }
+    }
+
+    /**
+     * Снимок статистики троттлинга по одному сервису
+     */
+    public static class ThrottleStats {
+        private final int permitsPerMinute;
+        private final long calls;
+        private final long throttledCalls;
+        private final long totalWaitMs;
+
+        public ThrottleStats(int permitsPerMinute, long calls, long throttledCalls, long totalWaitMs) {
+            this.permitsPerMinute = permitsPerMinute;
+            this.calls = calls;
+            this.throttledCalls = throttledCalls;
+            this.totalWaitMs = totalWaitMs;
+        }
+
+        public int getPermitsPerMinute() { return permitsPerMinute; }
+        public long getCalls() { return calls; }
+        public long getThrottledCalls() { return throttledCalls; }
+        public long getTotalWaitMs() { return totalWaitMs; }
+
+        @Override
+        public String toString() {
+            return String.format("вызовов=%d, с ожиданием=%d, ожидание=%d мс", calls, throttledCalls, totalWaitMs);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.algotrading.tinkoffinvestgui.api;
+
+import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Повтор вызовов API с экспоненциальной задержкой при RESOURCE_EXHAUSTED / UNAVAILABLE.
+ *
+ * Количество повторов ограничено общим «бюджетом»: каждый успешный вызов пополняет его
+ * на {@link #BUDGET_REFILL_PER_SUCCESS}, каждый повтор тратит 1. Если API лежит,
+ * бюджет быстро кончается и приложение перестаёт усиливать нагрузку повторами.
+ *
+ * Настройки в invest.properties:
+ *   api.retry.max.attempts=4
+ *   api.retry.base.delay.ms=250
+ *   api.retry.max.delay.ms=8000
+ */
+public final class ApiRetry {
+    private static final Logger log = LoggerFactory.getLogger(ApiRetry.class);
+
+    private static final Metadata.Key<String> RATELIMIT_RESET_KEY =
+            Metadata.Key.of("x-ratelimit-reset", Metadata.ASCII_STRING_MARSHALLER);
+
+    private static final double BUDGET_MAX = 20.0;
+    private static final double BUDGET_REFILL_PER_SUCCESS = 0.1;
+
+    private static final int MAX_ATTEMPTS = readInt("api.retry.max.attempts", 4);
+    private static final long BASE_DELAY_MS = readInt("api.retry.base.delay.ms", 250);
+    private static final long MAX_DELAY_MS = readInt("api.retry.max.delay.ms", 8000);
+
+    private static double budget = BUDGET_MAX;
+
+    private ApiRetry() {
+    }
+
+    /**
+     * Выполняет вызов с повторами.
+     *
+     * ВАЖНО: для PostOrder повтор безопасен только если orderId в запросе
+     * сформирован один раз до вызова (брокер дедуплицирует по нему).
+     *
+     * @param context описание вызова для логов
+     * @param call    вызов API
+     */
+    public static <T> T execute(String context, Supplier<T> call) {
+        int attempt = 1;
+        while (true) {
+            try {
+                T result = call.get();
+                refillBudget();
+                return result;
+            } catch (StatusRuntimeException e) {
+                Status.Code code = e.getStatus().getCode();
+                boolean retryable = code == Status.Code.RESOURCE_EXHAUSTED || code == Status.Code.UNAVAILABLE;
+
+                if (!retryable || attempt >= MAX_ATTEMPTS || !tryConsumeBudget()) {
+                    throw e;
+                }
+
+                long delayMs = backoffDelayMs(attempt, e);
+                log.warn("⚠️ {}: {} (попытка {}/{}), повтор через {} мс",
+                        context, code, attempt, MAX_ATTEMPTS, delayMs);
+                sleep(delayMs);
+                attempt++;
+            }
+        }
+    }
+
+    /**
+     * Вариант для вызовов без результата
+     */
+    public static void run(String context, Runnable call) {
+        execute(context, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    /**
+     * Задержка: base * 2^(attempt-1) с джиттером, но не меньше
+     * подсказки брокера из x-ratelimit-reset (секунды до сброса лимита)
+     */
+    private static long backoffDelayMs(int attempt, StatusRuntimeException e) {
+        long exp = Math.min(MAX_DELAY_MS, BASE_DELAY_MS << Math.min(attempt - 1, 16));
+        long delay = exp / 2 + ThreadLocalRandom.current().nextLong(exp / 2 + 1);
+
+        Metadata trailers = e.getTrailers();
+        if (trailers != null) {
+            String reset = trailers.get(RATELIMIT_RESET_KEY);
+            if (reset != null) {
+                try {
+                    delay = Math.max(delay, TimeUnit.SECONDS.toMillis(Long.parseLong(reset.trim())));
+                } catch (NumberFormatException ignored) {
+                    // нечисловой заголовок — остаёмся на экспоненциальной задержке
+                }
+            }
+        }
+        return Math.min(delay, MAX_DELAY_MS);
+    }
+
+    private static synchronized void refillBudget() {
+        budget = Math.min(BUDGET_MAX, budget + BUDGET_REFILL_PER_SUCCESS);
+    }
+
+    private static synchronized boolean tryConsumeBudget() {
+        if (budget < 1.0) {
+            log.warn("⚠️ Бюджет повторов API исчерпан, повтор не выполняется");
+            return false;
+        }
+        budget -= 1.0;
+        return true;
+    }
+
+    /**
+     * Остаток бюджета повторов (для диагностики)
+     */
+    public static synchronized double getRemainingBudget() {
+        return budget;
+    }
+
+    private static void sleep(long delayMs) {
+        try {
+            Thread.sleep(delayMs);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Повтор вызова API прерван", ie);
+        }
+    }
+
+    private static int readInt(String key, int defaultValue) {
+        String value = ConnectorConfig.getPropertyValue(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -45,6 +45,7 @@ public abstract class BaseApiService {
                     .maxRetryAttempts(3)
                     .retryBufferSize(16 * 1024 * 1024)
                     .perRpcBufferLimit(1024 * 1024)
+                    .intercept(ApiRateLimiter.getInstance().interceptor(), RpcMetricsInterceptor.getInstance())
                     .build();
             
             log.debug("gRPC соединение установлено");
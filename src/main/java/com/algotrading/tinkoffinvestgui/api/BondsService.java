@@ -5,6 +5,10 @@ import io.grpc.ManagedChannel;
 import io.grpc.Metadata;
 import io.grpc.stub.MetadataUtils;
 
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+
 /**
  * Сервис для работы с облигациями Tinkoff Invest API.
  */
@@ -44,6 +48,37 @@ public class BondsService extends BaseApiService {
         }
     }
 
+    /**
+     * Купонный график облигации за период (GetBondCoupons), по возрастанию даты выплаты
+     */
+    public List<Coupon> getBondCoupons(String figi, LocalDate from, LocalDate to) {
+        try {
+            ManagedChannel channel = getChannel();
+            Metadata headers = getAuthorizationHeaders();
+
+            InstrumentsServiceGrpc.InstrumentsServiceBlockingStub instrumentsService =
+                    InstrumentsServiceGrpc.newBlockingStub(channel)
+                            .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(headers));
+
+            GetBondCouponsRequest request = GetBondCouponsRequest.newBuilder()
+                    .setInstrumentId(figi)
+                    .setFrom(toTimestamp(from))
+                    .setTo(toTimestamp(to))
+                    .build();
+
+            return instrumentsService.getBondCoupons(request).getEventsList();
+
+        } catch (Exception e) {
+            throw handleApiError("получении купонов облигации " + figi, e);
+        }
+    }
+
+    private static com.google.protobuf.Timestamp toTimestamp(LocalDate date) {
+        return com.google.protobuf.Timestamp.newBuilder()
+                .setSeconds(date.atStartOfDay(ZoneOffset.UTC).toEpochSecond())
+                .build();
+    }
+
     /**
      * Форматирует номинал облигации
      */
@@ -1,8 +1,8 @@
 package com.algotrading.tinkoffinvestgui.api;
 
 import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
+import com.algotrading.tinkoffinvestgui.util.LazyJson;
 import com.google.protobuf.Timestamp;
-import com.google.protobuf.util.JsonFormat;
 import io.grpc.*;
 import io.grpc.stub.MetadataUtils;
 import org.slf4j.Logger;
@@ -31,7 +31,9 @@ public class CandlesApiService {
     }
 
     /**
-     * Получает исторические свечи для инструмента
+     * Получает исторические свечи для инструмента.
+     * Если период длиннее допустимого API для интервала, он загружается кусками
+     * через {@link CandlesChunkedDownloader}.
      *
      * @param figi     FIGI инструмента
      * @param from     Начало периода
@@ -40,16 +42,22 @@ public class CandlesApiService {
      * @return Список свечей
      */
     public List<HistoricCandle> getCandles(String figi, LocalDate from, LocalDate to, CandleInterval interval) {
-        log.info("Запрос свечей: FIGI={}, период={} - {}, интервал={}",
+        if (CandlesChunkedDownloader.fitsSingleRequest(from, to, interval)) {
+            return getCandlesChunk(figi, from, to, interval);
+        }
+        return new CandlesChunkedDownloader(this).download(figi, from, to, interval);
+    }
+
+    /**
+     * Один запрос GetCandles (период должен укладываться в лимит API для интервала)
+     */
+    List<HistoricCandle> getCandlesChunk(String figi, LocalDate from, LocalDate to, CandleInterval interval) {
+        log.debug("Запрос свечей: FIGI={}, период={} - {}, интервал={}",
                 figi, from, to, interval.name());
 
-        ManagedChannel channel = null;
         try {
-            // Создаём gRPC канал
-            channel = ManagedChannelBuilder
-                    .forAddress(apiUrl, apiPort)
-                    .useTransportSecurity()
-                    .build();
+            // Общий канал (с лимитером запросов) — параллельные куски не плодят соединения
+            ManagedChannel channel = GrpcChannelManager.getInstance().getChannel(apiUrl, apiPort);
 
             // Создаём метаданные с токеном авторизации
             Metadata metadata = new Metadata();
@@ -60,12 +68,9 @@ public class CandlesApiService {
             metadata.put(appNameKey, "algotrading.tinkoffinvestgui");
 
             // Создаём stub с метаданными через interceptor
-            MarketDataServiceGrpc.MarketDataServiceBlockingStub stub =
-                    MarketDataServiceGrpc.newBlockingStub(channel);
-
-            // Правильный способ добавления метаданных
             ClientInterceptor interceptor = MetadataUtils.newAttachHeadersInterceptor(metadata);
-            stub = stub.withInterceptors(interceptor);
+            MarketDataServiceGrpc.MarketDataServiceBlockingStub stub =
+                    MarketDataServiceGrpc.newBlockingStub(channel).withInterceptors(interceptor);
 
             // Конвертируем LocalDate в Timestamp
             Timestamp fromTimestamp = localDateToTimestamp(from);
@@ -79,31 +84,21 @@ public class CandlesApiService {
                     .setInterval(interval)
                     .build();
 
-            // Логируем полный JSON запроса
-            try {
-                String requestJson = JsonFormat.printer()
-                        .includingDefaultValueFields()
-                        .print(request);
-                log.debug("📤 Полный JSON запрос на свечи:\n{}", requestJson);
-            } catch (Exception e) {
-                log.warn("Не удалось сериализовать запрос в JSON для логирования", e);
+            // JSON строится только при включённом DEBUG
+            if (log.isDebugEnabled()) {
+                log.debug("📤 GetCandlesRequest: {}", LazyJson.of(request));
             }
 
-            log.debug("Отправка запроса свечей через gRPC...");
-
             // Выполняем запрос
-            GetCandlesResponse response = stub.getCandles(request);
+            GetCandlesResponse response = ApiRetry.execute("GetCandles " + figi,
+                    () -> stub.getCandles(request));
 
-            log.info("✅ Получено свечей: {}", response.getCandlesCount());
+            log.debug("✅ Получено свечей {}: {}", figi, response.getCandlesCount());
             return response.getCandlesList();
 
         } catch (Exception e) {
             log.error("❌ Ошибка получения свечей для FIGI: {}", figi, e);
             throw new RuntimeException("Ошибка получения свечей: " + e.getMessage(), e);
-        } finally {
-            if (channel != null) {
-                channel.shutdown();
-            }
         }
     }
 
@@ -0,0 +1,185 @@
+package com.algotrading.tinkoffinvestgui.api;
+
+import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.tinkoff.piapi.contract.v1.CandleInterval;
+import ru.tinkoff.piapi.contract.v1.HistoricCandle;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Загрузчик свечей за длинный период.
+ *
+ * API ограничивает период одного GetCandles в зависимости от интервала (1 день для минуток,
+ * неделя для часовых и т.д.). Загрузчик режет период на допустимые куски, запрашивает их
+ * параллельно (общий пул, candles.download.parallelism в invest.properties, по умолчанию 4),
+ * а реальный темп запросов ограничивает общий {@link ApiRateLimiter}.
+ * Результат склеивается по порядку, дубли свечей на стыках кусков отбрасываются.
+ */
+public class CandlesChunkedDownloader {
+    private static final Logger log = LoggerFactory.getLogger(CandlesChunkedDownloader.class);
+
+    private static final int DEFAULT_PARALLELISM = 4;
+    private static final ExecutorService POOL = createPool();
+
+    private final CandlesApiService apiService;
+    private final int parallelism;
+
+    public CandlesChunkedDownloader(CandlesApiService apiService) {
+        this.apiService = apiService;
+        this.parallelism = readParallelism();
+    }
+
+    /**
+     * Приёмник кусков в порядке времени (для потоковой записи)
+     */
+    @FunctionalInterface
+    public interface ChunkConsumer {
+        void accept(List<HistoricCandle> candles) throws Exception;
+    }
+
+    /**
+     * Загружает весь период и возвращает одну упорядоченную серию
+     */
+    public List<HistoricCandle> download(String figi, LocalDate from, LocalDate to, CandleInterval interval) {
+        List<HistoricCandle> result = new ArrayList<>();
+        forEachChunk(figi, from, to, interval, result::addAll);
+        return result;
+    }
+
+    /**
+     * Загружает период кусками и отдаёт их по порядку, не дожидаясь конца загрузки.
+     * Одновременно в работе не больше parallelism кусков — память ограничена окном.
+     */
+    public void forEachChunk(String figi, LocalDate from, LocalDate to, CandleInterval interval,
+                             ChunkConsumer consumer) {
+        List<LocalDate[]> ranges = splitPeriod(from, to, interval);
+        if (ranges.size() > 1) {
+            log.info("📊 Свечи {} {}: период {} - {} разбит на {} запросов",
+                    figi, interval.name(), from, to, ranges.size());
+        }
+
+        Deque<Future<List<HistoricCandle>>> window = new ArrayDeque<>();
+        int nextToSubmit = 0;
+        long lastTime = Long.MIN_VALUE;
+        int lastNanos = Integer.MIN_VALUE;
+
+        try {
+            while (nextToSubmit < ranges.size() || !window.isEmpty()) {
+                while (nextToSubmit < ranges.size() && window.size() < parallelism) {
+                    LocalDate[] range = ranges.get(nextToSubmit++);
+                    window.addLast(POOL.submit(() -> apiService.getCandlesChunk(figi, range[0], range[1], interval)));
+                }
+
+                List<HistoricCandle> chunk = window.removeFirst().get();
+
+                // Свеча на границе может прийти в обоих соседних кусках — оставляем строго возрастающее время
+                List<HistoricCandle> ordered = new ArrayList<>(chunk.size());
+                for (HistoricCandle candle : chunk) {
+                    long seconds = candle.getTime().getSeconds();
+                    int nanos = candle.getTime().getNanos();
+                    if (seconds > lastTime || (seconds == lastTime && nanos > lastNanos)) {
+                        ordered.add(candle);
+                        lastTime = seconds;
+                        lastNanos = nanos;
+                    }
+                }
+                if (!ordered.isEmpty()) {
+                    consumer.accept(ordered);
+                }
+            }
+        } catch (ExecutionException e) {
+            cancelAll(window);
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new RuntimeException("Ошибка загрузки свечей " + figi + ": " + cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            cancelAll(window);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Загрузка свечей прервана", e);
+        } catch (RuntimeException e) {
+            cancelAll(window);
+            throw e;
+        } catch (Exception e) {
+            cancelAll(window);
+            throw new RuntimeException("Ошибка обработки свечей " + figi + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void cancelAll(Deque<Future<List<HistoricCandle>>> window) {
+        for (Future<List<HistoricCandle>> f : window) {
+            f.cancel(true);
+        }
+        window.clear();
+    }
+
+    /**
+     * Разбивает период [from, to) на куски, допустимые API для интервала
+     */
+    public static List<LocalDate[]> splitPeriod(LocalDate from, LocalDate to, CandleInterval interval) {
+        int step = maxDaysPerRequest(interval);
+        List<LocalDate[]> ranges = new ArrayList<>();
+        LocalDate start = from;
+        while (start.isBefore(to)) {
+            LocalDate end = start.plusDays(step);
+            if (end.isAfter(to)) {
+                end = to;
+            }
+            ranges.add(new LocalDate[]{start, end});
+            start = end;
+        }
+        return ranges;
+    }
+
+    /**
+     * Помещается ли период в один запрос
+     */
+    public static boolean fitsSingleRequest(LocalDate from, LocalDate to, CandleInterval interval) {
+        return ChronoUnit.DAYS.between(from, to) <= maxDaysPerRequest(interval);
+    }
+
+    /**
+     * Максимальный период одного запроса GetCandles (в днях) по документации API
+     */
+    public static int maxDaysPerRequest(CandleInterval interval) {
+        return switch (interval) {
+            case CANDLE_INTERVAL_1_MIN, CANDLE_INTERVAL_5_MIN, CANDLE_INTERVAL_15_MIN -> 1;
+            case CANDLE_INTERVAL_HOUR -> 7;
+            case CANDLE_INTERVAL_DAY -> 365;
+            case CANDLE_INTERVAL_WEEK -> 730;
+            case CANDLE_INTERVAL_MONTH -> 3650;
+            default -> 1;
+        };
+    }
+
+    private static int readParallelism() {
+        String value = ConnectorConfig.getPropertyValue("candles.download.parallelism");
+        if (value == null || value.trim().isEmpty()) {
+            return DEFAULT_PARALLELISM;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            return DEFAULT_PARALLELISM;
+        }
+    }
+
+    private static ExecutorService createPool() {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(DEFAULT_PARALLELISM, readParallelism()), r -> {
+            Thread t = new Thread(r, "candles-download-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+}
@@ -38,6 +38,7 @@ public class GrpcChannelManager {
         ManagedChannel channel = ManagedChannelBuilder
                 .forAddress(host, port)
                 .useTransportSecurity()
+                .intercept(ApiRateLimiter.getInstance().interceptor(), RpcMetricsInterceptor.getInstance())
                 .build();
 
         channels.put(key, channel);
@@ -1,9 +1,11 @@
 package com.algotrading.tinkoffinvestgui.api;
 
 import com.algotrading.tinkoffinvestgui.entity.Instrument;
+import com.algotrading.tinkoffinvestgui.metrics.MetricsRegistry;
+import com.algotrading.tinkoffinvestgui.util.LazyJson;
+import com.algotrading.tinkoffinvestgui.util.OrderEventLogger;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.protobuf.util.JsonFormat;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
 import org.slf4j.Logger;
@@ -16,6 +18,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Сервис для работы с заявками (Orders) через Tinkoff Invest API
@@ -30,20 +33,37 @@ public class OrdersService {
 
     private OrdersServiceGrpc.OrdersServiceBlockingStub ordersStub;
     private ManagedChannel channel;
+    private final boolean ownsChannel;
 
     public OrdersService(String token, String apiUrl, int apiPort) {
         this.token = token;
         this.apiUrl = apiUrl;
         this.apiPort = apiPort;
+        this.ownsChannel = true;
         initializeChannel();
     }
 
+    /**
+     * Сервис поверх общего канала из {@link GrpcChannelManager} (лимитер и метрики уже на канале).
+     * Такой канал живёт до завершения приложения: {@link #shutdown()} его не закрывает.
+     */
+    public OrdersService(String token, ManagedChannel sharedChannel) {
+        this.token = token;
+        this.apiUrl = null;
+        this.apiPort = 0;
+        this.ownsChannel = false;
+        this.channel = sharedChannel;
+        this.ordersStub = OrdersServiceGrpc.newBlockingStub(sharedChannel)
+                .withCallCredentials(new BearerTokenCallCredentials(token));
+    }
+
     private void initializeChannel() {
         try {
             log.debug("Инициализация gRPC канала для Orders API: {}:{}", apiUrl, apiPort);
             channel = ManagedChannelBuilder
                     .forAddress(apiUrl, apiPort)
                     .useTransportSecurity()
+                    .intercept(ApiRateLimiter.getInstance().interceptor(), RpcMetricsInterceptor.getInstance())
                     .build();
 
             ordersStub = OrdersServiceGrpc.newBlockingStub(channel)
@@ -60,89 +80,52 @@ public class OrdersService {
      * Отправляет заявку на ПОКУПКУ
      */
     public PostOrderResponse postBuyOrder(String accountId, String figi, int quantity, BigDecimal price) {
-        log.info("\n════════════════════════════════════════════════════════════");
-        log.info("=== ОТПРАВКА ЗАЯВКИ НА ПОКУПКУ ===");
-        log.info("════════════════════════════════════════════════════════════");
-        log.info("Account ID: {}", accountId);
-        log.info("FIGI: {}", figi);
-        log.info("Количество: {}", quantity);
-        log.info("Цена: {}", price);
-
-        try {
-            PostOrderRequest request = buildOrderRequest(
-                    accountId, figi, quantity, price, OrderDirection.ORDER_DIRECTION_BUY
-            );
-
-            // ✅ Логирование полного JSON запроса
-            logPostOrderRequestJson(request, "BUY");
-
-            PostOrderResponse response = ordersStub.postOrder(request);
-
-            log.info("\n✅ ЗАЯВКА НА ПОКУПКУ ОТПРАВЛЕНА УСПЕШНО");
-            log.info("Order ID: {}", response.getOrderId());
-            log.info("Execution Report Status: {}", response.getExecutionReportStatus());
-            log.info("Lots Requested: {}", response.getLotsRequested());
-            log.info("Lots Executed: {}", response.getLotsExecuted());
-            log.info("Initial Order Price: {} {}",
-                    formatMoneyValue(response.getInitialOrderPrice()),
-                    response.getInitialOrderPrice().getCurrency());
-            log.info("Executed Order Price: {} {}",
-                    formatMoneyValue(response.getExecutedOrderPrice()),
-                    response.getExecutedOrderPrice().getCurrency());
-            log.info("Total Order Amount: {} {}",
-                    formatMoneyValue(response.getTotalOrderAmount()),
-                    response.getTotalOrderAmount().getCurrency());
-            log.info("════════════════════════════════════════════════════════════\n");
-
-            return response;
-        } catch (Exception e) {
-            log.error("❌ Ошибка отправки заявки на ПОКУПКУ", e);
-            throw new RuntimeException("Не удалось отправить заявку на покупку: " + e.getMessage(), e);
-        }
+        return postOrder(accountId, figi, quantity, price, OrderDirection.ORDER_DIRECTION_BUY, generateOrderId());
     }
 
     /**
      * Отправляет заявку на ПРОДАЖУ
      */
     public PostOrderResponse postSellOrder(String accountId, String figi, int quantity, BigDecimal price) {
-        log.info("\n════════════════════════════════════════════════════════════");
-        log.info("=== ОТПРАВКА ЗАЯВКИ НА ПРОДАЖУ ===");
-        log.info("════════════════════════════════════════════════════════════");
-        log.info("Account ID: {}", accountId);
-        log.info("FIGI: {}", figi);
-        log.info("Количество: {}", quantity);
-        log.info("Цена: {}", price);
+        return postOrder(accountId, figi, quantity, price, OrderDirection.ORDER_DIRECTION_SELL, generateOrderId());
+    }
+
+    /**
+     * Отправляет заявку на ПРОДАЖУ с заданным клиентским order_id.
+     * Повторная отправка с тем же id не создаёт вторую заявку: брокер вернёт уже выставленную.
+     */
+    public PostOrderResponse postSellOrder(String accountId, String figi, int quantity, BigDecimal price,
+                                           String clientOrderId) {
+        return postOrder(accountId, figi, quantity, price, OrderDirection.ORDER_DIRECTION_SELL, clientOrderId);
+    }
 
+    /**
+     * Отправка лимитной заявки. Вместо многострочного дампа пишет по одной строке
+     * SUBMIT/ACK/REJECT в журнал событий заявок; полный JSON запроса — только на DEBUG.
+     */
+    private PostOrderResponse postOrder(String accountId, String figi, int quantity, BigDecimal price,
+                                        OrderDirection direction, String orderId) {
+        String dir = direction == OrderDirection.ORDER_DIRECTION_BUY ? "BUY" : "SELL";
         try {
-            PostOrderRequest request = buildOrderRequest(
-                    accountId, figi, quantity, price, OrderDirection.ORDER_DIRECTION_SELL
-            );
-
-            // ✅ Логирование полного JSON запроса
-            logPostOrderRequestJson(request, "SELL");
-
-            PostOrderResponse response = ordersStub.postOrder(request);
-
-            log.info("\n✅ ЗАЯВКА НА ПРОДАЖУ ОТПРАВЛЕНА УСПЕШНО");
-            log.info("Order ID: {}", response.getOrderId());
-            log.info("Execution Report Status: {}", response.getExecutionReportStatus());
-            log.info("Lots Requested: {}", response.getLotsRequested());
-            log.info("Lots Executed: {}", response.getLotsExecuted());
-            log.info("Initial Order Price: {} {}",
-                    formatMoneyValue(response.getInitialOrderPrice()),
-                    response.getInitialOrderPrice().getCurrency());
-            log.info("Executed Order Price: {} {}",
-                    formatMoneyValue(response.getExecutedOrderPrice()),
-                    response.getExecutedOrderPrice().getCurrency());
-            log.info("Total Order Amount: {} {}",
-                    formatMoneyValue(response.getTotalOrderAmount()),
-                    response.getTotalOrderAmount().getCurrency());
-            log.info("════════════════════════════════════════════════════════════\n");
+            PostOrderRequest request = buildOrderRequest(accountId, figi, quantity, price, direction, orderId);
+            OrderEventLogger.submit(dir, accountId, figi, quantity, price, request.getOrderId());
+            if (log.isDebugEnabled()) {
+                log.debug("📤 PostOrderRequest {}: {}", dir, LazyJson.of(request));
+            }
 
+            long start = System.nanoTime();
+            PostOrderResponse response = MetricsRegistry.getInstance()
+                    .timer(MetricsRegistry.ORDER_SUBMIT_ACK, "direction", dir)
+                    .record(() -> ApiRetry.execute("PostOrder " + figi, () -> ordersStub.postOrder(request)));
+
+            OrderEventLogger.ack(dir, figi, quantity, price, response,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
             return response;
         } catch (Exception e) {
-            log.error("❌ Ошибка отправки заявки на ПРОДАЖУ", e);
-            throw new RuntimeException("Не удалось отправить заявку на продажу: " + e.getMessage(), e);
+            OrderEventLogger.reject(dir, figi, quantity, price, e.getMessage());
+            log.error("❌ Ошибка отправки заявки {} {} (счёт {})", dir, figi, accountId, e);
+            String action = direction == OrderDirection.ORDER_DIRECTION_BUY ? "покупку" : "продажу";
+            throw new RuntimeException("Не удалось отправить заявку на " + action + ": " + e.getMessage(), e);
         }
     }
 
@@ -150,8 +133,7 @@ public class OrdersService {
      * Строит PostOrderRequest для отправки заявки
      */
     private PostOrderRequest buildOrderRequest(String accountId, String figi, int quantity,
-                                               BigDecimal price, OrderDirection direction) {
-        String orderId = generateOrderId();
+                                               BigDecimal price, OrderDirection direction, String orderId) {
         Quotation priceQuotation = buildQuotation(price);
 
         return PostOrderRequest.newBuilder()
@@ -187,52 +169,54 @@ public class OrdersService {
         return UUID.randomUUID().toString();
     }
 
-    /**
-     * Форматирует MoneyValue для вывода
-     */
-    private String formatMoneyValue(MoneyValue money) {
-        double value = money.getUnits() + money.getNano() / 1_000_000_000.0;
-        return String.format("%.2f", value);
-    }
-
-    /**
-     * ✅ ЛОГИРОВАНИЕ ПОЛНОГО JSON ЗАПРОСА PostOrderRequest
-     * Компактный формат аналогичный CandlesApiService
-     */
-    private void logPostOrderRequestJson(PostOrderRequest request, String orderType) {
-        try {
-            String json = JsonFormat.printer()
-                    .includingDefaultValueFields()
-                    .print(request);
-
-            log.info("📤 Полный JSON запрос на {} заявку:\n{}", orderType, json);
-        } catch (Exception e) {
-            log.error("Ошибка форматирования JSON для PostOrderRequest", e);
-        }
-    }
-
     /**
      * Получить статус торгового поручения из Orders API
      */
     public OrderState getOrderState(String accountId, String orderId) {
-        log.info("Tinkoff Orders API: getOrderState, accountId={}, orderId={}", accountId, orderId);
+        log.debug("Tinkoff Orders API: getOrderState, accountId={}, orderId={}", accountId, orderId);
         GetOrderStateRequest request = GetOrderStateRequest.newBuilder()
                 .setAccountId(accountId)
                 .setOrderId(orderId)
                 .build();
-        return ordersStub.getOrderState(request);
+        return ApiRetry.execute("GetOrderState " + orderId, () -> ordersStub.getOrderState(request));
     }
 
     /**
      * Отменить торговое поручение через Orders API
      */
     public void cancelOrder(String accountId, String orderId) {
-        log.info("Tinkoff Orders API: cancelOrder, accountId={}, orderId={}", accountId, orderId);
         CancelOrderRequest request = CancelOrderRequest.newBuilder()
                 .setAccountId(accountId)
                 .setOrderId(orderId)
                 .build();
         ordersStub.cancelOrder(request);
+        OrderEventLogger.cancel(accountId, orderId);
+    }
+
+    /**
+     * Изменить количество/цену выставленной заявки (ReplaceOrder).
+     * Биржа снимает старую заявку и выставляет новую — в ответе новый order_id.
+     *
+     * @param idempotencyKey ключ идемпотентности: повтор с тем же ключом не создаст вторую замену
+     */
+    public PostOrderResponse replaceOrder(String accountId, String orderId, int quantity, BigDecimal price,
+                                          String idempotencyKey) {
+        ReplaceOrderRequest request = ReplaceOrderRequest.newBuilder()
+                .setAccountId(accountId)
+                .setOrderId(orderId)
+                .setIdempotencyKey(idempotencyKey)
+                .setQuantity(quantity)
+                // Цена в тех же единицах, что у PostOrder: для облигаций — % номинала (пункты)
+                .setPrice(buildQuotation(price))
+                .setPriceType(PriceType.PRICE_TYPE_POINT)
+                .build();
+        if (log.isDebugEnabled()) {
+            log.debug("📤 ReplaceOrderRequest: {}", LazyJson.of(request));
+        }
+        PostOrderResponse response = ApiRetry.execute("ReplaceOrder " + orderId,
+                () -> ordersStub.replaceOrder(request));
+        OrderEventLogger.replace(accountId, orderId, response.getOrderId(), quantity, price);
+        return response;
     }
 
     /**
@@ -297,10 +281,10 @@ public class OrdersService {
     }
 
     /**
-     * Закрытие gRPC канала
+     * Закрытие собственного gRPC канала (общий канал закрывает GrpcChannelManager)
      */
     public void shutdown() {
-        if (channel != null && !channel.isShutdown()) {
+        if (ownsChannel && channel != null && !channel.isShutdown()) {
             log.info("Закрытие gRPC канала для Orders API");
             channel.shutdown();
         }
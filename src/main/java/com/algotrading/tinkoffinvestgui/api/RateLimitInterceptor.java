@@ -0,0 +1,29 @@
+package com.algotrading.tinkoffinvestgui.api;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.MethodDescriptor;
+
+/**
+ * gRPC interceptor, который перед каждым вызовом забирает токен
+ * из бакета соответствующего сервиса в {@link ApiRateLimiter}.
+ */
+public class RateLimitInterceptor implements ClientInterceptor {
+
+    private final ApiRateLimiter limiter;
+
+    RateLimitInterceptor(ApiRateLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+            MethodDescriptor<ReqT, RespT> method,
+            CallOptions callOptions,
+            Channel next) {
+        limiter.acquire(MethodDescriptor.extractFullServiceName(method.getFullMethodName()));
+        return next.newCall(method, callOptions);
+    }
+}
@@ -0,0 +1,64 @@
+package com.algotrading.tinkoffinvestgui.api;
+
+import com.algotrading.tinkoffinvestgui.metrics.MetricsRegistry;
+import com.algotrading.tinkoffinvestgui.metrics.Timer;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+/**
+ * gRPC interceptor, который пишет длительность unary вызовов в rpc_latency{method=...}
+ * и неуспешные вызовы в rpc_errors{method=...}.
+ * Время считается от start() до onClose(), т.е. без ожидания в {@link ApiRateLimiter}.
+ * Стримы не замеряются — их длительность равна времени жизни подписки.
+ */
+public class RpcMetricsInterceptor implements ClientInterceptor {
+    private static final RpcMetricsInterceptor INSTANCE = new RpcMetricsInterceptor();
+
+    private RpcMetricsInterceptor() {
+    }
+
+    public static RpcMetricsInterceptor getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+            MethodDescriptor<ReqT, RespT> method,
+            CallOptions callOptions,
+            Channel next) {
+        ClientCall<ReqT, RespT> call = next.newCall(method, callOptions);
+        if (method.getType() != MethodDescriptor.MethodType.UNARY) {
+            return call;
+        }
+
+        // tinkoff.public.invest.api.contract.v1.OrdersService/PostOrder → OrdersService/PostOrder
+        String fullName = method.getFullMethodName();
+        String methodName = fullName.substring(fullName.lastIndexOf('.', fullName.indexOf('/')) + 1);
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        Timer timer = registry.timer(MetricsRegistry.RPC_LATENCY, "method", methodName);
+
+        return new ForwardingClientCall.SimpleForwardingClientCall<>(call) {
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                long start = System.nanoTime();
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(responseListener) {
+                    @Override
+                    public void onClose(Status status, Metadata trailers) {
+                        timer.record(System.nanoTime() - start);
+                        if (!status.isOk()) {
+                            registry.counter(MetricsRegistry.RPC_ERRORS, "method", methodName).increment();
+                        }
+                        super.onClose(status, trailers);
+                    }
+                }, headers);
+            }
+        };
+    }
+}
@@ -31,7 +31,7 @@ public final class AppConstants {
     public static final String[] INSTRUMENTS_TABLE_COLUMNS = {
             "ID", "Приоритет", "FIGI", "Название", "ISIN",
              "Кол-во покупки", "Цена покупки", "Моя цена покупки",
-            "Кол-во продажи", "Цена продажи", "Моя цена продажи"
+            "Кол-во продажи", "Цена продажи", "Моя цена продажи", "Текущая цена"
     };
 
 
@@ -1,5 +1,6 @@
 package com.algotrading.tinkoffinvestgui.config;
 
+import com.algotrading.tinkoffinvestgui.metrics.JdbcMetrics;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import org.slf4j.Logger;
@@ -52,7 +53,7 @@ public class DatabaseConnectionPool {
      * Получает соединение из пула
      */
     public static Connection getConnection() throws SQLException {
-        return dataSource.getConnection();
+        return JdbcMetrics.wrap(dataSource.getConnection());
     }
 
     /**
@@ -1,5 +1,7 @@
 package com.algotrading.tinkoffinvestgui.db;
 
+import com.algotrading.tinkoffinvestgui.metrics.JdbcMetrics;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.sql.Connection;
@@ -65,7 +67,7 @@ public class DatabaseConnection {
             System.err.println("❌ PostgreSQL Driver не найден: " + e.getMessage());
         }
 
-        return DriverManager.getConnection(dbUrl, dbUser, dbPassword);
+        return JdbcMetrics.wrap(DriverManager.getConnection(dbUrl, dbUser, dbPassword));
     }
 
     /**
@@ -0,0 +1,34 @@
+package com.algotrading.tinkoffinvestgui.metrics;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+/**
+ * AsyncAppender, считающий события, потерянные при переполненной очереди.
+ *
+ * С neverBlock=true logback молча отбрасывает событие, если очередь полна, —
+ * поток отправки заявок не ждёт запись на диск. Здесь каждое такое событие
+ * попадает в счётчик log_events_dropped{appender=...}. Проверка свободного
+ * места идёт до постановки в очередь и без блокировки, поэтому значение —
+ * оценка (на границе заполнения возможна погрешность в несколько событий).
+ *
+ * Подключается в logback.xml вместо ch.qos.logback.classic.AsyncAppender.
+ */
+public class DropCountingAsyncAppender extends AsyncAppender {
+
+    private MetricsRegistry.Counter dropped;
+
+    @Override
+    public void start() {
+        dropped = MetricsRegistry.getInstance().counter(MetricsRegistry.LOG_EVENTS_DROPPED, "appender", getName());
+        super.start();
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        if (isStarted() && getRemainingCapacity() == 0) {
+            dropped.increment();
+        }
+        super.append(event);
+    }
+}
@@ -0,0 +1,110 @@
+package com.algotrading.tinkoffinvestgui.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Set;
+
+/**
+ * Замер времени SQL запросов без правки каждого метода репозиториев.
+ *
+ * {@link #wrap(Connection)} оборачивает соединение в прокси: все execute* у выданных им
+ * Statement/PreparedStatement записываются в таймер jdbc_query{query=Класс.метод},
+ * где Класс.метод — вызывающий метод репозитория (определяется один раз на соединение).
+ */
+public final class JdbcMetrics {
+
+    private static final Set<String> SKIPPED_CLASSES = Set.of(
+            JdbcMetrics.class.getName(),
+            "com.algotrading.tinkoffinvestgui.config.DatabaseConnectionPool",
+            "com.algotrading.tinkoffinvestgui.db.DatabaseConnection"
+    );
+
+    private static final StackWalker WALKER = StackWalker.getInstance();
+
+    private JdbcMetrics() {
+    }
+
+    /**
+     * Оборачивает соединение; таймер определяется по вызывающему методу
+     */
+    public static Connection wrap(Connection connection) {
+        Timer timer = MetricsRegistry.getInstance().timer(MetricsRegistry.JDBC_QUERY, "query", callerName());
+        return (Connection) Proxy.newProxyInstance(
+                JdbcMetrics.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new ConnectionHandler(connection, timer));
+    }
+
+    private static String callerName() {
+        return WALKER.walk(frames -> frames
+                .filter(f -> !SKIPPED_CLASSES.contains(f.getClassName()))
+                .filter(f -> !f.getMethodName().equals("getConnection"))
+                .findFirst()
+                .map(f -> {
+                    String cls = f.getClassName();
+                    return cls.substring(cls.lastIndexOf('.') + 1) + "." + f.getMethodName();
+                })
+                .orElse("unknown"));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static class ConnectionHandler implements InvocationHandler {
+        private final Connection connection;
+        private final Timer timer;
+
+        ConnectionHandler(Connection connection, Timer timer) {
+            this.connection = connection;
+            this.timer = timer;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("unwrap") && args != null && args[0] == Connection.class) {
+                return connection;
+            }
+            Object result = JdbcMetrics.invoke(connection, method, args);
+            if (result instanceof Statement && method.getReturnType().isInterface()
+                    && Statement.class.isAssignableFrom(method.getReturnType())) {
+                return Proxy.newProxyInstance(
+                        JdbcMetrics.class.getClassLoader(),
+                        new Class<?>[]{method.getReturnType()},
+                        new StatementHandler(result, timer));
+            }
+            return result;
+        }
+    }
+
+    private static class StatementHandler implements InvocationHandler {
+        private final Object statement;
+        private final Timer timer;
+
+        StatementHandler(Object statement, Timer timer) {
+            this.statement = statement;
+            this.timer = timer;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!method.getName().startsWith("execute")) {
+                return JdbcMetrics.invoke(statement, method, args);
+            }
+            long start = System.nanoTime();
+            try {
+                return JdbcMetrics.invoke(statement, method, args);
+            } finally {
+                timer.record(System.nanoTime() - start);
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.algotrading.tinkoffinvestgui.metrics;
+
+import com.algotrading.tinkoffinvestgui.api.ApiRateLimiter;
+import com.algotrading.tinkoffinvestgui.api.ApiRetry;
+import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
+import com.algotrading.tinkoffinvestgui.service.MarketDataStreamManager;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+/**
+ * Публикация метрик наружу:
+ * - JMX MBean com.algotrading.tinkoffinvestgui:type=Metrics (JConsole / VisualVM);
+ * - HTTP endpoint в текстовом формате Prometheus: http://127.0.0.1:{metrics.http.port}/metrics.
+ *
+ * Порт задаётся в invest.properties (metrics.http.port, по умолчанию 9464, 0 — отключить).
+ * Также регистрирует gauge лимитера API, бюджета повторов и стрима котировок.
+ */
+public class MetricsExporter {
+    private static final Logger log = LoggerFactory.getLogger(MetricsExporter.class);
+    private static final MetricsExporter INSTANCE = new MetricsExporter();
+
+    private static final String OBJECT_NAME = "com.algotrading.tinkoffinvestgui:type=Metrics";
+    private static final int DEFAULT_HTTP_PORT = 9464;
+
+    private HttpServer httpServer;
+    private boolean started;
+
+    private MetricsExporter() {
+    }
+
+    public static MetricsExporter getInstance() {
+        return INSTANCE;
+    }
+
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+
+        registerStandardGauges();
+        registerMBean();
+        startHttpServer();
+    }
+
+    public synchronized void stop() {
+        if (httpServer != null) {
+            httpServer.stop(0);
+            httpServer = null;
+        }
+        started = false;
+    }
+
+    private void registerStandardGauges() {
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        ApiRateLimiter limiter = ApiRateLimiter.getInstance();
+
+        for (String service : limiter.getStats().keySet()) {
+            registry.gauge("api_throttle_wait_ms", "service", service,
+                    () -> limiter.getStats().get(service).getTotalWaitMs());
+            registry.gauge("api_throttled_calls", "service", service,
+                    () -> limiter.getStats().get(service).getThrottledCalls());
+        }
+        registry.gauge("api_retry_budget", null, "", ApiRetry::getRemainingBudget);
+        registry.gauge("marketdata_stream_connected", null, "",
+                () -> MarketDataStreamManager.getInstance().isConnected() ? 1 : 0);
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new MetricsMBean(MetricsRegistry.getInstance()), name);
+            }
+            log.info("✅ Метрики доступны через JMX: {}", OBJECT_NAME);
+        } catch (Exception e) {
+            log.warn("⚠️ Не удалось зарегистрировать MBean метрик: {}", e.getMessage());
+        }
+    }
+
+    private void startHttpServer() {
+        int port = readPort();
+        if (port <= 0) {
+            log.info("HTTP endpoint метрик отключён (metrics.http.port={})", port);
+            return;
+        }
+        try {
+            httpServer = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+            httpServer.createContext("/metrics", exchange -> {
+                byte[] body = MetricsRegistry.getInstance().toPrometheusText().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            httpServer.setExecutor(Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "metrics-http");
+                t.setDaemon(true);
+                return t;
+            }));
+            httpServer.start();
+            log.info("✅ Метрики Prometheus: http://127.0.0.1:{}/metrics", port);
+        } catch (IOException e) {
+            httpServer = null;
+            log.warn("⚠️ Не удалось запустить HTTP endpoint метрик на порту {}: {}", port, e.getMessage());
+        }
+    }
+
+    private static int readPort() {
+        String value = ConnectorConfig.getPropertyValue("metrics.http.port");
+        if (value == null || value.trim().isEmpty()) {
+            return DEFAULT_HTTP_PORT;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("⚠️ Некорректное значение metrics.http.port={}, используется {}", value, DEFAULT_HTTP_PORT);
+            return DEFAULT_HTTP_PORT;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.algotrading.tinkoffinvestgui.metrics;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JMX-представление реестра метрик. Набор атрибутов строится из текущего содержимого реестра:
+ * для таймеров — "имя{метка}.count/.meanMs/.p95Ms/.p99Ms/.maxMs", для счётчиков и gauge — "имя{метка}".
+ * Операция reset обнуляет таймеры и счётчики.
+ */
+class MetricsMBean implements DynamicMBean {
+
+    private final MetricsRegistry registry;
+
+    MetricsMBean(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    private Map<String, Object> values() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (Timer timer : registry.getTimers()) {
+            String base = displayName(timer.getName(), timer.getLabelValue());
+            Timer.Snapshot s = timer.snapshot();
+            values.put(base + ".count", s.getCount());
+            values.put(base + ".meanMs", s.getMeanMs());
+            values.put(base + ".p95Ms", s.getPercentileMs(0.95));
+            values.put(base + ".p99Ms", s.getPercentileMs(0.99));
+            values.put(base + ".maxMs", s.getMaxMs());
+        }
+        for (MetricsRegistry.Counter counter : registry.getCounters()) {
+            values.put(displayName(counter.getName(), counter.getLabelValue()), counter.get());
+        }
+        for (MetricsRegistry.Gauge gauge : registry.getGauges()) {
+            values.put(displayName(gauge.getName(), gauge.getLabelValue()), gauge.get());
+        }
+        return values;
+    }
+
+    private static String displayName(String name, String label) {
+        return label == null || label.isEmpty() ? name : name + "{" + label + "}";
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Object value = values().get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Метрики доступны только для чтения: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        Map<String, Object> values = values();
+        AttributeList list = new AttributeList();
+        for (String name : attributes) {
+            Object value = values.get(name);
+            if (value != null) {
+                list.add(new Attribute(name, value));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        if ("reset".equals(actionName)) {
+            registry.reset();
+            return null;
+        }
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        for (Map.Entry<String, Object> e : values().entrySet()) {
+            attributes.add(new MBeanAttributeInfo(e.getKey(), e.getValue().getClass().getName(),
+                    e.getKey(), true, false, false));
+        }
+        MBeanOperationInfo reset = new MBeanOperationInfo("reset", "Обнулить таймеры и счётчики",
+                null, "void", MBeanOperationInfo.ACTION);
+        return new MBeanInfo(getClass().getName(), "Метрики Tinkoff Invest GUI",
+                attributes.toArray(new MBeanAttributeInfo[0]), null,
+                new MBeanOperationInfo[]{reset}, null);
+    }
+}
@@ -0,0 +1,220 @@
+package com.algotrading.tinkoffinvestgui.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Реестр метрик приложения: таймеры (гистограммы), счётчики и gauge-функции.
+ * У каждой метрики одно имя и одна метка (например, rpc_latency{method=...}).
+ *
+ * Наружу выдаётся через {@link MetricsExporter} (JMX + Prometheus) и вкладку «Диагностика».
+ */
+public class MetricsRegistry {
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+    /** Длительность unary gRPC вызова, метка method */
+    public static final String RPC_LATENCY = "rpc_latency";
+    /** Ошибки gRPC вызовов, метка method */
+    public static final String RPC_ERRORS = "rpc_errors";
+    /** Длительность SQL запроса, метка query (Репозиторий.метод) */
+    public static final String JDBC_QUERY = "jdbc_query";
+    /** Длительность тика планировщика, метка task */
+    public static final String SCHEDULER_TICK = "scheduler_tick";
+    /** Отправка заявки → ответ биржи (с учётом лимитера и повторов), метка direction */
+    public static final String ORDER_SUBMIT_ACK = "order_submit_ack";
+    /** Обнаружение исполнения BUY → SELL Stop-on-Fill принят биржей, метка direction */
+    public static final String ORDER_FILL_TO_SOF = "order_fill_to_sof";
+    /** События лога, отброшенные при переполненной асинхронной очереди, метка appender */
+    public static final String LOG_EVENTS_DROPPED = "log_events_dropped";
+
+    private static final String PREFIX = "tinvest_";
+
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+
+    private MetricsRegistry() {
+    }
+
+    public static MetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    public Timer timer(String name, String labelKey, String labelValue) {
+        return timers.computeIfAbsent(key(name, labelValue), k -> new Timer(name, labelKey, labelValue));
+    }
+
+    public Counter counter(String name, String labelKey, String labelValue) {
+        return counters.computeIfAbsent(key(name, labelValue), k -> new Counter(name, labelKey, labelValue));
+    }
+
+    /**
+     * Регистрирует gauge (значение вычисляется при чтении). Повторная регистрация заменяет функцию.
+     * Для gauge без метки labelKey = null, labelValue = "".
+     */
+    public void gauge(String name, String labelKey, String labelValue, DoubleSupplier value) {
+        gauges.put(key(name, labelValue), new Gauge(name, labelKey, labelValue, value));
+    }
+
+    private static String key(String name, String labelValue) {
+        return name + '\u0000' + labelValue;
+    }
+
+    public List<Timer> getTimers() {
+        List<Timer> list = new ArrayList<>(timers.values());
+        list.sort(Comparator.comparing(Timer::getName).thenComparing(Timer::getLabelValue));
+        return list;
+    }
+
+    public List<Counter> getCounters() {
+        List<Counter> list = new ArrayList<>(counters.values());
+        list.sort(Comparator.comparing(Counter::getName).thenComparing(Counter::getLabelValue));
+        return list;
+    }
+
+    public List<Gauge> getGauges() {
+        List<Gauge> list = new ArrayList<>(gauges.values());
+        list.sort(Comparator.comparing(Gauge::getName).thenComparing(Gauge::getLabelValue));
+        return list;
+    }
+
+    /**
+     * Обнуляет таймеры и счётчики (gauge не трогает)
+     */
+    public void reset() {
+        timers.values().forEach(Timer::reset);
+        counters.values().forEach(Counter::reset);
+    }
+
+    /**
+     * Текстовый формат Prometheus (exposition format 0.0.4)
+     */
+    public String toPrometheusText() {
+        StringBuilder sb = new StringBuilder(8 * 1024);
+
+        String lastName = null;
+        for (Timer timer : getTimers()) {
+            String metric = PREFIX + timer.getName() + "_seconds";
+            if (!metric.equals(lastName)) {
+                sb.append("# TYPE ").append(metric).append(" histogram\n");
+                lastName = metric;
+            }
+            Timer.Snapshot s = timer.snapshot();
+            long[] counts = s.getBucketCounts();
+            long cumulative = 0;
+            for (int i = 0; i < counts.length; i++) {
+                cumulative += counts[i];
+                String le = i < Timer.BUCKET_BOUNDS_MS.length
+                        ? Double.toString(Timer.BUCKET_BOUNDS_MS[i] / 1000.0)
+                        : "+Inf";
+                sb.append(metric).append("_bucket{")
+                        .append(timer.getLabelKey()).append("=\"").append(escape(timer.getLabelValue()))
+                        .append("\",le=\"").append(le).append("\"} ").append(cumulative).append('\n');
+            }
+            appendSample(sb, metric + "_sum", timer.getLabelKey(), timer.getLabelValue(),
+                    Double.toString(s.getTotalMs() / 1000.0));
+            appendSample(sb, metric + "_count", timer.getLabelKey(), timer.getLabelValue(),
+                    Long.toString(s.getCount()));
+        }
+
+        lastName = null;
+        for (Counter counter : getCounters()) {
+            String metric = PREFIX + counter.getName() + "_total";
+            if (!metric.equals(lastName)) {
+                sb.append("# TYPE ").append(metric).append(" counter\n");
+                lastName = metric;
+            }
+            appendSample(sb, metric, counter.getLabelKey(), counter.getLabelValue(), Long.toString(counter.get()));
+        }
+
+        lastName = null;
+        for (Gauge gauge : getGauges()) {
+            String metric = PREFIX + gauge.getName();
+            if (!metric.equals(lastName)) {
+                sb.append("# TYPE ").append(metric).append(" gauge\n");
+                lastName = metric;
+            }
+            appendSample(sb, metric, gauge.getLabelKey(), gauge.getLabelValue(), Double.toString(gauge.get()));
+        }
+        return sb.toString();
+    }
+
+    private static void appendSample(StringBuilder sb, String metric, String labelKey, String labelValue,
+                                     String value) {
+        sb.append(metric);
+        if (labelKey != null) {
+            sb.append('{').append(labelKey).append("=\"").append(escape(labelValue)).append("\"}");
+        }
+        sb.append(' ').append(value).append('\n');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Монотонный счётчик
+     */
+    public static class Counter {
+        private final String name;
+        private final String labelKey;
+        private final String labelValue;
+        private final LongAdder value = new LongAdder();
+
+        Counter(String name, String labelKey, String labelValue) {
+            this.name = name;
+            this.labelKey = labelKey;
+            this.labelValue = labelValue;
+        }
+
+        public void increment() {
+            value.increment();
+        }
+
+        public long get() {
+            return value.sum();
+        }
+
+        void reset() {
+            value.reset();
+        }
+
+        public String getName() { return name; }
+        public String getLabelKey() { return labelKey; }
+        public String getLabelValue() { return labelValue; }
+    }
+
+    /**
+     * Значение, вычисляемое при чтении (размер очереди, бюджет повторов и т.п.)
+     */
+    public static class Gauge {
+        private final String name;
+        private final String labelKey;
+        private final String labelValue;
+        private final DoubleSupplier value;
+
+        Gauge(String name, String labelKey, String labelValue, DoubleSupplier value) {
+            this.name = name;
+            this.labelKey = labelKey;
+            this.labelValue = labelValue;
+            this.value = value;
+        }
+
+        public double get() {
+            try {
+                return value.getAsDouble();
+            } catch (RuntimeException e) {
+                return Double.NaN;
+            }
+        }
+
+        public String getName() { return name; }
+        public String getLabelKey() { return labelKey; }
+        public String getLabelValue() { return labelValue; }
+    }
+}
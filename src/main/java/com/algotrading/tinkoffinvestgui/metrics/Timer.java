@@ -0,0 +1,161 @@
+package com.algotrading.tinkoffinvestgui.metrics;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Таймер с гистограммой длительностей (фиксированные корзины в миллисекундах).
+ * Запись lock-free: счётчики на LongAdder, максимум — CAS.
+ * Перцентили оцениваются по верхней границе корзины (для диагностики этого достаточно).
+ */
+public class Timer {
+
+    /** Верхние границы корзин, мс. Последняя корзина (+Inf) — неявная */
+    static final long[] BUCKET_BOUNDS_MS = {
+            1, 2, 5, 10, 25, 50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 30_000, 60_000
+    };
+
+    private static final long[] BUCKET_BOUNDS_NANOS = new long[BUCKET_BOUNDS_MS.length];
+
+    static {
+        for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+            BUCKET_BOUNDS_NANOS[i] = TimeUnit.MILLISECONDS.toNanos(BUCKET_BOUNDS_MS[i]);
+        }
+    }
+
+    private final String name;
+    private final String labelKey;
+    private final String labelValue;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS_MS.length + 1];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    Timer(String name, String labelKey, String labelValue) {
+        this.name = name;
+        this.labelKey = labelKey;
+        this.labelValue = labelValue;
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public String getName() { return name; }
+    public String getLabelKey() { return labelKey; }
+    public String getLabelValue() { return labelValue; }
+
+    /**
+     * Записывает одно измерение
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+        int i = 0;
+        while (i < BUCKET_BOUNDS_MS.length && nanos > BUCKET_BOUNDS_NANOS[i]) {
+            i++;
+        }
+        buckets[i].increment();
+        count.increment();
+        totalNanos.add(nanos);
+
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    public void record(Duration duration) {
+        record(duration.toNanos());
+    }
+
+    /**
+     * Выполняет вызов и записывает его длительность (в том числе при исключении)
+     */
+    public <T> T record(Supplier<T> call) {
+        long start = System.nanoTime();
+        try {
+            return call.get();
+        } finally {
+            record(System.nanoTime() - start);
+        }
+    }
+
+    public void record(Runnable call) {
+        long start = System.nanoTime();
+        try {
+            call.run();
+        } finally {
+            record(System.nanoTime() - start);
+        }
+    }
+
+    void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        count.reset();
+        totalNanos.reset();
+        maxNanos.set(0);
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return new Snapshot(counts, count.sum(), totalNanos.sum(), maxNanos.get());
+    }
+
+    /**
+     * Согласованный на момент чтения снимок таймера
+     */
+    public static class Snapshot {
+        private final long[] bucketCounts;
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+
+        Snapshot(long[] bucketCounts, long count, long totalNanos, long maxNanos) {
+            this.bucketCounts = bucketCounts;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public long getCount() { return count; }
+        public double getTotalMs() { return totalNanos / 1_000_000.0; }
+        public double getMeanMs() { return count == 0 ? 0 : totalNanos / 1_000_000.0 / count; }
+        public double getMaxMs() { return maxNanos / 1_000_000.0; }
+
+        /** Количество измерений по корзинам (не накопительно), последняя — +Inf */
+        long[] getBucketCounts() { return bucketCounts; }
+
+        /**
+         * Оценка перцентиля (0..1) по гистограмме, не больше фактического максимума
+         */
+        public double getPercentileMs(double quantile) {
+            long total = 0;
+            for (long c : bucketCounts) {
+                total += c;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(quantile * total);
+            long cumulative = 0;
+            for (int i = 0; i < bucketCounts.length; i++) {
+                cumulative += bucketCounts[i];
+                if (cumulative >= rank) {
+                    double bound = i < BUCKET_BOUNDS_MS.length ? BUCKET_BOUNDS_MS[i] : Double.MAX_VALUE;
+                    return Math.min(bound, getMaxMs());
+                }
+            }
+            return getMaxMs();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.algotrading.tinkoffinvestgui.model;
+
+import java.time.LocalDate;
+
+/**
+ * Метрики облигации по дневным свечам за окно (строка снимка public.bond_metrics).
+ * Цены — в % от номинала, как в свечах API; объём — в лотах.
+ */
+public class BondMetrics {
+
+    private LocalDate snapshotDate;
+    private int windowMonths;
+    private String figi;
+
+    private int candlesCount;
+    private double volatility;
+    private double avgDailyVolume;
+    private double avgPrice;
+    private double firstClose;
+    private double lastClose;
+    private double minPrice;
+    private double maxPrice;
+    private double trend;
+
+    public BondMetrics() {
+    }
+
+    // Getters
+    public LocalDate getSnapshotDate() { return snapshotDate; }
+    public int getWindowMonths() { return windowMonths; }
+    public String getFigi() { return figi; }
+    public int getCandlesCount() { return candlesCount; }
+    public double getVolatility() { return volatility; }
+    public double getAvgDailyVolume() { return avgDailyVolume; }
+    public double getAvgPrice() { return avgPrice; }
+    public double getFirstClose() { return firstClose; }
+    public double getLastClose() { return lastClose; }
+    public double getMinPrice() { return minPrice; }
+    public double getMaxPrice() { return maxPrice; }
+    public double getTrend() { return trend; }
+
+    // Setters
+    public void setSnapshotDate(LocalDate snapshotDate) { this.snapshotDate = snapshotDate; }
+    public void setWindowMonths(int windowMonths) { this.windowMonths = windowMonths; }
+    public void setFigi(String figi) { this.figi = figi; }
+    public void setCandlesCount(int candlesCount) { this.candlesCount = candlesCount; }
+    public void setVolatility(double volatility) { this.volatility = volatility; }
+    public void setAvgDailyVolume(double avgDailyVolume) { this.avgDailyVolume = avgDailyVolume; }
+    public void setAvgPrice(double avgPrice) { this.avgPrice = avgPrice; }
+    public void setFirstClose(double firstClose) { this.firstClose = firstClose; }
+    public void setLastClose(double lastClose) { this.lastClose = lastClose; }
+    public void setMinPrice(double minPrice) { this.minPrice = minPrice; }
+    public void setMaxPrice(double maxPrice) { this.maxPrice = maxPrice; }
+    public void setTrend(double trend) { this.trend = trend; }
+
+    @Override
+    public String toString() {
+        return String.format("BondMetrics{figi=%s, window=%d мес., candles=%d, vol=%.4f, avgVolume=%.0f}",
+                figi, windowMonths, candlesCount, volatility, avgDailyVolume);
+    }
+}
@@ -0,0 +1,87 @@
+package com.algotrading.tinkoffinvestgui.model;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Купонный график одной облигации в примитивных массивах (по возрастанию даты выплаты).
+ * Даты — номера дней от эпохи (LocalDate.toEpochDay), выплаты — в валюте номинала на одну бумагу.
+ * Неизвестная ещё выплата (плавающий купон до даты фиксации) хранится как 0.
+ * Неизменяемый: при обновлении графика создаётся новый экземпляр.
+ */
+public class CouponSchedule {
+
+    /** Погашение неизвестно */
+    public static final long NO_MATURITY = Long.MIN_VALUE;
+
+    private final String figi;
+    private final double nominal;
+    private final long maturityDay;
+    private final long[] couponDays;
+    private final double[] payments;
+    private final int[] periodDays;
+    private final Instant syncedAt;
+
+    public CouponSchedule(String figi, double nominal, long maturityDay,
+                          long[] couponDays, double[] payments, int[] periodDays, Instant syncedAt) {
+        if (couponDays.length != payments.length || couponDays.length != periodDays.length) {
+            throw new IllegalArgumentException("Массивы купонного графика разной длины: " + figi);
+        }
+        this.figi = figi;
+        this.nominal = nominal;
+        this.maturityDay = maturityDay;
+        this.couponDays = couponDays;
+        this.payments = payments;
+        this.periodDays = periodDays;
+        this.syncedAt = syncedAt;
+    }
+
+    /**
+     * Индекс первого купона с выплатой строго после дня (size(), если купонов больше нет)
+     */
+    public int nextCouponIndex(long epochDay) {
+        int index = Arrays.binarySearch(couponDays, epochDay);
+        if (index >= 0) {
+            // В день выплаты купон уже принадлежит прежнему держателю — следующий купон
+            while (index < couponDays.length && couponDays[index] == epochDay) {
+                index++;
+            }
+            return index;
+        }
+        return -index - 1;
+    }
+
+    /**
+     * Размер купона с индексом; неизвестный (0) — последний известный до него
+     */
+    public double paymentOrLastKnown(int index) {
+        for (int i = index; i >= 0; i--) {
+            if (payments[i] > 0) {
+                return payments[i];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Размер ближайшего купона ещё не объявлен (плавающий купон до даты фиксации)
+     */
+    public boolean isNextPaymentUnknown(long epochDay) {
+        int next = nextCouponIndex(epochDay);
+        return next < payments.length && payments[next] <= 0;
+    }
+
+    public int size() { return couponDays.length; }
+    public String getFigi() { return figi; }
+    public double getNominal() { return nominal; }
+    public long getMaturityDay() { return maturityDay; }
+    public long getCouponDay(int index) { return couponDays[index]; }
+    public double getPayment(int index) { return payments[index]; }
+    public int getPeriodDays(int index) { return periodDays[index]; }
+    public Instant getSyncedAt() { return syncedAt; }
+
+    @Override
+    public String toString() {
+        return String.format("CouponSchedule{figi=%s, nominal=%.2f, coupons=%d}", figi, nominal, couponDays.length);
+    }
+}
@@ -0,0 +1,175 @@
+package com.algotrading.tinkoffinvestgui.model;
+
+import java.util.Arrays;
+
+/**
+ * Позиция по инструменту на счёте с открытыми лотами в порядке FIFO и накопленным реализованным P&L.
+ *
+ * Лоты — кольцевой буфер на примитивных массивах: количество со знаком (+ длинная, − короткая)
+ * и стоимость единицы (цена + НКД на бумагу). Встречная сделка закрывает лоты с головы,
+ * остаток открывает новый лот в хвосте.
+ */
+public class FifoPosition {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private final String accountId;
+    private final String figi;
+    private String instrumentName;
+
+    private long[] quantities;
+    private double[] prices;
+    private int head;
+    private int size;
+
+    private double realizedPnl;
+    private double commission;
+    private int tradesCount;
+
+    public FifoPosition(String accountId, String figi) {
+        this.accountId = accountId;
+        this.figi = figi;
+        this.quantities = new long[INITIAL_CAPACITY];
+        this.prices = new double[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Восстановление из сохранённого состояния (лоты от старых к новым)
+     */
+    public FifoPosition(String accountId, String figi, String instrumentName,
+                        long[] lotQuantities, double[] lotPrices,
+                        double realizedPnl, double commission, int tradesCount) {
+        if (lotQuantities.length != lotPrices.length) {
+            throw new IllegalArgumentException("Массивы лотов разной длины: " + figi);
+        }
+        this.accountId = accountId;
+        this.figi = figi;
+        this.instrumentName = instrumentName;
+        int capacity = Math.max(INITIAL_CAPACITY, lotQuantities.length);
+        this.quantities = Arrays.copyOf(lotQuantities, capacity);
+        this.prices = Arrays.copyOf(lotPrices, capacity);
+        this.size = lotQuantities.length;
+        this.realizedPnl = realizedPnl;
+        this.commission = commission;
+        this.tradesCount = tradesCount;
+    }
+
+    /**
+     * Учесть исполнение
+     *
+     * @param signedQuantity количество: + покупка, − продажа
+     * @param unitValue      стоимость единицы (цена + НКД на бумагу)
+     * @param fee            комиссия сделки
+     * @return реализованный этой сделкой P&L (без комиссии)
+     */
+    public double apply(long signedQuantity, double unitValue, double fee) {
+        double realized = 0;
+        long remaining = signedQuantity;
+        while (remaining != 0 && size > 0 && Long.signum(quantities[head]) != Long.signum(remaining)) {
+            long lot = quantities[head];
+            long matched = Math.min(Math.abs(lot), Math.abs(remaining));
+            // Длинный лот закрывается продажей, короткий — покупкой
+            realized += lot > 0
+                    ? matched * (unitValue - prices[head])
+                    : matched * (prices[head] - unitValue);
+            lot -= Long.signum(lot) * matched;
+            remaining -= Long.signum(remaining) * matched;
+            if (lot == 0) {
+                head = (head + 1) % quantities.length;
+                size--;
+            } else {
+                quantities[head] = lot;
+            }
+        }
+        if (remaining != 0) {
+            push(remaining, unitValue);
+        }
+        realizedPnl += realized;
+        commission += fee;
+        tradesCount++;
+        return realized;
+    }
+
+    private void push(long quantity, double price) {
+        if (size == quantities.length) {
+            long[] q = new long[size * 2];
+            double[] p = new double[size * 2];
+            for (int i = 0; i < size; i++) {
+                q[i] = quantities[(head + i) % quantities.length];
+                p[i] = prices[(head + i) % prices.length];
+            }
+            quantities = q;
+            prices = p;
+            head = 0;
+        }
+        int tail = (head + size) % quantities.length;
+        quantities[tail] = quantity;
+        prices[tail] = price;
+        size++;
+    }
+
+    /**
+     * Открытое количество со знаком
+     */
+    public long getOpenQuantity() {
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += quantities[(head + i) % quantities.length];
+        }
+        return total;
+    }
+
+    /**
+     * Средняя стоимость единицы по открытым лотам (0, если позиция закрыта)
+     */
+    public double getAverageOpenPrice() {
+        long total = 0;
+        double cost = 0;
+        for (int i = 0; i < size; i++) {
+            int index = (head + i) % quantities.length;
+            long quantity = Math.abs(quantities[index]);
+            total += quantity;
+            cost += quantity * prices[index];
+        }
+        return total > 0 ? cost / total : 0;
+    }
+
+    /**
+     * Количества открытых лотов от старых к новым (для сохранения)
+     */
+    public long[] getLotQuantities() {
+        long[] result = new long[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = quantities[(head + i) % quantities.length];
+        }
+        return result;
+    }
+
+    /**
+     * Стоимости единицы открытых лотов от старых к новым (для сохранения)
+     */
+    public double[] getLotPrices() {
+        double[] result = new double[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = prices[(head + i) % prices.length];
+        }
+        return result;
+    }
+
+    public int getLotsCount() { return size; }
+    public String getAccountId() { return accountId; }
+    public String getFigi() { return figi; }
+    public String getInstrumentName() { return instrumentName; }
+    public double getRealizedPnl() { return realizedPnl; }
+    public double getCommission() { return commission; }
+    public double getNetPnl() { return realizedPnl - commission; }
+    public int getTradesCount() { return tradesCount; }
+
+    public void setInstrumentName(String instrumentName) { this.instrumentName = instrumentName; }
+
+    @Override
+    public String toString() {
+        return String.format("FifoPosition{account=%s, figi=%s, open=%d, lots=%d, realized=%.2f, commission=%.2f}",
+                accountId, figi, getOpenQuantity(), size, realizedPnl, commission);
+    }
+}
@@ -0,0 +1,117 @@
+package com.algotrading.tinkoffinvestgui.model;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Событие жизненного цикла заявки (запись журнала public.order_events).
+ * Журнал только дополняется; текущее состояние заявки — свёртка её событий по порядку id.
+ */
+public class OrderEvent {
+
+    public enum Type {
+        /** Заявка сохранена локально и отправляется на биржу */
+        SUBMIT,
+        /** Биржа приняла заявку (есть exchange_order_id) */
+        ACK,
+        /** Частичное исполнение */
+        PARTIAL_FILL,
+        /** Полное исполнение */
+        FILL,
+        /** Создана дочерняя SELL-заявка Stop-on-Fill */
+        SOF_CHILD_CREATED,
+        /** Заявка заменена через ReplaceOrder (новый exchange_order_id / количество) */
+        REPLACE,
+        /** Заявка отменена */
+        CANCEL,
+        /** Отказ API / ошибка выставления */
+        REJECT,
+        /** Прочее изменение статуса (в т.ч. снимок при синхронизации) */
+        STATUS
+    }
+
+    private long id;
+    private Instant eventTime;
+    private Type type;
+
+    private String myOrderId;
+    private String exchangeOrderId;
+    private String parentOrderId;
+    private String accountId;
+    private String figi;
+    private String instrumentName;
+    private String direction;
+
+    private long lotsRequested;
+    private long lotsExecuted;
+    private BigDecimal price;
+    private BigDecimal averagePrice;
+    private String status;
+    private String message;
+
+    public OrderEvent() {
+    }
+
+    /**
+     * Событие с текущими полями заявки
+     */
+    public static OrderEvent of(Type type, Order order) {
+        OrderEvent event = new OrderEvent();
+        event.type = type;
+        event.eventTime = Instant.now();
+        event.myOrderId = order.getMyOrderId();
+        event.exchangeOrderId = order.getExchangeOrderId();
+        event.parentOrderId = order.getParentOrderId();
+        event.accountId = order.getAccountId();
+        event.figi = order.getFigi();
+        event.instrumentName = order.getInstrumentName();
+        event.direction = order.getDirection() != null ? order.getDirection().name() : null;
+        event.lotsRequested = order.getLotsRequested();
+        event.lotsExecuted = order.getLotsExecuted();
+        event.price = order.getPrice();
+        event.averagePrice = order.getAverageExecutionPrice();
+        event.status = order.getStatus();
+        event.message = order.getErrorMessage();
+        return event;
+    }
+
+    public long getId() { return id; }
+    public Instant getEventTime() { return eventTime; }
+    public Type getType() { return type; }
+    public String getMyOrderId() { return myOrderId; }
+    public String getExchangeOrderId() { return exchangeOrderId; }
+    public String getParentOrderId() { return parentOrderId; }
+    public String getAccountId() { return accountId; }
+    public String getFigi() { return figi; }
+    public String getInstrumentName() { return instrumentName; }
+    public String getDirection() { return direction; }
+    public long getLotsRequested() { return lotsRequested; }
+    public long getLotsExecuted() { return lotsExecuted; }
+    public BigDecimal getPrice() { return price; }
+    public BigDecimal getAveragePrice() { return averagePrice; }
+    public String getStatus() { return status; }
+    public String getMessage() { return message; }
+
+    public void setId(long id) { this.id = id; }
+    public void setEventTime(Instant eventTime) { this.eventTime = eventTime; }
+    public void setType(Type type) { this.type = type; }
+    public void setMyOrderId(String myOrderId) { this.myOrderId = myOrderId; }
+    public void setExchangeOrderId(String exchangeOrderId) { this.exchangeOrderId = exchangeOrderId; }
+    public void setParentOrderId(String parentOrderId) { this.parentOrderId = parentOrderId; }
+    public void setAccountId(String accountId) { this.accountId = accountId; }
+    public void setFigi(String figi) { this.figi = figi; }
+    public void setInstrumentName(String instrumentName) { this.instrumentName = instrumentName; }
+    public void setDirection(String direction) { this.direction = direction; }
+    public void setLotsRequested(long lotsRequested) { this.lotsRequested = lotsRequested; }
+    public void setLotsExecuted(long lotsExecuted) { this.lotsExecuted = lotsExecuted; }
+    public void setPrice(BigDecimal price) { this.price = price; }
+    public void setAveragePrice(BigDecimal averagePrice) { this.averagePrice = averagePrice; }
+    public void setStatus(String status) { this.status = status; }
+    public void setMessage(String message) { this.message = message; }
+
+    @Override
+    public String toString() {
+        return String.format("OrderEvent{id=%d, %s, myOrderId=%s, status=%s, lots=%d/%d}",
+                id, type, myOrderId, status, lotsExecuted, lotsRequested);
+    }
+}
@@ -0,0 +1,56 @@
+package com.algotrading.tinkoffinvestgui.model;
+
+/**
+ * Статус заявки в public.orders (тип public.order_status в БД).
+ *
+ * Исторически в колонку писались и короткие статусы (PENDING, FILLED), и имена
+ * EXECUTION_REPORT_STATUS_* из API — normalize() приводит оба вида к одному значению.
+ */
+public enum OrderStatus {
+    /** Сохранена локально, ещё не отправлена */
+    PENDING,
+    NEW,
+    PARTIALLY_FILLED,
+    FILLED,
+    CANCELLED,
+    REJECTED,
+    /** Ошибка выставления на нашей стороне */
+    ERROR,
+    UNKNOWN;
+
+    private static final String API_PREFIX = "EXECUTION_REPORT_STATUS_";
+
+    /**
+     * Статус из любой формы (короткой или EXECUTION_REPORT_STATUS_*)
+     */
+    public static OrderStatus normalize(String raw) {
+        if (raw == null || raw.isBlank()) {
+            return UNKNOWN;
+        }
+        String s = raw.trim().toUpperCase();
+        if (s.startsWith(API_PREFIX)) {
+            s = s.substring(API_PREFIX.length());
+        }
+        switch (s) {
+            case "FILL":
+                return FILLED;
+            case "PARTIALLYFILL":
+                return PARTIALLY_FILLED;
+            case "UNSPECIFIED":
+                return UNKNOWN;
+            default:
+                try {
+                    return valueOf(s);
+                } catch (IllegalArgumentException e) {
+                    return UNKNOWN;
+                }
+        }
+    }
+
+    /**
+     * Заявка ещё может исполниться
+     */
+    public boolean isActive() {
+        return this == PENDING || this == NEW || this == PARTIALLY_FILLED;
+    }
+}
@@ -0,0 +1,192 @@
+package com.algotrading.tinkoffinvestgui.repository;
+
+import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
+import com.algotrading.tinkoffinvestgui.metrics.JdbcMetrics;
+import com.algotrading.tinkoffinvestgui.model.CouponSchedule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Репозиторий купонных графиков облигаций: public.bond_coupons + public.bond_coupon_sync.
+ * График облигации перезаписывается целиком; все графики читаются одним запросом при старте.
+ * Таблицы создаются миграцией V7 (SchemaMigrator).
+ */
+public class BondCouponsRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(BondCouponsRepository.class);
+
+    private Connection getConnection() throws SQLException {
+        String dbUrl = ConnectorConfig.getPropertyValue("db.url");
+        String dbUser = ConnectorConfig.getPropertyValue("db.username");
+        String dbPassword = ConnectorConfig.getPropertyValue("db.password");
+        return JdbcMetrics.wrap(DriverManager.getConnection(dbUrl, dbUser, dbPassword));
+    }
+
+    /**
+     * Все сохранённые графики
+     *
+     * @return FIGI → график
+     */
+    public Map<String, CouponSchedule> findAll() {
+        String sql = """
+                SELECT s.figi, s.nominal, s.maturity_date, s.synced_at,
+                       c.coupon_date, c.pay_one_bond, c.coupon_period
+                FROM public.bond_coupon_sync s
+                LEFT JOIN public.bond_coupons c ON c.figi = s.figi
+                ORDER BY s.figi, c.coupon_date
+                """;
+
+        Map<String, CouponSchedule> result = new HashMap<>();
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement()) {
+            // Курсор порциями: строк по всему справочнику — десятки тысяч
+            conn.setAutoCommit(false);
+            stmt.setFetchSize(5000);
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                ScheduleBuilder current = null;
+                while (rs.next()) {
+                    String figi = rs.getString("figi");
+                    if (current == null || !current.figi.equals(figi)) {
+                        if (current != null) {
+                            result.put(current.figi, current.build());
+                        }
+                        Date maturity = rs.getDate("maturity_date");
+                        current = new ScheduleBuilder(figi, rs.getDouble("nominal"),
+                                maturity != null ? maturity.toLocalDate().toEpochDay() : CouponSchedule.NO_MATURITY,
+                                rs.getTimestamp("synced_at").toInstant());
+                    }
+                    Date couponDate = rs.getDate("coupon_date");
+                    if (couponDate != null) {
+                        current.add(couponDate.toLocalDate().toEpochDay(),
+                                rs.getDouble("pay_one_bond"), rs.getInt("coupon_period"));
+                    }
+                }
+                if (current != null) {
+                    result.put(current.figi, current.build());
+                }
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            log.error("❌ Ошибка чтения купонных графиков", e);
+            throw new RuntimeException("Ошибка БД при чтении купонных графиков: " + e.getMessage(), e);
+        }
+        return result;
+    }
+
+    /**
+     * Перезаписать графики облигаций (одна транзакция на пачку)
+     */
+    public void replaceAll(List<CouponSchedule> schedules) {
+        if (schedules.isEmpty()) {
+            return;
+        }
+        String upsertSyncSql = """
+                INSERT INTO public.bond_coupon_sync (figi, nominal, maturity_date, synced_at)
+                VALUES (?, ?, ?, ?)
+                ON CONFLICT (figi) DO UPDATE SET
+                    nominal = EXCLUDED.nominal,
+                    maturity_date = EXCLUDED.maturity_date,
+                    synced_at = EXCLUDED.synced_at
+                """;
+        String insertCouponSql = """
+                INSERT INTO public.bond_coupons (figi, coupon_date, pay_one_bond, coupon_period)
+                VALUES (?, ?, ?, ?)
+                """;
+
+        List<String> figis = new ArrayList<>(schedules.size());
+        for (CouponSchedule schedule : schedules) {
+            figis.add(schedule.getFigi());
+        }
+
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement delete = conn.prepareStatement(
+                         "DELETE FROM public.bond_coupons WHERE figi = ANY(?)");
+                 PreparedStatement upsertSync = conn.prepareStatement(upsertSyncSql);
+                 PreparedStatement insertCoupon = conn.prepareStatement(insertCouponSql)) {
+
+                delete.setArray(1, conn.createArrayOf("varchar", figis.toArray()));
+                delete.executeUpdate();
+
+                int coupons = 0;
+                for (CouponSchedule schedule : schedules) {
+                    upsertSync.setString(1, schedule.getFigi());
+                    upsertSync.setDouble(2, schedule.getNominal());
+                    if (schedule.getMaturityDay() != CouponSchedule.NO_MATURITY) {
+                        upsertSync.setDate(3, Date.valueOf(LocalDate.ofEpochDay(schedule.getMaturityDay())));
+                    } else {
+                        upsertSync.setNull(3, Types.DATE);
+                    }
+                    upsertSync.setTimestamp(4, Timestamp.from(schedule.getSyncedAt()));
+                    upsertSync.addBatch();
+
+                    for (int i = 0; i < schedule.size(); i++) {
+                        insertCoupon.setString(1, schedule.getFigi());
+                        insertCoupon.setDate(2, Date.valueOf(LocalDate.ofEpochDay(schedule.getCouponDay(i))));
+                        insertCoupon.setDouble(3, schedule.getPayment(i));
+                        insertCoupon.setInt(4, schedule.getPeriodDays(i));
+                        insertCoupon.addBatch();
+                        coupons++;
+                    }
+                }
+                upsertSync.executeBatch();
+                insertCoupon.executeBatch();
+                conn.commit();
+                log.debug("💾 Сохранены купонные графики: {} облигаций, {} купонов", schedules.size(), coupons);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            log.error("❌ Ошибка сохранения купонных графиков", e);
+            throw new RuntimeException("Ошибка БД при сохранении купонных графиков: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Накопитель строк одной облигации в массивы
+     */
+    private static class ScheduleBuilder {
+        private final String figi;
+        private final double nominal;
+        private final long maturityDay;
+        private final Instant syncedAt;
+        private long[] days = new long[16];
+        private double[] payments = new double[16];
+        private int[] periods = new int[16];
+        private int size;
+
+        ScheduleBuilder(String figi, double nominal, long maturityDay, Instant syncedAt) {
+            this.figi = figi;
+            this.nominal = nominal;
+            this.maturityDay = maturityDay;
+            this.syncedAt = syncedAt;
+        }
+
+        void add(long day, double payment, int period) {
+            if (size == days.length) {
+                days = Arrays.copyOf(days, size * 2);
+                payments = Arrays.copyOf(payments, size * 2);
+                periods = Arrays.copyOf(periods, size * 2);
+            }
+            days[size] = day;
+            payments[size] = payment;
+            periods[size] = period;
+            size++;
+        }
+
+        CouponSchedule build() {
+            return new CouponSchedule(figi, nominal, maturityDay,
+                    Arrays.copyOf(days, size), Arrays.copyOf(payments, size), Arrays.copyOf(periods, size), syncedAt);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.algotrading.tinkoffinvestgui.repository;
+
+import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
+import com.algotrading.tinkoffinvestgui.metrics.JdbcMetrics;
+import com.algotrading.tinkoffinvestgui.model.BondMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Репозиторий снимков метрик облигаций public.bond_metrics.
+ * Снимок за дату пишется целиком в одной транзакции; читатели берут последний по окну.
+ * Таблица создаётся миграцией V6 (SchemaMigrator).
+ */
+public class BondMetricsRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(BondMetricsRepository.class);
+
+    /** Сколько дней хранить старые снимки */
+    private static final int KEEP_DAYS = 7;
+
+    private Connection getConnection() throws SQLException {
+        String dbUrl = ConnectorConfig.getPropertyValue("db.url");
+        String dbUser = ConnectorConfig.getPropertyValue("db.username");
+        String dbPassword = ConnectorConfig.getPropertyValue("db.password");
+        return JdbcMetrics.wrap(DriverManager.getConnection(dbUrl, dbUser, dbPassword));
+    }
+
+    /**
+     * Заменить снимок за дату (повторный запуск в тот же день перезаписывает его) и удалить устаревшие
+     */
+    public void replaceSnapshot(LocalDate snapshotDate, List<BondMetrics> metrics) {
+        String insertSql = """
+                INSERT INTO public.bond_metrics (
+                    snapshot_date, window_months, figi, candles_count, volatility, avg_daily_volume,
+                    avg_price, first_close, last_close, min_price, max_price, trend
+                ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                """;
+
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement delete = conn.prepareStatement(
+                         "DELETE FROM public.bond_metrics WHERE snapshot_date = ? OR snapshot_date < ?");
+                 PreparedStatement insert = conn.prepareStatement(insertSql)) {
+
+                delete.setDate(1, Date.valueOf(snapshotDate));
+                delete.setDate(2, Date.valueOf(snapshotDate.minusDays(KEEP_DAYS)));
+                delete.executeUpdate();
+
+                for (BondMetrics m : metrics) {
+                    insert.setDate(1, Date.valueOf(snapshotDate));
+                    insert.setInt(2, m.getWindowMonths());
+                    insert.setString(3, m.getFigi());
+                    insert.setInt(4, m.getCandlesCount());
+                    insert.setDouble(5, m.getVolatility());
+                    insert.setDouble(6, m.getAvgDailyVolume());
+                    insert.setDouble(7, m.getAvgPrice());
+                    insert.setDouble(8, m.getFirstClose());
+                    insert.setDouble(9, m.getLastClose());
+                    insert.setDouble(10, m.getMinPrice());
+                    insert.setDouble(11, m.getMaxPrice());
+                    insert.setDouble(12, m.getTrend());
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+                conn.commit();
+                log.info("💾 Снимок метрик облигаций за {} сохранён: {} строк", snapshotDate, metrics.size());
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            log.error("❌ Ошибка сохранения снимка метрик облигаций", e);
+            throw new RuntimeException("Ошибка БД при сохранении метрик облигаций: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Метрики последнего снимка по окну с объёмом не ниже порога (0 — все)
+     *
+     * @return FIGI → метрики; пусто, если снимка по окну ещё нет
+     */
+    public Map<String, BondMetrics> findLatest(int windowMonths, double minAvgDailyVolume) {
+        String sql = """
+                SELECT snapshot_date, window_months, figi, candles_count, volatility, avg_daily_volume,
+                       avg_price, first_close, last_close, min_price, max_price, trend
+                FROM public.bond_metrics
+                WHERE window_months = ?
+                  AND snapshot_date = (SELECT max(snapshot_date) FROM public.bond_metrics WHERE window_months = ?)
+                  AND avg_daily_volume >= ?
+                """;
+
+        Map<String, BondMetrics> result = new HashMap<>();
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, windowMonths);
+            pstmt.setInt(2, windowMonths);
+            pstmt.setDouble(3, minAvgDailyVolume);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    BondMetrics m = mapRow(rs);
+                    result.put(m.getFigi(), m);
+                }
+            }
+        } catch (SQLException e) {
+            log.error("❌ Ошибка чтения метрик облигаций", e);
+            throw new RuntimeException("Ошибка БД при чтении метрик облигаций: " + e.getMessage(), e);
+        }
+        return result;
+    }
+
+    /**
+     * Дата последнего снимка (null, если снимков нет)
+     */
+    public LocalDate findLatestSnapshotDate() {
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT max(snapshot_date) FROM public.bond_metrics")) {
+            if (rs.next()) {
+                Date date = rs.getDate(1);
+                return date != null ? date.toLocalDate() : null;
+            }
+            return null;
+        } catch (SQLException e) {
+            throw new RuntimeException("Ошибка БД при чтении даты снимка метрик: " + e.getMessage(), e);
+        }
+    }
+
+    private BondMetrics mapRow(ResultSet rs) throws SQLException {
+        BondMetrics m = new BondMetrics();
+        m.setSnapshotDate(rs.getDate("snapshot_date").toLocalDate());
+        m.setWindowMonths(rs.getInt("window_months"));
+        m.setFigi(rs.getString("figi"));
+        m.setCandlesCount(rs.getInt("candles_count"));
+        m.setVolatility(rs.getDouble("volatility"));
+        m.setAvgDailyVolume(rs.getDouble("avg_daily_volume"));
+        m.setAvgPrice(rs.getDouble("avg_price"));
+        m.setFirstClose(rs.getDouble("first_close"));
+        m.setLastClose(rs.getDouble("last_close"));
+        m.setMinPrice(rs.getDouble("min_price"));
+        m.setMaxPrice(rs.getDouble("max_price"));
+        m.setTrend(rs.getDouble("trend"));
+        return m;
+    }
+}
@@ -1,195 +1,155 @@
 package com.algotrading.tinkoffinvestgui.repository;
 
 import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
+import com.algotrading.tinkoffinvestgui.metrics.JdbcMetrics;
 import ru.tinkoff.piapi.contract.v1.Bond;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Repository для экспорта облигаций в таблицу exportdata
+ * Repository для экспорта облигаций в таблицу exportdata.
+ *
+ * Справочник обновляется инкрементально: по каждой облигации считается хэш полей,
+ * в БД пишутся только новые и изменённые строки, пропавшие из API — помечаются
+ * is_active = false. Всё в одной транзакции, поэтому читатели (анализ, бэктест)
+ * видят либо старый, либо новый справочник целиком, без пустой таблицы посередине.
  */
 public class BondsRepository {
 
     private static final Logger log = LoggerFactory.getLogger(BondsRepository.class);
+
+    private static final String HEADER_FIGI = "figi";
+    private static final long SYNC_LOCK_KEY = 0x424F4E4453594E43L; // "BONDSYNC"
+
+    private static final String[] HEADER_ROW = {
+            "figi", "ticker", "class_code", "isin", "name", "currency", "nominal_currency",
+            "nominal", "maturity_date", "dlong_client", "floating_coupon_flag", "amortization_flag", "risk_level"
+    };
+
     private Connection getConnection() throws SQLException {
         String dbUrl = ConnectorConfig.getPropertyValue("db.url");
         String dbUser = ConnectorConfig.getPropertyValue("db.username");
         String dbPassword = ConnectorConfig.getPropertyValue("db.password");
 
-        return DriverManager.getConnection(dbUrl, dbUser, dbPassword);
+        return JdbcMetrics.wrap(DriverManager.getConnection(dbUrl, dbUser, dbPassword));
     }
 
     /**
-     * Очищает таблицу exportdata
+     * Синхронизирует справочник облигаций с ответом API
      */
-    public void clearTable() {
-        String sql = "TRUNCATE TABLE public.exportdata RESTART IDENTITY";
-
-        try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement()) {
-            stmt.execute(sql);
-            log.info("✓ Таблица public.exportdata очищена");
-        } catch (SQLException e) {
-            throw new RuntimeException("Ошибка очистки таблицы: " + e.getMessage(), e);
+    public SyncResult syncBonds(List<Bond> bonds) {
+        if (bonds.isEmpty()) {
+            // Пустой ответ API — скорее сбой, чем делистинг всего рынка
+            throw new IllegalArgumentException("Пустой список облигаций из API, синхронизация отменена");
         }
-    }
-
-    /**
-     * Вставляет первую строку с названиями полей (английские)
-     */
-    public void insertHeaderRow() {
-        String sql = """
-            INSERT INTO public.exportdata 
-            (field01, field02, field03, field04, field05, field06, field07, field08, field09, field10, field11, field12, field13)
-            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
-            """;
-
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, "figi");
-            pstmt.setString(2, "ticker");
-            pstmt.setString(3, "class_code");
-            pstmt.setString(4, "isin");
-            pstmt.setString(5, "name");
-            pstmt.setString(6, "currency");
-            pstmt.setString(7, "nominal_currency");
-            pstmt.setString(8, "nominal");
-            pstmt.setString(9, "maturity_date");
-            pstmt.setString(10, "dlong_client");
-            pstmt.setString(11, "floating_coupon_flag");
-            pstmt.setString(12, "amortization_flag");
-            pstmt.setString(13, "risk_level");
-
-            pstmt.executeUpdate();
-            log.info("✓ Заголовки полей добавлены");
 
-        } catch (SQLException e) {
-            throw new RuntimeException("Ошибка вставки заголовков: " + e.getMessage(), e);
+        long started = System.currentTimeMillis();
+        Map<String, String[]> rows = new HashMap<>();
+        for (Bond bond : bonds) {
+            rows.put(bond.getFigi(), toRow(bond));
         }
-    }
 
-    /**
-     * Экспортирует облигации в таблицу exportdata
-     */
-    public int exportBonds(List<Bond> bonds) {
-        // 1. Очищаем таблицу
-        clearTable();
-
-        // 2. Вставляем заголовки
-        insertHeaderRow();
-
-        // 3. Вставляем данные облигаций
-        String sql = """
-            INSERT INTO public.exportdata 
-            (field01, field02, field03, field04, field05, field06, field07, field08, field09, field10, field11, field12, field13)
-            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+        String upsertSql = """
+            INSERT INTO public.exportdata
+            (field01, field02, field03, field04, field05, field06, field07, field08, field09, field10, field11, field12, field13,
+             row_hash, is_active, updated_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, TRUE, now())
+            ON CONFLICT (field01) DO UPDATE SET
+                field02 = EXCLUDED.field02, field03 = EXCLUDED.field03, field04 = EXCLUDED.field04,
+                field05 = EXCLUDED.field05, field06 = EXCLUDED.field06, field07 = EXCLUDED.field07,
+                field08 = EXCLUDED.field08, field09 = EXCLUDED.field09, field10 = EXCLUDED.field10,
+                field11 = EXCLUDED.field11, field12 = EXCLUDED.field12, field13 = EXCLUDED.field13,
+                row_hash = EXCLUDED.row_hash, is_active = TRUE, updated_at = now()
+            """;
+        String deactivateSql = """
+            UPDATE public.exportdata
+            SET is_active = FALSE, updated_at = now()
+            WHERE field01 = ?
             """;
 
-        int count = 0;
-
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            for (Bond bond : bonds) {
-                // field01 - FIGI
-                pstmt.setString(1, bond.getFigi());
-
-                // field02 - Ticker
-                pstmt.setString(2, bond.getTicker());
-
-                // field03 - Class Code
-                pstmt.setString(3, bond.getClassCode());
-
-                // field04 - ISIN
-                pstmt.setString(4, bond.getIsin());
-
-                // field05 - Name
-                pstmt.setString(5, bond.getName());
-
-                // field06 - Currency
-                pstmt.setString(6, bond.getCurrency().toUpperCase());
-
-                // field07 - Nominal Currency
-                if (bond.hasInitialNominal()) {
-                    pstmt.setString(7, bond.getInitialNominal().getCurrency().toUpperCase());
-                } else {
-                    pstmt.setString(7, null);
+        SyncResult result = new SyncResult();
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (Statement stmt = conn.createStatement()) {
+                    // Две одновременные синхронизации не должны перемешать батчи
+                    stmt.execute("SELECT pg_advisory_xact_lock(" + SYNC_LOCK_KEY + ")");
                 }
 
-                // field08 - Nominal
-                if (bond.hasInitialNominal()) {
-                    double nominal = bond.getInitialNominal().getUnits() +
-                            bond.getInitialNominal().getNano() / 1e9;
-                    pstmt.setString(8, String.format("%.0f", nominal));
-                } else {
-                    pstmt.setString(8, null);
-                }
+                Map<String, String> storedHashes = new HashMap<>();
+                Set<String> storedActive = new HashSet<>();
+                loadStoredState(conn, storedHashes, storedActive);
 
-                // field09 - Maturity Date
-                if (bond.hasMaturityDate()) {
-                    long seconds = bond.getMaturityDate().getSeconds();
-                    java.time.LocalDate date = java.time.LocalDateTime
-                            .ofEpochSecond(seconds, 0, java.time.ZoneOffset.UTC)
-                            .toLocalDate();
-                    pstmt.setString(9, date.toString());
-                } else {
-                    pstmt.setString(9, null);
+                List<String> delisted = new ArrayList<>();
+                for (String figi : storedActive) {
+                    if (!rows.containsKey(figi)) {
+                        delisted.add(figi);
+                    }
                 }
 
-                // field10 - DlongClient
-                if (bond.hasDlongMin()) {
-                    double dlongClient = bond.getDlongMin().getUnits() +
-                            bond.getDlongMin().getNano() / 1e9;
-                    pstmt.setString(10, String.format("%.2f", dlongClient));
-                } else {
-                    pstmt.setString(10, "0");
+                try (PreparedStatement upsert = conn.prepareStatement(upsertSql)) {
+                    if (!storedHashes.containsKey(HEADER_FIGI)) {
+                        // Строка заголовков — для совместимости с выгрузками, читающими exportdata как таблицу
+                        bindRow(upsert, HEADER_ROW, null);
+                        upsert.addBatch();
+                    }
+                    for (Map.Entry<String, String[]> entry : rows.entrySet()) {
+                        String figi = entry.getKey();
+                        String hash = hash(entry.getValue());
+                        if (!storedHashes.containsKey(figi)) {
+                            result.inserted++;
+                        } else if (!hash.equals(storedHashes.get(figi)) || !storedActive.contains(figi)) {
+                            result.updated++;
+                        } else {
+                            result.unchanged++;
+                            continue;
+                        }
+                        bindRow(upsert, entry.getValue(), hash);
+                        upsert.addBatch();
+                    }
+                    upsert.executeBatch();
                 }
 
-                // field11 - Floating Coupon Flag
-                pstmt.setString(11, bond.getFloatingCouponFlag() ? "true" : "false");
-
-                // field12 - Amortization Flag
-                pstmt.setString(12, bond.getAmortizationFlag() ? "true" : "false");
-
-                // field13 - Risk Level
-                String riskLevel;
-                switch (bond.getRiskLevel()) {
-                    case RISK_LEVEL_LOW:
-                        riskLevel = "LOW";
-                        break;
-                    case RISK_LEVEL_MODERATE:
-                        riskLevel = "MODERATE";
-                        break;
-                    case RISK_LEVEL_HIGH:
-                        riskLevel = "HIGH";
-                        break;
-                    default:
-                        riskLevel = bond.getRiskLevel().name();
+                try (PreparedStatement deactivate = conn.prepareStatement(deactivateSql)) {
+                    for (String figi : delisted) {
+                        deactivate.setString(1, figi);
+                        deactivate.addBatch();
+                    }
+                    deactivate.executeBatch();
                 }
-                pstmt.setString(13, riskLevel);
+                result.deactivated = delisted.size();
 
-                pstmt.executeUpdate();
-                count++;
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
             }
-
-            log.info("✓ Экспортировано облигаций: " + count);
-
         } catch (SQLException e) {
-            throw new RuntimeException("Ошибка экспорта облигаций: " + e.getMessage(), e);
+            log.error("❌ Ошибка синхронизации облигаций", e);
+            throw new RuntimeException("Ошибка БД при синхронизации облигаций: " + e.getMessage(), e);
         }
 
-        return count;
+        log.info("✓ Синхронизация облигаций за {} мс: {}", System.currentTimeMillis() - started, result);
+        return result;
     }
 
     /**
-     * Получает количество записей в таблице
+     * Получает количество активных облигаций в справочнике
      */
     public int getRowCount() {
-        String sql = "SELECT COUNT(*) FROM public.exportdata";
+        String sql = "SELECT COUNT(*) FROM public.exportdata WHERE field01 != 'figi' AND is_active";
 
         try (Connection conn = getConnection();
              Statement stmt = conn.createStatement();
@@ -205,4 +165,136 @@ public class BondsRepository {
 
         return 0;
     }
+
+    private static void loadStoredState(Connection conn, Map<String, String> storedHashes,
+                                        Set<String> storedActive) throws SQLException {
+        String sql = "SELECT field01, row_hash, is_active FROM public.exportdata";
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                String figi = rs.getString("field01");
+                storedHashes.put(figi, rs.getString("row_hash"));
+                if (rs.getBoolean("is_active") && !HEADER_FIGI.equals(figi)) {
+                    storedActive.add(figi);
+                }
+            }
+        }
+    }
+
+    private static void bindRow(PreparedStatement pstmt, String[] row, String hash) throws SQLException {
+        for (int i = 0; i < row.length; i++) {
+            pstmt.setString(i + 1, row[i]);
+        }
+        pstmt.setString(row.length + 1, hash);
+    }
+
+    /**
+     * Поля облигации в порядке field01..field13
+     */
+    private static String[] toRow(Bond bond) {
+        String[] row = new String[13];
+
+        // field01 - FIGI
+        row[0] = bond.getFigi();
+
+        // field02 - Ticker
+        row[1] = bond.getTicker();
+
+        // field03 - Class Code
+        row[2] = bond.getClassCode();
+
+        // field04 - ISIN
+        row[3] = bond.getIsin();
+
+        // field05 - Name
+        row[4] = bond.getName();
+
+        // field06 - Currency
+        row[5] = bond.getCurrency().toUpperCase();
+
+        // field07 - Nominal Currency
+        row[6] = bond.hasInitialNominal() ? bond.getInitialNominal().getCurrency().toUpperCase() : null;
+
+        // field08 - Nominal
+        if (bond.hasInitialNominal()) {
+            double nominal = bond.getInitialNominal().getUnits() +
+                    bond.getInitialNominal().getNano() / 1e9;
+            row[7] = String.format("%.0f", nominal);
+        }
+
+        // field09 - Maturity Date
+        if (bond.hasMaturityDate()) {
+            long seconds = bond.getMaturityDate().getSeconds();
+            java.time.LocalDate date = java.time.LocalDateTime
+                    .ofEpochSecond(seconds, 0, java.time.ZoneOffset.UTC)
+                    .toLocalDate();
+            row[8] = date.toString();
+        }
+
+        // field10 - DlongClient
+        if (bond.hasDlongMin()) {
+            double dlongClient = bond.getDlongMin().getUnits() +
+                    bond.getDlongMin().getNano() / 1e9;
+            row[9] = String.format("%.2f", dlongClient);
+        } else {
+            row[9] = "0";
+        }
+
+        // field11 - Floating Coupon Flag
+        row[10] = bond.getFloatingCouponFlag() ? "true" : "false";
+
+        // field12 - Amortization Flag
+        row[11] = bond.getAmortizationFlag() ? "true" : "false";
+
+        // field13 - Risk Level
+        row[12] = switch (bond.getRiskLevel()) {
+            case RISK_LEVEL_LOW -> "LOW";
+            case RISK_LEVEL_MODERATE -> "MODERATE";
+            case RISK_LEVEL_HIGH -> "HIGH";
+            default -> bond.getRiskLevel().name();
+        };
+
+        return row;
+    }
+
+    /**
+     * SHA-256 по всем полям строки (разделитель 0x1F не встречается в данных API, null отличается от пустой строки)
+     */
+    private static String hash(String[] row) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String value : row) {
+                if (value == null) {
+                    digest.update((byte) 0x00);
+                } else {
+                    digest.update(value.getBytes(StandardCharsets.UTF_8));
+                }
+                digest.update((byte) 0x1F);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    /**
+     * Итог синхронизации справочника
+     */
+    public static class SyncResult {
+        private int inserted;
+        private int updated;
+        private int deactivated;
+        private int unchanged;
+
+        public int getInserted() { return inserted; }
+        public int getUpdated() { return updated; }
+        public int getDeactivated() { return deactivated; }
+        public int getUnchanged() { return unchanged; }
+
+        @Override
+        public String toString() {
+            return String.format("новых %d, изменено %d, неактивно %d, без изменений %d",
+                    inserted, updated, deactivated, unchanged);
+        }
+    }
 }
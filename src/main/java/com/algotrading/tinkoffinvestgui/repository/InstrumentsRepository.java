@@ -4,6 +4,7 @@ import com.algotrading.tinkoffinvestgui.config.AppConstants;
 import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
 import com.algotrading.tinkoffinvestgui.entity.Instrument;
 import com.algotrading.tinkoffinvestgui.db.DatabaseConnection;
+import com.algotrading.tinkoffinvestgui.metrics.JdbcMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -21,13 +22,12 @@ public class InstrumentsRepository {
         String dbUser = ConnectorConfig.getPropertyValue("db.username");
         String dbPassword = ConnectorConfig.getPropertyValue("db.password");
         log.debug("Подключение к БД: {}", dbUrl);
-        return DriverManager.getConnection(dbUrl, dbUser, dbPassword);
+        return JdbcMetrics.wrap(DriverManager.getConnection(dbUrl, dbUser, dbPassword));
     }
 
-    @SuppressWarnings("rawtypes")
-    public List findAll() {
+    public List<Instrument> findAll() {
         log.info("Получение всех инструментов из БД...");
-        List instruments = new ArrayList<>();
+        List<Instrument> instruments = new ArrayList<>();
         try (Connection conn = getConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(AppConstants.SQL_SELECT_ALL_INSTRUMENTS)) {
@@ -0,0 +1,160 @@
+package com.algotrading.tinkoffinvestgui.repository;
+
+import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
+import com.algotrading.tinkoffinvestgui.metrics.JdbcMetrics;
+import com.algotrading.tinkoffinvestgui.model.OrderEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Репозиторий журнала событий заявок public.order_events.
+ * Только INSERT и последовательное чтение по id — строки никогда не обновляются.
+ * Таблица создаётся миграцией V1 (SchemaMigrator).
+ */
+public class OrderEventsRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderEventsRepository.class);
+
+    private Connection getConnection() throws SQLException {
+        String dbUrl = ConnectorConfig.getPropertyValue("db.url");
+        String dbUser = ConnectorConfig.getPropertyValue("db.username");
+        String dbPassword = ConnectorConfig.getPropertyValue("db.password");
+        return JdbcMetrics.wrap(DriverManager.getConnection(dbUrl, dbUser, dbPassword));
+    }
+
+    /**
+     * Добавить событие в журнал
+     *
+     * @return id события
+     */
+    public long append(OrderEvent event) {
+        String sql = """
+                INSERT INTO public.order_events (
+                    event_time, event_type, my_order_id, exchange_order_id, parent_order_id,
+                    account_id, figi, instrument_name, direction,
+                    lots_requested, lots_executed, price, average_price, status, message
+                ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                RETURNING id
+                """;
+
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            Instant eventTime = event.getEventTime() != null ? event.getEventTime() : Instant.now();
+            pstmt.setTimestamp(1, Timestamp.from(eventTime));
+            pstmt.setString(2, event.getType().name());
+            pstmt.setString(3, event.getMyOrderId());
+            pstmt.setString(4, event.getExchangeOrderId());
+            pstmt.setString(5, event.getParentOrderId());
+            pstmt.setString(6, event.getAccountId());
+            pstmt.setString(7, event.getFigi());
+            pstmt.setString(8, event.getInstrumentName());
+            pstmt.setString(9, event.getDirection());
+            pstmt.setLong(10, event.getLotsRequested());
+            pstmt.setLong(11, event.getLotsExecuted());
+            pstmt.setBigDecimal(12, event.getPrice());
+            pstmt.setBigDecimal(13, event.getAveragePrice());
+            pstmt.setString(14, event.getStatus());
+            pstmt.setString(15, event.getMessage());
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                long id = rs.getLong(1);
+                event.setId(id);
+                event.setEventTime(eventTime);
+                return id;
+            }
+        } catch (SQLException e) {
+            log.error("Ошибка записи события заявки {}", event, e);
+            throw new RuntimeException("Ошибка БД при записи события заявки: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * События начиная с момента времени, по порядку записи
+     */
+    public List<OrderEvent> findSince(Instant from) {
+        String sql = "SELECT * FROM public.order_events WHERE event_time >= ? ORDER BY id";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setTimestamp(1, Timestamp.from(from));
+            return readAll(pstmt);
+        } catch (SQLException e) {
+            log.error("Ошибка чтения журнала заявок", e);
+            throw new RuntimeException("Ошибка БД при чтении журнала заявок: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * События с id больше заданного (хвост журнала)
+     */
+    public List<OrderEvent> findAfterId(long lastId) {
+        String sql = "SELECT * FROM public.order_events WHERE id > ? ORDER BY id";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setLong(1, lastId);
+            return readAll(pstmt);
+        } catch (SQLException e) {
+            log.error("Ошибка чтения хвоста журнала заявок", e);
+            throw new RuntimeException("Ошибка БД при чтении журнала заявок: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Максимальный id журнала (0 — журнал пуст)
+     */
+    public long findMaxId() {
+        String sql = "SELECT COALESCE(MAX(id), 0) FROM public.order_events";
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (SQLException e) {
+            log.error("Ошибка чтения последнего id журнала заявок", e);
+            throw new RuntimeException("Ошибка БД при чтении журнала заявок: " + e.getMessage(), e);
+        }
+    }
+
+    private List<OrderEvent> readAll(PreparedStatement pstmt) throws SQLException {
+        List<OrderEvent> events = new ArrayList<>();
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                events.add(mapResultSetToEvent(rs));
+            }
+        }
+        return events;
+    }
+
+    private OrderEvent mapResultSetToEvent(ResultSet rs) throws SQLException {
+        OrderEvent event = new OrderEvent();
+        event.setId(rs.getLong("id"));
+        event.setEventTime(rs.getTimestamp("event_time").toInstant());
+        try {
+            event.setType(OrderEvent.Type.valueOf(rs.getString("event_type")));
+        } catch (IllegalArgumentException e) {
+            log.warn("Неизвестный тип события в журнале: {}", rs.getString("event_type"));
+            event.setType(OrderEvent.Type.STATUS);
+        }
+        event.setMyOrderId(rs.getString("my_order_id"));
+        event.setExchangeOrderId(rs.getString("exchange_order_id"));
+        event.setParentOrderId(rs.getString("parent_order_id"));
+        event.setAccountId(rs.getString("account_id"));
+        event.setFigi(rs.getString("figi"));
+        event.setInstrumentName(rs.getString("instrument_name"));
+        event.setDirection(rs.getString("direction"));
+        event.setLotsRequested(rs.getLong("lots_requested"));
+        event.setLotsExecuted(rs.getLong("lots_executed"));
+        event.setPrice(rs.getBigDecimal("price"));
+        event.setAveragePrice(rs.getBigDecimal("average_price"));
+        event.setStatus(rs.getString("status"));
+        event.setMessage(rs.getString("message"));
+        return event;
+    }
+}
@@ -2,6 +2,8 @@ package com.algotrading.tinkoffinvestgui.repository;
 
 import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
 import com.algotrading.tinkoffinvestgui.model.Order;
+import com.algotrading.tinkoffinvestgui.model.OrderStatus;
+import com.algotrading.tinkoffinvestgui.metrics.JdbcMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ru.tinkoff.piapi.contract.v1.OrderDirection;
@@ -10,20 +12,82 @@ import java.math.BigDecimal;
 import java.sql.*;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 /**
  * Репозиторий для работы с таблицей public.orders.
+ * Схема (тип order_status, индексы) — миграции SchemaMigrator; статус пишется
+ * в нормализованном виде OrderStatus.
  */
 public class OrdersRepository {
 
     private static final Logger log = LoggerFactory.getLogger(OrdersRepository.class);
 
+    private static final String ORDER_COLUMNS = """
+            id, my_order_id, exchange_order_id, account_id, figi, ticker, instrument_name,
+            direction, order_type, lots_requested, lots_executed, price, average_execution_price,
+            status, total_order_amount, commission, aci, parent_order_id, parent_fill_time,
+            error_message, created_at, updated_at, executed_at, cancelled_at, submitted_at""";
+
+    // Горячие запросы (обновление портфеля, планировщик) — их планы проверяет SchemaMigrator.
+    // «Сегодня» — диапазон по created_at, а не created_at::date: так работает индекс.
+    static final String FIND_TODAY_ORDERS_SQL = """
+            SELECT %s FROM public.orders
+            WHERE created_at >= CURRENT_DATE
+              AND created_at < CURRENT_DATE + 1
+            ORDER BY created_at DESC
+            """.formatted(ORDER_COLUMNS);
+
+    static final String HAS_ACTIVE_TODAY_ORDER_SQL = """
+            SELECT EXISTS (
+                SELECT 1 FROM public.orders
+                WHERE figi = ?
+                  AND direction = ?
+                  AND account_id = ?
+                  AND created_at >= CURRENT_DATE
+                  AND created_at < CURRENT_DATE + 1
+                  AND status IN ('PENDING', 'NEW', 'PARTIALLY_FILLED')
+            )
+            """;
+
+    static final String FIND_BY_EXCHANGE_ORDER_ID_SQL =
+            "SELECT " + ORDER_COLUMNS + " FROM public.orders WHERE exchange_order_id = ?";
+
+    // История — keyset-пагинация по (created_at, id): страница не зависит от глубины прокрутки
+    static final String HISTORY_FIRST_PAGE_SQL = """
+            SELECT %s FROM public.orders
+            WHERE created_at >= ?
+            ORDER BY created_at DESC, id DESC
+            LIMIT ?
+            """.formatted(ORDER_COLUMNS);
+
+    static final String HISTORY_NEXT_PAGE_SQL = """
+            SELECT %s FROM public.orders
+            WHERE created_at >= ?
+              AND (created_at, id) < (?, ?)
+            ORDER BY created_at DESC, id DESC
+            LIMIT ?
+            """.formatted(ORDER_COLUMNS);
+
+    static final String FIND_ACTIVE_ORDERS_SQL = """
+            SELECT %s FROM public.orders
+            WHERE status IN ('NEW', 'PARTIALLY_FILLED', 'PENDING')
+            ORDER BY created_at DESC
+            """.formatted(ORDER_COLUMNS);
+
+    static final String FIND_ACTIVE_ORDERS_BY_ACCOUNT_SQL = """
+            SELECT %s FROM public.orders
+            WHERE status IN ('NEW', 'PARTIALLY_FILLED', 'PENDING')
+              AND account_id = ?
+            ORDER BY created_at DESC
+            """.formatted(ORDER_COLUMNS);
+
     private Connection getConnection() throws SQLException {
         String dbUrl = ConnectorConfig.getPropertyValue("db.url");
         String dbUser = ConnectorConfig.getPropertyValue("db.username");
         String dbPassword = ConnectorConfig.getPropertyValue("db.password");
-        return DriverManager.getConnection(dbUrl, dbUser, dbPassword);
+        return JdbcMetrics.wrap(DriverManager.getConnection(dbUrl, dbUser, dbPassword));
     }
 
     /**
@@ -53,7 +117,7 @@ public class OrdersRepository {
                     error_message,
                     created_at,
                     submitted_at
-                ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?::public.order_status, ?, ?, ?, ?, ?, ?, ?, ?)
                 """;
 
         try (Connection conn = getConnection();
@@ -71,7 +135,7 @@ public class OrdersRepository {
             pstmt.setLong(10, order.getLotsExecuted());
             pstmt.setBigDecimal(11, order.getPrice());
             pstmt.setBigDecimal(12, order.getAverageExecutionPrice());
-            pstmt.setString(13, order.getStatus());
+            pstmt.setString(13, OrderStatus.normalize(order.getStatus()).name());
             pstmt.setBigDecimal(14, order.getTotalOrderAmount());
             pstmt.setBigDecimal(15, order.getCommission());
             pstmt.setBigDecimal(16, order.getAci());
@@ -109,9 +173,10 @@ public class OrdersRepository {
         String sql = """
             UPDATE public.orders SET
                 exchange_order_id = ?,
+                lots_requested = ?,
                 lots_executed = ?,
                 average_execution_price = ?,
-                status = ?,
+                status = ?::public.order_status,
                 total_order_amount = ?,
                 commission = ?,
                 error_message = ?,
@@ -132,21 +197,22 @@ public class OrdersRepository {
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, order.getExchangeOrderId());
-            pstmt.setLong(2, order.getLotsExecuted());
-            pstmt.setBigDecimal(3, order.getAverageExecutionPrice());
-            pstmt.setString(4, order.getStatus());
-            pstmt.setBigDecimal(5, order.getTotalOrderAmount());
-            pstmt.setBigDecimal(6, order.getCommission());
-            pstmt.setString(7, order.getErrorMessage());
+            pstmt.setLong(2, order.getLotsRequested());
+            pstmt.setLong(3, order.getLotsExecuted());
+            pstmt.setBigDecimal(4, order.getAverageExecutionPrice());
+            pstmt.setString(5, OrderStatus.normalize(order.getStatus()).name());
+            pstmt.setBigDecimal(6, order.getTotalOrderAmount());
+            pstmt.setBigDecimal(7, order.getCommission());
+            pstmt.setString(8, order.getErrorMessage());
 
             // >>> ДОБАВЛЯЕМ submitted_at
             if (order.getSubmittedAt() != null) {
-                pstmt.setTimestamp(8, Timestamp.from(order.getSubmittedAt()));
+                pstmt.setTimestamp(9, Timestamp.from(order.getSubmittedAt()));
             } else {
-                pstmt.setTimestamp(8, null);
+                pstmt.setTimestamp(9, null);
             }
 
-            pstmt.setString(9, order.getMyOrderId());
+            pstmt.setString(10, order.getMyOrderId());
 
             pstmt.executeUpdate();
             log.debug("Заявка обновлена: {} статус={}", order.getMyOrderId(), order.getStatus());
@@ -158,7 +224,7 @@ public class OrdersRepository {
 
 
     public Order findByMyOrderId(String myOrderId) {
-        String sql = "SELECT * FROM public.orders WHERE my_order_id = ?";
+        String sql = "SELECT " + ORDER_COLUMNS + " FROM public.orders WHERE my_order_id = ?";
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
@@ -175,9 +241,8 @@ public class OrdersRepository {
     }
 
     public Order findByExchangeOrderId(String exchangeOrderId) {
-        String sql = "SELECT * FROM public.orders WHERE exchange_order_id = ?";
         try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(FIND_BY_EXCHANGE_ORDER_ID_SQL)) {
 
             pstmt.setString(1, exchangeOrderId);
             try (ResultSet rs = pstmt.executeQuery()) {
@@ -191,17 +256,43 @@ public class OrdersRepository {
         return null;
     }
 
+    /**
+     * Заявки по набору exchange_order_id одним запросом
+     */
+    public List<Order> findByExchangeOrderIds(Collection<String> exchangeOrderIds) {
+        List<Order> orders = new ArrayList<>();
+        if (exchangeOrderIds.isEmpty()) {
+            return orders;
+        }
+        String sql = "SELECT " + ORDER_COLUMNS + " FROM public.orders WHERE exchange_order_id = ANY(?)";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setArray(1, conn.createArrayOf("varchar", exchangeOrderIds.toArray()));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    orders.add(mapResultSetToOrder(rs));
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Ошибка получения заявок по списку exchange_order_id", e);
+            throw new RuntimeException("Ошибка БД при получении заявок: " + e.getMessage(), e);
+        }
+        return orders;
+    }
+
     /**
      * Заявки с заданным статусом (например, 'PENDING').
      */
     public List<Order> findByStatus(String status) {
-        String sql = "SELECT * FROM public.orders WHERE status = ? ORDER BY created_at DESC";
+        String sql = "SELECT " + ORDER_COLUMNS
+                + " FROM public.orders WHERE status = ?::public.order_status ORDER BY created_at DESC";
         List<Order> orders = new ArrayList<>();
 
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            pstmt.setString(1, status);
+            pstmt.setString(1, OrderStatus.normalize(status).name());
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
                     orders.add(mapResultSetToOrder(rs));
@@ -215,7 +306,7 @@ public class OrdersRepository {
     }
 
     public List<Order> findByFigi(String figi) {
-        String sql = "SELECT * FROM public.orders WHERE figi = ? ORDER BY created_at DESC";
+        String sql = "SELECT " + ORDER_COLUMNS + " FROM public.orders WHERE figi = ? ORDER BY created_at DESC";
         List<Order> orders = new ArrayList<>();
 
         try (Connection conn = getConnection();
@@ -238,11 +329,11 @@ public class OrdersRepository {
      */
     public Order findSellOrderByParentBuyId(String parentOrderId) {
         String sql = """
-                SELECT * FROM public.orders
+                SELECT %s FROM public.orders
                 WHERE parent_order_id = ? AND direction = 'SELL'
                 ORDER BY created_at DESC
                 LIMIT 1
-                """;
+                """.formatted(ORDER_COLUMNS);
 
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
@@ -260,19 +351,62 @@ public class OrdersRepository {
     }
 
     /**
-     * Активные заявки (NEW, PARTIALLY_FILLED, PENDING).
+     * Все дочерние Stop-on-Fill заявки (parent_order_id задан) за последние days дней.
+     * Используется для начального заполнения индекса родитель → дочерние SELL.
      */
-    public List<Order> findActiveOrders() {
+    public List<Order> findStopOnFillChildren(int days) {
         String sql = """
-                SELECT * FROM public.orders
-                WHERE status IN ('NEW', 'PARTIALLY_FILLED', 'PENDING')
-                ORDER BY created_at DESC
-                """;
+                SELECT %s FROM public.orders
+                WHERE parent_order_id IS NOT NULL
+                  AND created_at >= now() - make_interval(days => ?)
+                ORDER BY created_at
+                """.formatted(ORDER_COLUMNS);
+        List<Order> orders = new ArrayList<>();
+
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, days);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    orders.add(mapResultSetToOrder(rs));
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Ошибка получения дочерних Stop-on-Fill заявок", e);
+            throw new RuntimeException("Ошибка БД при получении дочерних заявок: " + e.getMessage(), e);
+        }
+        return orders;
+    }
+
+    /**
+     * Активные заявки счёта (NEW, PARTIALLY_FILLED, PENDING).
+     */
+    public List<Order> findActiveOrders(String accountId) {
+        List<Order> orders = new ArrayList<>();
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(FIND_ACTIVE_ORDERS_BY_ACCOUNT_SQL)) {
+
+            pstmt.setString(1, accountId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    orders.add(mapResultSetToOrder(rs));
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Ошибка получения активных заявок счёта {}", accountId, e);
+        }
+        return orders;
+    }
 
+    /**
+     * Активные заявки (NEW, PARTIALLY_FILLED, PENDING).
+     */
+    public List<Order> findActiveOrders() {
         List<Order> orders = new ArrayList<>();
         try (Connection conn = getConnection();
              Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+             ResultSet rs = stmt.executeQuery(FIND_ACTIVE_ORDERS_SQL)) {
 
             while (rs.next()) {
                 orders.add(mapResultSetToOrder(rs));
@@ -288,10 +422,10 @@ public class OrdersRepository {
      */
     public List<Order> findHistory(int days) {
         String sql = """
-                SELECT * FROM public.orders
+                SELECT %s FROM public.orders
                 WHERE created_at >= now() - (? * interval '1 day')
                 ORDER BY created_at DESC
-                """;
+                """.formatted(ORDER_COLUMNS);
 
         List<Order> orders = new ArrayList<>();
         try (Connection conn = getConnection();
@@ -308,20 +442,45 @@ public class OrdersRepository {
         }
         return orders;
     }
+    /**
+     * Страница истории заявок с since, от новых к старым.
+     *
+     * @param after последняя заявка предыдущей страницы (null — первая страница)
+     */
+    public List<Order> findHistoryPage(Instant since, Order after, int limit) {
+        List<Order> orders = new ArrayList<>();
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(
+                     after == null ? HISTORY_FIRST_PAGE_SQL : HISTORY_NEXT_PAGE_SQL)) {
+
+            int index = 1;
+            pstmt.setTimestamp(index++, Timestamp.from(since));
+            if (after != null) {
+                pstmt.setTimestamp(index++, Timestamp.from(after.getCreatedAt()));
+                pstmt.setInt(index++, after.getId());
+            }
+            pstmt.setInt(index, limit);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    orders.add(mapResultSetToOrder(rs));
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Ошибка получения страницы истории заявок", e);
+            throw new RuntimeException("Ошибка БД при получении истории заявок: " + e.getMessage(), e);
+        }
+        return orders;
+    }
+
     /**
      * Заявки, созданные сегодня (с начала текущего дня).
      */
     public List<Order> findTodayOrders() {
-        String sql = """
-            SELECT * FROM public.orders
-            WHERE created_at::date = CURRENT_DATE
-            ORDER BY created_at DESC
-            """;
-
         List<Order> orders = new ArrayList<>();
         try (Connection conn = getConnection();
              Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+             ResultSet rs = stmt.executeQuery(FIND_TODAY_ORDERS_SQL)) {
 
             while (rs.next()) {
                 orders.add(mapResultSetToOrder(rs));
@@ -334,36 +493,21 @@ public class OrdersRepository {
     }
 
     /**
-     * Проверка: есть ли сегодня активная заявка по FIGI + direction.
+     * Проверка: есть ли сегодня на счёте активная заявка по FIGI + direction.
      */
-    public boolean hasActiveTodayOrder(String figi, String direction) {
-        String sql = """
-                SELECT COUNT(*) FROM public.orders
-                WHERE figi = ?
-                  AND direction = ?
-                  AND status IN (
-                      'PENDING',
-                      'NEW',
-                      'PARTIALLY_FILLED',
-                      'EXECUTION_REPORT_STATUS_NEW',
-                      'EXECUTION_REPORT_STATUS_PARTIALLYFILL'
-                  )
-                  AND created_at::date = CURRENT_DATE
-                """;
-
+    public boolean hasActiveTodayOrder(String accountId, String figi, String direction) {
         try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(HAS_ACTIVE_TODAY_ORDER_SQL)) {
 
             pstmt.setString(1, figi);
             pstmt.setString(2, direction);
+            pstmt.setString(3, accountId);
 
             try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    int count = rs.getInt(1);
-                    if (count > 0) {
-                        log.debug("Найдены {} активных заявок сегодня по figi={} direction={}", count, figi, direction);
-                        return true;
-                    }
+                if (rs.next() && rs.getBoolean(1)) {
+                    log.debug("Найдена активная заявка сегодня по account={} figi={} direction={}",
+                            accountId, figi, direction);
+                    return true;
                 }
             }
         } catch (SQLException e) {
@@ -430,12 +574,8 @@ public class OrdersRepository {
             order.setCancelledAt(cancelledAt.toInstant());
         }
 
-        Timestamp submittedAt = null;
-        try {
-            submittedAt = rs.getTimestamp("submitted_at");
-        } catch (SQLException ignored) {
-            // Для старых БД без этого поля
-        }
+        // submitted_at гарантирован миграцией V2
+        Timestamp submittedAt = rs.getTimestamp("submitted_at");
         if (submittedAt != null) {
             order.setSubmittedAt(submittedAt.toInstant());
         }
@@ -481,6 +621,47 @@ public class OrdersRepository {
         return new OrderStatistics();
     }
 
+    /**
+     * Статистика по заявкам с since (итоговая строка истории) — считается в БД
+     */
+    public OrderStatistics getStatistics(Instant since) {
+        String sql = """
+                SELECT
+                    COUNT(*) as total,
+                    COUNT(*) FILTER (WHERE direction = 'ORDER_DIRECTION_BUY') as buy_count,
+                    COUNT(*) FILTER (WHERE direction = 'ORDER_DIRECTION_SELL') as sell_count,
+                    COUNT(*) FILTER (WHERE status = 'FILLED') as filled_count,
+                    COALESCE(SUM(total_order_amount) FILTER (
+                        WHERE status = 'FILLED' AND direction = 'ORDER_DIRECTION_BUY'), 0) as total_bought,
+                    COALESCE(SUM(total_order_amount) FILTER (
+                        WHERE status = 'FILLED' AND direction = 'ORDER_DIRECTION_SELL'), 0) as total_sold
+                FROM public.orders
+                WHERE created_at >= ?
+                """;
+
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setTimestamp(1, Timestamp.from(since));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return new OrderStatistics(
+                            rs.getInt("total"),
+                            rs.getInt("buy_count"),
+                            rs.getInt("sell_count"),
+                            rs.getInt("filled_count"),
+                            rs.getBigDecimal("total_bought"),
+                            rs.getBigDecimal("total_sold")
+                    );
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Ошибка получения статистики по заявкам с {}", since, e);
+            throw new RuntimeException("Ошибка БД при получении статистики заявок: " + e.getMessage(), e);
+        }
+        return new OrderStatistics();
+    }
+
     public static class OrderStatistics {
         public int total;
         public int buyCount;
@@ -0,0 +1,226 @@
+package com.algotrading.tinkoffinvestgui.repository;
+
+import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
+import com.algotrading.tinkoffinvestgui.metrics.JdbcMetrics;
+import com.algotrading.tinkoffinvestgui.model.FifoPosition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Репозиторий реализованного P&L: public.pnl_positions (лоты и итоги по инструменту),
+ * public.pnl_daily (итоги по дням) и public.pnl_watermark (последняя учтённая сделка).
+ * Таблицы создаются миграцией V8 (SchemaMigrator).
+ */
+public class PnlRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(PnlRepository.class);
+
+    private Connection getConnection() throws SQLException {
+        String dbUrl = ConnectorConfig.getPropertyValue("db.url");
+        String dbUser = ConnectorConfig.getPropertyValue("db.username");
+        String dbPassword = ConnectorConfig.getPropertyValue("db.password");
+        return JdbcMetrics.wrap(DriverManager.getConnection(dbUrl, dbUser, dbPassword));
+    }
+
+    /**
+     * id последней учтённой сделки public.trades (0 — ещё ничего не учтено)
+     */
+    public long getWatermark() {
+        String sql = "SELECT last_trade_id FROM public.pnl_watermark WHERE id = 1";
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getLong("last_trade_id") : 0;
+        } catch (SQLException e) {
+            log.error("❌ Ошибка чтения отметки P&L", e);
+            throw new RuntimeException("Ошибка БД при чтении отметки P&L: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Все позиции с лотами и накопленными итогами
+     */
+    public List<FifoPosition> findPositions() {
+        String sql = """
+                SELECT account_id, figi, instrument_name, lot_quantities, lot_prices,
+                       realized_pnl, commission, trades_count
+                FROM public.pnl_positions
+                """;
+
+        List<FifoPosition> positions = new ArrayList<>();
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                Long[] quantities = (Long[]) rs.getArray("lot_quantities").getArray();
+                Double[] prices = (Double[]) rs.getArray("lot_prices").getArray();
+                long[] lotQuantities = new long[quantities.length];
+                double[] lotPrices = new double[prices.length];
+                for (int i = 0; i < quantities.length; i++) {
+                    lotQuantities[i] = quantities[i];
+                }
+                for (int i = 0; i < prices.length; i++) {
+                    lotPrices[i] = prices[i];
+                }
+                positions.add(new FifoPosition(
+                        rs.getString("account_id"),
+                        rs.getString("figi"),
+                        rs.getString("instrument_name"),
+                        lotQuantities,
+                        lotPrices,
+                        rs.getDouble("realized_pnl"),
+                        rs.getDouble("commission"),
+                        rs.getInt("trades_count")));
+            }
+        } catch (SQLException e) {
+            log.error("❌ Ошибка чтения позиций P&L", e);
+            throw new RuntimeException("Ошибка БД при чтении позиций P&L: " + e.getMessage(), e);
+        }
+        return positions;
+    }
+
+    /**
+     * Сохранить изменённые позиции, приращения по дням и новую отметку одной транзакцией
+     */
+    public void saveBatch(Collection<FifoPosition> positions, Collection<DailyPnl> dailyDeltas, long watermark) {
+        String upsertPositionSql = """
+                INSERT INTO public.pnl_positions (
+                    account_id, figi, instrument_name, lot_quantities, lot_prices,
+                    realized_pnl, commission, trades_count, updated_at
+                ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, now())
+                ON CONFLICT (account_id, figi) DO UPDATE SET
+                    instrument_name = EXCLUDED.instrument_name,
+                    lot_quantities = EXCLUDED.lot_quantities,
+                    lot_prices = EXCLUDED.lot_prices,
+                    realized_pnl = EXCLUDED.realized_pnl,
+                    commission = EXCLUDED.commission,
+                    trades_count = EXCLUDED.trades_count,
+                    updated_at = now()
+                """;
+        String upsertDailySql = """
+                INSERT INTO public.pnl_daily (account_id, trade_day, figi, realized_pnl, commission)
+                VALUES (?, ?, ?, ?, ?)
+                ON CONFLICT (account_id, trade_day, figi) DO UPDATE SET
+                    realized_pnl = pnl_daily.realized_pnl + EXCLUDED.realized_pnl,
+                    commission = pnl_daily.commission + EXCLUDED.commission
+                """;
+        String watermarkSql = "UPDATE public.pnl_watermark SET last_trade_id = ?, updated_at = now() WHERE id = 1";
+
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement upsertPosition = conn.prepareStatement(upsertPositionSql);
+                 PreparedStatement upsertDaily = conn.prepareStatement(upsertDailySql);
+                 PreparedStatement updateWatermark = conn.prepareStatement(watermarkSql)) {
+
+                for (FifoPosition position : positions) {
+                    long[] quantities = position.getLotQuantities();
+                    double[] prices = position.getLotPrices();
+                    Long[] boxedQuantities = new Long[quantities.length];
+                    Double[] boxedPrices = new Double[prices.length];
+                    for (int i = 0; i < quantities.length; i++) {
+                        boxedQuantities[i] = quantities[i];
+                        boxedPrices[i] = prices[i];
+                    }
+                    upsertPosition.setString(1, position.getAccountId());
+                    upsertPosition.setString(2, position.getFigi());
+                    upsertPosition.setString(3, position.getInstrumentName());
+                    upsertPosition.setArray(4, conn.createArrayOf("bigint", boxedQuantities));
+                    upsertPosition.setArray(5, conn.createArrayOf("float8", boxedPrices));
+                    upsertPosition.setDouble(6, position.getRealizedPnl());
+                    upsertPosition.setDouble(7, position.getCommission());
+                    upsertPosition.setInt(8, position.getTradesCount());
+                    upsertPosition.addBatch();
+                }
+                upsertPosition.executeBatch();
+
+                for (DailyPnl daily : dailyDeltas) {
+                    upsertDaily.setString(1, daily.accountId);
+                    upsertDaily.setDate(2, Date.valueOf(daily.day));
+                    upsertDaily.setString(3, daily.figi);
+                    upsertDaily.setDouble(4, daily.realizedPnl);
+                    upsertDaily.setDouble(5, daily.commission);
+                    upsertDaily.addBatch();
+                }
+                upsertDaily.executeBatch();
+
+                updateWatermark.setLong(1, watermark);
+                updateWatermark.executeUpdate();
+
+                conn.commit();
+                log.debug("💾 P&L сохранён: позиций {}, дней {}, отметка {}",
+                        positions.size(), dailyDeltas.size(), watermark);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            log.error("❌ Ошибка сохранения P&L", e);
+            throw new RuntimeException("Ошибка БД при сохранении P&L: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Итоги по дням счёта с from (по всем инструментам), от новых к старым
+     */
+    public List<DailyPnl> findDaily(String accountId, LocalDate from) {
+        String sql = """
+                SELECT trade_day, SUM(realized_pnl) AS realized_pnl, SUM(commission) AS commission
+                FROM public.pnl_daily
+                WHERE account_id = ? AND trade_day >= ?
+                GROUP BY trade_day
+                ORDER BY trade_day DESC
+                """;
+
+        List<DailyPnl> result = new ArrayList<>();
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, accountId);
+            pstmt.setDate(2, Date.valueOf(from));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    DailyPnl daily = new DailyPnl(accountId, rs.getDate("trade_day").toLocalDate(), null);
+                    daily.realizedPnl = rs.getDouble("realized_pnl");
+                    daily.commission = rs.getDouble("commission");
+                    result.add(daily);
+                }
+            }
+        } catch (SQLException e) {
+            log.error("❌ Ошибка чтения P&L по дням", e);
+            throw new RuntimeException("Ошибка БД при чтении P&L по дням: " + e.getMessage(), e);
+        }
+        return result;
+    }
+
+    /**
+     * P&L за день: по инструменту (приращение при сохранении) или по счёту (figi = null)
+     */
+    public static class DailyPnl {
+        public final String accountId;
+        public final LocalDate day;
+        public final String figi;
+        public double realizedPnl;
+        public double commission;
+
+        public DailyPnl(String accountId, LocalDate day, String figi) {
+            this.accountId = accountId;
+            this.day = day;
+            this.figi = figi;
+        }
+
+        public double getNetPnl() {
+            return realizedPnl - commission;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s: реализовано %.2f ₽, комиссии %.2f ₽", day, figi, realizedPnl, commission);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.algotrading.tinkoffinvestgui.repository;
+
+import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
+import com.algotrading.tinkoffinvestgui.metrics.JdbcMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Версионные миграции схемы БД.
+ *
+ * Скрипты лежат в resources/db/migration (V{версия}__{описание}.sql) и применяются
+ * по порядку при старте приложения, каждый в своей транзакции. Применённые версии
+ * с контрольной суммой пишутся в public.schema_migrations; параллельный запуск
+ * второго экземпляра ждёт на advisory lock.
+ *
+ * После миграций проверяются планы горячих запросов OrdersRepository: если при
+ * запрещённом seq scan планировщик всё равно читает public.orders целиком — индекса нет.
+ */
+public class SchemaMigrator {
+
+    private static final Logger log = LoggerFactory.getLogger(SchemaMigrator.class);
+
+    private static final String MIGRATIONS_PATH = "db/migration/";
+    private static final long LOCK_KEY = 0x54494E4B4D494752L; // "TINKMIGR"
+
+    /**
+     * Миграции по порядку. Новый скрипт — новая строка в конце, применённые не меняются.
+     */
+    private static final String[] MIGRATIONS = {
+            "V1__order_events.sql",
+            "V2__orders_status_enum.sql",
+            "V3__orders_indexes.sql",
+            "V4__history_keyset_indexes.sql",
+            "V5__exportdata_incremental_sync.sql",
+            "V6__bond_metrics.sql",
+            "V7__bond_coupons.sql",
+            "V8__realized_pnl.sql"
+    };
+
+    private final String dbUrl;
+    private final String dbUser;
+    private final String dbPassword;
+
+    /**
+     * БД приложения из invest.properties
+     */
+    public SchemaMigrator() {
+        this(ConnectorConfig.getPropertyValue("db.url"),
+                ConnectorConfig.getPropertyValue("db.username"),
+                ConnectorConfig.getPropertyValue("db.password"));
+    }
+
+    /**
+     * Явно заданная БД (тесты мигрируют отдельную, а не рабочую базу)
+     */
+    SchemaMigrator(String dbUrl, String dbUser, String dbPassword) {
+        this.dbUrl = dbUrl;
+        this.dbUser = dbUser;
+        this.dbPassword = dbPassword;
+    }
+
+    private Connection getConnection() throws SQLException {
+        return JdbcMetrics.wrap(DriverManager.getConnection(dbUrl, dbUser, dbPassword));
+    }
+
+    /**
+     * Применить недостающие миграции
+     *
+     * @return число применённых миграций
+     */
+    public int migrate() {
+        try (Connection conn = getConnection()) {
+            ensureHistoryTable(conn);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("SELECT pg_advisory_lock(" + LOCK_KEY + ")");
+            }
+            try {
+                Map<Integer, String> applied = loadApplied(conn);
+                int count = 0;
+                for (String script : MIGRATIONS) {
+                    int version = versionOf(script);
+                    String sql = readScript(script);
+                    String checksum = checksum(sql);
+                    String appliedChecksum = applied.get(version);
+                    if (appliedChecksum != null) {
+                        if (!appliedChecksum.equals(checksum)) {
+                            log.warn("⚠️ Миграция {} изменена после применения (контрольная сумма не совпадает)", script);
+                        }
+                        continue;
+                    }
+                    apply(conn, version, script, sql, checksum);
+                    count++;
+                }
+                if (count == 0) {
+                    log.info("✅ Схема БД актуальна (версия {})", versionOf(MIGRATIONS[MIGRATIONS.length - 1]));
+                }
+                return count;
+            } finally {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("SELECT pg_advisory_unlock(" + LOCK_KEY + ")");
+                }
+            }
+        } catch (SQLException | IOException e) {
+            log.error("❌ Ошибка миграции схемы БД", e);
+            throw new RuntimeException("Ошибка БД при миграции схемы: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Проверка планов горячих запросов к public.orders
+     *
+     * @return описания запросов, для которых не нашлось индекса (пусто — всё в порядке)
+     */
+    public List<String> checkQueryPlans() {
+        Map<String, String> queries = new HashMap<>();
+        queries.put("findTodayOrders", OrdersRepository.FIND_TODAY_ORDERS_SQL);
+        queries.put("hasActiveTodayOrder", OrdersRepository.HAS_ACTIVE_TODAY_ORDER_SQL);
+        queries.put("findByExchangeOrderId", OrdersRepository.FIND_BY_EXCHANGE_ORDER_ID_SQL);
+        queries.put("findActiveOrders", OrdersRepository.FIND_ACTIVE_ORDERS_SQL);
+        queries.put("findHistoryPage", OrdersRepository.HISTORY_NEXT_PAGE_SQL);
+
+        List<String> problems = new ArrayList<>();
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                // Таблица может быть маленькой — seq scan запрещаем, чтобы увидеть, есть ли индекс вообще
+                stmt.execute("SET LOCAL enable_seqscan = off");
+            }
+            for (Map.Entry<String, String> query : queries.entrySet()) {
+                String plan = explain(conn, query.getValue());
+                if (plan.contains("Seq Scan on orders")) {
+                    problems.add(query.getKey());
+                    log.warn("⚠️ Запрос {} читает public.orders без индекса:\n{}", query.getKey(), plan);
+                } else {
+                    log.debug("План {}:\n{}", query.getKey(), plan);
+                }
+            }
+            conn.rollback();
+        } catch (SQLException e) {
+            log.error("❌ Ошибка проверки планов запросов", e);
+            throw new RuntimeException("Ошибка БД при проверке планов запросов: " + e.getMessage(), e);
+        }
+        if (problems.isEmpty()) {
+            log.info("✅ Планы запросов к public.orders используют индексы ({} шт.)", queries.size());
+        }
+        return problems;
+    }
+
+    /**
+     * Миграции + проверка планов при старте; ошибки логируются и не мешают запуску GUI
+     */
+    public static void migrateOnStartup() {
+        SchemaMigrator migrator = new SchemaMigrator();
+        try {
+            migrator.migrate();
+        } catch (Exception e) {
+            log.error("❌ Миграции не применены, работа с БД может завершаться ошибками: {}", e.getMessage());
+            return;
+        }
+        if (!"false".equalsIgnoreCase(ConnectorConfig.getPropertyValue("db.migrations.check-plans"))) {
+            try {
+                migrator.checkQueryPlans();
+            } catch (Exception e) {
+                log.warn("⚠️ Не удалось проверить планы запросов: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void apply(Connection conn, int version, String script, String sql, String checksum) throws SQLException {
+        long started = System.currentTimeMillis();
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement();
+             PreparedStatement insert = conn.prepareStatement("""
+                     INSERT INTO public.schema_migrations (version, script, checksum)
+                     VALUES (?, ?, ?)
+                     """)) {
+            stmt.execute(sql);
+            insert.setInt(1, version);
+            insert.setString(2, script);
+            insert.setString(3, checksum);
+            insert.executeUpdate();
+            conn.commit();
+            log.info("✅ Миграция {} применена за {} мс", script, System.currentTimeMillis() - started);
+        } catch (SQLException e) {
+            conn.rollback();
+            throw new SQLException("Миграция " + script + ": " + e.getMessage(), e);
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static void ensureHistoryTable(Connection conn) throws SQLException {
+        String ddl = """
+                CREATE TABLE IF NOT EXISTS public.schema_migrations (
+                    version    INTEGER PRIMARY KEY,
+                    script     VARCHAR(255) NOT NULL,
+                    checksum   VARCHAR(64) NOT NULL,
+                    applied_at TIMESTAMPTZ NOT NULL DEFAULT now()
+                )
+                """;
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(ddl);
+        }
+    }
+
+    private static Map<Integer, String> loadApplied(Connection conn) throws SQLException {
+        Map<Integer, String> applied = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version, checksum FROM public.schema_migrations")) {
+            while (rs.next()) {
+                applied.put(rs.getInt("version"), rs.getString("checksum"));
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * EXPLAIN запроса с параметрами-заглушками по типу (значения не важны для выбора индекса)
+     */
+    private static String explain(Connection conn, String sql) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+        try (PreparedStatement pstmt = conn.prepareStatement("EXPLAIN " + sql)) {
+            ParameterMetaData meta = pstmt.getParameterMetaData();
+            for (int i = 1; i <= meta.getParameterCount(); i++) {
+                switch (meta.getParameterType(i)) {
+                    case Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE ->
+                            pstmt.setTimestamp(i, new Timestamp(System.currentTimeMillis()));
+                    case Types.INTEGER, Types.BIGINT, Types.SMALLINT -> pstmt.setInt(i, 1);
+                    default -> pstmt.setString(i, "");
+                }
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    plan.append(rs.getString(1)).append('\n');
+                }
+            }
+        }
+        return plan.toString();
+    }
+
+    private static int versionOf(String script) {
+        return Integer.parseInt(script.substring(1, script.indexOf("__")));
+    }
+
+    private static String readScript(String script) throws IOException {
+        try (InputStream in = SchemaMigrator.class.getClassLoader().getResourceAsStream(MIGRATIONS_PATH + script)) {
+            if (in == null) {
+                throw new IOException("Скрипт миграции не найден: " + MIGRATIONS_PATH + script);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String checksum(String sql) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(sql.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+}
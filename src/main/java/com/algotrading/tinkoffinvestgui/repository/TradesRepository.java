@@ -2,6 +2,7 @@ package com.algotrading.tinkoffinvestgui.repository;
 
 import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
 import com.algotrading.tinkoffinvestgui.model.Trade;
+import com.algotrading.tinkoffinvestgui.metrics.JdbcMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,7 +20,7 @@ public class TradesRepository {
         String dbUrl = ConnectorConfig.getPropertyValue("db.url");
         String dbUser = ConnectorConfig.getPropertyValue("db.username");
         String dbPassword = ConnectorConfig.getPropertyValue("db.password");
-        return DriverManager.getConnection(dbUrl, dbUser, dbPassword);
+        return JdbcMetrics.wrap(DriverManager.getConnection(dbUrl, dbUser, dbPassword));
     }
 
     /**
@@ -156,6 +157,135 @@ public class TradesRepository {
         return trades;
     }
 
+    /**
+     * Страница истории сделок с since, от новых к старым (keyset по trade_date, id).
+     *
+     * @param after последняя сделка предыдущей страницы (null — первая страница)
+     */
+    public List<Trade> findPage(Instant since, Trade after, int limit) {
+        String sql = after == null
+                ? """
+                SELECT * FROM public.trades
+                WHERE trade_date >= ?
+                ORDER BY trade_date DESC, id DESC
+                LIMIT ?
+                """
+                : """
+                SELECT * FROM public.trades
+                WHERE trade_date >= ?
+                  AND (trade_date, id) < (?, ?)
+                ORDER BY trade_date DESC, id DESC
+                LIMIT ?
+                """;
+
+        List<Trade> trades = new ArrayList<>();
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            int index = 1;
+            pstmt.setTimestamp(index++, Timestamp.from(since));
+            if (after != null) {
+                pstmt.setTimestamp(index++, Timestamp.from(after.getTradeDate()));
+                pstmt.setInt(index++, after.getId());
+            }
+            pstmt.setInt(index, limit);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    trades.add(mapResultSetToTrade(rs));
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Ошибка получения страницы истории сделок", e);
+            throw new RuntimeException("Ошибка БД при получении истории сделок: " + e.getMessage(), e);
+        }
+        return trades;
+    }
+
+    /**
+     * Сделки, добавленные после сделки с id afterId, в порядке добавления (для инкрементального P&L)
+     */
+    public List<Trade> findAfterId(long afterId, int limit) {
+        String sql = """
+                SELECT * FROM public.trades
+                WHERE id > ?
+                ORDER BY id
+                LIMIT ?
+                """;
+
+        List<Trade> trades = new ArrayList<>();
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setLong(1, afterId);
+            pstmt.setInt(2, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    trades.add(mapResultSetToTrade(rs));
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Ошибка получения сделок после id {}", afterId, e);
+            throw new RuntimeException("Ошибка БД при получении новых сделок: " + e.getMessage(), e);
+        }
+        return trades;
+    }
+
+    /**
+     * Максимальный id сделки (0 — сделок нет); растёт только при вставке новой сделки
+     */
+    public long findMaxId() {
+        String sql = "SELECT COALESCE(MAX(id), 0) FROM public.trades";
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (SQLException e) {
+            log.error("Ошибка получения последнего id сделки", e);
+            throw new RuntimeException("Ошибка БД при получении последнего id сделки: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Итоги по сделкам с since — считаются в БД, без загрузки строк
+     */
+    public TradeStatistics getStatistics(Instant since) {
+        String sql = """
+                SELECT
+                    COUNT(*) as total,
+                    COUNT(*) FILTER (WHERE direction = 'BUY') as buy_count,
+                    COUNT(*) FILTER (WHERE direction = 'SELL') as sell_count,
+                    COALESCE(SUM(trade_amount) FILTER (WHERE direction = 'BUY'), 0) as total_bought,
+                    COALESCE(SUM(trade_amount) FILTER (WHERE direction = 'SELL'), 0) as total_sold,
+                    COALESCE(SUM(commission), 0) as total_commission,
+                    COALESCE(SUM(aci), 0) as total_aci
+                FROM public.trades
+                WHERE trade_date >= ?
+                """;
+
+        TradeStatistics stats = new TradeStatistics();
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setTimestamp(1, Timestamp.from(since));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    stats.total = rs.getInt("total");
+                    stats.buyCount = rs.getInt("buy_count");
+                    stats.sellCount = rs.getInt("sell_count");
+                    stats.totalBought = rs.getBigDecimal("total_bought");
+                    stats.totalSold = rs.getBigDecimal("total_sold");
+                    stats.totalCommission = rs.getBigDecimal("total_commission");
+                    stats.totalAci = rs.getBigDecimal("total_aci");
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Ошибка получения статистики сделок с {}", since, e);
+            throw new RuntimeException("Ошибка БД при получении статистики сделок: " + e.getMessage(), e);
+        }
+        return stats;
+    }
+
     /**
      * Сделки по конкретному FIGI
      */
@@ -221,4 +351,22 @@ public class TradesRepository {
 
         return trade;
     }
+
+    public static class TradeStatistics {
+        public int total;
+        public int buyCount;
+        public int sellCount;
+        public BigDecimal totalBought = BigDecimal.ZERO;
+        public BigDecimal totalSold = BigDecimal.ZERO;
+        public BigDecimal totalCommission = BigDecimal.ZERO;
+        public BigDecimal totalAci = BigDecimal.ZERO;
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "Всего: %d | BUY: %d | SELL: %d | Куплено: %.2f ₽ | Продано: %.2f ₽ | Комиссия: %.2f ₽ | НКД: %.2f ₽",
+                    total, buyCount, sellCount, totalBought, totalSold, totalCommission, totalAci
+            );
+        }
+    }
 }
@@ -1,15 +1,21 @@
 package com.algotrading.tinkoffinvestgui.service;
 
+import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
 import com.algotrading.tinkoffinvestgui.repository.ParametersRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Сервис для работы с Account ID из базы данных
  */
 public class AccountService {
     private static final Logger log = LoggerFactory.getLogger(AccountService.class);
-    private static final String ACCOUNT_PARAMETER = "account1";
+    private static final String ACCOUNT_PARAMETER_PREFIX = "account";
+    private static final String ACCOUNT_PARAMETER = ACCOUNT_PARAMETER_PREFIX + "1";
+    private static final int MAX_ACCOUNTS = 20;
 
     /**
      * Получает активный account ID из БД
@@ -42,6 +48,53 @@ public class AccountService {
         }
     }
 
+    /**
+     * Все счета для торговли: параметры account1, account2, … подряд до первого отсутствующего.
+     * Первый в списке — активный счёт ({@link #getActiveAccountId()}).
+     * @return Account ID в порядке номеров параметров
+     * @throws RuntimeException если не настроен ни один счёт
+     */
+    public static List<String> getAccountIds() {
+        String first = getActiveAccountId();
+        List<String> accountIds = new ArrayList<>();
+        accountIds.add(first.trim());
+
+        ParametersRepository repository = new ParametersRepository();
+        for (int number = 2; number <= MAX_ACCOUNTS; number++) {
+            String accountId;
+            try {
+                accountId = repository.getParameterValue(ACCOUNT_PARAMETER_PREFIX + number);
+            } catch (Exception e) {
+                log.error("❌ Ошибка чтения параметра {}{}", ACCOUNT_PARAMETER_PREFIX, number, e);
+                break;
+            }
+            if (accountId == null || accountId.trim().isEmpty()) {
+                break;
+            }
+            if (!accountIds.contains(accountId.trim())) {
+                accountIds.add(accountId.trim());
+            }
+        }
+        log.info("✅ Счета для торговли: {}", accountIds);
+        return accountIds;
+    }
+
+    /**
+     * Счета, на которые выставляются заявки по списку инструментов.
+     * Инструменты и buy_quantity общие, поэтому по умолчанию — только активный счёт (account1):
+     * отправка на каждый счёт умножила бы позицию на число счетов. Все счета из
+     * {@link #getAccountIds()} — только при orders.multi_account=true в invest.properties.
+     * @return Account ID для отправки заявок
+     * @throws RuntimeException если account ID не настроен
+     */
+    public static List<String> getOrderAccountIds() {
+        String multiAccount = ConnectorConfig.getPropertyValue("orders.multi_account");
+        if (multiAccount != null && Boolean.parseBoolean(multiAccount.trim())) {
+            return getAccountIds();
+        }
+        return List.of(getActiveAccountId().trim());
+    }
+
     /**
      * Проверяет, настроен ли account ID в БД
      * @return true если настроен, false если нет
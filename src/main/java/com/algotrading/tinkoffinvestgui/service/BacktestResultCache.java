@@ -0,0 +1,190 @@
+package com.algotrading.tinkoffinvestgui.service;
+
+import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Дисковый кэш результатов бэктеста по облигациям.
+ *
+ * Ключ — (FIGI, параметры стратегии + период) → файл, внутри которого лежит отпечаток
+ * свечей, по которым считались сделки. Если свечи изменились (новые данные в текущем
+ * периоде), отпечаток не совпадёт и облигация будет пересчитана, а файл перезаписан.
+ * Хранятся только сделки: сводка по облигации (тикер, Dlong, объём) собирается заново,
+ * чтобы не устаревать вместе с кэшем.
+ *
+ * Папка: backtest.cache.dir из invest.properties, иначе ~/.tinkoff-invest-gui/backtest-cache.
+ * backtest.cache.enabled=false отключает кэш.
+ */
+public class BacktestResultCache {
+
+    private static final Logger log = LoggerFactory.getLogger(BacktestResultCache.class);
+
+    private static final int MAGIC = 0x42544352; // "BTCR"
+    private static final int VERSION = 1;
+    private static final String FILE_EXTENSION = ".bt";
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private final Path directory;
+    private final boolean enabled;
+
+    public BacktestResultCache() {
+        this.directory = resolveDirectory();
+        String enabledValue = ConnectorConfig.getPropertyValue("backtest.cache.enabled");
+        this.enabled = enabledValue == null || !"false".equalsIgnoreCase(enabledValue.trim());
+    }
+
+    /**
+     * Отпечаток свечей (SHA-256 по всем колонкам)
+     */
+    public static String fingerprint(CandlesColumnarFormat.RowGroup candles) {
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocate(6 * Long.BYTES);
+        for (int i = 0; i < candles.size(); i++) {
+            buffer.clear();
+            buffer.putLong(candles.times[i])
+                    .putDouble(candles.open[i])
+                    .putDouble(candles.high[i])
+                    .putDouble(candles.low[i])
+                    .putDouble(candles.close[i])
+                    .putLong(candles.volume[i]);
+            digest.update(buffer.array(), 0, buffer.position());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Сделки из кэша или null, если записи нет, параметры или данные не совпали
+     */
+    public List<BondStrategyBacktestService.Trade> get(String figi, String paramsKey, String dataFingerprint) {
+        if (!enabled) {
+            return null;
+        }
+        Path file = fileFor(figi, paramsKey);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || !paramsKey.equals(in.readUTF()) || !dataFingerprint.equals(in.readUTF())) {
+                return null;
+            }
+            int count = in.readInt();
+            List<BondStrategyBacktestService.Trade> trades = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                trades.add(readTrade(in));
+            }
+            return trades;
+        } catch (IOException e) {
+            log.warn("⚠️ Повреждённая запись кэша бэктеста {}: {}", file.getFileName(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Сохранить сделки (ошибки записи не прерывают бэктест)
+     */
+    public void put(String figi, String paramsKey, String dataFingerprint,
+                    List<BondStrategyBacktestService.Trade> trades) {
+        if (!enabled) {
+            return;
+        }
+        Path file = fileFor(figi, paramsKey);
+        Path tmp = null;
+        try {
+            Files.createDirectories(directory);
+            tmp = Files.createTempFile(directory, figi, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(paramsKey);
+                out.writeUTF(dataFingerprint);
+                out.writeInt(trades.size());
+                for (BondStrategyBacktestService.Trade trade : trades) {
+                    writeTrade(out, trade);
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("⚠️ Не удалось сохранить кэш бэктеста {}: {}", figi, e.getMessage());
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignored) {
+                    // временный файл удалится при следующей очистке папки
+                }
+            }
+        }
+    }
+
+    private Path fileFor(String figi, String paramsKey) {
+        byte[] hash = sha256().digest(paramsKey.getBytes(StandardCharsets.UTF_8));
+        return directory.resolve(figi + "_" + HexFormat.of().formatHex(hash, 0, 8) + FILE_EXTENSION);
+    }
+
+    private static void writeTrade(DataOutputStream out, BondStrategyBacktestService.Trade trade) throws IOException {
+        out.writeLong(trade.getBuyDate().toEpochDay());
+        out.writeDouble(trade.getBuyPrice());
+        out.writeDouble(trade.getVolatility());
+        out.writeDouble(trade.getBuyCommission());
+        out.writeDouble(trade.getTargetSellPrice());
+        out.writeLong(trade.getSellDate() != null ? trade.getSellDate().toEpochDay() : NO_DATE);
+        out.writeDouble(trade.getSellPrice());
+        out.writeDouble(trade.getSellCommission());
+        out.writeInt(trade.getHoldingDays());
+        out.writeDouble(trade.getProfitBeforeCommission());
+        out.writeDouble(trade.getProfit());
+        out.writeDouble(trade.getProfitPercent());
+    }
+
+    private static BondStrategyBacktestService.Trade readTrade(DataInputStream in) throws IOException {
+        BondStrategyBacktestService.Trade trade = new BondStrategyBacktestService.Trade();
+        trade.setBuyDate(LocalDate.ofEpochDay(in.readLong()));
+        trade.setBuyPrice(in.readDouble());
+        trade.setVolatility(in.readDouble());
+        trade.setBuyCommission(in.readDouble());
+        trade.setTargetSellPrice(in.readDouble());
+        long sellDay = in.readLong();
+        trade.setSellDate(sellDay != NO_DATE ? LocalDate.ofEpochDay(sellDay) : null);
+        trade.setSellPrice(in.readDouble());
+        trade.setSellCommission(in.readDouble());
+        trade.setHoldingDays(in.readInt());
+        trade.setProfitBeforeCommission(in.readDouble());
+        trade.setProfit(in.readDouble());
+        trade.setProfitPercent(in.readDouble());
+        return trade;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    private static Path resolveDirectory() {
+        String configured = ConnectorConfig.getPropertyValue("backtest.cache.dir");
+        return configured != null && !configured.trim().isEmpty()
+                ? Paths.get(configured.trim())
+                : Paths.get(System.getProperty("user.home"), ".tinkoff-invest-gui", "backtest-cache");
+    }
+}
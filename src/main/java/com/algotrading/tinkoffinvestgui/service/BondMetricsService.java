@@ -0,0 +1,237 @@
+package com.algotrading.tinkoffinvestgui.service;
+
+import com.algotrading.tinkoffinvestgui.api.CandlesApiService;
+import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
+import com.algotrading.tinkoffinvestgui.metrics.MetricsRegistry;
+import com.algotrading.tinkoffinvestgui.model.BondMetrics;
+import com.algotrading.tinkoffinvestgui.repository.BondMetricsRepository;
+import com.algotrading.tinkoffinvestgui.util.ArrayStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.tinkoff.piapi.contract.v1.Bond;
+import ru.tinkoff.piapi.contract.v1.CandleInterval;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Ночной снимок метрик облигаций (public.bond_metrics).
+ *
+ * Раз в сутки (bond.metrics.time в invest.properties, по умолчанию 01:30) для всего
+ * справочника загружаются дневные свечи за самое длинное окно, и по ним одним проходом
+ * считаются метрики для окон 1/3/4/6 мес. Анализ облигаций и фильтр объёма в бэктесте
+ * читают последний снимок одним запросом вместо загрузки свечей по каждой облигации.
+ * Если при старте снимка за сегодня нет — он строится сразу в фоне.
+ * bond.metrics.enabled=false отключает задачу (чтение готовых снимков остаётся).
+ */
+public class BondMetricsService {
+    private static final Logger log = LoggerFactory.getLogger(BondMetricsService.class);
+    private static final BondMetricsService INSTANCE = new BondMetricsService();
+
+    /** Окна снимка, мес. */
+    public static final int[] WINDOWS = {1, 3, 4, 6};
+
+    private static final LocalTime DEFAULT_RUN_TIME = LocalTime.of(1, 30);
+
+    private final BondMetricsRepository repository = new BondMetricsRepository();
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private ScheduledExecutorService scheduler;
+
+    private BondMetricsService() {
+    }
+
+    public static BondMetricsService getInstance() {
+        return INSTANCE;
+    }
+
+    public static boolean isWindowSupported(int windowMonths) {
+        for (int window : WINDOWS) {
+            if (window == windowMonths) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Запуск ночной задачи
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        if ("false".equalsIgnoreCase(ConnectorConfig.getPropertyValue("bond.metrics.enabled"))) {
+            log.info("Снимок метрик облигаций отключён (bond.metrics.enabled=false)");
+            return;
+        }
+
+        LocalTime runTime = resolveRunTime();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "bond-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime nextRun = now.toLocalDate().atTime(runTime);
+        if (!nextRun.isAfter(now)) {
+            nextRun = nextRun.plusDays(1);
+        }
+        long initialDelay = Duration.between(now, nextRun).getSeconds();
+        scheduler.scheduleAtFixedRate(this::runScheduled, initialDelay, TimeUnit.DAYS.toSeconds(1), TimeUnit.SECONDS);
+        log.info("Снимок метрик облигаций запланирован на {} (через {} сек)", runTime, initialDelay);
+
+        // Пропущенный снимок (приложение не работало ночью) — строим сразу
+        scheduler.execute(() -> {
+            try {
+                LocalDate latest = repository.findLatestSnapshotDate();
+                if (latest == null || latest.isBefore(LocalDate.now())) {
+                    log.info("📊 Снимка метрик за сегодня нет (последний: {}), строим", latest);
+                    runScheduled();
+                }
+            } catch (Exception e) {
+                log.warn("⚠️ Не удалось проверить снимок метрик облигаций: {}", e.getMessage());
+            }
+        });
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private void runScheduled() {
+        try {
+            MetricsRegistry.getInstance()
+                    .timer(MetricsRegistry.SCHEDULER_TICK, "task", "bond_metrics")
+                    .record(() -> {
+                        buildSnapshot();
+                    });
+        } catch (Exception e) {
+            log.error("❌ Ошибка построения снимка метрик облигаций", e);
+        }
+    }
+
+    /**
+     * Построить и сохранить снимок за сегодня по всему справочнику
+     *
+     * @return число строк снимка (облигация × окно); -1, если снимок уже строится
+     */
+    public int buildSnapshot() {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("⚠️ Снимок метрик облигаций уже строится");
+            return -1;
+        }
+        try {
+            long started = System.currentTimeMillis();
+            LocalDate today = LocalDate.now();
+            // Сегодняшняя дневная свеча ещё не закрыта — окно как у фильтра объёма в бэктесте
+            LocalDate endDate = today.minusDays(1);
+            int maxWindow = WINDOWS[WINDOWS.length - 1];
+
+            List<Bond> bonds = BondUniverseService.getInstance().getScreener().getBonds();
+            IntradayCandleStore candleStore = new IntradayCandleStore(new CandlesApiService(
+                    ConnectorConfig.getApiToken(),
+                    ConnectorConfig.API_URL,
+                    ConnectorConfig.API_PORT
+            ));
+            log.info("📊 Снимок метрик облигаций за {}: {} облигаций, окна {} мес.", today, bonds.size(),
+                    Arrays.toString(WINDOWS));
+
+            List<BondMetrics> snapshot = new ArrayList<>();
+            int processed = 0;
+            int failed = 0;
+            for (Bond bond : bonds) {
+                processed++;
+                if (processed % 100 == 0) {
+                    log.info("⏳ Метрики: {}/{} облигаций", processed, bonds.size());
+                }
+                try {
+                    CandlesColumnarFormat.RowGroup candles = candleStore.load(
+                            bond.getFigi(), endDate.minusMonths(maxWindow), endDate, CandleInterval.CANDLE_INTERVAL_DAY);
+                    snapshot.addAll(computeWindows(candles, endDate));
+                } catch (Exception e) {
+                    failed++;
+                    log.debug("Нет свечей для {}: {}", bond.getTicker(), e.getMessage());
+                }
+            }
+
+            repository.replaceSnapshot(today, snapshot);
+            log.info("✅ Снимок метрик облигаций построен за {} сек: {} строк, ошибок загрузки {}",
+                    (System.currentTimeMillis() - started) / 1000, snapshot.size(), failed);
+            return snapshot.size();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Метрики по всем окнам из свечей самого длинного окна (свечи упорядочены по времени);
+     * окно — [endDate - N мес., endDate)
+     */
+    static List<BondMetrics> computeWindows(CandlesColumnarFormat.RowGroup candles, LocalDate endDate) {
+        List<BondMetrics> result = new ArrayList<>(WINDOWS.length);
+        for (int window : WINDOWS) {
+            long windowStart = endDate.minusMonths(window).atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+            int from = 0;
+            while (from < candles.size() && candles.times[from] < windowStart) {
+                from++;
+            }
+            if (from < candles.size()) {
+                result.add(compute(candles.figi, window, candles, from));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Метрики по свечам [from, size) группы (как в анализе облигаций: σ цен закрытия,
+     * средний объём, наклон линейной регрессии по номеру свечи)
+     */
+    public static BondMetrics compute(String figi, int windowMonths, CandlesColumnarFormat.RowGroup candles, int from) {
+        int to = candles.size();
+        double[] close = candles.close;
+        ArrayStats.Summary summary = ArrayStats.summarize(close, from, to);
+
+        BondMetrics metrics = new BondMetrics();
+        metrics.setFigi(figi);
+        metrics.setWindowMonths(windowMonths);
+        metrics.setCandlesCount(summary.getCount());
+        metrics.setVolatility(summary.getStdDev());
+        metrics.setAvgDailyVolume(ArrayStats.mean(candles.volume, from, to));
+        metrics.setAvgPrice(summary.getMean());
+        metrics.setFirstClose(close[from]);
+        metrics.setLastClose(close[to - 1]);
+        metrics.setMinPrice(summary.getMin());
+        metrics.setMaxPrice(summary.getMax());
+        // Одна свеча — наклон не определён; slope возвращает 0, а не NaN
+        metrics.setTrend(ArrayStats.slope(close, from, to));
+        return metrics;
+    }
+
+    private static LocalTime resolveRunTime() {
+        String value = ConnectorConfig.getPropertyValue("bond.metrics.time");
+        if (value == null || value.trim().isEmpty()) {
+            return DEFAULT_RUN_TIME;
+        }
+        try {
+            return LocalTime.parse(value.trim());
+        } catch (DateTimeParseException e) {
+            log.warn("⚠️ Некорректное значение bond.metrics.time={}, используется {}", value, DEFAULT_RUN_TIME);
+            return DEFAULT_RUN_TIME;
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
 import com.algotrading.tinkoffinvestgui.entity.Instrument;
 import com.algotrading.tinkoffinvestgui.repository.ParametersRepository;
 import com.algotrading.tinkoffinvestgui.service.DailyDataPreparationService.PriceCalculationResult;
+import com.algotrading.tinkoffinvestgui.util.ArrayStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ru.tinkoff.piapi.contract.v1.CandleInterval;
@@ -96,19 +97,24 @@ public class BondPriceCalculator {
                 return PriceCalculationResult.failure("Нет исторических данных");
             }
 
-            // ✅ Теперь lastCandle = свеча вчерашнего дня (полностью закрытая)
-            HistoricCandle lastCandle = candles.get(candles.size() - 1);
-            double lastPrice = quotationToDouble(lastCandle.getClose());
+            // Цены закрытия — один раз в массив, дальше окна считаются по нему
+            double[] closes = new double[candles.size()];
+            for (int i = 0; i < closes.length; i++) {
+                closes[i] = quotationToDouble(candles.get(i).getClose());
+            }
+
+            // ✅ Теперь последняя цена = свеча вчерашнего дня (полностью закрытая)
+            double lastPrice = closes[closes.length - 1];
 
             if (lastPrice <= 0) {
                 return PriceCalculationResult.failure("Некорректная последняя цена");
             }
 
             // ✅ НОВОЕ: Расчёт волатильности на длинном окне (30 дней)
-            double longTermVolatility = calculateVolatility(candles);
+            double longTermVolatility = calculateVolatility(closes, 0, closes.length);
 
             // ✅ НОВОЕ: Динамический множитель волатильности
-            double dynamicMultiplier = getDynamicMultiplier(candles, longTermVolatility);
+            double dynamicMultiplier = getDynamicMultiplier(closes, longTermVolatility);
 
             // ✅ ИЗМЕНЕНО: Используем динамический множитель вместо статического
             double buyPriceRaw = lastPrice - (dynamicMultiplier * longTermVolatility);
@@ -146,22 +152,19 @@ public class BondPriceCalculator {
      * ✅ НОВЫЙ МЕТОД: Рассчитывает динамический множитель волатильности
      * на основе соотношения текущей (7 дней) и исторической (30 дней) волатильности
      *
-     * @param candles Все свечи (30 дней)
+     * @param closes Цены закрытия всех свечей (30 дней)
      * @param longTermVolatility Волатильность за 30 дней
      * @return Динамический множитель (от 1.5 до 3.0)
      */
-    private double getDynamicMultiplier(List<HistoricCandle> candles, double longTermVolatility) {
-        if (candles.size() < SHORT_PERIOD_DAYS) {
+    private double getDynamicMultiplier(double[] closes, double longTermVolatility) {
+        if (closes.length < SHORT_PERIOD_DAYS) {
             log.debug("Недостаточно данных для динамического множителя, используем базовый: {}",
                     volatilityMultiplier);
             return volatilityMultiplier;
         }
 
-        List<HistoricCandle> shortWindow = candles.subList(
-                Math.max(0, candles.size() - SHORT_PERIOD_DAYS),
-                candles.size()
-        );
-        double shortTermVolatility = calculateVolatility(shortWindow);
+        double shortTermVolatility = calculateVolatility(
+                closes, Math.max(0, closes.length - SHORT_PERIOD_DAYS), closes.length);
 
         if (longTermVolatility == 0) {
             log.warn("Нулевая долгосрочная волатильность, используем базовый множитель");
@@ -194,27 +197,11 @@ public class BondPriceCalculator {
     /**
      * Рассчитывает волатильность (стандартное отклонение)
      */
-    private double calculateVolatility(List<HistoricCandle> candles) {
-        if (candles.size() < 2) {
+    private double calculateVolatility(double[] closes, int from, int to) {
+        if (to - from < 2) {
             return 0.0;
         }
-
-        // Средняя цена
-        double sum = 0.0;
-        for (HistoricCandle candle : candles) {
-            sum += quotationToDouble(candle.getClose());
-        }
-        double mean = sum / candles.size();
-
-        // Стандартное отклонение
-        double varianceSum = 0.0;
-        for (HistoricCandle candle : candles) {
-            double price = quotationToDouble(candle.getClose());
-            varianceSum += Math.pow(price - mean, 2);
-        }
-
-        double variance = varianceSum / candles.size();
-        return Math.sqrt(variance);
+        return ArrayStats.stdDev(closes, from, to);
     }
 
     /**
@@ -0,0 +1,195 @@
+package com.algotrading.tinkoffinvestgui.service;
+
+import ru.tinkoff.piapi.contract.v1.Bond;
+import ru.tinkoff.piapi.contract.v1.RiskLevel;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Индекс справочника облигаций для фильтрации по {@link BondsAnalysisService.BondsFilterCriteria}.
+ *
+ * Облигации нумеруются по порядку во вселенной; по каждому признаку хранится битовая
+ * маска (валюта номинала, уровень риска, амортизация, плавающий купон, Dlong > 0),
+ * даты погашения — отсортированным массивом с перестановкой. Любая комбинация критериев
+ * сводится к диапазону по дате погашения и AND/ANDNOT масок — без перебора облигаций,
+ * поэтому счётчик совпадений можно пересчитывать на каждое изменение фильтра в диалоге.
+ *
+ * Экземпляр неизменяем; при обновлении справочника строится новый.
+ */
+public class BondScreener {
+
+    private static final long SECONDS_PER_DAY = 86_400;
+
+    private final List<Bond> bonds;
+    private final Map<String, BitSet> byNominalCurrency = new HashMap<>();
+    private final Map<RiskLevel, BitSet> byRiskLevel = new EnumMap<>(RiskLevel.class);
+    private final BitSet amortization = new BitSet();
+    private final BitSet floatingCoupon = new BitSet();
+    private final BitSet positiveDlong = new BitSet();
+
+    /** Даты погашения (epoch day) по возрастанию и номера облигаций в том же порядке */
+    private final long[] maturityDays;
+    private final int[] maturityOrder;
+
+    public BondScreener(List<Bond> bonds) {
+        this.bonds = List.copyOf(bonds);
+
+        int withMaturity = 0;
+        long[] days = new long[this.bonds.size()];
+        Integer[] order = new Integer[this.bonds.size()];
+        for (int i = 0; i < this.bonds.size(); i++) {
+            Bond bond = this.bonds.get(i);
+
+            String currency = bond.getNominal() != null ? bond.getNominal().getCurrency() : "";
+            byNominalCurrency.computeIfAbsent(currency.toUpperCase(Locale.ROOT), k -> new BitSet()).set(i);
+            byRiskLevel.computeIfAbsent(bond.getRiskLevel(), k -> new BitSet()).set(i);
+            if (bond.getAmortizationFlag()) {
+                amortization.set(i);
+            }
+            if (bond.getFloatingCouponFlag()) {
+                floatingCoupon.set(i);
+            }
+            if (bond.hasDlong() && bond.getDlong().getUnits() + bond.getDlong().getNano() / 1e9 > 0) {
+                positiveDlong.set(i);
+            }
+            if (bond.hasMaturityDate()) {
+                days[i] = Math.floorDiv(bond.getMaturityDate().getSeconds(), SECONDS_PER_DAY);
+                order[withMaturity++] = i;
+            }
+        }
+
+        // Облигации без даты погашения в индекс не попадают — фильтр по сроку их всегда отбрасывает
+        Integer[] sorted = Arrays.copyOf(order, withMaturity);
+        Arrays.sort(sorted, (a, b) -> Long.compare(days[a], days[b]));
+        this.maturityOrder = new int[withMaturity];
+        this.maturityDays = new long[withMaturity];
+        for (int k = 0; k < withMaturity; k++) {
+            maturityOrder[k] = sorted[k];
+            maturityDays[k] = days[sorted[k]];
+        }
+    }
+
+    public int size() {
+        return bonds.size();
+    }
+
+    public List<Bond> getBonds() {
+        return bonds;
+    }
+
+    /**
+     * Число облигаций, прошедших фильтр
+     */
+    public int count(BondsAnalysisService.BondsFilterCriteria criteria) {
+        return match(criteria, LocalDate.now(), null).cardinality();
+    }
+
+    /**
+     * Облигации, прошедшие фильтр, в порядке вселенной
+     */
+    public List<Bond> select(BondsAnalysisService.BondsFilterCriteria criteria) {
+        return select(criteria, null);
+    }
+
+    /**
+     * То же с подсчётом отброшенных на каждом шаге (для лога):
+     * rejected[0] — валюта, [1] — амортизация, [2] — срок погашения, [3] — Dlong, [4] — риск, [5] — плавающий купон.
+     */
+    public List<Bond> select(BondsAnalysisService.BondsFilterCriteria criteria, int[] rejected) {
+        BitSet matched = match(criteria, LocalDate.now(), rejected);
+        List<Bond> result = new ArrayList<>(matched.cardinality());
+        for (int i = matched.nextSetBit(0); i >= 0; i = matched.nextSetBit(i + 1)) {
+            result.add(bonds.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Маска облигаций, прошедших фильтр. Шаги идут в порядке прежней построчной фильтрации,
+     * чтобы статистика отброшенных совпадала.
+     */
+    BitSet match(BondsAnalysisService.BondsFilterCriteria criteria, LocalDate today, int[] rejected) {
+        BitSet result = new BitSet(bonds.size());
+        result.set(0, bonds.size());
+        int before = result.cardinality();
+
+        String currency = criteria.getNominalCurrency();
+        if (currency != null && !currency.isEmpty()) {
+            result.and(byNominalCurrency.getOrDefault(currency.toUpperCase(Locale.ROOT), new BitSet()));
+        }
+        before = record(rejected, 0, before, result);
+
+        if (criteria.isWithoutAmortization()) {
+            result.andNot(amortization);
+        }
+        before = record(rejected, 1, before, result);
+
+        result.and(maturityRange(today.plusDays(criteria.getMinDaysToMaturity()),
+                today.plusMonths(criteria.getMaxMonthsToMaturity())));
+        before = record(rejected, 2, before, result);
+
+        if (criteria.isRequireDlong()) {
+            result.and(positiveDlong);
+        }
+        before = record(rejected, 3, before, result);
+
+        if (criteria.isExcludeHighRisk()) {
+            BitSet highRisk = byRiskLevel.get(RiskLevel.RISK_LEVEL_HIGH);
+            if (highRisk != null) {
+                result.andNot(highRisk);
+            }
+        }
+        before = record(rejected, 4, before, result);
+
+        if (criteria.isExcludeFloatingCoupon()) {
+            result.andNot(floatingCoupon);
+        }
+        record(rejected, 5, before, result);
+
+        return result;
+    }
+
+    /**
+     * Облигации с датой погашения в [from, to] — два бинарных поиска и проход по диапазону
+     */
+    private BitSet maturityRange(LocalDate from, LocalDate to) {
+        BitSet range = new BitSet(bonds.size());
+        int start = lowerBound(maturityDays, from.toEpochDay());
+        int end = lowerBound(maturityDays, to.toEpochDay() + 1);
+        for (int k = start; k < end; k++) {
+            range.set(maturityOrder[k]);
+        }
+        return range;
+    }
+
+    private static int lowerBound(long[] values, long key) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int record(int[] rejected, int step, int before, BitSet result) {
+        if (rejected == null) {
+            return before;
+        }
+        int after = result.cardinality();
+        rejected[step] += before - after;
+        return after;
+    }
+}
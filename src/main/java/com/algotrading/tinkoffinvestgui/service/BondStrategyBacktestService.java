@@ -2,21 +2,32 @@ package com.algotrading.tinkoffinvestgui.service;
 
 import com.algotrading.tinkoffinvestgui.api.CandlesApiService;
 import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
+import com.algotrading.tinkoffinvestgui.entity.Instrument;
+import com.algotrading.tinkoffinvestgui.model.BondMetrics;
+import com.algotrading.tinkoffinvestgui.model.CouponSchedule;
+import com.algotrading.tinkoffinvestgui.repository.BondMetricsRepository;
 import com.algotrading.tinkoffinvestgui.repository.BondsRepository;
+import com.algotrading.tinkoffinvestgui.repository.InstrumentsRepository;
 import com.algotrading.tinkoffinvestgui.repository.ParametersRepository;
+import com.algotrading.tinkoffinvestgui.util.ArrayStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ru.tinkoff.piapi.contract.v1.CandleInterval;
-import ru.tinkoff.piapi.contract.v1.HistoricCandle;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.time.LocalDate;
+import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * Сервис для бэктестинга стратегии "ловец дна"
@@ -24,6 +35,8 @@ import java.util.stream.Collectors;
  * ✅ Использует ту же логику что и BondStrategyCalculator
  * ✅ С фильтрацией по среднедневному объёму торгов
  * ✅ С выводом Dlong и прибыли без комиссии в отчёт
+ * ✅ Дневные свечи закрытых периодов — из локального хранилища, сделки — из кэша
+ *    результатов, если не изменились ни параметры, ни данные облигации
  */
 public class BondStrategyBacktestService {
 
@@ -32,10 +45,12 @@ public class BondStrategyBacktestService {
     private final CandlesApiService candlesApiService;
     private final BondsRepository bondsRepository;
     private final ParametersRepository parametersRepository;
+    private final IntradayCandleStore candleStore;
 
     // ✅ Параметры стратегии (те же что в BondStrategyCalculator)
     private static final double VOLATILITY_MULTIPLIER = 1.2; // k для расчёта цены покупки
     private static final double PROFIT_MARGIN = 0.008; // 0.8% прибыли при продаже
+    private static final double DEFAULT_NOMINAL = 1000.0;
 
     public BondStrategyBacktestService(CandlesApiService candlesApiService,
                                        BondsRepository bondsRepository,
@@ -43,6 +58,7 @@ public class BondStrategyBacktestService {
         this.candlesApiService = candlesApiService;
         this.bondsRepository = bondsRepository;
         this.parametersRepository = parametersRepository;
+        this.candleStore = new IntradayCandleStore(candlesApiService);
     }
 
     /**
@@ -76,9 +92,14 @@ public class BondStrategyBacktestService {
                     filters.minAvgDailyVolume, beforeVolumeFilter, bonds.size());
         }
 
-        // Для каждой облигации запустить бэктест
+        // Для каждой облигации запустить бэктест (или взять сделки из кэша)
+        BacktestResultCache cache = new BacktestResultCache();
+        String paramsKey = String.format(Locale.ROOT, "daily|k=%s|margin=%s|commission=%s|months=%d|%s|%s",
+                VOLATILITY_MULTIPLIER, PROFIT_MARGIN, brokerCommission, analysisPeriodMonths, startDate, endDate);
+        LocalDate dataStart = startDate.minusMonths(analysisPeriodMonths);
         List<BondBacktestResult> results = new ArrayList<>();
         int processed = 0;
+        int fromCache = 0;
 
         for (BondInfo bond : bonds) {
             processed++;
@@ -88,9 +109,24 @@ public class BondStrategyBacktestService {
             }
 
             try {
-                // ✅ Передаём комиссию в бэктест
-                BondBacktestResult result = backtestBond(bond, startDate, endDate,
-                        analysisPeriodMonths, brokerCommission);
+                CandlesColumnarFormat.RowGroup candles = candleStore.load(
+                        bond.figi, dataStart, endDate, CandleInterval.CANDLE_INTERVAL_DAY);
+                // Купонный доход зависит от графика — его версия входит в отпечаток
+                CouponSchedule schedule = CouponScheduleStore.getInstance().get(bond.figi);
+                String fingerprint = BacktestResultCache.fingerprint(candles) + "|coupons="
+                        + (schedule != null ? schedule.getSyncedAt().toEpochMilli() : 0);
+
+                BondBacktestResult result;
+                List<Trade> cached = cache.get(bond.figi, paramsKey, fingerprint);
+                if (cached != null) {
+                    fromCache++;
+                    result = buildBondResult(bond, cached);
+                } else {
+                    // ✅ Передаём комиссию в бэктест
+                    result = backtestBond(bond, candles, schedule, startDate, endDate,
+                            analysisPeriodMonths, brokerCommission);
+                    cache.put(bond.figi, paramsKey, fingerprint, result.getTrades());
+                }
 
                 if (result.getTotalTrades() > 0) {
                     results.add(result);
@@ -99,7 +135,16 @@ public class BondStrategyBacktestService {
                 log.warn("⚠️ Ошибка бэктеста для {}: {}", bond.ticker, e.getMessage());
             }
         }
+        log.info("💾 Кэш бэктеста: {} из {} облигаций без пересчёта", fromCache, bonds.size());
 
+        return buildReport(startDate, endDate, analysisPeriodMonths, results);
+    }
+
+    /**
+     * Общий отчёт по результатам облигаций (агрегаты + бутстрэп сделок)
+     */
+    private BacktestReport buildReport(LocalDate startDate, LocalDate endDate, int analysisPeriodMonths,
+                                       List<BondBacktestResult> results) {
         // Сформировать общий отчёт
         BacktestReport report = new BacktestReport();
         report.setStartDate(startDate);
@@ -140,9 +185,209 @@ public class BondStrategyBacktestService {
         log.info("✅ Бэктест завершён: {} облигаций, {} сделок, винрейт {:.1f}%, общая прибыль {:.2f}₽",
                 results.size(), totalTrades, winRate, totalProfit);
 
+        // Доверительные интервалы по ресэмплам сделок
+        try {
+            report.setBootstrap(new TradeBootstrap().run(report));
+        } catch (Exception e) {
+            log.warn("⚠️ Ошибка бутстрэпа сделок: {}", e.getMessage());
+        }
+
+        return report;
+    }
+
+    /**
+     * Бэктест с внутридневным исполнением: сигналы по дневным закрытиям, заявки
+     * выставляются в executionTime (МСК), исполнение по low/high часовых или минутных свечей.
+     * Внутридневные свечи кэшируются на диске в колоночном формате и читаются потоково.
+     */
+    public BacktestReport runIntradayBacktest(LocalDate startDate, LocalDate endDate, BacktestFilters filters,
+                                              CandleInterval interval, LocalTime executionTime) throws Exception {
+        log.info("🧪 Внутридневной бэктест: {} - {}, свечи {}, выставление заявок в {}",
+                startDate, endDate, interval.name(), executionTime);
+
+        double brokerCommission = parametersRepository.getBrokerCommissionDecimal();
+        int analysisPeriodMonths = getAnalysisPeriodMonths();
+
+        List<BondInfo> bonds = loadBondsWithFilters(filters);
+        if (bonds.isEmpty()) {
+            throw new Exception("Нет облигаций для бэктестинга. Проверьте фильтры.");
+        }
+        if (filters.minAvgDailyVolume > 0) {
+            bonds = filterByAvgDailyVolume(bonds, filters.minAvgDailyVolume, analysisPeriodMonths);
+        }
+
+        IntradayBacktestSimulator simulator = new IntradayBacktestSimulator(
+                VOLATILITY_MULTIPLIER, PROFIT_MARGIN, brokerCommission, analysisPeriodMonths, executionTime);
+        BacktestResultCache cache = new BacktestResultCache();
+        String paramsKey = String.format(Locale.ROOT,
+                "intraday|%s|at=%s|k=%s|margin=%s|commission=%s|months=%d|%s|%s", interval.name(), executionTime,
+                VOLATILITY_MULTIPLIER, PROFIT_MARGIN, brokerCommission, analysisPeriodMonths, startDate, endDate);
+
+        List<BondBacktestResult> results = new ArrayList<>();
+        int processed = 0;
+        int fromCache = 0;
+        for (BondInfo bond : bonds) {
+            processed++;
+            if (processed % 10 == 0) {
+                log.info("⏳ Обработано {}/{} облигаций ({}%)", processed, bonds.size(),
+                        (processed * 100) / bonds.size());
+            }
+            try {
+                CandlesColumnarFormat.RowGroup daily = candleStore.load(bond.figi,
+                        startDate.minusMonths(analysisPeriodMonths), endDate, CandleInterval.CANDLE_INTERVAL_DAY);
+                if (daily.size() == 0) {
+                    continue;
+                }
+                Path file = candleStore.ensure(bond.figi, startDate, endDate, interval);
+                // Файл внутридневных свечей закрытого периода не меняется — в отпечаток идут имя и размер
+                String fingerprint = BacktestResultCache.fingerprint(daily) + "|" + file.getFileName()
+                        + "|" + Files.size(file);
+
+                List<Trade> trades = cache.get(bond.figi, paramsKey, fingerprint);
+                if (trades != null) {
+                    fromCache++;
+                } else {
+                    try (CandlesColumnarFormat.Reader reader = new CandlesColumnarFormat.Reader(file)) {
+                        trades = simulator.run(daily, reader, startDate, endDate);
+                    }
+                    cache.put(bond.figi, paramsKey, fingerprint, trades);
+                }
+                if (!trades.isEmpty()) {
+                    results.add(buildBondResult(bond, trades));
+                }
+            } catch (Exception e) {
+                log.warn("⚠️ Ошибка внутридневного бэктеста для {}: {}", bond.ticker, e.getMessage());
+            }
+        }
+        log.info("💾 Кэш бэктеста: {} из {} облигаций без пересчёта", fromCache, bonds.size());
+
+        return buildReport(startDate, endDate, analysisPeriodMonths, results);
+    }
+
+    /**
+     * Портфельный бэктест: все облигации на одной временной шкале с общим капиталом.
+     * Размер позиции и приоритет берутся из instruments (buy_quantity, priority).
+     */
+    public PortfolioBacktestEngine.PortfolioReport runPortfolioBacktest(
+            LocalDate startDate, LocalDate endDate, BacktestFilters filters,
+            PortfolioBacktestEngine.PortfolioSettings settings) throws Exception {
+        log.info("🧪 Портфельный бэктест: {} - {}, капитал {}₽, лотов по умолчанию {}",
+                startDate, endDate, settings.getInitialCapital(), settings.getDefaultLots());
+
+        double brokerCommission = parametersRepository.getBrokerCommissionDecimal();
+        int analysisPeriodMonths = getAnalysisPeriodMonths();
+        List<PortfolioBacktestEngine.BondSeries> series =
+                loadPortfolioSeries(startDate.minusMonths(analysisPeriodMonths), endDate, filters,
+                        analysisPeriodMonths);
+
+        PortfolioBacktestEngine engine = new PortfolioBacktestEngine(
+                VOLATILITY_MULTIPLIER, PROFIT_MARGIN, brokerCommission, analysisPeriodMonths);
+        PortfolioBacktestEngine.PortfolioReport report = engine.run(series, startDate, endDate, settings);
+        log.info("✅ Портфельный бэктест завершён: {} облигаций, {} сделок, доходность {}%, просадка {}%",
+                series.size(), report.getTrades().size(),
+                String.format("%.2f", report.getTotalReturnPercent()),
+                String.format("%.2f", report.getMaxDrawdownPercent()));
         return report;
     }
 
+    /**
+     * Walk-forward оптимизация параметров стратегии на портфельном движке.
+     * Свечи загружаются один раз на весь период (с запасом на самое длинное окно анализа).
+     */
+    public WalkForwardOptimizer.WalkForwardReport runWalkForward(
+            LocalDate startDate, LocalDate endDate, BacktestFilters filters,
+            PortfolioBacktestEngine.PortfolioSettings portfolio,
+            WalkForwardOptimizer.WalkForwardSettings settings) throws Exception {
+        log.info("🧪 Walk-forward: {} - {}, обучение {} мес., тест {} мес.",
+                startDate, endDate, settings.getTrainMonths(), settings.getTestMonths());
+
+        double brokerCommission = parametersRepository.getBrokerCommissionDecimal();
+        List<PortfolioBacktestEngine.BondSeries> series =
+                loadPortfolioSeries(startDate.minusMonths(settings.getMaxAnalysisPeriod()), endDate, filters,
+                        getAnalysisPeriodMonths());
+
+        return new WalkForwardOptimizer(brokerCommission).run(series, startDate, endDate, portfolio, settings);
+    }
+
+    /**
+     * Облигации по фильтрам → примитивные ряды дневных свечей для портфельного движка.
+     * Многолетние периоды грузятся кусками.
+     */
+    private List<PortfolioBacktestEngine.BondSeries> loadPortfolioSeries(
+            LocalDate dataStart, LocalDate endDate, BacktestFilters filters,
+            int analysisPeriodMonths) throws Exception {
+        List<BondInfo> bonds = loadBondsWithFilters(filters);
+        if (bonds.isEmpty()) {
+            throw new Exception("Нет облигаций для бэктестинга. Проверьте фильтры.");
+        }
+        if (filters.minAvgDailyVolume > 0) {
+            bonds = filterByAvgDailyVolume(bonds, filters.minAvgDailyVolume, analysisPeriodMonths);
+        }
+
+        Map<String, Instrument> instruments = loadInstrumentsByFigi();
+
+        List<PortfolioBacktestEngine.BondSeries> series = new ArrayList<>();
+        int processed = 0;
+        for (BondInfo bond : bonds) {
+            processed++;
+            if (processed % 10 == 0) {
+                log.info("⏳ Загружены свечи {}/{} облигаций", processed, bonds.size());
+            }
+            try {
+                CandlesColumnarFormat.RowGroup candles = candleStore.load(
+                        bond.figi, dataStart, endDate, CandleInterval.CANDLE_INTERVAL_DAY);
+                if (candles.size() == 0) {
+                    continue;
+                }
+                Instrument instrument = instruments.get(bond.figi);
+                int lots = instrument != null && instrument.getBuyQuantity() != null
+                        ? instrument.getBuyQuantity() : 0;
+                int priority = instrument != null && instrument.getPriority() != null
+                        ? instrument.getPriority() : Integer.MAX_VALUE;
+                series.add(new PortfolioBacktestEngine.BondSeries(bond.figi, bond.ticker, bond.name,
+                        bond.nominal, lots, priority, candles));
+            } catch (Exception e) {
+                log.warn("⚠️ Ошибка загрузки свечей для {}: {}", bond.ticker, e.getMessage());
+            }
+        }
+        return series;
+    }
+
+    /**
+     * Инструменты из instruments по FIGI (при дублях — с меньшим priority)
+     */
+    private Map<String, Instrument> loadInstrumentsByFigi() {
+        Map<String, Instrument> result = new HashMap<>();
+        try {
+            for (Instrument instrument : new InstrumentsRepository().findAll()) {
+                if (instrument.getFigi() == null) {
+                    continue;
+                }
+                result.merge(instrument.getFigi(), instrument, (a, b) ->
+                        priorityOf(a) <= priorityOf(b) ? a : b);
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ Не удалось загрузить инструменты, используем параметры по умолчанию: {}", e.getMessage());
+        }
+        return result;
+    }
+
+    private static int priorityOf(Instrument instrument) {
+        return instrument.getPriority() != null ? instrument.getPriority() : Integer.MAX_VALUE;
+    }
+
+    private static double parseNominal(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return DEFAULT_NOMINAL;
+        }
+        try {
+            double nominal = Double.parseDouble(value.trim().replace(',', '.'));
+            return nominal > 0 ? nominal : DEFAULT_NOMINAL;
+        } catch (NumberFormatException e) {
+            return DEFAULT_NOMINAL;
+        }
+    }
+
     /**
      * ✅ НОВОЕ: Фильтрация по среднедневному объёму торгов
      */
@@ -151,16 +396,33 @@ public class BondStrategyBacktestService {
         LocalDate endDate = LocalDate.now().minusDays(1);
         LocalDate startDate = endDate.minusMonths(analysisPeriodMonths);
 
+        // Объём из ночного снимка метрик одним запросом; свечи — только для облигаций вне снимка
+        Map<String, BondMetrics> snapshot = Collections.emptyMap();
+        if (BondMetricsService.isWindowSupported(analysisPeriodMonths)) {
+            try {
+                snapshot = new BondMetricsRepository().findLatest(analysisPeriodMonths, 0);
+            } catch (Exception e) {
+                log.warn("⚠️ Снимок метрик недоступен, объём считается по свечам: {}", e.getMessage());
+            }
+        }
+
+        int fromSnapshot = 0;
         for (BondInfo bond : bonds) {
+            BondMetrics metrics = snapshot.get(bond.figi);
+            if (metrics != null) {
+                fromSnapshot++;
+                if (metrics.getAvgDailyVolume() >= minVolume) {
+                    bond.avgDailyVolume = metrics.getAvgDailyVolume();
+                    filtered.add(bond);
+                }
+                continue;
+            }
             try {
-                List<HistoricCandle> candles = candlesApiService.getCandles(
+                CandlesColumnarFormat.RowGroup candles = candleStore.load(
                         bond.figi, startDate, endDate, CandleInterval.CANDLE_INTERVAL_DAY);
 
-                if (!candles.isEmpty()) {
-                    double avgVolume = candles.stream()
-                            .mapToDouble(c -> c.getVolume())
-                            .average()
-                            .orElse(0);
+                if (candles.size() > 0) {
+                    double avgVolume = ArrayStats.mean(candles.volume, 0, candles.size());
 
                     if (avgVolume >= minVolume) {
                         bond.avgDailyVolume = avgVolume;
@@ -171,54 +433,53 @@ public class BondStrategyBacktestService {
                 log.warn("⚠️ Ошибка загрузки свечей для {}: {}", bond.ticker, e.getMessage());
             }
         }
+        log.info("📊 Объём торгов: {} из {} облигаций из снимка метрик", fromSnapshot, bonds.size());
 
         return filtered;
     }
 
     /**
-     * Бэктестинг для одной облигации
+     * Бэктестинг для одной облигации по дневным свечам (с запасом на окно анализа)
      * ✅ С использованием той же логики что в BondStrategyCalculator
      */
-    private BondBacktestResult backtestBond(BondInfo bond, LocalDate startDate, LocalDate endDate,
-                                            int analysisPeriodMonths, double brokerCommission) throws Exception {
-        // Загрузить исторические данные
-        LocalDate dataStart = startDate.minusMonths(analysisPeriodMonths);
-        List<HistoricCandle> allCandles = candlesApiService.getCandles(
-                bond.figi, dataStart, endDate, CandleInterval.CANDLE_INTERVAL_DAY);
-
-        if (allCandles.isEmpty()) {
+    private BondBacktestResult backtestBond(BondInfo bond, CandlesColumnarFormat.RowGroup allCandles,
+                                            CouponSchedule schedule, LocalDate startDate, LocalDate endDate,
+                                            int analysisPeriodMonths, double brokerCommission) {
+        if (allCandles.size() == 0) {
             log.warn("⚠️ Нет данных для {}", bond.ticker);
             return createEmptyResult(bond);
         }
 
+        // Свечи упорядочены по времени — окно анализа сдвигается двумя указателями
+        long[] candleDays = new long[allCandles.size()];
+        for (int i = 0; i < candleDays.length; i++) {
+            candleDays[i] = allCandles.times[i] / 86400;
+        }
+        int windowFrom = 0;
+        int windowTo = 0;
+
         List<Trade> trades = new ArrayList<>();
         Trade currentTrade = null;
 
         // Симуляция торговли по дням
         for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
-            LocalDate finalDate = date;
-
             // Получить свечи за период анализа
-            LocalDate analysisStart = date.minusMonths(analysisPeriodMonths);
-            List<HistoricCandle> analysisPeriod = allCandles.stream()
-                    .filter(c -> {
-                        LocalDate candleDate = LocalDate.ofEpochDay(c.getTime().getSeconds() / 86400);
-                        return !candleDate.isBefore(analysisStart) && !candleDate.isAfter(finalDate);
-                    })
-                    .collect(Collectors.toList());
-
-            if (analysisPeriod.isEmpty()) {
-                continue;
+            long analysisStart = date.minusMonths(analysisPeriodMonths).toEpochDay();
+            long day = date.toEpochDay();
+            while (windowTo < candleDays.length && candleDays[windowTo] <= day) {
+                windowTo++;
+            }
+            while (windowFrom < windowTo && candleDays[windowFrom] < analysisStart) {
+                windowFrom++;
             }
 
-            // Рассчитать волатильность и цены
-            double[] prices = analysisPeriod.stream()
-                    .mapToDouble(c -> c.getClose().getUnits() + c.getClose().getNano() / 1e9)
-                    .toArray();
+            if (windowFrom == windowTo) {
+                continue;
+            }
 
-            double volatility = calculateVolatility(prices);
-            double avgPrice = calculateAverage(prices);
-            double lastPrice = prices[prices.length - 1]; // Вчерашняя цена
+            // Рассчитать волатильность и цены прямо по окну столбца, без копии
+            double volatility = ArrayStats.stdDev(allCandles.close, windowFrom, windowTo);
+            double lastPrice = allCandles.close[windowTo - 1]; // Вчерашняя цена
 
             // ✅ ЛОГИКА ИЗ BondStrategyCalculator:
             // buyPrice = lastPrice - 1.2 × volatility
@@ -259,8 +520,9 @@ public class BondStrategyBacktestService {
                     double actualSellPrice = lastPrice;
                     double actualSellCommission = actualSellPrice * brokerCommission;
 
-                    // ✅ ПРИБЫЛЬ БЕЗ КОМИССИИ
-                    double profitBeforeCommission = actualSellPrice - currentTrade.getBuyPrice();
+                    // ✅ ПРИБЫЛЬ БЕЗ КОМИССИИ (с купонами и НКД за время владения)
+                    double profitBeforeCommission = actualSellPrice - currentTrade.getBuyPrice()
+                            + couponIncomePercent(schedule, currentTrade.getBuyDate(), date);
 
                     // ✅ ЧИСТАЯ ПРИБЫЛЬ с учётом ВСЕХ комиссий
                     double totalCommissions = currentTrade.getBuyCommission() + actualSellCommission;
@@ -288,15 +550,12 @@ public class BondStrategyBacktestService {
 
         // Закрыть открытую позицию в конце периода
         if (currentTrade != null) {
-            double[] lastPrices = allCandles.stream()
-                    .mapToDouble(c -> c.getClose().getUnits() + c.getClose().getNano() / 1e9)
-                    .toArray();
-
-            double lastPrice = lastPrices[lastPrices.length - 1];
+            double lastPrice = allCandles.close[allCandles.size() - 1];
             int holdingDays = (int) (endDate.toEpochDay() - currentTrade.getBuyDate().toEpochDay());
             double actualSellCommission = lastPrice * brokerCommission;
 
-            double profitBeforeCommission = lastPrice - currentTrade.getBuyPrice();
+            double profitBeforeCommission = lastPrice - currentTrade.getBuyPrice()
+                    + couponIncomePercent(schedule, currentTrade.getBuyDate(), endDate);
             double totalCommissions = currentTrade.getBuyCommission() + actualSellCommission;
             double netProfit = profitBeforeCommission - totalCommissions;
             double profitPercent = (netProfit / currentTrade.getBuyPrice()) * 100;
@@ -314,6 +573,26 @@ public class BondStrategyBacktestService {
                     bond.ticker, lastPrice, profitBeforeCommission, netProfit, profitPercent);
         }
 
+        return buildBondResult(bond, trades);
+    }
+
+    /**
+     * Купонный доход за время владения в % от номинала (в тех же единицах, что цены свечей).
+     * Без графика — 0: облигация считается бескупонной, как раньше
+     */
+    private static double couponIncomePercent(CouponSchedule schedule, LocalDate buyDate, LocalDate sellDate) {
+        if (schedule == null || schedule.getNominal() <= 0) {
+            return 0;
+        }
+        double income = BondYieldCalculator.couponIncome(schedule,
+                BondYieldCalculator.settlementDate(buyDate), BondYieldCalculator.settlementDate(sellDate));
+        return income / schedule.getNominal() * 100;
+    }
+
+    /**
+     * Результат по облигации из списка сделок
+     */
+    private BondBacktestResult buildBondResult(BondInfo bond, List<Trade> trades) {
         // Сформировать результат
         BondBacktestResult result = new BondBacktestResult();
         result.setTicker(bond.ticker);
@@ -382,9 +661,9 @@ public class BondStrategyBacktestService {
         // Строим динамический SQL в зависимости от фильтров
         StringBuilder sqlBuilder = new StringBuilder();
         sqlBuilder.append("SELECT field01 as figi, field02 as ticker, field05 as name, ")
-                .append("       field10 as dlong_str ")
+                .append("       field08 as nominal_str, field10 as dlong_str ")
                 .append("FROM public.exportdata ")
-                .append("WHERE field01 != 'figi' ");
+                .append("WHERE field01 != 'figi' AND is_active ");
 
         // 1. Валюта
         if (filters.currency != null && !filters.currency.isEmpty()) {
@@ -434,6 +713,7 @@ public class BondStrategyBacktestService {
                             bond.ticker = rs.getString("ticker");
                             bond.name = rs.getString("name");
                             bond.dlong = dlong;
+                            bond.nominal = parseNominal(rs.getString("nominal_str"));
                             bonds.add(bond);
                         }
                     }
@@ -452,30 +732,6 @@ public class BondStrategyBacktestService {
         return bonds;
     }
 
-    /**
-     * Расчёт волатильности (стандартное отклонение)
-     */
-    private double calculateVolatility(double[] prices) {
-        double mean = calculateAverage(prices);
-        double variance = 0;
-        for (double price : prices) {
-            variance += Math.pow(price - mean, 2);
-        }
-        variance /= prices.length;
-        return Math.sqrt(variance);
-    }
-
-    /**
-     * Расчёт среднего
-     */
-    private double calculateAverage(double[] prices) {
-        double sum = 0;
-        for (double price : prices) {
-            sum += price;
-        }
-        return sum / prices.length;
-    }
-
     /**
      * Создать пустой результат
      */
@@ -501,6 +757,7 @@ public class BondStrategyBacktestService {
         public String name;
         public double dlong;
         public double avgDailyVolume = 0; // ✅ НОВОЕ: среднедневной объём
+        public double nominal = DEFAULT_NOMINAL; // номинал, ₽ (цены свечей — % от номинала)
     }
 
     /**
@@ -659,6 +916,7 @@ public class BondStrategyBacktestService {
         private double avgProfitPercent;
         private double winRate;
         private double avgHoldingDays;
+        private TradeBootstrap.BootstrapResult bootstrap;
 
         // Getters and Setters
         public LocalDate getStartDate() { return startDate; }
@@ -699,5 +957,9 @@ public class BondStrategyBacktestService {
 
         public double getAvgHoldingDays() { return avgHoldingDays; }
         public void setAvgHoldingDays(double avgHoldingDays) { this.avgHoldingDays = avgHoldingDays; }
+
+        /** Перцентили по бутстрэпу сделок (null — сделок нет) */
+        public TradeBootstrap.BootstrapResult getBootstrap() { return bootstrap; }
+        public void setBootstrap(TradeBootstrap.BootstrapResult bootstrap) { this.bootstrap = bootstrap; }
     }
 }
@@ -0,0 +1,86 @@
+package com.algotrading.tinkoffinvestgui.service;
+
+import com.algotrading.tinkoffinvestgui.api.BondsService;
+import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.tinkoff.piapi.contract.v1.Bond;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Справочник облигаций в памяти с индексом {@link BondScreener}.
+ *
+ * Список облигаций запрашивается у API не чаще раза в TTL (bonds.universe.ttl.minutes
+ * в invest.properties, по умолчанию 60 мин.); экспорт в БД подкладывает свежий ответ сам.
+ * Анализ и диалог параметров (счётчик совпадений) работают с одним и тем же индексом.
+ */
+public class BondUniverseService {
+    private static final Logger log = LoggerFactory.getLogger(BondUniverseService.class);
+    private static final BondUniverseService INSTANCE = new BondUniverseService();
+
+    private static final long DEFAULT_TTL_MINUTES = 60;
+
+    private final long ttlNanos;
+    private volatile BondScreener screener;
+    private volatile long loadedAtNanos;
+
+    private BondUniverseService() {
+        long ttlMinutes = DEFAULT_TTL_MINUTES;
+        String value = ConnectorConfig.getPropertyValue("bonds.universe.ttl.minutes");
+        if (value != null && !value.trim().isEmpty()) {
+            try {
+                ttlMinutes = Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                log.warn("⚠️ Некорректное значение bonds.universe.ttl.minutes={}, используется {}", value, DEFAULT_TTL_MINUTES);
+            }
+        }
+        this.ttlNanos = TimeUnit.MINUTES.toNanos(ttlMinutes);
+    }
+
+    public static BondUniverseService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Индекс справочника; при отсутствии или устаревании загружается из API (блокирующий вызов)
+     */
+    public synchronized BondScreener getScreener() {
+        BondScreener current = screener;
+        if (current != null && System.nanoTime() - loadedAtNanos < ttlNanos) {
+            return current;
+        }
+        BondsService bondsService = new BondsService(
+                ConnectorConfig.getApiToken(),
+                ConnectorConfig.API_URL,
+                ConnectorConfig.API_PORT
+        );
+        try {
+            log.info("📡 Загрузка справочника облигаций из API...");
+            return update(bondsService.getBonds().getInstrumentsList());
+        } finally {
+            bondsService.close();
+        }
+    }
+
+    /**
+     * Уже загруженный индекс без обращения к API (null, если ещё не загружался)
+     */
+    public BondScreener getLoadedScreener() {
+        return screener;
+    }
+
+    /**
+     * Подменить справочник свежим ответом API
+     */
+    public synchronized BondScreener update(List<Bond> bonds) {
+        long started = System.nanoTime();
+        BondScreener updated = new BondScreener(bonds);
+        screener = updated;
+        loadedAtNanos = System.nanoTime();
+        log.info("✅ Индекс облигаций построен: {} шт. за {} мс",
+                updated.size(), TimeUnit.NANOSECONDS.toMillis(loadedAtNanos - started));
+        return updated;
+    }
+}
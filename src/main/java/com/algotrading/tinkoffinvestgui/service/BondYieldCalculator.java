@@ -0,0 +1,170 @@
+package com.algotrading.tinkoffinvestgui.service;
+
+import com.algotrading.tinkoffinvestgui.model.CouponSchedule;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+
+/**
+ * НКД, доходность к погашению и купонный доход по купонному графику в памяти — без запросов к API.
+ *
+ * НКД — линейно по дням купонного периода (длительность из графика). Доходность —
+ * эффективная годовая (как «доходность к погашению» у биржи): ставка, при которой
+ * дисконтированные по (1 + y)^(дни/365) выплаты равны грязной цене. Неизвестные будущие
+ * купоны (плавающие) принимаются равными последнему известному; амортизация не учитывается —
+ * номинал гасится целиком в дату погашения.
+ */
+public final class BondYieldCalculator {
+
+    private static final double MIN_YIELD = -0.99;
+    private static final double MAX_YIELD = 10.0;
+    private static final int MAX_ITERATIONS = 100;
+
+    private BondYieldCalculator() {
+    }
+
+    /**
+     * Дата расчётов по сделке на бирже: T+1 рабочий день (праздники не учитываются)
+     */
+    public static LocalDate settlementDate(LocalDate tradeDate) {
+        LocalDate date = tradeDate.plusDays(1);
+        while (date.getDayOfWeek() == DayOfWeek.SATURDAY || date.getDayOfWeek() == DayOfWeek.SUNDAY) {
+            date = date.plusDays(1);
+        }
+        return date;
+    }
+
+    /**
+     * НКД на одну бумагу на дату расчётов, в валюте номинала
+     */
+    public static double accruedInterest(CouponSchedule schedule, LocalDate settlement) {
+        long day = settlement.toEpochDay();
+        int next = schedule.nextCouponIndex(day);
+        if (next >= schedule.size()) {
+            return 0;
+        }
+        long end = schedule.getCouponDay(next);
+        long start = periodStart(schedule, next);
+        if (end <= start || day <= start) {
+            return 0;
+        }
+        return schedule.paymentOrLastKnown(next) * (day - start) / (end - start);
+    }
+
+    /**
+     * Купонный доход держателя одной бумаги с fromDate по toDate (даты расчётов):
+     * выплаченные купоны + НКД, полученный при продаже, − НКД, уплаченный при покупке
+     */
+    public static double couponIncome(CouponSchedule schedule, LocalDate fromDate, LocalDate toDate) {
+        long from = fromDate.toEpochDay();
+        long to = toDate.toEpochDay();
+        if (to <= from) {
+            return 0;
+        }
+        double paid = 0;
+        for (int i = schedule.nextCouponIndex(from); i < schedule.size() && schedule.getCouponDay(i) <= to; i++) {
+            paid += schedule.paymentOrLastKnown(i);
+        }
+        return paid + accruedInterest(schedule, toDate) - accruedInterest(schedule, fromDate);
+    }
+
+    /**
+     * Доходность к погашению по чистой цене в % от номинала (как в свечах и стакане)
+     *
+     * @return эффективная годовая доходность, %; NaN, если посчитать нельзя
+     */
+    public static double yieldToMaturity(CouponSchedule schedule, double cleanPricePercent, LocalDate settlement) {
+        double dirtyPrice = cleanPricePercent / 100.0 * schedule.getNominal() + accruedInterest(schedule, settlement);
+        return yieldFromDirtyPrice(schedule, dirtyPrice, settlement);
+    }
+
+    /**
+     * Доходность к погашению по грязной цене одной бумаги в валюте номинала
+     *
+     * @return эффективная годовая доходность, %; NaN, если посчитать нельзя
+     */
+    public static double yieldFromDirtyPrice(CouponSchedule schedule, double dirtyPrice, LocalDate settlement) {
+        long day = settlement.toEpochDay();
+        long redemption = schedule.getMaturityDay() != CouponSchedule.NO_MATURITY
+                ? schedule.getMaturityDay()
+                : (schedule.size() > 0 ? schedule.getCouponDay(schedule.size() - 1) : CouponSchedule.NO_MATURITY);
+        if (dirtyPrice <= 0 || schedule.getNominal() <= 0
+                || redemption == CouponSchedule.NO_MATURITY || redemption <= day) {
+            return Double.NaN;
+        }
+
+        // Денежный поток: оставшиеся купоны до погашения + номинал
+        int first = schedule.nextCouponIndex(day);
+        int last = first;
+        while (last < schedule.size() && schedule.getCouponDay(last) <= redemption) {
+            last++;
+        }
+        int count = last - first + 1;
+        double[] years = new double[count];
+        double[] flows = new double[count];
+        for (int i = first; i < last; i++) {
+            years[i - first] = (schedule.getCouponDay(i) - day) / 365.0;
+            flows[i - first] = schedule.paymentOrLastKnown(i);
+        }
+        years[count - 1] = (redemption - day) / 365.0;
+        flows[count - 1] = schedule.getNominal();
+
+        // Приведённая стоимость убывает по ставке: Ньютон внутри вилки, при выходе из неё — деление пополам
+        double low = MIN_YIELD;
+        double high = MAX_YIELD;
+        if (presentValue(years, flows, low) < dirtyPrice || presentValue(years, flows, high) > dirtyPrice) {
+            return Double.NaN;
+        }
+        double y = 0.1;
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            double logGrowth = Math.log1p(y);
+            double value = 0;
+            double derivative = 0;
+            for (int k = 0; k < count; k++) {
+                double discounted = flows[k] * Math.exp(-years[k] * logGrowth);
+                value += discounted;
+                derivative -= years[k] * discounted / (1 + y);
+            }
+            double error = value - dirtyPrice;
+            if (Math.abs(error) < 1e-9 * dirtyPrice) {
+                return y * 100;
+            }
+            if (error > 0) {
+                low = y;
+            } else {
+                high = y;
+            }
+            double next = derivative != 0 ? y - error / derivative : Double.NaN;
+            if (!(next > low && next < high)) {
+                next = (low + high) / 2;
+            }
+            if (Math.abs(next - y) < 1e-12) {
+                return next * 100;
+            }
+            y = next;
+        }
+        return y * 100;
+    }
+
+    private static double presentValue(double[] years, double[] flows, double y) {
+        double logGrowth = Math.log1p(y);
+        double value = 0;
+        for (int k = 0; k < years.length; k++) {
+            value += flows[k] * Math.exp(-years[k] * logGrowth);
+        }
+        return value;
+    }
+
+    /**
+     * Начало купонного периода: дата выплаты минус длительность периода,
+     * без длительности — дата предыдущей выплаты
+     */
+    private static long periodStart(CouponSchedule schedule, int index) {
+        long end = schedule.getCouponDay(index);
+        int period = schedule.getPeriodDays(index);
+        if (period > 0) {
+            return end - period;
+        }
+        return index > 0 ? schedule.getCouponDay(index - 1) : end;
+    }
+}
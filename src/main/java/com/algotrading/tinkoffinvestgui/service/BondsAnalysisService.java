@@ -1,10 +1,15 @@
 package com.algotrading.tinkoffinvestgui.service;
 
 import com.algotrading.tinkoffinvestgui.api.CandlesApiService;
+import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
+import com.algotrading.tinkoffinvestgui.model.BondMetrics;
+import com.algotrading.tinkoffinvestgui.model.CouponSchedule;
+import com.algotrading.tinkoffinvestgui.repository.BondMetricsRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ru.tinkoff.piapi.contract.v1.*;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -21,10 +26,24 @@ public class BondsAnalysisService {
     private static final int DEFAULT_MAX_MONTHS_TO_MATURITY = 15;
     private static final int CANDLES_PERIOD_MONTHS = 4;
 
+    /** Размер топа по умолчанию для потокового анализа */
+    public static final int DEFAULT_TOP_K = 100;
+
+    /** Минимальный интервал между снимками топа для слушателя, мс */
+    private static final long PUBLISH_INTERVAL_MS = 500;
+
     /**
      * Фильтрует облигации по заданным критериям
      */
     public List<Bond> filterBonds(List<Bond> bonds, BondsFilterCriteria criteria) {
+        return filterBonds(new BondScreener(bonds), criteria);
+    }
+
+    /**
+     * Фильтрует облигации по индексу справочника (битовые маски + диапазон дат погашения)
+     */
+    public List<Bond> filterBonds(BondScreener screener, BondsFilterCriteria criteria) {
+        List<Bond> bonds = screener.getBonds();
         log.info("Фильтрация {} облигаций по критериям: {}", bonds.size(), criteria);
 
         LocalDate now = LocalDate.now();
@@ -33,80 +52,24 @@ public class BondsAnalysisService {
 
         log.info("📅 Период фильтрации: от {} до {}", minMaturityDate, maxMaturityDate);
 
-        // Счётчики для статистики
-        int[] stats = new int[6]; // [total, currency, amort, maturity, dlong, risk]
-        stats[0] = bonds.size();
-
-        List<Bond> filtered = bonds.stream()
-                .filter(bond -> {
-                    // 1. Фильтр по валюте номинала
-                    if (criteria.getNominalCurrency() != null && !criteria.getNominalCurrency().isEmpty()) {
-                        String bondCurrency = bond.getNominal() != null ? bond.getNominal().getCurrency() : "";
-                        if (!bondCurrency.equalsIgnoreCase(criteria.getNominalCurrency())) {
-                            stats[1]++;
-                            return false;
-                        }
-                    }
-
-                    // 2. Фильтр: без амортизации
-                    if (criteria.isWithoutAmortization()) {
-                        if (bond.getAmortizationFlag()) {
-                            stats[2]++;
-                            return false;
-                        }
-                    }
-
-                    // 3. Фильтр по сроку до погашения
-                    if (bond.hasMaturityDate()) {
-                        long maturitySeconds = bond.getMaturityDate().getSeconds();
-                        LocalDate maturityDate = LocalDate.ofEpochDay(maturitySeconds / 86400);
-
-                        if (maturityDate.isBefore(minMaturityDate) || maturityDate.isAfter(maxMaturityDate)) {
-                            stats[3]++;
-                            return false;
-                        }
-                    } else {
-                        stats[3]++;
-                        return false; // Нет даты погашения
-                    }
-
-                    // 4. Фильтр: требовать dlong > 0
-                    if (criteria.isRequireDlong()) {
-                        if (!bond.hasDlong()) {
-                            stats[4]++;
-                            return false;
-                        }
-
-                        // Правильный расчёт dlong с учётом дробной части
-                        double dlongValue = bond.getDlong().getUnits() + bond.getDlong().getNano() / 1e9;
-                        if (dlongValue <= 0) {
-                            stats[4]++;
-                            return false;
-                        }
-                    }
-
-                    // 5. Фильтр: исключить высокий риск
-                    if (criteria.isExcludeHighRisk()) {
-                        RiskLevel riskLevel = bond.getRiskLevel();
-                        if (riskLevel == RiskLevel.RISK_LEVEL_HIGH) {
-                            stats[5]++;
-                            return false;
-                        }
-                    }
-
-                    return true;
-                })
-                .collect(Collectors.toList());
+        // Счётчики отброшенных: [currency, amort, maturity, dlong, risk, floating]
+        int[] stats = new int[6];
+        long started = System.nanoTime();
+        List<Bond> filtered = screener.select(criteria, stats);
+        long elapsedMicros = (System.nanoTime() - started) / 1_000;
 
         // Выводим статистику фильтрации
         log.info("📊 Статистика фильтрации:");
-        log.info("   Всего облигаций: {}", stats[0]);
-        log.info("   ❌ Отброшено по валюте: {}", stats[1]);
-        log.info("   ❌ Отброшено по амортизации: {}", stats[2]);
-        log.info("   ❌ Отброшено по сроку погашения: {}", stats[3]);
-        log.info("   ❌ Отброшено по dlong: {}", stats[4]);
-        log.info("   ❌ Отброшено по риску: {}", stats[5]);
-        log.info("   ✅ Прошло фильтрацию: {}", filtered.size());
+        log.info("   Всего облигаций: {}", bonds.size());
+        log.info("   ❌ Отброшено по валюте: {}", stats[0]);
+        log.info("   ❌ Отброшено по амортизации: {}", stats[1]);
+        log.info("   ❌ Отброшено по сроку погашения: {}", stats[2]);
+        log.info("   ❌ Отброшено по dlong: {}", stats[3]);
+        log.info("   ❌ Отброшено по риску: {}", stats[4]);
+        if (criteria.isExcludeFloatingCoupon()) {
+            log.info("   ❌ Отброшено по плавающему купону: {}", stats[5]);
+        }
+        log.info("   ✅ Прошло фильтрацию: {} (за {} мкс)", filtered.size(), elapsedMicros);
 
         // Если результат пустой, выводим примеры первых 3 облигаций
         if (filtered.isEmpty() && !bonds.isEmpty()) {
@@ -137,14 +100,42 @@ public class BondsAnalysisService {
      * ✅ С фильтрацией по минимальному объёму торгов
      */
     public List<BondAnalysisResult> analyzeBonds(List<Bond> bonds, CandlesApiService candlesService, BondsFilterCriteria criteria) {
-        log.info("Начало анализа {} облигаций", bonds.size());
+        return analyzeBonds(bonds, candlesService, criteria, Integer.MAX_VALUE, null);
+    }
 
-        List<BondAnalysisResult> results = new ArrayList<>();
+    /**
+     * Потоковый анализ: держит только K лучших по оценке (min-куча), по ходу сканирования
+     * отдаёт слушателю текущий топ и прерывается, если слушатель отменил анализ.
+     *
+     * @param topK     сколько лучших результатов хранить (Integer.MAX_VALUE — все)
+     * @param listener получатель промежуточных снимков (может быть null); вызывается из потока анализа
+     * @return K лучших по убыванию оценки (при отмене — лучшие из уже обработанных)
+     */
+    public List<BondAnalysisResult> analyzeBonds(List<Bond> bonds, CandlesApiService candlesService,
+                                                 BondsFilterCriteria criteria, int topK, AnalysisListener listener) {
+        log.info("Начало анализа {} облигаций (топ-{})", bonds.size(), topK == Integer.MAX_VALUE ? "все" : topK);
+
+        TopResults top = new TopResults(topK);
         LocalDate to = LocalDate.now();
         LocalDate from = to.minusMonths(CANDLES_PERIOD_MONTHS);
 
+        // Текущие цены всех облигаций — одним запросом, свечи дают только историю
+        Map<String, BigDecimal> lastPrices = loadLastPrices(bonds);
+
+        // Метрики из ночного снимка; свечи грузятся только для облигаций, которых в нём нет
+        Map<String, BondMetrics> snapshot = loadMetricsSnapshot();
+
         int processed = 0;
+        int fromSnapshot = 0;
+        int analyzed = 0;
+        int belowVolume = 0;
+        long lastPublished = 0;
+        boolean topChanged = false;
         for (Bond bond : bonds) {
+            if (listener != null && listener.isCancelled()) {
+                log.info("⏹ Анализ остановлен пользователем на {}/{}", processed, bonds.size());
+                break;
+            }
             try {
                 processed++;
                 if (processed % 10 == 0) {
@@ -152,52 +143,119 @@ public class BondsAnalysisService {
                             processed, bonds.size(), (processed * 100 / bonds.size()));
                 }
 
-                // Загружаем свечи за 4 месяца
-                List<HistoricCandle> candles = candlesService.getCandles(
-                        bond.getFigi(),
-                        from,
-                        to,
-                        CandleInterval.CANDLE_INTERVAL_DAY
-                );
+                BondMetrics metrics = snapshot.get(bond.getFigi());
+                if (metrics != null) {
+                    fromSnapshot++;
+                } else {
+                    // Загружаем свечи за 4 месяца
+                    List<HistoricCandle> candles = candlesService.getCandles(
+                            bond.getFigi(),
+                            from,
+                            to,
+                            CandleInterval.CANDLE_INTERVAL_DAY
+                    );
+
+                    if (candles.isEmpty()) {
+                        log.warn("Нет свечей для облигации: {}", bond.getTicker());
+                        continue;
+                    }
+                    metrics = BondMetricsService.compute(bond.getFigi(), CANDLES_PERIOD_MONTHS,
+                            CandlesColumnarFormat.RowGroup.of(bond.getFigi(), candles), 0);
+                }
+                analyzed++;
 
-                if (candles.isEmpty()) {
-                    log.warn("Нет свечей для облигации: {}", bond.getTicker());
+                // ✅ ФИЛЬТРАЦИЯ ПО МИНИМАЛЬНОМУ ОБЪЁМУ (если задан) — до кучи, а не в конце
+                if (criteria.getMinAvgDailyVolume() > 0
+                        && metrics.getAvgDailyVolume() < criteria.getMinAvgDailyVolume()) {
+                    belowVolume++;
                     continue;
                 }
 
-                // Анализируем свечи
-                BondAnalysisResult result = analyzeCandles(bond, candles);
-                results.add(result);
+                topChanged |= top.offer(buildResult(bond, metrics, lastPrices.get(bond.getFigi())));
 
             } catch (Exception e) {
                 log.error("Ошибка анализа облигации {}: {}", bond.getTicker(), e.getMessage());
+            } finally {
+                // Снимок топа — не чаще раза в PUBLISH_INTERVAL_MS и только если топ изменился
+                long now = System.currentTimeMillis();
+                if (listener != null && topChanged && now - lastPublished >= PUBLISH_INTERVAL_MS) {
+                    listener.onProgress(top.sorted(), processed, bonds.size());
+                    lastPublished = now;
+                    topChanged = false;
+                }
             }
         }
 
-        log.info("Анализ завершён. Результатов до фильтрации по объёму: {}", results.size());
-
-        // ✅ ФИЛЬТРАЦИЯ ПО МИНИМАЛЬНОМУ ОБЪЁМУ (если задан)
+        log.info("Анализ завершён. Проанализировано: {} (из снимка метрик: {})", analyzed, fromSnapshot);
         if (criteria.getMinAvgDailyVolume() > 0) {
-            int beforeFilter = results.size();
-            results = results.stream()
-                    .filter(r -> r.getAvgDailyVolume() >= criteria.getMinAvgDailyVolume())
-                    .collect(Collectors.toList());
-            log.info("📊 Фильтр по объёму торгов (мин. {} лот/день): {} → {} результатов",
-                    criteria.getMinAvgDailyVolume(), beforeFilter, results.size());
+            log.info("📊 Фильтр по объёму торгов (мин. {} лот/день): отброшено {}",
+                    criteria.getMinAvgDailyVolume(), belowVolume);
         }
 
-        // Сортируем по убыванию оценки (score)
-        results.sort(Comparator.comparingDouble(BondAnalysisResult::getScore).reversed());
+        List<BondAnalysisResult> results = top.sorted();
+        if (listener != null) {
+            listener.onProgress(results, processed, bonds.size());
+        }
 
-        log.info("✅ Итого результатов после всех фильтров: {}", results.size());
+        log.info("✅ Итого результатов после всех фильтров: {} (прошло фильтр: {})", results.size(), top.getOffered());
         return results;
     }
 
     /**
-     * Анализирует свечи одной облигации и рассчитывает метрики
-     * ✅ С расчётом среднедневного объёма торгов
+     * Размер топа из bonds.analysis.top.k (invest.properties), по умолчанию DEFAULT_TOP_K
+     */
+    public static int resolveTopK() {
+        String value = ConnectorConfig.getPropertyValue("bonds.analysis.top.k");
+        if (value == null || value.trim().isEmpty()) {
+            return DEFAULT_TOP_K;
+        }
+        try {
+            int topK = Integer.parseInt(value.trim());
+            if (topK > 0) {
+                return topK;
+            }
+        } catch (NumberFormatException ignored) {
+            // ниже — предупреждение и значение по умолчанию
+        }
+        log.warn("⚠️ Некорректное значение bonds.analysis.top.k={}, используется {}", value, DEFAULT_TOP_K);
+        return DEFAULT_TOP_K;
+    }
+
+    /**
+     * Последние цены по всем облигациям через снимок рынка.
+     * При ошибке API анализ продолжается по ценам закрытия свечей.
+     */
+    private Map<String, BigDecimal> loadLastPrices(List<Bond> bonds) {
+        try {
+            return MarketSnapshotService.getInstance().getLastPrices(
+                    bonds.stream().map(Bond::getFigi).collect(Collectors.toList()));
+        } catch (Exception e) {
+            log.warn("⚠️ Не удалось получить текущие цены облигаций: {}", e.getMessage());
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * Последний снимок метрик за окно анализа; при ошибке БД анализ идёт по свечам
+     */
+    private Map<String, BondMetrics> loadMetricsSnapshot() {
+        try {
+            Map<String, BondMetrics> snapshot = new BondMetricsRepository().findLatest(CANDLES_PERIOD_MONTHS, 0);
+            if (snapshot.isEmpty()) {
+                log.info("Снимка метрик облигаций нет, метрики считаются по свечам");
+            }
+            return snapshot;
+        } catch (Exception e) {
+            log.warn("⚠️ Не удалось прочитать снимок метрик облигаций: {}", e.getMessage());
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * Результат анализа одной облигации по метрикам окна
+     * ✅ Со среднедневным объёмом торгов
      */
-    private BondAnalysisResult analyzeCandles(Bond bond, List<HistoricCandle> candles) {
+    private BondAnalysisResult buildResult(Bond bond, BondMetrics metrics, BigDecimal lastPrice) {
         BondAnalysisResult result = new BondAnalysisResult();
 
         // Базовые данные облигации
@@ -218,37 +276,29 @@ public class BondsAnalysisService {
 
         result.setRiskLevel(bond.getRiskLevel().name());
 
-        // Извлекаем цены закрытия из свечей
-        double[] closes = candles.stream()
-                .mapToDouble(c -> c.getClose().getUnits() + c.getClose().getNano() / 1e9)
-                .toArray();
-
-        // 1. Волатильность (стандартное отклонение)
-        double volatility = calculateVolatility(closes);
+        // 1. Волатильность (стандартное отклонение цен закрытия)
+        double volatility = metrics.getVolatility();
         result.setVolatility(volatility);
 
         // ✅ 1a. Среднедневной объём торгов (в лотах)
-        double avgDailyVolume = candles.stream()
-                .mapToLong(HistoricCandle::getVolume)  // Volume уже в лотах
-                .average()
-                .orElse(0);
-        result.setAvgDailyVolume(avgDailyVolume);
+        result.setAvgDailyVolume(metrics.getAvgDailyVolume());
 
         // 2. Средняя цена за период
-        double avgPrice = Arrays.stream(closes).average().orElse(0);
-        result.setAvgPrice(avgPrice);
+        result.setAvgPrice(metrics.getAvgPrice());
 
-        // 3. Текущая цена (последняя свеча)
-        double currentPrice = closes[closes.length - 1];
+        // 3. Текущая цена (последняя сделка из снимка рынка, иначе — закрытие последней свечи)
+        double currentPrice = lastPrice != null && lastPrice.signum() > 0
+                ? lastPrice.doubleValue()
+                : metrics.getLastClose();
         result.setCurrentPrice(currentPrice);
 
         // 4. Изменение цены от начала к концу периода (%)
-        double priceChange = ((currentPrice - closes[0]) / closes[0]) * 100;
+        double priceChange = ((currentPrice - metrics.getFirstClose()) / metrics.getFirstClose()) * 100;
         result.setPriceChangePercent(priceChange);
 
         // 5. Максимум и минимум за период
-        double maxPrice = Arrays.stream(closes).max().orElse(0);
-        double minPrice = Arrays.stream(closes).min().orElse(0);
+        double maxPrice = metrics.getMaxPrice();
+        double minPrice = metrics.getMinPrice();
         result.setMaxPrice(maxPrice);
         result.setMinPrice(minPrice);
 
@@ -256,10 +306,17 @@ public class BondsAnalysisService {
         double priceRange = ((maxPrice - minPrice) / minPrice) * 100;
         result.setPriceRangePercent(priceRange);
 
-        // 7. Тренд (линейная регрессия)
-        double trend = calculateTrend(closes);
+        // 7. Тренд (наклон линейной регрессии)
+        double trend = metrics.getTrend();
         result.setTrend(trend);
 
+        // 7a. Доходность к погашению по текущей цене (купонный график в памяти)
+        CouponSchedule schedule = CouponScheduleStore.getInstance().get(bond.getFigi());
+        if (schedule != null) {
+            result.setYieldToMaturity(BondYieldCalculator.yieldToMaturity(
+                    schedule, currentPrice, BondYieldCalculator.settlementDate(LocalDate.now())));
+        }
+
         // 8. Итоговая оценка (score)
         double score = calculateScore(volatility, priceChange, trend, bond);
         result.setScore(score);
@@ -267,37 +324,6 @@ public class BondsAnalysisService {
         return result;
     }
 
-    /**
-     * Рассчитывает волатильность (стандартное отклонение цен)
-     */
-    private double calculateVolatility(double[] prices) {
-        double mean = Arrays.stream(prices).average().orElse(0);
-        double variance = Arrays.stream(prices)
-                .map(p -> Math.pow(p - mean, 2))
-                .average()
-                .orElse(0);
-        return Math.sqrt(variance);
-    }
-
-    /**
-     * Рассчитывает тренд (наклон линейной регрессии)
-     */
-    private double calculateTrend(double[] prices) {
-        int n = prices.length;
-        double sumX = 0, sumY = 0, sumXY = 0, sumX2 = 0;
-
-        for (int i = 0; i < n; i++) {
-            sumX += i;
-            sumY += prices[i];
-            sumXY += i * prices[i];
-            sumX2 += i * i;
-        }
-
-        // Наклон линии тренда (slope)
-        double slope = (n * sumXY - sumX * sumY) / (n * sumX2 - sumX * sumX);
-        return slope;
-    }
-
     /**
      * Рассчитывает итоговую оценку облигации на основе метрик
      */
@@ -334,6 +360,88 @@ public class BondsAnalysisService {
     // ВСПОМОГАТЕЛЬНЫЕ КЛАССЫ
     // ═══════════════════════════════════════════════════════════════
 
+    /**
+     * Получатель промежуточных результатов потокового анализа
+     */
+    public interface AnalysisListener {
+
+        /**
+         * Текущий топ по убыванию оценки (новый список на каждый вызов)
+         */
+        void onProgress(List<BondAnalysisResult> top, int processed, int total);
+
+        /**
+         * true — прекратить анализ после текущей облигации
+         */
+        default boolean isCancelled() {
+            return false;
+        }
+    }
+
+    /**
+     * K лучших результатов: min-куча по оценке, корень — худший из топа.
+     * Оценка считается один раз при добавлении (getScore пересчитывает её при каждом вызове).
+     * При равной оценке выше тот, кто пришёл раньше — как при устойчивой сортировке всего списка.
+     */
+    static class TopResults {
+        /** Порядок топа: выше оценка, при равенстве — раньше пришёл */
+        private static final Comparator<Scored> BEST_FIRST = Comparator
+                .comparingDouble((Scored s) -> s.score).reversed()
+                .thenComparingInt(s -> s.sequence);
+
+        private final int capacity;
+        private final PriorityQueue<Scored> heap;
+        private int offered;
+
+        TopResults(int capacity) {
+            this.capacity = capacity;
+            this.heap = new PriorityQueue<>(Math.min(capacity, 1024) + 1, BEST_FIRST.reversed());
+        }
+
+        /**
+         * @return true, если результат попал в топ
+         */
+        boolean offer(BondAnalysisResult result) {
+            Scored item = new Scored(result, result.getScore(), offered++);
+            if (heap.size() < capacity) {
+                heap.add(item);
+                return true;
+            }
+            if (BEST_FIRST.compare(item, heap.peek()) >= 0) {
+                return false;
+            }
+            heap.poll();
+            heap.add(item);
+            return true;
+        }
+
+        List<BondAnalysisResult> sorted() {
+            List<Scored> items = new ArrayList<>(heap);
+            items.sort(BEST_FIRST);
+            List<BondAnalysisResult> result = new ArrayList<>(items.size());
+            for (Scored item : items) {
+                result.add(item.result);
+            }
+            return result;
+        }
+
+        int getOffered() {
+            return offered;
+        }
+
+        private static class Scored {
+            final BondAnalysisResult result;
+            final double score;
+            final int sequence;
+
+            Scored(BondAnalysisResult result, double score, int sequence) {
+                this.result = result;
+                this.score = score;
+                this.sequence = sequence;
+            }
+        }
+    }
+
     /**
      * Критерии фильтрации облигаций
      * ✅ С поддержкой фильтра по минимальному объёму торгов
@@ -345,6 +453,7 @@ public class BondsAnalysisService {
         private int maxMonthsToMaturity = DEFAULT_MAX_MONTHS_TO_MATURITY;
         private boolean requireDlong = true;
         private boolean excludeHighRisk = true;
+        private boolean excludeFloatingCoupon = false;
         private double minAvgDailyVolume = 0;  // ✅ НОВОЕ ПОЛЕ: Минимальный среднедневной объём торгов (лотов/день)
 
         // Getters and Setters
@@ -397,6 +506,14 @@ public class BondsAnalysisService {
             this.excludeHighRisk = excludeHighRisk;
         }
 
+        public boolean isExcludeFloatingCoupon() {
+            return excludeFloatingCoupon;
+        }
+
+        public void setExcludeFloatingCoupon(boolean excludeFloatingCoupon) {
+            this.excludeFloatingCoupon = excludeFloatingCoupon;
+        }
+
         // ✅ НОВЫЙ GETTER/SETTER
         public double getMinAvgDailyVolume() {
             return minAvgDailyVolume;
@@ -408,9 +525,10 @@ public class BondsAnalysisService {
 
         @Override
         public String toString() {
-            return String.format("Currency=%s, NoAmort=%b, Days=%d-%d months, Dlong=%b, ExcludeHighRisk=%b, MinVolume=%.0f",
+            return String.format("Currency=%s, NoAmort=%b, Days=%d-%d months, Dlong=%b, ExcludeHighRisk=%b, "
+                            + "ExcludeFloating=%b, MinVolume=%.0f",
                     nominalCurrency, withoutAmortization, minDaysToMaturity, maxMonthsToMaturity,
-                    requireDlong, excludeHighRisk, minAvgDailyVolume);
+                    requireDlong, excludeHighRisk, excludeFloatingCoupon, minAvgDailyVolume);
         }
     }
 
@@ -437,6 +555,7 @@ public class BondsAnalysisService {
         private double minPrice;
         private double priceRangePercent;
         private double trend;
+        private double yieldToMaturity = Double.NaN;  // Доходность к погашению, % (NaN — нет купонного графика)
         private double volatilityPercent;
         private double avgDailyRangePercent;
         private double score;
@@ -572,6 +691,14 @@ public class BondsAnalysisService {
             this.trend = trend;
         }
 
+        public double getYieldToMaturity() {
+            return yieldToMaturity;
+        }
+
+        public void setYieldToMaturity(double yieldToMaturity) {
+            this.yieldToMaturity = yieldToMaturity;
+        }
+
         public double getVolatilityPercent() {
             return volatilityPercent;
         }
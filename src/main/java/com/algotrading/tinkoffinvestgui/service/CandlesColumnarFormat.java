@@ -0,0 +1,183 @@
+package com.algotrading.tinkoffinvestgui.service;
+
+import ru.tinkoff.piapi.contract.v1.HistoricCandle;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Простой колоночный формат хранения свечей (.cndl.gz).
+ *
+ * Файл — gzip-поток из «групп строк» (row group), каждая группа относится к одному FIGI
+ * и содержит колонки подряд: время (epoch сек), open, high, low, close, volume.
+ * Группа соответствует одному запросу к API, поэтому писать и читать файл можно
+ * потоково, не держа весь период в памяти.
+ *
+ * Структура: MAGIC, VERSION, затем группы [figi(UTF), n(int), long[n], double[n] x4, long[n]].
+ */
+public final class CandlesColumnarFormat {
+
+    private static final int MAGIC = 0x434E444C; // "CNDL"
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public static final String FILE_EXTENSION = ".cndl.gz";
+
+    private CandlesColumnarFormat() {
+    }
+
+    /**
+     * Одна группа строк — свечи одного FIGI в примитивных массивах
+     */
+    public static class RowGroup {
+        public final String figi;
+        public final long[] times;
+        public final double[] open;
+        public final double[] high;
+        public final double[] low;
+        public final double[] close;
+        public final long[] volume;
+
+        public RowGroup(String figi, int size) {
+            this.figi = figi;
+            this.times = new long[size];
+            this.open = new double[size];
+            this.high = new double[size];
+            this.low = new double[size];
+            this.close = new double[size];
+            this.volume = new long[size];
+        }
+
+        public int size() {
+            return times.length;
+        }
+
+        /**
+         * Копия строк [from, to)
+         */
+        public RowGroup slice(int from, int to) {
+            RowGroup group = new RowGroup(figi, to - from);
+            System.arraycopy(times, from, group.times, 0, to - from);
+            System.arraycopy(open, from, group.open, 0, to - from);
+            System.arraycopy(high, from, group.high, 0, to - from);
+            System.arraycopy(low, from, group.low, 0, to - from);
+            System.arraycopy(close, from, group.close, 0, to - from);
+            System.arraycopy(volume, from, group.volume, 0, to - from);
+            return group;
+        }
+
+        /**
+         * Конвертирует свечи API в колонки
+         */
+        public static RowGroup of(String figi, List<HistoricCandle> candles) {
+            RowGroup group = new RowGroup(figi, candles.size());
+            for (int i = 0; i < candles.size(); i++) {
+                HistoricCandle c = candles.get(i);
+                group.times[i] = c.getTime().getSeconds();
+                group.open[i] = c.getOpen().getUnits() + c.getOpen().getNano() / 1e9;
+                group.high[i] = c.getHigh().getUnits() + c.getHigh().getNano() / 1e9;
+                group.low[i] = c.getLow().getUnits() + c.getLow().getNano() / 1e9;
+                group.close[i] = c.getClose().getUnits() + c.getClose().getNano() / 1e9;
+                group.volume[i] = c.getVolume();
+            }
+            return group;
+        }
+    }
+
+    /**
+     * Потоковая запись групп строк
+     */
+    public static class Writer implements Closeable {
+        private final DataOutputStream out;
+        private long rowsWritten;
+
+        public Writer(Path file) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(Files.newOutputStream(file), BUFFER_SIZE), BUFFER_SIZE));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        }
+
+        public void writeRowGroup(RowGroup group) throws IOException {
+            int n = group.size();
+            if (n == 0) {
+                return;
+            }
+            out.writeUTF(group.figi);
+            out.writeInt(n);
+            for (long t : group.times) out.writeLong(t);
+            for (double v : group.open) out.writeDouble(v);
+            for (double v : group.high) out.writeDouble(v);
+            for (double v : group.low) out.writeDouble(v);
+            for (double v : group.close) out.writeDouble(v);
+            for (long v : group.volume) out.writeLong(v);
+            rowsWritten += n;
+        }
+
+        public long getRowsWritten() {
+            return rowsWritten;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Последовательное чтение групп строк
+     */
+    public static class Reader implements Closeable {
+        private final DataInputStream in;
+
+        public Reader(Path file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(
+                    new GZIPInputStream(Files.newInputStream(file), BUFFER_SIZE), BUFFER_SIZE));
+            if (in.readInt() != MAGIC) {
+                in.close();
+                throw new IOException("Файл не является колоночным файлом свечей: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                in.close();
+                throw new IOException("Неподдерживаемая версия файла свечей: " + version);
+            }
+        }
+
+        /**
+         * @return следующая группа или null в конце файла
+         */
+        public RowGroup next() throws IOException {
+            String figi;
+            try {
+                figi = in.readUTF();
+            } catch (EOFException e) {
+                return null;
+            }
+            int n = in.readInt();
+            RowGroup group = new RowGroup(figi, n);
+            for (int i = 0; i < n; i++) group.times[i] = in.readLong();
+            for (int i = 0; i < n; i++) group.open[i] = in.readDouble();
+            for (int i = 0; i < n; i++) group.high[i] = in.readDouble();
+            for (int i = 0; i < n; i++) group.low[i] = in.readDouble();
+            for (int i = 0; i < n; i++) group.close[i] = in.readDouble();
+            for (int i = 0; i < n; i++) group.volume[i] = in.readLong();
+            return group;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
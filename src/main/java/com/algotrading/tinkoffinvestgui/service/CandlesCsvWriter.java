@@ -0,0 +1,204 @@
+package com.algotrading.tinkoffinvestgui.service;
+
+import ru.tinkoff.piapi.contract.v1.HistoricCandle;
+import ru.tinkoff.piapi.contract.v1.Quotation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Потоковая запись свечей в CSV через буферизованный NIO канал.
+ *
+ * Числа и даты форматируются вручную прямо в ByteBuffer (без String.format на строку),
+ * цены пишутся из Quotation (units + nano) с 4 знаками без перехода через double.
+ * Время — UTC: "yyyy-MM-dd" для дневных свечей, "yyyy-MM-dd HH:mm:ss" для внутридневных.
+ */
+public class CandlesCsvWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /** Запас под одну строку — при меньшем остатке буфер сбрасывается */
+    private static final int MAX_ROW_BYTES = 256;
+    private static final int PRICE_SCALE_DIVISOR = 100_000; // nano → 4 знака
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final boolean withFigi;
+    private final boolean intraday;
+    private final byte[] digits = new byte[20];
+
+    private long cachedEpochDay = Long.MIN_VALUE;
+    private final byte[] cachedDate = new byte[10];
+    private long rowsWritten;
+
+    /**
+     * @param file     файл назначения (перезаписывается)
+     * @param gzip     сжимать ли вывод
+     * @param withFigi добавлять ли колонку FIGI (для файла с несколькими инструментами)
+     * @param intraday писать ли время внутри дня
+     */
+    public CandlesCsvWriter(Path file, boolean gzip, boolean withFigi, boolean intraday) throws IOException {
+        if (gzip) {
+            OutputStream out = new GZIPOutputStream(Files.newOutputStream(file), BUFFER_SIZE);
+            this.channel = Channels.newChannel(out);
+        } else {
+            this.channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+        this.withFigi = withFigi;
+        this.intraday = intraday;
+        writeHeader();
+    }
+
+    private void writeHeader() throws IOException {
+        String header = (withFigi ? "Figi," : "") + "Date,Open,High,Low,Close,Volume\n";
+        buffer.put(header.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Записывает одну свечу
+     */
+    public void write(String figi, HistoricCandle candle) throws IOException {
+        int figiLength = withFigi ? figi.length() + 1 : 0;
+        if (buffer.remaining() < MAX_ROW_BYTES + figiLength) {
+            flush();
+        }
+
+        if (withFigi) {
+            putAscii(figi);
+            buffer.put((byte) ',');
+        }
+        putTimestamp(candle.getTime().getSeconds());
+        buffer.put((byte) ',');
+        putPrice(candle.getOpen());
+        buffer.put((byte) ',');
+        putPrice(candle.getHigh());
+        buffer.put((byte) ',');
+        putPrice(candle.getLow());
+        buffer.put((byte) ',');
+        putPrice(candle.getClose());
+        buffer.put((byte) ',');
+        putLong(candle.getVolume());
+        buffer.put((byte) '\n');
+        rowsWritten++;
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten;
+    }
+
+    private void putAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            buffer.put((byte) s.charAt(i));
+        }
+    }
+
+    private void putTimestamp(long epochSeconds) {
+        long epochDay = Math.floorDiv(epochSeconds, 86_400L);
+        if (epochDay != cachedEpochDay) {
+            // Дата меняется редко — формируем её один раз на день
+            LocalDate date = LocalDate.ofEpochDay(epochDay);
+            int year = date.getYear();
+            cachedDate[0] = (byte) ('0' + year / 1000 % 10);
+            cachedDate[1] = (byte) ('0' + year / 100 % 10);
+            cachedDate[2] = (byte) ('0' + year / 10 % 10);
+            cachedDate[3] = (byte) ('0' + year % 10);
+            cachedDate[4] = '-';
+            cachedDate[5] = (byte) ('0' + date.getMonthValue() / 10);
+            cachedDate[6] = (byte) ('0' + date.getMonthValue() % 10);
+            cachedDate[7] = '-';
+            cachedDate[8] = (byte) ('0' + date.getDayOfMonth() / 10);
+            cachedDate[9] = (byte) ('0' + date.getDayOfMonth() % 10);
+            cachedEpochDay = epochDay;
+        }
+        buffer.put(cachedDate);
+
+        if (intraday) {
+            int secondOfDay = (int) Math.floorMod(epochSeconds, 86_400L);
+            buffer.put((byte) ' ');
+            putTwoDigits(secondOfDay / 3600);
+            buffer.put((byte) ':');
+            putTwoDigits(secondOfDay / 60 % 60);
+            buffer.put((byte) ':');
+            putTwoDigits(secondOfDay % 60);
+        }
+    }
+
+    private void putTwoDigits(int value) {
+        buffer.put((byte) ('0' + value / 10));
+        buffer.put((byte) ('0' + value % 10));
+    }
+
+    /**
+     * Quotation → "units.ffff" с округлением до 4 знаков
+     */
+    private void putPrice(Quotation q) {
+        long units = q.getUnits();
+        int nano = q.getNano();
+        boolean negative = units < 0 || nano < 0;
+
+        long absUnits = Math.abs(units);
+        long fraction = (Math.abs(nano) + PRICE_SCALE_DIVISOR / 2) / PRICE_SCALE_DIVISOR;
+        if (fraction >= 10_000) {
+            absUnits++;
+            fraction -= 10_000;
+        }
+
+        if (negative) {
+            buffer.put((byte) '-');
+        }
+        putLong(absUnits);
+        buffer.put((byte) '.');
+        buffer.put((byte) ('0' + fraction / 1000));
+        buffer.put((byte) ('0' + fraction / 100 % 10));
+        buffer.put((byte) ('0' + fraction / 10 % 10));
+        buffer.put((byte) ('0' + fraction % 10));
+    }
+
+    private void putLong(long value) {
+        if (value == 0) {
+            buffer.put((byte) '0');
+            return;
+        }
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        int pos = digits.length;
+        while (value > 0) {
+            digits[--pos] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        buffer.put(digits, pos, digits.length - pos);
+    }
+
+    /**
+     * Сбрасывает буфер в канал
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
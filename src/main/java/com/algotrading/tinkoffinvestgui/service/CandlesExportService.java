@@ -1,28 +1,59 @@
 package com.algotrading.tinkoffinvestgui.service;
 
 import com.algotrading.tinkoffinvestgui.api.CandlesApiService;
+import com.algotrading.tinkoffinvestgui.api.CandlesChunkedDownloader;
+import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ru.tinkoff.piapi.contract.v1.CandleInterval;
 import ru.tinkoff.piapi.contract.v1.HistoricCandle;
 
-import java.io.FileWriter;
 import java.io.IOException;
-import java.time.Instant;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDate;
-import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
-import java.util.Locale;
 
 /**
- * Сервис для экспорта исторических свечей в CSV
+ * Сервис для экспорта исторических свечей в файл.
+ *
+ * Период загружается кусками через {@link CandlesChunkedDownloader} (параллельно, по порядку)
+ * и каждый кусок сразу пишется в файл — весь период в памяти не держится.
  */
 public class CandlesExportService {
     private static final Logger log = LoggerFactory.getLogger(CandlesExportService.class);
+    private static final DateTimeFormatter FILE_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
 
     /**
-     * Экспортирует исторические свечи в CSV файл
+     * Формат выгрузки
+     */
+    public enum ExportFormat {
+        CSV("CSV", ".csv"),
+        CSV_GZIP("CSV (gzip)", ".csv.gz"),
+        COLUMNAR("Колоночный (gzip)", CandlesColumnarFormat.FILE_EXTENSION);
+
+        private final String displayName;
+        private final String extension;
+
+        ExportFormat(String displayName, String extension) {
+            this.displayName = displayName;
+            this.extension = extension;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    /**
+     * Экспортирует исторические свечи одного инструмента в CSV файл
      *
      * @param figi     FIGI инструмента
      * @param from     Начало периода
@@ -31,82 +62,143 @@ public class CandlesExportService {
      * @return Путь к созданному CSV файлу
      */
     public String exportCandlesToCsv(String figi, LocalDate from, LocalDate to, CandleInterval interval) {
-        log.info("📥 Начало экспорта свечей: FIGI={}, период={} - {}, интервал={}",
-                figi, from, to, interval.name());
+        return exportCandles(List.of(figi), from, to, interval, ExportFormat.CSV);
+    }
 
-        try {
-            // 1. Получаем данные через API
-            CandlesApiService apiService = new CandlesApiService(
-                    com.algotrading.tinkoffinvestgui.config.ConnectorConfig.getApiToken(),
-                    com.algotrading.tinkoffinvestgui.config.ConnectorConfig.API_URL,
-                    com.algotrading.tinkoffinvestgui.config.ConnectorConfig.API_PORT
-            );
+    /**
+     * Экспортирует свечи нескольких инструментов в один файл
+     *
+     * @return Путь к созданному файлу
+     */
+    public String exportCandles(List<String> figis, LocalDate from, LocalDate to,
+                                CandleInterval interval, ExportFormat format) {
+        log.info("📥 Начало экспорта свечей: FIGI={}, период={} - {}, интервал={}, формат={}",
+                figis, from, to, interval.name(), format);
+
+        if (figis.isEmpty()) {
+            throw new IllegalArgumentException("Не указан ни один FIGI");
+        }
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("Дата начала должна быть раньше даты окончания");
+        }
 
-            List<HistoricCandle> candles = apiService.getCandles(figi, from, to, interval);
+        Path file = resolveOutputFile(figis, from, to, format);
+        log.info("📊 Запросов к API: {} (макс. {} дн. на запрос)",
+                figis.size() * CandlesChunkedDownloader.splitPeriod(from, to, interval).size(),
+                CandlesChunkedDownloader.maxDaysPerRequest(interval));
+
+        CandlesApiService apiService = new CandlesApiService(
+                ConnectorConfig.getApiToken(),
+                ConnectorConfig.API_URL,
+                ConnectorConfig.API_PORT
+        );
+        CandlesChunkedDownloader downloader = new CandlesChunkedDownloader(apiService);
+
+        try (ChunkSink sink = openSink(file, format, figis.size() > 1, isIntraday(interval))) {
+            for (String figi : figis) {
+                downloader.forEachChunk(figi, from, to, interval, candles -> sink.write(figi, candles));
+            }
 
-            if (candles.isEmpty()) {
+            if (sink.getRowsWritten() == 0) {
                 log.warn("⚠️ Нет данных для экспорта");
                 throw new RuntimeException("Нет данных для указанного периода");
             }
+            log.info("✅ Экспорт завершён: {} свечей → {}", sink.getRowsWritten(), file);
+            return file.toString();
 
-            // 2. Формируем имя файла
-            String fileName = String.format("%s_%s-%s.csv",
-                    figi,
-                    from.format(DateTimeFormatter.ofPattern("yyyyMMdd")),
-                    to.format(DateTimeFormatter.ofPattern("yyyyMMdd"))
-            );
+        } catch (IOException e) {
+            log.error("❌ Ошибка записи файла свечей", e);
+            throw new RuntimeException("Ошибка записи файла: " + e.getMessage(), e);
+        }
+    }
 
-            // 3. Определяем путь к папке Downloads
-            String downloadsPath = System.getProperty("user.home") + "\\Downloads\\" + fileName;
+    /**
+     * Папка выгрузки: export.dir из invest.properties, иначе ~/Downloads
+     */
+    private Path resolveOutputFile(List<String> figis, LocalDate from, LocalDate to, ExportFormat format) {
+        String configured = ConnectorConfig.getPropertyValue("export.dir");
+        Path dir = configured != null && !configured.trim().isEmpty()
+                ? Paths.get(configured.trim())
+                : Paths.get(System.getProperty("user.home"), "Downloads");
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new RuntimeException("Не удалось создать папку выгрузки " + dir + ": " + e.getMessage(), e);
+        }
+
+        String prefix = figis.size() == 1 ? figis.get(0) : "candles_" + figis.size() + "figi";
+        String fileName = String.format("%s_%s-%s%s",
+                prefix, from.format(FILE_DATE_FORMAT), to.format(FILE_DATE_FORMAT), format.extension);
+        return dir.resolve(fileName);
+    }
+
+    private static boolean isIntraday(CandleInterval interval) {
+        return switch (interval) {
+            case CANDLE_INTERVAL_DAY, CANDLE_INTERVAL_WEEK, CANDLE_INTERVAL_MONTH -> false;
+            default -> true;
+        };
+    }
+
+    private ChunkSink openSink(Path file, ExportFormat format, boolean multiFigi, boolean intraday) throws IOException {
+        if (format == ExportFormat.COLUMNAR) {
+            CandlesColumnarFormat.Writer writer = new CandlesColumnarFormat.Writer(file);
+            return new ChunkSink() {
+                @Override
+                public void write(String figi, List<HistoricCandle> candles) throws IOException {
+                    writer.writeRowGroup(CandlesColumnarFormat.RowGroup.of(figi, candles));
+                }
+
+                @Override
+                public long getRowsWritten() {
+                    return writer.getRowsWritten();
+                }
 
-            // 4. Записываем CSV
-            try (FileWriter writer = new FileWriter(downloadsPath)) {
-                // Заголовок CSV
-                writer.write("Date,Open,High,Low,Close,Volume\n");
+                @Override
+                public void close() throws IOException {
+                    writer.close();
+                }
+            };
+        }
 
-                // Данные (используем Locale.US для точки как разделителя)
+        CandlesCsvWriter writer = new CandlesCsvWriter(file, format == ExportFormat.CSV_GZIP, multiFigi, intraday);
+        return new ChunkSink() {
+            @Override
+            public void write(String figi, List<HistoricCandle> candles) throws IOException {
                 for (HistoricCandle candle : candles) {
-                    String date = formatTimestamp(candle.getTime());
-                    double open = quotationToDouble(candle.getOpen());
-                    double high = quotationToDouble(candle.getHigh());
-                    double low = quotationToDouble(candle.getLow());
-                    double close = quotationToDouble(candle.getClose());
-                    long volume = candle.getVolume();
-
-                    // Форматируем с точкой как разделитель (Locale.US)
-                    writer.write(String.format(Locale.US, "%s,%.4f,%.4f,%.4f,%.4f,%d\n",
-                            date, open, high, low, close, volume));
+                    writer.write(figi, candle);
                 }
             }
 
-            log.info("✅ Экспорт завершён: {} свечей → {}", candles.size(), downloadsPath);
-            return downloadsPath;
+            @Override
+            public long getRowsWritten() {
+                return writer.getRowsWritten();
+            }
 
-        } catch (IOException e) {
-            log.error("❌ Ошибка записи CSV файла", e);
-            throw new RuntimeException("Ошибка записи файла: " + e.getMessage(), e);
-        } catch (Exception e) {
-            log.error("❌ Ошибка экспорта свечей", e);
-            throw new RuntimeException("Ошибка экспорта: " + e.getMessage(), e);
-        }
+            @Override
+            public void close() throws IOException {
+                writer.close();
+            }
+        };
     }
 
     /**
-     * Конвертирует Protobuf Timestamp в строку даты (формат: YYYY-MM-DD)
+     * Приёмник кусков свечей (CSV или колоночный файл)
      */
-    private String formatTimestamp(com.google.protobuf.Timestamp timestamp) {
-        Instant instant = Instant.ofEpochSecond(timestamp.getSeconds(), timestamp.getNanos());
-        return DateTimeFormatter.ofPattern("yyyy-MM-dd")
-                .withZone(ZoneId.of("UTC"))
-                .format(instant);
+    private interface ChunkSink extends AutoCloseable {
+        void write(String figi, List<HistoricCandle> candles) throws IOException;
+
+        long getRowsWritten();
+
+        @Override
+        void close() throws IOException;
     }
 
     /**
-     * Конвертирует Quotation (units + nano) в double
+     * Названия интервалов для выбора в UI (в том же порядке, что и в {@link #getCandleInterval})
      */
-    private double quotationToDouble(ru.tinkoff.piapi.contract.v1.Quotation quotation) {
-        return quotation.getUnits() + quotation.getNano() / 1_000_000_000.0;
-    }
+    public static final String[] INTERVAL_NAMES = {
+            "1 минута", "5 минут", "15 минут", "1 час", "1 день", "1 неделя", "1 месяц"
+    };
 
     /**
      * Маппинг названия интервала в CandleInterval enum
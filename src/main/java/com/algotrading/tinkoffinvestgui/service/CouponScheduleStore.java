@@ -0,0 +1,293 @@
+package com.algotrading.tinkoffinvestgui.service;
+
+import com.algotrading.tinkoffinvestgui.api.BondsService;
+import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
+import com.algotrading.tinkoffinvestgui.metrics.MetricsRegistry;
+import com.algotrading.tinkoffinvestgui.model.CouponSchedule;
+import com.algotrading.tinkoffinvestgui.repository.BondCouponsRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.tinkoff.piapi.contract.v1.Bond;
+import ru.tinkoff.piapi.contract.v1.Coupon;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Купонные графики облигаций в памяти для {@link BondYieldCalculator}.
+ *
+ * При первом обращении графики читаются из БД (public.bond_coupons) одним запросом.
+ * Фоновое обновление (раз в coupons.refresh.hours, по умолчанию 24 ч) запрашивает
+ * GetBondCoupons только для облигаций справочника, у которых графика нет, он старше
+ * STALE_DAYS, сменились номинал или погашение, или не объявлен ближайший плавающий купон.
+ * coupons.enabled=false отключает обновление (сохранённые графики читаются как обычно).
+ */
+public class CouponScheduleStore {
+    private static final Logger log = LoggerFactory.getLogger(CouponScheduleStore.class);
+    private static final CouponScheduleStore INSTANCE = new CouponScheduleStore();
+
+    private static final long DEFAULT_REFRESH_HOURS = 24;
+    private static final int STALE_DAYS = 7;
+    private static final int HISTORY_YEARS = 2;
+    private static final int BATCH_SIZE = 50;
+
+    private final BondCouponsRepository repository = new BondCouponsRepository();
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+    private volatile Map<String, CouponSchedule> schedules = Collections.emptyMap();
+    private volatile boolean loaded;
+    private ScheduledExecutorService scheduler;
+
+    private CouponScheduleStore() {
+    }
+
+    public static CouponScheduleStore getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * График облигации (null, если не загружен)
+     */
+    public CouponSchedule get(String figi) {
+        ensureLoaded();
+        return schedules.get(figi);
+    }
+
+    public int size() {
+        return schedules.size();
+    }
+
+    /**
+     * Запуск фонового обновления
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        if ("false".equalsIgnoreCase(ConnectorConfig.getPropertyValue("coupons.enabled"))) {
+            log.info("Обновление купонных графиков отключено (coupons.enabled=false)");
+            return;
+        }
+        long refreshHours = resolveRefreshHours();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "coupon-schedules");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::runScheduled, 0, refreshHours, TimeUnit.HOURS);
+        log.info("Обновление купонных графиков запущено (каждые {} ч)", refreshHours);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private void runScheduled() {
+        try {
+            MetricsRegistry.getInstance()
+                    .timer(MetricsRegistry.SCHEDULER_TICK, "task", "coupon_schedules")
+                    .record(() -> {
+                        refresh();
+                    });
+        } catch (Exception e) {
+            log.error("❌ Ошибка обновления купонных графиков", e);
+        }
+    }
+
+    /**
+     * Догрузить из API недостающие и устаревшие графики облигаций справочника
+     *
+     * @return число обновлённых графиков; -1, если обновление уже идёт
+     */
+    public int refresh() {
+        if (!refreshing.compareAndSet(false, true)) {
+            log.warn("⚠️ Купонные графики уже обновляются");
+            return -1;
+        }
+        try {
+            ensureLoaded();
+            long started = System.currentTimeMillis();
+            LocalDate today = LocalDate.now();
+            Instant now = Instant.now();
+            Instant staleBefore = now.minus(Duration.ofDays(STALE_DAYS));
+            Instant todayStart = today.atStartOfDay(ZoneId.systemDefault()).toInstant();
+
+            List<Bond> candidates = new ArrayList<>();
+            Map<String, CouponSchedule> current = schedules;
+            for (Bond bond : BondUniverseService.getInstance().getScreener().getBonds()) {
+                if (needsRefresh(bond, current.get(bond.getFigi()), today, staleBefore, todayStart)) {
+                    candidates.add(bond);
+                }
+            }
+            log.info("📡 Купонные графики: к обновлению {} облигаций (в памяти {})", candidates.size(), current.size());
+            if (candidates.isEmpty()) {
+                return 0;
+            }
+
+            BondsService bondsService = new BondsService(
+                    ConnectorConfig.getApiToken(),
+                    ConnectorConfig.API_URL,
+                    ConnectorConfig.API_PORT
+            );
+            int updated = 0;
+            int failed = 0;
+            try {
+                List<CouponSchedule> batch = new ArrayList<>(BATCH_SIZE);
+                for (Bond bond : candidates) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        log.info("⏹ Обновление купонных графиков прервано");
+                        break;
+                    }
+                    try {
+                        LocalDate to = bond.hasMaturityDate()
+                                ? LocalDate.ofEpochDay(bond.getMaturityDate().getSeconds() / 86400).plusDays(1)
+                                : today.plusYears(30);
+                        List<Coupon> coupons = bondsService.getBondCoupons(
+                                bond.getFigi(), today.minusYears(HISTORY_YEARS), to);
+                        batch.add(toSchedule(bond, coupons, now));
+                    } catch (Exception e) {
+                        failed++;
+                        log.debug("Нет купонов для {}: {}", bond.getTicker(), e.getMessage());
+                    }
+                    if (batch.size() == BATCH_SIZE) {
+                        updated += save(batch);
+                        log.info("⏳ Купонные графики: {}/{}", updated, candidates.size());
+                    }
+                }
+                updated += save(batch);
+            } finally {
+                bondsService.close();
+            }
+
+            log.info("✅ Купонные графики обновлены за {} сек: {} облигаций, ошибок {}",
+                    (System.currentTimeMillis() - started) / 1000, updated, failed);
+            return updated;
+        } finally {
+            refreshing.set(false);
+        }
+    }
+
+    /**
+     * Сохранить пачку и подменить графики в памяти (копия карты — читатели без блокировок)
+     */
+    private int save(List<CouponSchedule> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        repository.replaceAll(batch);
+        synchronized (this) {
+            Map<String, CouponSchedule> next = new HashMap<>(schedules);
+            for (CouponSchedule schedule : batch) {
+                next.put(schedule.getFigi(), schedule);
+            }
+            schedules = Collections.unmodifiableMap(next);
+        }
+        int count = batch.size();
+        batch.clear();
+        return count;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            try {
+                long started = System.currentTimeMillis();
+                Map<String, CouponSchedule> fromDb = repository.findAll();
+                Map<String, CouponSchedule> merged = new HashMap<>(fromDb);
+                merged.putAll(schedules);
+                schedules = Collections.unmodifiableMap(merged);
+                log.info("✅ Купонные графики загружены из БД: {} облигаций за {} мс",
+                        fromDb.size(), System.currentTimeMillis() - started);
+            } catch (Exception e) {
+                log.warn("⚠️ Не удалось загрузить купонные графики из БД: {}", e.getMessage());
+            }
+            // Повторно не читаем: при ошибке графики появятся с ближайшим обновлением из API
+            loaded = true;
+        }
+    }
+
+    private static boolean needsRefresh(Bond bond, CouponSchedule schedule, LocalDate today,
+                                        Instant staleBefore, Instant todayStart) {
+        if (schedule == null || schedule.getSyncedAt().isBefore(staleBefore)) {
+            return true;
+        }
+        if (Math.abs(schedule.getNominal() - nominalOf(bond)) > 1e-6 || schedule.getMaturityDay() != maturityDayOf(bond)) {
+            return true;
+        }
+        // Ставка плавающего купона объявляется к дате фиксации — перепроверяем раз в день
+        return schedule.isNextPaymentUnknown(today.toEpochDay()) && schedule.getSyncedAt().isBefore(todayStart);
+    }
+
+    /**
+     * График из ответа GetBondCoupons (по дате выплаты, одна выплата на дату)
+     */
+    static CouponSchedule toSchedule(Bond bond, List<Coupon> coupons, Instant syncedAt) {
+        List<Coupon> sorted = new ArrayList<>(coupons);
+        sorted.sort(Comparator.comparingLong(c -> c.getCouponDate().getSeconds()));
+
+        long[] days = new long[sorted.size()];
+        double[] payments = new double[sorted.size()];
+        int[] periods = new int[sorted.size()];
+        int size = 0;
+        for (Coupon coupon : sorted) {
+            long day = Math.floorDiv(coupon.getCouponDate().getSeconds(), 86400);
+            if (size > 0 && days[size - 1] == day) {
+                size--;
+            }
+            days[size] = day;
+            payments[size] = coupon.getPayOneBond().getUnits() + coupon.getPayOneBond().getNano() / 1e9;
+            periods[size] = coupon.getCouponPeriod();
+            size++;
+        }
+        return new CouponSchedule(bond.getFigi(), nominalOf(bond), maturityDayOf(bond),
+                Arrays.copyOf(days, size), Arrays.copyOf(payments, size),
+                Arrays.copyOf(periods, size), syncedAt);
+    }
+
+    private static double nominalOf(Bond bond) {
+        return bond.getNominal().getUnits() + bond.getNominal().getNano() / 1e9;
+    }
+
+    private static long maturityDayOf(Bond bond) {
+        return bond.hasMaturityDate()
+                ? Math.floorDiv(bond.getMaturityDate().getSeconds(), 86400)
+                : CouponSchedule.NO_MATURITY;
+    }
+
+    private static long resolveRefreshHours() {
+        String value = ConnectorConfig.getPropertyValue("coupons.refresh.hours");
+        if (value == null || value.trim().isEmpty()) {
+            return DEFAULT_REFRESH_HOURS;
+        }
+        try {
+            long hours = Long.parseLong(value.trim());
+            if (hours > 0) {
+                return hours;
+            }
+        } catch (NumberFormatException ignored) {
+            // ниже — предупреждение и значение по умолчанию
+        }
+        log.warn("⚠️ Некорректное значение coupons.refresh.hours={}, используется {}", value, DEFAULT_REFRESH_HOURS);
+        return DEFAULT_REFRESH_HOURS;
+    }
+}
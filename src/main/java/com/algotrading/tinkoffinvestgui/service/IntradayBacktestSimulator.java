@@ -0,0 +1,205 @@
+package com.algotrading.tinkoffinvestgui.service;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Внутридневная симуляция стратегии "ловец дна" для одной облигации.
+ *
+ * Сигнал считается как в ежедневной подготовке: по дневным закрытиям ДО текущего дня
+ * (buy = вчерашнее закрытие − k·σ за analysisPeriodMonths). Исполнение — по внутридневным
+ * свечам, которые читаются потоково из колоночного файла (группа строк за группой):
+ * - лимитная покупка выставляется в executionTime (МСК) и живёт до конца дня,
+ *   исполняется на первой свече с low ≤ buy по min(open, buy);
+ * - после исполнения сразу стоит продажа по таргету (Stop-on-Fill), она исполняется
+ *   на следующих свечах при high ≥ target по max(open, target);
+ * - через MAX_HOLDING_DAYS дней позиция закрывается по рынку в executionTime;
+ * - в конце периода — по последнему закрытию.
+ *
+ * Цены — в % от номинала, как в дневном бэктесте, чтобы отчёты были сравнимы.
+ */
+public class IntradayBacktestSimulator {
+
+    private static final ZoneId MOSCOW = ZoneId.of("Europe/Moscow");
+    private static final int MAX_HOLDING_DAYS = 30;
+
+    private final double volatilityMultiplier;
+    private final double profitMargin;
+    private final double commission;
+    private final int analysisPeriodMonths;
+    private final LocalTime executionTime;
+
+    public IntradayBacktestSimulator(double volatilityMultiplier, double profitMargin, double commission,
+                                     int analysisPeriodMonths, LocalTime executionTime) {
+        this.volatilityMultiplier = volatilityMultiplier;
+        this.profitMargin = profitMargin;
+        this.commission = commission;
+        this.analysisPeriodMonths = analysisPeriodMonths;
+        this.executionTime = executionTime;
+    }
+
+    /**
+     * @param daily    дневные свечи с запасом на окно анализа (для сигналов)
+     * @param intraday поток внутридневных свечей за период бэктеста
+     */
+    public List<BondStrategyBacktestService.Trade> run(CandlesColumnarFormat.RowGroup daily,
+                                                       CandlesColumnarFormat.Reader intraday,
+                                                       LocalDate startDate, LocalDate endDate) throws IOException {
+        DailySignals signals = new DailySignals(daily);
+        List<BondStrategyBacktestService.Trade> trades = new ArrayList<>();
+
+        long startDay = startDate.toEpochDay();
+        long endDay = endDate.toEpochDay();
+        long currentDay = Long.MIN_VALUE;
+        long nextDayStart = Long.MIN_VALUE;
+        long executionSecond = 0;
+        boolean buyPlacedToday = false;
+        double buyPrice = 0;
+        double volatility = 0;
+
+        BondStrategyBacktestService.Trade position = null;
+        double lastClose = Double.NaN;
+
+        CandlesColumnarFormat.RowGroup group;
+        while ((group = intraday.next()) != null) {
+            long[] times = group.times;
+            for (int i = 0; i < times.length; i++) {
+                long time = times[i];
+                // Смена торгового дня: дневная заявка на покупку снимается
+                if (time >= nextDayStart) {
+                    LocalDate date = LocalDate.ofInstant(Instant.ofEpochSecond(time), MOSCOW);
+                    currentDay = date.toEpochDay();
+                    executionSecond = date.atTime(executionTime).atZone(MOSCOW).toEpochSecond();
+                    nextDayStart = date.plusDays(1).atStartOfDay(MOSCOW).toEpochSecond();
+                    buyPlacedToday = false;
+                    buyPrice = 0;
+                }
+                if (currentDay < startDay || currentDay > endDay) {
+                    continue;
+                }
+                double open = group.open[i];
+                double high = group.high[i];
+                double low = group.low[i];
+                lastClose = group.close[i];
+
+                if (position != null) {
+                    int holdingDays = (int) (currentDay - position.getBuyDate().toEpochDay());
+                    if (high >= position.getTargetSellPrice()) {
+                        trades.add(close(position, LocalDate.ofEpochDay(currentDay),
+                                Math.max(open, position.getTargetSellPrice()), holdingDays));
+                        position = null;
+                    } else if (holdingDays >= MAX_HOLDING_DAYS && time >= executionSecond) {
+                        trades.add(close(position, LocalDate.ofEpochDay(currentDay), open, holdingDays));
+                        position = null;
+                    }
+                    // Покупка в день выхода — только со следующего дня, как в живой торговле
+                    buyPlacedToday = true;
+                    continue;
+                }
+
+                if (time < executionSecond) {
+                    continue;
+                }
+                if (!buyPlacedToday) {
+                    buyPlacedToday = true;
+                    double[] signal = signals.at(currentDay);
+                    if (signal != null) {
+                        buyPrice = signal[0];
+                        volatility = signal[1];
+                    }
+                }
+                if (buyPrice > 0 && low <= buyPrice) {
+                    position = open(LocalDate.ofEpochDay(currentDay), Math.min(open, buyPrice), volatility);
+                    buyPrice = 0;
+                }
+            }
+        }
+
+        if (position != null && !Double.isNaN(lastClose)) {
+            LocalDate sellDate = LocalDate.ofEpochDay(Math.min(endDay, currentDay));
+            trades.add(close(position, sellDate, lastClose,
+                    (int) (sellDate.toEpochDay() - position.getBuyDate().toEpochDay())));
+        }
+        return trades;
+    }
+
+    private BondStrategyBacktestService.Trade open(LocalDate date, double price, double volatility) {
+        BondStrategyBacktestService.Trade trade = new BondStrategyBacktestService.Trade();
+        double buyCommission = price * commission;
+        double targetProfit = price * profitMargin;
+        double sellCommission = (price + targetProfit) * commission;
+        trade.setBuyDate(date);
+        trade.setBuyPrice(price);
+        trade.setVolatility(volatility);
+        trade.setBuyCommission(buyCommission);
+        trade.setTargetSellPrice(price + buyCommission + targetProfit + sellCommission);
+        return trade;
+    }
+
+    private BondStrategyBacktestService.Trade close(BondStrategyBacktestService.Trade trade, LocalDate date,
+                                                    double price, int holdingDays) {
+        double sellCommission = price * commission;
+        double profitBeforeCommission = price - trade.getBuyPrice();
+        double netProfit = profitBeforeCommission - trade.getBuyCommission() - sellCommission;
+        trade.setSellDate(date);
+        trade.setSellPrice(price);
+        trade.setSellCommission(sellCommission);
+        trade.setHoldingDays(holdingDays);
+        trade.setProfitBeforeCommission(profitBeforeCommission);
+        trade.setProfit(netProfit);
+        trade.setProfitPercent(netProfit / trade.getBuyPrice() * 100);
+        return trade;
+    }
+
+    /**
+     * Сигналы по дневным закрытиям: окно [день − N мес., день) по префиксным суммам.
+     * Дни запрашиваются по возрастанию, поэтому границы окна только сдвигаются вперёд.
+     */
+    private final class DailySignals {
+        private final long[] days;
+        private final double[] close;
+        private final double[] prefixSum;
+        private final double[] prefixSumSq;
+        private int from;
+        private int to;
+
+        DailySignals(CandlesColumnarFormat.RowGroup daily) {
+            int n = daily.size();
+            this.days = new long[n];
+            this.close = daily.close;
+            this.prefixSum = new double[n + 1];
+            this.prefixSumSq = new double[n + 1];
+            for (int i = 0; i < n; i++) {
+                days[i] = LocalDate.ofInstant(Instant.ofEpochSecond(daily.times[i]), MOSCOW).toEpochDay();
+                prefixSum[i + 1] = prefixSum[i] + close[i];
+                prefixSumSq[i + 1] = prefixSumSq[i] + close[i] * close[i];
+            }
+        }
+
+        /**
+         * @return {buyPrice, volatility} или null, если истории мало
+         */
+        double[] at(long day) {
+            while (to < days.length && days[to] < day) {
+                to++;
+            }
+            long windowFrom = LocalDate.ofEpochDay(day).minusMonths(analysisPeriodMonths).toEpochDay();
+            while (from < to && days[from] < windowFrom) {
+                from++;
+            }
+            int count = to - from;
+            if (count < 2) {
+                return null;
+            }
+            double mean = (prefixSum[to] - prefixSum[from]) / count;
+            double meanSq = (prefixSumSq[to] - prefixSumSq[from]) / count;
+            double volatility = Math.sqrt(Math.max(0, meanSq - mean * mean));
+            return new double[]{close[to - 1] - volatilityMultiplier * volatility, volatility};
+        }
+    }
+}
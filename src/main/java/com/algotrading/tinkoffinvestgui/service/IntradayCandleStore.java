@@ -0,0 +1,196 @@
+package com.algotrading.tinkoffinvestgui.service;
+
+import com.algotrading.tinkoffinvestgui.api.CandlesApiService;
+import com.algotrading.tinkoffinvestgui.api.CandlesChunkedDownloader;
+import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.tinkoff.piapi.contract.v1.CandleInterval;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Локальное хранилище свечей для бэктеста в колоночном формате (.cndl.gz).
+ *
+ * Один файл = FIGI × интервал × период. При первом обращении период загружается
+ * кусками через CandlesChunkedDownloader и сразу пишется группами строк —
+ * ни при загрузке, ни при чтении весь период не держится в памяти.
+ * Файл за более широкий период переиспользуется для любого вложенного периода,
+ * поэтому сужение дат в диалоге бэктеста не вызывает повторной загрузки.
+ * Папка: backtest.candles.dir из invest.properties, иначе ~/.tinkoff-invest-gui/candles.
+ */
+public class IntradayCandleStore {
+
+    private static final Logger log = LoggerFactory.getLogger(IntradayCandleStore.class);
+    private static final DateTimeFormatter FILE_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final CandlesChunkedDownloader downloader;
+    private final Path directory;
+
+    public IntradayCandleStore(CandlesApiService candlesApiService) {
+        this.downloader = new CandlesChunkedDownloader(candlesApiService);
+        this.directory = resolveDirectory();
+    }
+
+    /**
+     * Файл со свечами за период (загружается, если нет файла, покрывающего период).
+     * Файл может покрывать более широкий период — лишние свечи отсекает читающий.
+     */
+    public Path ensure(String figi, LocalDate from, LocalDate to, CandleInterval interval) throws IOException {
+        Path covering = findCovering(figi, from, to, interval);
+        if (covering != null) {
+            return covering;
+        }
+
+        Path file = directory.resolve(fileName(figi, interval, from, to));
+        Files.createDirectories(directory);
+        Path tmp = Files.createTempFile(directory, figi, ".tmp");
+        long started = System.currentTimeMillis();
+        long rows;
+        try (CandlesColumnarFormat.Writer writer = new CandlesColumnarFormat.Writer(tmp)) {
+            downloader.forEachChunk(figi, from, to, interval,
+                    candles -> writer.writeRowGroup(CandlesColumnarFormat.RowGroup.of(figi, candles)));
+            rows = writer.getRowsWritten();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        // Файл появляется целиком или не появляется: прерванная загрузка не попадёт в кэш
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("💾 Свечи {} {} {} - {}: {} шт. сохранены в {} за {} мс",
+                figi, interval.name(), from, to, rows, file.getFileName(), System.currentTimeMillis() - started);
+        deleteCoveredBy(figi, from, to, interval, file);
+        return file;
+    }
+
+    /**
+     * Свечи за период [from, to) одной группой строк.
+     * Закрытый период (to раньше сегодня) читается из файла, текущий — всегда из API:
+     * сегодняшняя свеча ещё меняется и в файл не пишется.
+     */
+    public CandlesColumnarFormat.RowGroup load(String figi, LocalDate from, LocalDate to,
+                                               CandleInterval interval) throws IOException {
+        if (!to.isBefore(LocalDate.now())) {
+            return CandlesColumnarFormat.RowGroup.of(figi, downloader.download(figi, from, to, interval));
+        }
+
+        long fromSecond = from.atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+        long toSecond = to.atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+        List<CandlesColumnarFormat.RowGroup> groups = new ArrayList<>();
+        int total = 0;
+        try (CandlesColumnarFormat.Reader reader = new CandlesColumnarFormat.Reader(ensure(figi, from, to, interval))) {
+            CandlesColumnarFormat.RowGroup group;
+            while ((group = reader.next()) != null) {
+                groups.add(group);
+                total += group.size();
+            }
+        }
+
+        CandlesColumnarFormat.RowGroup result = new CandlesColumnarFormat.RowGroup(figi, total);
+        int n = 0;
+        for (CandlesColumnarFormat.RowGroup group : groups) {
+            for (int i = 0; i < group.size(); i++) {
+                long time = group.times[i];
+                if (time < fromSecond || time >= toSecond) {
+                    continue;
+                }
+                result.times[n] = time;
+                result.open[n] = group.open[i];
+                result.high[n] = group.high[i];
+                result.low[n] = group.low[i];
+                result.close[n] = group.close[i];
+                result.volume[n] = group.volume[i];
+                n++;
+            }
+        }
+        return n == total ? result : result.slice(0, n);
+    }
+
+    private Path findCovering(String figi, LocalDate from, LocalDate to, CandleInterval interval) throws IOException {
+        Path exact = directory.resolve(fileName(figi, interval, from, to));
+        if (Files.exists(exact)) {
+            return exact;
+        }
+        for (Path file : listFiles(figi, interval)) {
+            LocalDate[] range = parseRange(figi, interval, file);
+            if (range != null && !range[0].isAfter(from) && !range[1].isBefore(to)) {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Удаляет файлы, чей период целиком входит в только что загруженный
+     */
+    private void deleteCoveredBy(String figi, LocalDate from, LocalDate to, CandleInterval interval, Path keep) {
+        try {
+            for (Path file : listFiles(figi, interval)) {
+                LocalDate[] range = parseRange(figi, interval, file);
+                if (range != null && !file.equals(keep) && !range[0].isBefore(from) && !range[1].isAfter(to)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("⚠️ Не удалось удалить устаревшие файлы свечей {}: {}", figi, e.getMessage());
+        }
+    }
+
+    private List<Path> listFiles(String figi, CandleInterval interval) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        String prefix = figi + "_" + interval.name() + "_";
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(f -> {
+                String name = f.getFileName().toString();
+                return name.startsWith(prefix) && name.endsWith(CandlesColumnarFormat.FILE_EXTENSION);
+            }).collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * {from, to} из имени файла или null, если имя не в формате хранилища
+     */
+    private static LocalDate[] parseRange(String figi, CandleInterval interval, Path file) {
+        String name = file.getFileName().toString();
+        String range = name.substring((figi + "_" + interval.name() + "_").length(),
+                name.length() - CandlesColumnarFormat.FILE_EXTENSION.length());
+        String[] parts = range.split("-");
+        if (parts.length != 2) {
+            return null;
+        }
+        try {
+            return new LocalDate[]{
+                    LocalDate.parse(parts[0], FILE_DATE_FORMAT),
+                    LocalDate.parse(parts[1], FILE_DATE_FORMAT)
+            };
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static String fileName(String figi, CandleInterval interval, LocalDate from, LocalDate to) {
+        return String.format("%s_%s_%s-%s%s", figi, interval.name(),
+                from.format(FILE_DATE_FORMAT), to.format(FILE_DATE_FORMAT), CandlesColumnarFormat.FILE_EXTENSION);
+    }
+
+    private static Path resolveDirectory() {
+        String configured = ConnectorConfig.getPropertyValue("backtest.candles.dir");
+        return configured != null && !configured.trim().isEmpty()
+                ? Paths.get(configured.trim())
+                : Paths.get(System.getProperty("user.home"), ".tinkoff-invest-gui", "candles");
+    }
+}
@@ -0,0 +1,425 @@
+package com.algotrading.tinkoffinvestgui.service;
+
+import com.algotrading.tinkoffinvestgui.api.BearerTokenCallCredentials;
+import com.algotrading.tinkoffinvestgui.api.GrpcChannelManager;
+import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
+import com.algotrading.tinkoffinvestgui.util.MoneyConverter;
+import io.grpc.stub.StreamObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.tinkoff.piapi.contract.v1.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Менеджер подписок MarketDataStream (последние цены и минутные свечи).
+ *
+ * Держит «табло цен» FIGI → (цена, время) в ConcurrentHashMap без блокировок на чтение
+ * и рассылает обновления подписчикам. При обрыве стрима переподключается
+ * с экспоненциальной задержкой и заново отправляет все подписки.
+ *
+ * Стрим считается живым только после первого ответа сервера. У каждого открытого стрима свой
+ * номер поколения: ответы и ошибки уже заменённого стрима игнорируются.
+ *
+ * Слушатели вызываются из потока gRPC — UI-компоненты сами переходят в EDT.
+ */
+public class MarketDataStreamManager {
+    private static final Logger log = LoggerFactory.getLogger(MarketDataStreamManager.class);
+    private static final MarketDataStreamManager INSTANCE = new MarketDataStreamManager();
+
+    /** Лимит подписок на один стрим по документации API */
+    private static final int MAX_SUBSCRIPTIONS_PER_STREAM = 300;
+    private static final long MAX_RECONNECT_DELAY_SECONDS = 60;
+
+    private final Map<String, PricePoint> priceBoard = new ConcurrentHashMap<>();
+    private final Map<String, CandlePoint> lastCandles = new ConcurrentHashMap<>();
+    private final Set<String> lastPriceFigis = ConcurrentHashMap.newKeySet();
+    private final Set<String> candleFigis = ConcurrentHashMap.newKeySet();
+    private final List<PriceListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicInteger reconnectAttempt = new AtomicInteger();
+
+    private final ScheduledExecutorService reconnectExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "md-stream-reconnect");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile StreamObserver<MarketDataRequest> requestStream;
+    /** Поколение текущего стрима: растёт при каждом подключении и остановке */
+    private volatile long streamGeneration;
+    private ScheduledFuture<?> pendingReconnect;
+    private volatile boolean running = false;
+    private volatile boolean connected = false;
+
+    private MarketDataStreamManager() {
+    }
+
+    public static MarketDataStreamManager getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Открывает стрим (неблокирующий вызов)
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        log.info("📡 Запуск MarketDataStream");
+        connect();
+    }
+
+    /**
+     * Закрывает стрим и останавливает переподключение
+     */
+    public synchronized void stop() {
+        running = false;
+        connected = false;
+        streamGeneration++;
+        if (pendingReconnect != null) {
+            pendingReconnect.cancel(false);
+            pendingReconnect = null;
+        }
+        StreamObserver<MarketDataRequest> stream = requestStream;
+        requestStream = null;
+        if (stream != null) {
+            try {
+                stream.onCompleted();
+            } catch (Exception e) {
+                log.debug("Стрим уже закрыт: {}", e.getMessage());
+            }
+        }
+        log.info("⏹️ MarketDataStream остановлен");
+    }
+
+    /**
+     * Подписка на последние цены. Повторная подписка на тот же FIGI игнорируется.
+     */
+    public void subscribeLastPrices(Collection<String> figis) {
+        List<String> added = addNew(lastPriceFigis, figis);
+        // В открытый стрим отправляем сразу; при переподключении уйдут все подписки
+        if (!added.isEmpty() && requestStream != null) {
+            sendLastPriceSubscription(added);
+        }
+    }
+
+    /**
+     * Подписка на минутные свечи
+     */
+    public void subscribeCandles(Collection<String> figis) {
+        List<String> added = addNew(candleFigis, figis);
+        if (!added.isEmpty() && requestStream != null) {
+            sendCandleSubscription(added);
+        }
+    }
+
+    public void addListener(PriceListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(PriceListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Последняя цена из стрима, если стрим активен и инструмент в подписке
+     *
+     * @return точка цены или null
+     */
+    public PricePoint getLivePrice(String figi) {
+        if (!connected || !lastPriceFigis.contains(figi)) {
+            return null;
+        }
+        return priceBoard.get(figi);
+    }
+
+    /**
+     * Последняя (в т.ч. незакрытая) минутная свеча
+     */
+    public CandlePoint getLastCandle(String figi) {
+        return lastCandles.get(figi);
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    // ============================================================
+    // Соединение
+    // ============================================================
+
+    private synchronized void connect() {
+        if (!running) {
+            return;
+        }
+        pendingReconnect = null;
+        connected = false;
+        long generation = ++streamGeneration;
+        try {
+            MarketDataStreamServiceGrpc.MarketDataStreamServiceStub stub = MarketDataStreamServiceGrpc
+                    .newStub(GrpcChannelManager.getInstance()
+                            .getChannel(ConnectorConfig.API_URL, ConnectorConfig.API_PORT))
+                    .withCallCredentials(new BearerTokenCallCredentials(ConnectorConfig.getApiToken()));
+
+            requestStream = stub.marketDataStream(new ResponseObserver(generation));
+
+            // После (пере)подключения отправляем все накопленные подписки;
+            // без подписок запрашиваем их список, чтобы сервер подтвердил стрим
+            if (!lastPriceFigis.isEmpty()) {
+                sendLastPriceSubscription(new ArrayList<>(lastPriceFigis));
+            }
+            if (!candleFigis.isEmpty()) {
+                sendCandleSubscription(new ArrayList<>(candleFigis));
+            }
+            if (lastPriceFigis.isEmpty() && candleFigis.isEmpty()) {
+                send(MarketDataRequest.newBuilder()
+                        .setGetMySubscriptions(GetMySubscriptions.newBuilder())
+                        .build());
+            }
+            log.info("📡 MarketDataStream открыт, ждём ответа сервера: цены {}, свечи {}",
+                    lastPriceFigis.size(), candleFigis.size());
+        } catch (Exception e) {
+            log.error("❌ Ошибка подключения MarketDataStream", e);
+            requestStream = null;
+            scheduleReconnect();
+        }
+    }
+
+    /**
+     * Стрим поколения generation оборвался: переподключаемся, если он ещё текущий
+     */
+    private synchronized void onStreamClosed(long generation) {
+        if (generation != streamGeneration) {
+            return;
+        }
+        connected = false;
+        requestStream = null;
+        scheduleReconnect();
+    }
+
+    private synchronized void scheduleReconnect() {
+        if (!running || pendingReconnect != null) {
+            return;
+        }
+        int attempt = reconnectAttempt.incrementAndGet();
+        long delay = Math.min(MAX_RECONNECT_DELAY_SECONDS, 1L << Math.min(attempt, 6));
+        log.warn("⚠️ MarketDataStream: переподключение через {} сек (попытка {})", delay, attempt);
+        pendingReconnect = reconnectExecutor.schedule(this::connect, delay, TimeUnit.SECONDS);
+    }
+
+    private void sendLastPriceSubscription(List<String> figis) {
+        SubscribeLastPriceRequest.Builder builder = SubscribeLastPriceRequest.newBuilder()
+                .setSubscriptionAction(SubscriptionAction.SUBSCRIPTION_ACTION_SUBSCRIBE);
+        for (String figi : figis) {
+            builder.addInstruments(LastPriceInstrument.newBuilder().setFigi(figi).build());
+        }
+        send(MarketDataRequest.newBuilder().setSubscribeLastPriceRequest(builder).build());
+        log.debug("📡 Подписка на последние цены: {} FIGI", figis.size());
+    }
+
+    private void sendCandleSubscription(List<String> figis) {
+        SubscribeCandlesRequest.Builder builder = SubscribeCandlesRequest.newBuilder()
+                .setSubscriptionAction(SubscriptionAction.SUBSCRIPTION_ACTION_SUBSCRIBE);
+        for (String figi : figis) {
+            builder.addInstruments(CandleInstrument.newBuilder()
+                    .setFigi(figi)
+                    .setInterval(SubscriptionInterval.SUBSCRIPTION_INTERVAL_ONE_MINUTE)
+                    .build());
+        }
+        send(MarketDataRequest.newBuilder().setSubscribeCandlesRequest(builder).build());
+        log.debug("📡 Подписка на минутные свечи: {} FIGI", figis.size());
+    }
+
+    private void send(MarketDataRequest request) {
+        StreamObserver<MarketDataRequest> stream = requestStream;
+        if (stream == null) {
+            return;
+        }
+        // StreamObserver не потокобезопасен — сериализуем отправку
+        synchronized (this) {
+            stream.onNext(request);
+        }
+    }
+
+    private List<String> addNew(Set<String> target, Collection<String> figis) {
+        List<String> added = new ArrayList<>();
+        for (String figi : figis) {
+            if (figi != null && !figi.isEmpty() && target.add(figi)) {
+                added.add(figi);
+            }
+        }
+        if (lastPriceFigis.size() + candleFigis.size() > MAX_SUBSCRIPTIONS_PER_STREAM) {
+            log.warn("⚠️ Подписок больше {} на один стрим — часть может быть отклонена брокером",
+                    MAX_SUBSCRIPTIONS_PER_STREAM);
+        }
+        return added;
+    }
+
+    // ============================================================
+    // Обработка ответов
+    // ============================================================
+
+    private class ResponseObserver implements StreamObserver<MarketDataResponse> {
+        private final long generation;
+
+        ResponseObserver(long generation) {
+            this.generation = generation;
+        }
+
+        @Override
+        public void onNext(MarketDataResponse response) {
+            if (generation != streamGeneration) {
+                return;
+            }
+            if (!connected) {
+                connected = true;
+                reconnectAttempt.set(0);
+                log.info("✅ MarketDataStream подключён: цены {}, свечи {}", lastPriceFigis.size(), candleFigis.size());
+            }
+
+            if (response.hasLastPrice()) {
+                onLastPrice(response.getLastPrice());
+            } else if (response.hasCandle()) {
+                onCandle(response.getCandle());
+            } else if (response.hasSubscribeLastPriceResponse()) {
+                for (LastPriceSubscription s : response.getSubscribeLastPriceResponse().getLastPriceSubscriptionsList()) {
+                    if (s.getSubscriptionStatus() != SubscriptionStatus.SUBSCRIPTION_STATUS_SUCCESS) {
+                        log.warn("⚠️ Подписка на цену {} отклонена: {}", s.getFigi(), s.getSubscriptionStatus());
+                        lastPriceFigis.remove(s.getFigi());
+                    }
+                }
+            } else if (response.hasSubscribeCandlesResponse()) {
+                for (CandleSubscription s : response.getSubscribeCandlesResponse().getCandlesSubscriptionsList()) {
+                    if (s.getSubscriptionStatus() != SubscriptionStatus.SUBSCRIPTION_STATUS_SUCCESS) {
+                        log.warn("⚠️ Подписка на свечи {} отклонена: {}", s.getFigi(), s.getSubscriptionStatus());
+                        candleFigis.remove(s.getFigi());
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (generation != streamGeneration) {
+                log.debug("Ошибка заменённого MarketDataStream: {}", t.getMessage());
+                return;
+            }
+            log.error("❌ MarketDataStream оборван", t);
+            onStreamClosed(generation);
+        }
+
+        @Override
+        public void onCompleted() {
+            if (generation != streamGeneration) {
+                return;
+            }
+            log.warn("⚠️ MarketDataStream закрыт сервером");
+            onStreamClosed(generation);
+        }
+    }
+
+    private void onLastPrice(LastPrice lastPrice) {
+        Instant time = Instant.ofEpochSecond(lastPrice.getTime().getSeconds(), lastPrice.getTime().getNanos());
+        PricePoint point = new PricePoint(MoneyConverter.toBigDecimal(lastPrice.getPrice()), time);
+        priceBoard.put(lastPrice.getFigi(), point);
+        notifyListeners(lastPrice.getFigi(), point);
+    }
+
+    private void onCandle(Candle candle) {
+        Instant time = Instant.ofEpochSecond(candle.getTime().getSeconds(), candle.getTime().getNanos());
+        lastCandles.put(candle.getFigi(), new CandlePoint(
+                MoneyConverter.toBigDecimal(candle.getOpen()),
+                MoneyConverter.toBigDecimal(candle.getHigh()),
+                MoneyConverter.toBigDecimal(candle.getLow()),
+                MoneyConverter.toBigDecimal(candle.getClose()),
+                candle.getVolume(),
+                time));
+
+        // Для инструментов без подписки на цену закрытие свечи — лучшая доступная цена
+        if (!lastPriceFigis.contains(candle.getFigi())) {
+            PricePoint point = new PricePoint(MoneyConverter.toBigDecimal(candle.getClose()), time);
+            priceBoard.put(candle.getFigi(), point);
+            notifyListeners(candle.getFigi(), point);
+        }
+    }
+
+    private void notifyListeners(String figi, PricePoint point) {
+        for (PriceListener listener : listeners) {
+            try {
+                listener.onPrice(figi, point);
+            } catch (Exception e) {
+                log.error("Ошибка в обработчике цены {}: {}", figi, e.getMessage(), e);
+            }
+        }
+    }
+
+    // ============================================================
+    // Типы
+    // ============================================================
+
+    /**
+     * Подписчик на обновления цен
+     */
+    public interface PriceListener {
+        void onPrice(String figi, PricePoint point);
+    }
+
+    /**
+     * Цена с временем биржи (неизменяемая)
+     */
+    public static class PricePoint {
+        private final BigDecimal price;
+        private final Instant time;
+
+        public PricePoint(BigDecimal price, Instant time) {
+            this.price = price;
+            this.time = time;
+        }
+
+        public BigDecimal getPrice() { return price; }
+        public Instant getTime() { return time; }
+    }
+
+    /**
+     * Минутная свеча из стрима (неизменяемая)
+     */
+    public static class CandlePoint {
+        private final BigDecimal open;
+        private final BigDecimal high;
+        private final BigDecimal low;
+        private final BigDecimal close;
+        private final long volume;
+        private final Instant time;
+
+        public CandlePoint(BigDecimal open, BigDecimal high, BigDecimal low, BigDecimal close,
+                           long volume, Instant time) {
+            this.open = open;
+            this.high = high;
+            this.low = low;
+            this.close = close;
+            this.volume = volume;
+            this.time = time;
+        }
+
+        public BigDecimal getOpen() { return open; }
+        public BigDecimal getHigh() { return high; }
+        public BigDecimal getLow() { return low; }
+        public BigDecimal getClose() { return close; }
+        public long getVolume() { return volume; }
+        public Instant getTime() { return time; }
+    }
+}
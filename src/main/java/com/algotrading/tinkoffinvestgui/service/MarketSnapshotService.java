@@ -0,0 +1,238 @@
+package com.algotrading.tinkoffinvestgui.service;
+
+import com.algotrading.tinkoffinvestgui.api.ApiRetry;
+import com.algotrading.tinkoffinvestgui.api.BearerTokenCallCredentials;
+import com.algotrading.tinkoffinvestgui.api.GrpcChannelManager;
+import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
+import com.algotrading.tinkoffinvestgui.util.MoneyConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.tinkoff.piapi.contract.v1.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Снимок рыночных цен по списку инструментов.
+ *
+ * Последние цены запрашиваются одним вызовом GetLastPrices на весь список FIGI
+ * и кэшируются на короткий TTL (market.snapshot.ttl.ms в invest.properties, по умолчанию 5 сек).
+ * Портфель, инструменты и анализ берут цены отсюда вместо поштучных запросов.
+ * Если инструмент уже в подписке {@link MarketDataStreamManager}, цена берётся из стрима.
+ */
+public class MarketSnapshotService {
+    private static final Logger log = LoggerFactory.getLogger(MarketSnapshotService.class);
+    private static final MarketSnapshotService INSTANCE = new MarketSnapshotService();
+
+    /** Ограничение на количество FIGI в одном запросе GetLastPrices */
+    private static final int MAX_FIGIS_PER_REQUEST = 1000;
+    private static final long DEFAULT_TTL_MS = 5_000;
+
+    private final long ttlNanos;
+    private final Map<String, PriceEntry> lastPrices = new ConcurrentHashMap<>();
+    private final Map<String, OrderBookEntry> orderBooks = new ConcurrentHashMap<>();
+
+    private MarketSnapshotService() {
+        long ttlMs = DEFAULT_TTL_MS;
+        String value = ConnectorConfig.getPropertyValue("market.snapshot.ttl.ms");
+        if (value != null && !value.trim().isEmpty()) {
+            try {
+                ttlMs = Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                log.warn("⚠️ Некорректное значение market.snapshot.ttl.ms={}, используется {}", value, DEFAULT_TTL_MS);
+            }
+        }
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+    }
+
+    public static MarketSnapshotService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Возвращает последние цены по списку FIGI.
+     * Свежие значения берутся из кэша, устаревшие/отсутствующие дозапрашиваются одним RPC.
+     *
+     * @return FIGI → последняя цена (инструменты без цены в ответе отсутствуют)
+     */
+    public Map<String, BigDecimal> getLastPrices(Collection<String> figis) {
+        Map<String, BigDecimal> result = new HashMap<>();
+        Set<String> toFetch = new LinkedHashSet<>();
+        long now = System.nanoTime();
+        MarketDataStreamManager stream = MarketDataStreamManager.getInstance();
+
+        for (String figi : figis) {
+            if (figi == null || figi.isEmpty()) {
+                continue;
+            }
+            // Инструменты из подписки MarketDataStream не требуют запроса вовсе
+            MarketDataStreamManager.PricePoint live = stream.getLivePrice(figi);
+            if (live != null) {
+                result.put(figi, live.getPrice());
+                continue;
+            }
+            PriceEntry entry = lastPrices.get(figi);
+            if (entry != null && now - entry.fetchedAtNanos < ttlNanos) {
+                result.put(figi, entry.price);
+            } else {
+                toFetch.add(figi);
+            }
+        }
+
+        int fromCache = result.size();
+        if (!toFetch.isEmpty()) {
+            fetchLastPrices(new ArrayList<>(toFetch));
+            for (String figi : toFetch) {
+                PriceEntry entry = lastPrices.get(figi);
+                if (entry != null) {
+                    result.put(figi, entry.price);
+                }
+            }
+        }
+
+        log.debug("📊 Снимок цен: запрошено {}, из кэша {}, загружено {}",
+                figis.size(), fromCache, toFetch.size());
+        return result;
+    }
+
+    /**
+     * Последняя цена одного инструмента (из того же кэша)
+     *
+     * @return цена или null, если биржа не вернула цену
+     */
+    public BigDecimal getLastPrice(String figi) {
+        return getLastPrices(List.of(figi)).get(figi);
+    }
+
+    /**
+     * Цена из кэша без обращения к API (для вызова из EDT).
+     * Кэш заранее прогревается через {@link #getLastPrices(Collection)} в фоновом потоке.
+     */
+    public BigDecimal getCachedLastPrice(String figi) {
+        MarketDataStreamManager.PricePoint live = MarketDataStreamManager.getInstance().getLivePrice(figi);
+        if (live != null) {
+            return live.getPrice();
+        }
+        PriceEntry entry = lastPrices.get(figi);
+        return entry != null ? entry.price : null;
+    }
+
+    /**
+     * Время последней цены инструмента по данным биржи
+     */
+    public Instant getLastPriceTime(String figi) {
+        PriceEntry entry = lastPrices.get(figi);
+        return entry != null ? entry.time : null;
+    }
+
+    /**
+     * Лучшие цены стакана (bid/ask). GetOrderBook в API принимает только один инструмент,
+     * поэтому здесь кэшируется ответ по каждому FIGI с тем же TTL.
+     */
+    public OrderBookEntry getOrderBook(String figi, int depth) {
+        OrderBookEntry cached = orderBooks.get(figi);
+        if (cached != null && System.nanoTime() - cached.fetchedAtNanos < ttlNanos) {
+            return cached;
+        }
+
+        GetOrderBookRequest request = GetOrderBookRequest.newBuilder()
+                .setFigi(figi)
+                .setDepth(depth)
+                .build();
+        GetOrderBookResponse response = ApiRetry.execute("GetOrderBook " + figi,
+                () -> marketDataStub().getOrderBook(request));
+
+        BigDecimal bestBid = response.getBidsCount() > 0
+                ? MoneyConverter.toBigDecimal(response.getBids(0).getPrice()) : null;
+        BigDecimal bestAsk = response.getAsksCount() > 0
+                ? MoneyConverter.toBigDecimal(response.getAsks(0).getPrice()) : null;
+
+        OrderBookEntry entry = new OrderBookEntry(figi, bestBid, bestAsk, System.nanoTime());
+        orderBooks.put(figi, entry);
+        return entry;
+    }
+
+    /**
+     * Сбрасывает кэш (например, после ручного «Обновить»)
+     */
+    public void invalidate() {
+        lastPrices.clear();
+        orderBooks.clear();
+    }
+
+    private void fetchLastPrices(List<String> figis) {
+        MarketDataServiceGrpc.MarketDataServiceBlockingStub stub = marketDataStub();
+
+        for (int from = 0; from < figis.size(); from += MAX_FIGIS_PER_REQUEST) {
+            List<String> chunk = figis.subList(from, Math.min(from + MAX_FIGIS_PER_REQUEST, figis.size()));
+            GetLastPricesRequest request = GetLastPricesRequest.newBuilder()
+                    .addAllFigi(chunk)
+                    .build();
+
+            GetLastPricesResponse response = ApiRetry.execute("GetLastPrices x" + chunk.size(),
+                    () -> stub.getLastPrices(request));
+
+            long fetchedAt = System.nanoTime();
+            for (LastPrice lastPrice : response.getLastPricesList()) {
+                if (!lastPrice.hasPrice()) {
+                    continue;
+                }
+                Instant time = lastPrice.hasTime()
+                        ? Instant.ofEpochSecond(lastPrice.getTime().getSeconds(), lastPrice.getTime().getNanos())
+                        : null;
+                lastPrices.put(lastPrice.getFigi(),
+                        new PriceEntry(MoneyConverter.toBigDecimal(lastPrice.getPrice()), time, fetchedAt));
+            }
+            log.debug("📡 GetLastPrices: {} FIGI → {} цен", chunk.size(), response.getLastPricesCount());
+        }
+    }
+
+    private MarketDataServiceGrpc.MarketDataServiceBlockingStub marketDataStub() {
+        return MarketDataServiceGrpc
+                .newBlockingStub(GrpcChannelManager.getInstance()
+                        .getChannel(ConnectorConfig.API_URL, ConnectorConfig.API_PORT))
+                .withCallCredentials(new BearerTokenCallCredentials(ConnectorConfig.getApiToken()));
+    }
+
+    private static class PriceEntry {
+        private final BigDecimal price;
+        private final Instant time;
+        private final long fetchedAtNanos;
+
+        PriceEntry(BigDecimal price, Instant time, long fetchedAtNanos) {
+            this.price = price;
+            this.time = time;
+            this.fetchedAtNanos = fetchedAtNanos;
+        }
+    }
+
+    /**
+     * Лучшие цены стакана по инструменту
+     */
+    public static class OrderBookEntry {
+        private final String figi;
+        private final BigDecimal bestBid;
+        private final BigDecimal bestAsk;
+        private final long fetchedAtNanos;
+
+        OrderBookEntry(String figi, BigDecimal bestBid, BigDecimal bestAsk, long fetchedAtNanos) {
+            this.figi = figi;
+            this.bestBid = bestBid;
+            this.bestAsk = bestAsk;
+            this.fetchedAtNanos = fetchedAtNanos;
+        }
+
+        public String getFigi() { return figi; }
+        public BigDecimal getBestBid() { return bestBid; }
+        public BigDecimal getBestAsk() { return bestAsk; }
+    }
+}
@@ -0,0 +1,289 @@
+package com.algotrading.tinkoffinvestgui.service;
+
+import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
+import com.algotrading.tinkoffinvestgui.model.Order;
+import com.algotrading.tinkoffinvestgui.model.OrderEvent;
+import com.algotrading.tinkoffinvestgui.repository.OrderEventsRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.tinkoff.piapi.contract.v1.OrderDirection;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Журнал событий заявок (append-only, таблица public.order_events).
+ *
+ * Все изменения жизненного цикла заявки (отправка, подтверждение, исполнения, Stop-on-Fill,
+ * отмена) пишутся сюда последовательными вставками. Таблица public.orders остаётся
+ * проекцией для UI, а состояние OrderTracker восстанавливается повтором журнала
+ * за последние order.journal.replay.days дней (по умолчанию 7).
+ *
+ * Журнал пишут параллельно несколько потоков, поэтому строки BIGSERIAL фиксируются не
+ * обязательно в порядке id. Хвост читается через {@link Tail}: курсор не сдвигается за
+ * пропуск в id, пока пропуск не заполнится или не станет старше GAP_TIMEOUT
+ * (id откаченной вставки не появится никогда).
+ */
+public class OrderJournal {
+    private static final Logger log = LoggerFactory.getLogger(OrderJournal.class);
+    private static final OrderJournal INSTANCE = new OrderJournal();
+
+    private static final int DEFAULT_REPLAY_DAYS = 7;
+    private static final Duration GAP_TIMEOUT = Duration.ofSeconds(60);
+    private static final Set<String> TERMINAL_STATUSES = Set.of("FILL", "FILLED", "CANCELLED", "REJECTED", "ERROR");
+
+    private final OrderEventsRepository repository = new OrderEventsRepository();
+
+    private OrderJournal() {
+    }
+
+    public static OrderJournal getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Записывает событие с текущим состоянием заявки
+     */
+    public void record(OrderEvent.Type type, Order order) {
+        try {
+            OrderEvent event = OrderEvent.of(type, order);
+            repository.append(event);
+            log.debug("📝 Журнал заявок: {}", event);
+        } catch (Exception e) {
+            // Журнал не должен ломать торговую логику — проекция в public.orders всё равно обновляется
+            log.error("❌ Не удалось записать событие {} по заявке {}: {}", type, order.getMyOrderId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Повтор журнала за окно восстановления
+     */
+    public Replay replay() {
+        Instant from = Instant.now().minus(Duration.ofDays(replayDays()));
+        long start = System.currentTimeMillis();
+        List<OrderEvent> events = repository.findSince(from);
+
+        Replay replay = new Replay();
+        for (OrderEvent event : events) {
+            replay.apply(event);
+        }
+        replay.tail = events.isEmpty()
+                ? new Tail(repository.findMaxId())
+                : new Tail(events.get(0).getId() - 1);
+        for (OrderEvent event : events) {
+            replay.tail.accept(event);
+        }
+        replay.tail.advance(Instant.now());
+        log.info("✅ Журнал заявок восстановлен: событий={}, заявок={}, активных={}, за {} мс",
+                events.size(), replay.orders.size(), replay.getActiveOrders().size(),
+                System.currentTimeMillis() - start);
+        return replay;
+    }
+
+    /**
+     * Курсор с конца журнала (когда повтора не было)
+     */
+    public Tail tailFromEnd() {
+        return new Tail(repository.findMaxId());
+    }
+
+    /**
+     * Новые для курсора события (для инкрементального обновления состояния).
+     * Строки выше незаполненного пропуска перечитываются, но возвращаются один раз.
+     */
+    public List<OrderEvent> readNew(Tail tail) {
+        List<OrderEvent> result = new ArrayList<>();
+        for (OrderEvent event : repository.findAfterId(tail.committedId)) {
+            if (tail.accept(event)) {
+                result.add(event);
+            }
+        }
+        tail.advance(Instant.now());
+        return result;
+    }
+
+    /**
+     * Финальный ли статус (заявка больше не меняется)
+     */
+    public static boolean isTerminal(String status) {
+        if (status == null) {
+            return false;
+        }
+        return TERMINAL_STATUSES.contains(status.replace("EXECUTION_REPORT_STATUS_", ""));
+    }
+
+    /**
+     * Применяет событие к состоянию заявки (null — заявка ещё не известна)
+     */
+    public static Order applyEvent(Order order, OrderEvent event) {
+        if (order == null) {
+            order = new Order();
+            order.setMyOrderId(event.getMyOrderId());
+            order.setCreatedAt(event.getEventTime());
+        }
+        if (event.getExchangeOrderId() != null) order.setExchangeOrderId(event.getExchangeOrderId());
+        if (event.getParentOrderId() != null) order.setParentOrderId(event.getParentOrderId());
+        if (event.getAccountId() != null) order.setAccountId(event.getAccountId());
+        if (event.getFigi() != null) order.setFigi(event.getFigi());
+        if (event.getInstrumentName() != null) order.setInstrumentName(event.getInstrumentName());
+        if (event.getDirection() != null) {
+            try {
+                order.setDirection(OrderDirection.valueOf(event.getDirection()));
+            } catch (IllegalArgumentException ignored) {
+                // оставляем прежнее направление
+            }
+        }
+        if (event.getLotsRequested() > 0) order.setLotsRequested(event.getLotsRequested());
+        order.setLotsExecuted(Math.max(order.getLotsExecuted(), event.getLotsExecuted()));
+        if (event.getPrice() != null) order.setPrice(event.getPrice());
+        if (event.getAveragePrice() != null) order.setAverageExecutionPrice(event.getAveragePrice());
+        if (event.getStatus() != null) order.setStatus(event.getStatus());
+        if (event.getMessage() != null) order.setErrorMessage(event.getMessage());
+
+        switch (event.getType()) {
+            case ACK -> {
+                if (order.getSubmittedAt() == null) order.setSubmittedAt(event.getEventTime());
+            }
+            case FILL -> {
+                if (order.getExecutedAt() == null) order.setExecutedAt(event.getEventTime());
+            }
+            case CANCEL -> {
+                if (order.getCancelledAt() == null) order.setCancelledAt(event.getEventTime());
+            }
+            default -> {
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Окно восстановления в днях (order.journal.replay.days)
+     */
+    static int replayDays() {
+        String value = ConnectorConfig.getPropertyValue("order.journal.replay.days");
+        if (value == null || value.trim().isEmpty()) {
+            return DEFAULT_REPLAY_DAYS;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            return DEFAULT_REPLAY_DAYS;
+        }
+    }
+
+    /**
+     * Результат повтора журнала: последнее состояние каждой заявки
+     */
+    public static class Replay {
+        private final Map<String, Order> orders = new LinkedHashMap<>();
+        private Tail tail;
+
+        void apply(OrderEvent event) {
+            orders.put(event.getMyOrderId(), applyEvent(orders.get(event.getMyOrderId()), event));
+        }
+
+        /**
+         * Курсор хвоста журнала сразу после повтора
+         */
+        public Tail getTail() {
+            return tail;
+        }
+
+        public Map<String, Order> getOrders() {
+            return Collections.unmodifiableMap(orders);
+        }
+
+        /**
+         * Заявки в нефинальном статусе
+         */
+        public List<Order> getActiveOrders() {
+            List<Order> active = new ArrayList<>();
+            for (Order order : orders.values()) {
+                if (!isTerminal(order.getStatus())) {
+                    active.add(order);
+                }
+            }
+            return active;
+        }
+
+        /**
+         * Исполненные BUY-заявки, исполненный объём которых не покрыт дочерними SELL
+         * (приложение упало до выставления Stop-on-Fill, SELL отклонена или не дошла до биржи)
+         */
+        public List<Order> getFilledBuysUncovered() {
+            Map<String, Long> coveredLots = new HashMap<>();
+            for (Order order : orders.values()) {
+                if (order.getParentOrderId() != null && StopOnFillEngine.isCovering(order)) {
+                    coveredLots.merge(order.getParentOrderId(), order.getLotsRequested(), Long::sum);
+                }
+            }
+
+            List<Order> result = new ArrayList<>();
+            for (Order order : orders.values()) {
+                if (order.getDirection() == OrderDirection.ORDER_DIRECTION_BUY
+                        && order.getExecutedAt() != null
+                        && order.getLotsExecuted() > coveredLots.getOrDefault(order.getMyOrderId(), 0L)) {
+                    result.add(order);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Курсор чтения хвоста журнала одним потребителем (не потокобезопасен).
+     *
+     * committedId — все события с id ≤ него уже отданы (или пропуск признан окончательным);
+     * события выше первого пропуска запоминаются, чтобы при перечитывании не отдать их повторно.
+     */
+    public static class Tail {
+        private long committedId;
+        /** id → время события для уже отданных событий выше committedId */
+        private final NavigableMap<Long, Instant> seenAbove = new TreeMap<>();
+
+        Tail(long committedId) {
+            this.committedId = committedId;
+        }
+
+        /**
+         * @return true, если событие ещё не отдавалось
+         */
+        boolean accept(OrderEvent event) {
+            if (event.getId() <= committedId || seenAbove.containsKey(event.getId())) {
+                return false;
+            }
+            seenAbove.put(event.getId(), event.getEventTime());
+            return true;
+        }
+
+        /**
+         * Сдвигает committedId по подряд идущим id; пропуск перед событием старше GAP_TIMEOUT
+         * считается окончательным
+         */
+        void advance(Instant now) {
+            Instant gapDeadline = now.minus(GAP_TIMEOUT);
+            while (!seenAbove.isEmpty()) {
+                Map.Entry<Long, Instant> first = seenAbove.firstEntry();
+                boolean contiguous = first.getKey() == committedId + 1;
+                if (!contiguous && first.getValue() != null && first.getValue().isAfter(gapDeadline)) {
+                    break;
+                }
+                if (!contiguous) {
+                    log.debug("Пропуск id {}..{} в журнале заявок не заполнился за {} сек — пропускаем",
+                            committedId + 1, first.getKey() - 1, GAP_TIMEOUT.getSeconds());
+                }
+                committedId = first.getKey();
+                seenAbove.pollFirstEntry();
+            }
+        }
+    }
+}
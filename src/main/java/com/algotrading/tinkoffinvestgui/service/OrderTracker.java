@@ -2,90 +2,230 @@ package com.algotrading.tinkoffinvestgui.service;
 
 import com.algotrading.tinkoffinvestgui.api.OrdersService;
 import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
-import com.algotrading.tinkoffinvestgui.entity.Instrument;
 import com.algotrading.tinkoffinvestgui.model.Order;
+import com.algotrading.tinkoffinvestgui.model.OrderEvent;
 import com.algotrading.tinkoffinvestgui.repository.InstrumentsRepository;
 import com.algotrading.tinkoffinvestgui.repository.OrdersRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ru.tinkoff.piapi.contract.v1.MoneyValue;
 import ru.tinkoff.piapi.contract.v1.OrderDirection;
+import ru.tinkoff.piapi.contract.v1.OrderExecutionReportStatus;
 import ru.tinkoff.piapi.contract.v1.OrderState;
-import ru.tinkoff.piapi.contract.v1.PostOrderResponse;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * OrderTracker - отслеживает статусы заявок и выставляет Stop-on-Fill SELL-заявки.
  *
  * Логика:
- * 1. Периодически получает из БД PENDING/активные заявки.
+ * 1. Держит в памяти активные (нефинальные) заявки. При старте они восстанавливаются
+ *    повтором журнала событий {@link OrderJournal}, дальше подтягиваются из хвоста журнала.
  * 2. По каждой запрашивает актуальный статус у Tinkoff API.
- * 3. Если BUY-заявка заполнена (FILLED) — выставляет SELL с ценой из БД instruments.sell_price.
- * 4. Все изменения записываются в public.orders.
+ * 3. Если BUY-заявка заполнена (FILLED) — выставляет SELL с ценой из БД instruments.sell_price
+ *    через {@link StopOnFillEngine} (ровно один раз на исполненный объём).
+ * 4. Каждое изменение пишется событием в журнал и в проекцию public.orders.
+ *
+ * Пока подключён {@link OrderTradesStream}, статус запрашивается только у заявок, по которым
+ * пришли сделки; полный обход всех активных заявок — раз в FULL_SWEEP_EVERY_TICKS тиков
+ * (ловит отмены, о которых стрим сделок не сообщает).
+ *
+ * Режим orders.sof.partial_fills=true: каждый прирост исполненных лотов BUY сразу
+ * покрывается SELL на дельту (новой заявкой или ReplaceOrder существующей).
+ *
+ * Трекер ведёт один счёт: при нескольких счетах OrdersScheduler создаёт по трекеру на счёт
+ * с общим {@link OrdersService}. Заявки без account_id (старые записи) достаются основному трекеру.
  */
 public class OrderTracker {
 
     private static final Logger log = LoggerFactory.getLogger(OrderTracker.class);
 
+    private static final int FULL_SWEEP_EVERY_TICKS = 20;
+
     private final OrdersRepository ordersRepository;
     private final InstrumentsRepository instrumentsRepository;
     private final OrdersService ordersService;
+    private final OrderJournal journal = OrderJournal.getInstance();
+    private final StopOnFillEngine stopOnFill = StopOnFillEngine.getInstance();
     private final String accountId;
+    private final boolean primary;
+    private final boolean ownsOrdersService;
+
+    /** Активные заявки по my_order_id */
+    private final Map<String, Order> activeOrders = new ConcurrentHashMap<>();
+    /** Исполненные BUY, объём которых ещё не покрыт Stop-on-Fill (восстановление, неудачная отправка) — по my_order_id */
+    private final Map<String, Order> pendingStopOnFill = new ConcurrentHashMap<>();
+    private volatile OrderJournal.Tail journalTail;
+    private volatile boolean restored = false;
+
+    /** exchange order_id заявок, по которым пришли сделки из стрима */
+    private final Set<String> tradedExchangeIds = ConcurrentHashMap.newKeySet();
+    private final OrderTradesStream tradesStream;
+    private final boolean partialFillMode;
+    private int ticksSinceFullSweep = FULL_SWEEP_EVERY_TICKS;
 
     public OrderTracker(OrdersRepository ordersRepository,
                         InstrumentsRepository instrumentsRepository,
                         String accountId) {
-        this.ordersRepository = ordersRepository;
-        this.instrumentsRepository = instrumentsRepository;
-        this.accountId = accountId;
-        this.ordersService = new OrdersService(
+        this(ordersRepository, instrumentsRepository, accountId, true, new OrdersService(
                 ConnectorConfig.getApiToken(),
                 ConnectorConfig.API_URL,
                 ConnectorConfig.API_PORT
-        );
+        ), true);
+    }
+
+    /**
+     * Трекер одного из нескольких счетов
+     *
+     * @param primary       основной счёт: ему же достаются заявки без account_id
+     * @param ordersService общий сервис заявок (закрывает владелец, не трекер)
+     */
+    public OrderTracker(OrdersRepository ordersRepository,
+                        InstrumentsRepository instrumentsRepository,
+                        String accountId,
+                        boolean primary,
+                        OrdersService ordersService) {
+        this(ordersRepository, instrumentsRepository, accountId, primary, ordersService, false);
+    }
+
+    private OrderTracker(OrdersRepository ordersRepository,
+                         InstrumentsRepository instrumentsRepository,
+                         String accountId,
+                         boolean primary,
+                         OrdersService ordersService,
+                         boolean ownsOrdersService) {
+        this.ordersRepository = ordersRepository;
+        this.instrumentsRepository = instrumentsRepository;
+        this.accountId = accountId;
+        this.primary = primary;
+        this.ordersService = ordersService;
+        this.ownsOrdersService = ownsOrdersService;
+        this.tradesStream = new OrderTradesStream(accountId, tradedExchangeIds::add);
+        this.partialFillMode = readPartialFillMode();
+
+        log.info("OrderTracker инициализирован для аккаунта: {} (SELL на частичные исполнения: {})",
+                accountId, partialFillMode ? "да" : "нет");
+    }
+
+    /**
+     * Восстанавливает состояние из журнала событий. Вызывается один раз при запуске планировщика.
+     */
+    public void restoreFromJournal() {
+        try {
+            OrderJournal.Replay replay = journal.replay();
+            activeOrders.clear();
+            for (Order order : replay.getActiveOrders()) {
+                if (isOwnOrder(order)) {
+                    activeOrders.put(order.getMyOrderId(), order);
+                }
+            }
+            List<Order> ownOrders = new ArrayList<>();
+            for (Order order : replay.getOrders().values()) {
+                if (isOwnOrder(order)) {
+                    ownOrders.add(order);
+                }
+            }
+            stopOnFill.registerChildren(ownOrders);
+            for (Order order : replay.getFilledBuysUncovered()) {
+                if (isOwnOrder(order)) {
+                    pendingStopOnFill.put(order.getMyOrderId(), order);
+                }
+            }
+            journalTail = replay.getTail();
+
+            if (ownOrders.isEmpty()) {
+                seedFromOrdersTable();
+            }
+            restored = true;
+            if (!pendingStopOnFill.isEmpty()) {
+                log.warn("⚠️ Найдено {} исполненных BUY с непокрытым объёмом — SELL будут выставлены",
+                        pendingStopOnFill.size());
+            }
+        } catch (Exception e) {
+            log.error("❌ Не удалось восстановить заявки из журнала, используется таблица orders", e);
+            seedFromOrdersTable();
+            restored = true;
+        }
+    }
+
+    /**
+     * Подписка на сделки по счёту: после неё тик опрашивает только заявки с исполнениями
+     */
+    public void startTradesStream() {
+        tradesStream.start();
+    }
 
-        log.info("OrderTracker инициализирован для аккаунта: {}", accountId);
+    /**
+     * Первый запуск с пустым журналом: берём активные заявки из public.orders
+     * и записываем их снимки в журнал, чтобы следующий старт шёл уже по журналу.
+     */
+    private void seedFromOrdersTable() {
+        List<Order> active = primary
+                ? ordersRepository.findActiveOrders()
+                : ordersRepository.findActiveOrders(accountId);
+        int loaded = 0;
+        for (Order order : active) {
+            if (!isOwnOrder(order)) {
+                continue;
+            }
+            activeOrders.put(order.getMyOrderId(), order);
+            journal.record(OrderEvent.Type.STATUS, order);
+            loaded++;
+        }
+        log.info("Журнал заявок счёта {} пуст: загружено {} активных заявок из public.orders", accountId, loaded);
     }
 
     /**
-     * Основной метод: проверяет статусы PENDING заявок.
+     * Основной метод: проверяет статусы активных заявок.
      * Рекомендуется вызывать каждые N секунд из Scheduler'а.
      */
     public void checkAndProcessPendingOrders() {
         try {
+            if (!restored) {
+                log.debug("Восстановление из журнала ещё не завершено, проверка пропущена");
+                return;
+            }
             log.debug("Начало проверки статусов заявок...");
 
-            List<Order> pendingOrders = ordersRepository.findByStatus("PENDING");
-            if (pendingOrders.isEmpty()) {
-                log.debug("Нет PENDING заявок для проверки");
+            pullJournalTail();
+            retryPendingStopOnFill();
+
+            if (activeOrders.isEmpty()) {
+                log.debug("Нет активных заявок для проверки");
                 return;
             }
 
-            log.info("Проверяем {} PENDING заявок...", pendingOrders.size());
+            List<Order> toCheck = selectOrdersToCheck();
+            log.debug("Проверяем {} из {} активных заявок...", toCheck.size(), activeOrders.size());
 
-            for (Order pendingOrder : pendingOrders) {
+            for (Order pendingOrder : toCheck) {
                 try {
-                    if (pendingOrder.getExchangeOrderId() == null) {
-                        // Локальная заявка, которая ещё не ушла на биржу
-                        continue;
-                    }
-
                     OrderState apiOrder = ordersService.getOrderState(
                             accountId,
                             pendingOrder.getExchangeOrderId()
                     );
 
-                    updateOrderFromAPI(pendingOrder, apiOrder);
+                    long lotsBefore = pendingOrder.getLotsExecuted();
+                    if (!updateOrderFromAPI(pendingOrder, apiOrder)) {
+                        continue;
+                    }
 
+                    if (pendingOrder.getDirection() != OrderDirection.ORDER_DIRECTION_BUY) {
+                        continue;
+                    }
                     if (isOrderFilled(apiOrder)) {
                         log.info("BUY заявка FILLED: {}", pendingOrder.getMyOrderId());
-                        if (pendingOrder.getDirection() == OrderDirection.ORDER_DIRECTION_BUY) {
-                            onBuyOrderFilled(pendingOrder);
-                        }
+                        onBuyOrderFilled(pendingOrder);
+                    } else if (partialFillMode && apiOrder.getLotsExecuted() > lotsBefore) {
+                        log.info("BUY заявка исполнена частично: {} ({}/{})", pendingOrder.getMyOrderId(),
+                                apiOrder.getLotsExecuted(), apiOrder.getLotsRequested());
+                        onBuyOrderFilled(pendingOrder);
                     }
                 } catch (Exception e) {
                     log.error("Ошибка обработки заявки {}: {}", pendingOrder.getMyOrderId(), e.getMessage(), e);
@@ -98,8 +238,74 @@ public class OrderTracker {
         }
     }
 
-    private void updateOrderFromAPI(Order order, OrderState apiOrder) {
-        order.setStatus(apiOrder.getExecutionReportStatus().name());
+    /**
+     * Подтягивает события, записанные другими компонентами (отправка заявок, синхронизация)
+     */
+    private void pullJournalTail() {
+        if (journalTail == null) {
+            // Повтор журнала не удался — читаем только новые события
+            journalTail = journal.tailFromEnd();
+        }
+        for (OrderEvent event : journal.readNew(journalTail)) {
+            Order known = activeOrders.get(event.getMyOrderId());
+            if (known == null && !isOwnAccount(event.getAccountId())) {
+                // Событие заявки другого счёта — его ведёт свой трекер
+                continue;
+            }
+            Order order = OrderJournal.applyEvent(known, event);
+            if (OrderJournal.isTerminal(order.getStatus())) {
+                activeOrders.remove(event.getMyOrderId());
+            } else {
+                activeOrders.put(event.getMyOrderId(), order);
+            }
+        }
+    }
+
+    /**
+     * Какие заявки опрашивать на этом тике: при живом стриме сделок — только заявки
+     * с исполнениями, иначе (и периодически для страховки) — все активные
+     */
+    private List<Order> selectOrdersToCheck() {
+        boolean fullSweep = !tradesStream.isConnected() || ++ticksSinceFullSweep >= FULL_SWEEP_EVERY_TICKS;
+        if (fullSweep) {
+            ticksSinceFullSweep = 0;
+            tradedExchangeIds.clear();
+        }
+
+        List<Order> result = new ArrayList<>();
+        for (Order order : activeOrders.values()) {
+            String exchangeOrderId = order.getExchangeOrderId();
+            if (exchangeOrderId == null) {
+                // Локальная заявка, которая ещё не ушла на биржу
+                continue;
+            }
+            if (fullSweep || tradedExchangeIds.remove(exchangeOrderId)) {
+                result.add(order);
+            }
+        }
+        return result;
+    }
+
+    private void retryPendingStopOnFill() {
+        for (Order buyOrder : pendingStopOnFill.values()) {
+            pendingStopOnFill.remove(buyOrder.getMyOrderId());
+            onBuyOrderFilled(buyOrder);
+        }
+    }
+
+    /**
+     * Обновляет заявку по ответу API.
+     *
+     * @return true, если статус или исполнение изменились
+     */
+    private boolean updateOrderFromAPI(Order order, OrderState apiOrder) {
+        String newStatus = apiOrder.getExecutionReportStatus().name();
+        long previousLots = order.getLotsExecuted();
+        if (newStatus.equals(order.getStatus()) && apiOrder.getLotsExecuted() == previousLots) {
+            return false;
+        }
+
+        order.setStatus(newStatus);
         order.setLotsExecuted(apiOrder.getLotsExecuted());
 
         if (apiOrder.hasExecutedOrderPrice()) {
@@ -107,92 +313,78 @@ public class OrderTracker {
             order.setAverageExecutionPrice(executedPrice);
         }
 
-        if (isOrderFilled(apiOrder) && order.getExecutedAt() == null) {
+        boolean filled = isOrderFilled(apiOrder);
+        if (filled && order.getExecutedAt() == null) {
             order.setExecutedAt(Instant.now());
         }
 
+        OrderEvent.Type type;
+        if (filled) {
+            type = OrderEvent.Type.FILL;
+        } else if (apiOrder.getLotsExecuted() > previousLots) {
+            type = OrderEvent.Type.PARTIAL_FILL;
+        } else if (apiOrder.getExecutionReportStatus() == OrderExecutionReportStatus.EXECUTION_REPORT_STATUS_CANCELLED) {
+            type = OrderEvent.Type.CANCEL;
+        } else if (apiOrder.getExecutionReportStatus() == OrderExecutionReportStatus.EXECUTION_REPORT_STATUS_REJECTED) {
+            type = OrderEvent.Type.REJECT;
+        } else {
+            type = OrderEvent.Type.STATUS;
+        }
+        journal.record(type, order);
         ordersRepository.update(order);
 
+        if (filled || OrderJournal.isTerminal(newStatus)) {
+            activeOrders.remove(order.getMyOrderId());
+        }
+
         log.info("Обновлена заявка {}: статус={}, выполнено={}/{}",
                 order.getMyOrderId(),
                 apiOrder.getExecutionReportStatus(),
                 apiOrder.getLotsExecuted(),
                 apiOrder.getLotsRequested());
+        return true;
     }
 
+    /**
+     * Stop-on-Fill через общий движок: повторное наблюдение того же исполнения SELL не задвоит.
+     * Пока объём не покрыт (ошибка отправки или замены), BUY повторяется на следующих тиках.
+     */
     private void onBuyOrderFilled(Order buyOrder) {
         try {
-            log.info("BUY заявка заполнилась, выставляем связанную SELL (Stop-on-Fill)");
-            log.info("BUY my_order_id={}, figi={}, lotsExecuted={}",
+            log.info("BUY заявка исполнена: my_order_id={}, figi={}, lotsExecuted={}",
                     buyOrder.getMyOrderId(),
                     buyOrder.getFigi(),
                     buyOrder.getLotsExecuted());
 
-            Instrument instrument = instrumentsRepository.findByFigi(buyOrder.getFigi());
-            if (instrument == null) {
-                log.error("Инструмент не найден для FIGI: {}", buyOrder.getFigi());
-                return;
-            }
-
-            BigDecimal sellPrice = instrument.getSellPrice();
-            if (sellPrice == null || sellPrice.signum() <= 0) {
-                log.error("Некорректная цена продажи для {}, sellPrice={}",
-                        instrument.getName(), sellPrice);
-                return;
-            }
-
-            log.info("Цена продажи из БД: {}", sellPrice);
-
-            Order sellOrder = createSellOrder(buyOrder, instrument, sellPrice);
-            ordersRepository.save(sellOrder);
-            log.info("SELL заявка сохранена в БД: {}", sellOrder.getMyOrderId());
-
-            try {
-                PostOrderResponse response = ordersService.postSellOrder(
-                        accountId,
-                        buyOrder.getFigi(),
-                        (int) sellOrder.getLotsRequested(),
-                        sellPrice
-                );
-
-                sellOrder.setExchangeOrderId(response.getOrderId());
-                sellOrder.setStatus(response.getExecutionReportStatus().name());
-                sellOrder.setSubmittedAt(Instant.now());
-                ordersRepository.update(sellOrder);
-
-                log.info("SELL заявка выставлена на бирже: exchangeOrderId={}", response.getOrderId());
-
-            } catch (Exception apiEx) {
-                log.error("Ошибка выставления SELL заявки на бирже", apiEx);
-                sellOrder.setStatus("ERROR");
-                sellOrder.setErrorMessage("Ошибка API при выставлении SELL: " + apiEx.getMessage());
-                ordersRepository.update(sellOrder);
+            for (Order sellOrder : stopOnFill.onParentFill(buyOrder)) {
+                activeOrders.put(sellOrder.getMyOrderId(), sellOrder);
             }
         } catch (Exception e) {
             log.error("Ошибка в onBuyOrderFilled", e);
         }
+        try {
+            if (!stopOnFill.isCovered(buyOrder)) {
+                log.warn("⚠️ Stop-on-Fill для {} покрыт не полностью ({} из {} лотов), повтор на следующем тике",
+                        buyOrder.getMyOrderId(), stopOnFill.getCoveredLots(buyOrder.getMyOrderId()),
+                        buyOrder.getLotsExecuted());
+                pendingStopOnFill.put(buyOrder.getMyOrderId(), buyOrder);
+            }
+        } catch (Exception e) {
+            log.error("Ошибка проверки покрытия Stop-on-Fill для {}", buyOrder.getMyOrderId(), e);
+            pendingStopOnFill.put(buyOrder.getMyOrderId(), buyOrder);
+        }
     }
 
-    private Order createSellOrder(Order buyOrder, Instrument instrument, BigDecimal sellPrice) {
-        Order sellOrder = new Order();
-        sellOrder.setMyOrderId(UUID.randomUUID().toString());
-        sellOrder.setAccountId(buyOrder.getAccountId());
-        sellOrder.setFigi(buyOrder.getFigi());
-        sellOrder.setTicker(instrument.getFigi());
-        sellOrder.setInstrumentName(instrument.getName());
-        sellOrder.setDirection(OrderDirection.ORDER_DIRECTION_SELL);
-        sellOrder.setOrderType("LIMIT");
+    private boolean isOwnOrder(Order order) {
+        return isOwnAccount(order.getAccountId());
+    }
 
-        long lots = buyOrder.getLotsExecuted() > 0 ? buyOrder.getLotsExecuted() : buyOrder.getLotsRequested();
-        sellOrder.setLotsRequested(lots);
-        sellOrder.setLotsExecuted(0L);
-        sellOrder.setPrice(sellPrice);
-        sellOrder.setStatus("PENDING");
-        sellOrder.setParentOrderId(buyOrder.getMyOrderId());
-        sellOrder.setParentFillTime(Instant.now());
-        sellOrder.setCreatedAt(Instant.now());
+    private boolean isOwnAccount(String orderAccountId) {
+        return orderAccountId == null ? primary : accountId.equals(orderAccountId);
+    }
 
-        return sellOrder;
+    public String getAccountId() {
+        return accountId;
     }
 
     private boolean isOrderFilled(OrderState apiOrder) {
@@ -218,6 +410,14 @@ public class OrderTracker {
     public void cancelOrder(String exchangeOrderId) {
         try {
             ordersService.cancelOrder(accountId, exchangeOrderId);
+            Order order = ordersRepository.findByExchangeOrderId(exchangeOrderId);
+            if (order != null) {
+                order.setStatus(OrderExecutionReportStatus.EXECUTION_REPORT_STATUS_CANCELLED.name());
+                order.setCancelledAt(Instant.now());
+                ordersRepository.update(order);
+                journal.record(OrderEvent.Type.CANCEL, order);
+                activeOrders.remove(order.getMyOrderId());
+            }
             log.info("Заявка отменена: {}", exchangeOrderId);
         } catch (Exception e) {
             log.error("Ошибка отмены заявки", e);
@@ -225,7 +425,15 @@ public class OrderTracker {
         }
     }
 
+    private static boolean readPartialFillMode() {
+        String value = ConnectorConfig.getPropertyValue("orders.sof.partial_fills");
+        return value != null && Boolean.parseBoolean(value.trim());
+    }
+
     public void shutdown() {
-        ordersService.shutdown();
+        tradesStream.stop();
+        if (ownsOrdersService) {
+            ordersService.shutdown();
+        }
     }
 }
@@ -0,0 +1,151 @@
+package com.algotrading.tinkoffinvestgui.service;
+
+import com.algotrading.tinkoffinvestgui.api.BearerTokenCallCredentials;
+import com.algotrading.tinkoffinvestgui.api.GrpcChannelManager;
+import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
+import io.grpc.Context;
+import io.grpc.stub.StreamObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.tinkoff.piapi.contract.v1.OrderTrades;
+import ru.tinkoff.piapi.contract.v1.OrdersStreamServiceGrpc;
+import ru.tinkoff.piapi.contract.v1.TradesStreamRequest;
+import ru.tinkoff.piapi.contract.v1.TradesStreamResponse;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Стрим исполнений по счёту (OrdersStreamService.TradesStream).
+ *
+ * На каждую сделку сообщает exchange order_id заявки, по которой она прошла, —
+ * OrderTracker запрашивает статус только у таких заявок, а не у всех открытых.
+ * При обрыве переподключается с экспоненциальной задержкой (как MarketDataStreamManager).
+ */
+public class OrderTradesStream {
+    private static final Logger log = LoggerFactory.getLogger(OrderTradesStream.class);
+
+    private static final long MAX_RECONNECT_DELAY_SECONDS = 60;
+
+    private final String accountId;
+    private final Consumer<String> onOrderTrade;
+    private final AtomicInteger reconnectAttempt = new AtomicInteger();
+    private final ScheduledExecutorService reconnectExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "trades-stream-reconnect");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile Context.CancellableContext callContext;
+    private volatile boolean running = false;
+    private volatile boolean connected = false;
+
+    /**
+     * @param onOrderTrade вызывается из потока gRPC с exchange order_id исполненной заявки
+     */
+    public OrderTradesStream(String accountId, Consumer<String> onOrderTrade) {
+        this.accountId = accountId;
+        this.onOrderTrade = onOrderTrade;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        log.info("📡 Запуск TradesStream для аккаунта {}", accountId);
+        connect();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        connected = false;
+        reconnectExecutor.shutdownNow();
+        Context.CancellableContext context = callContext;
+        callContext = null;
+        if (context != null) {
+            context.cancel(null);
+        }
+        log.info("⏹️ TradesStream остановлен");
+    }
+
+    /**
+     * Пока стрим подключён, сделки не теряются и опрос всех заявок не нужен
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    private synchronized void connect() {
+        if (!running) {
+            return;
+        }
+        try {
+            OrdersStreamServiceGrpc.OrdersStreamServiceStub stub = OrdersStreamServiceGrpc
+                    .newStub(GrpcChannelManager.getInstance()
+                            .getChannel(ConnectorConfig.API_URL, ConnectorConfig.API_PORT))
+                    .withCallCredentials(new BearerTokenCallCredentials(ConnectorConfig.getApiToken()));
+
+            TradesStreamRequest request = TradesStreamRequest.newBuilder()
+                    .addAccounts(accountId)
+                    .build();
+
+            // Серверный стрим закрывается только отменой контекста
+            Context.CancellableContext context = Context.current().withCancellation();
+            callContext = context;
+            context.run(() -> stub.tradesStream(request, new ResponseObserver()));
+            connected = true;
+            log.info("✅ TradesStream подключён");
+        } catch (Exception e) {
+            log.error("❌ Ошибка подключения TradesStream: {}", e.getMessage());
+            connected = false;
+            scheduleReconnect();
+        }
+    }
+
+    private void scheduleReconnect() {
+        if (!running || reconnectExecutor.isShutdown()) {
+            return;
+        }
+        int attempt = reconnectAttempt.incrementAndGet();
+        long delay = Math.min(MAX_RECONNECT_DELAY_SECONDS, 1L << Math.min(attempt, 6));
+        log.warn("⚠️ TradesStream: переподключение через {} сек (попытка {})", delay, attempt);
+        reconnectExecutor.schedule(this::connect, delay, TimeUnit.SECONDS);
+    }
+
+    private class ResponseObserver implements StreamObserver<TradesStreamResponse> {
+        @Override
+        public void onNext(TradesStreamResponse response) {
+            reconnectAttempt.set(0);
+            if (!response.hasOrderTrades()) {
+                return;
+            }
+            OrderTrades trades = response.getOrderTrades();
+            log.debug("📡 Сделки по заявке {}: {} шт.", trades.getOrderId(), trades.getTradesCount());
+            try {
+                onOrderTrade.accept(trades.getOrderId());
+            } catch (Exception e) {
+                log.error("Ошибка обработки сделки по заявке {}: {}", trades.getOrderId(), e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            connected = false;
+            if (running) {
+                log.error("❌ TradesStream оборван: {}", t.getMessage());
+                scheduleReconnect();
+            }
+        }
+
+        @Override
+        public void onCompleted() {
+            connected = false;
+            log.warn("⚠️ TradesStream закрыт сервером");
+            scheduleReconnect();
+        }
+    }
+}
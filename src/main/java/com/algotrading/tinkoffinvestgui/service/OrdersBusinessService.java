@@ -1,12 +1,14 @@
 package com.algotrading.tinkoffinvestgui.service;
 
+import com.algotrading.tinkoffinvestgui.api.GrpcChannelManager;
 import com.algotrading.tinkoffinvestgui.api.OrdersService;
-import com.algotrading.tinkoffinvestgui.config.AppConstants;
 import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
 import com.algotrading.tinkoffinvestgui.entity.Instrument;
 import com.algotrading.tinkoffinvestgui.exception.DatabaseException;
 import com.algotrading.tinkoffinvestgui.model.Order;
+import com.algotrading.tinkoffinvestgui.model.OrderEvent;
 import com.algotrading.tinkoffinvestgui.repository.OrdersRepository;
+import com.algotrading.tinkoffinvestgui.util.OrderEventLogger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ru.tinkoff.piapi.contract.v1.OrderDirection;
@@ -14,7 +16,13 @@ import ru.tinkoff.piapi.contract.v1.PostOrderResponse;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 public class OrdersBusinessService {
 
@@ -23,14 +31,15 @@ public class OrdersBusinessService {
     private final OrdersRepository ordersRepository = new OrdersRepository();
 
     /**
-     * Отправка заявок по списку инструментов.
-     * AccountId берем из БД (parameters.account1).
+     * Отправка заявок по списку инструментов на счёт parameters.account1, а при
+     * orders.multi_account=true — на все счета (см. {@link AccountService#getOrderAccountIds()}).
+     * Счета обрабатываются параллельно через общий канал Orders API и общий лимитер запросов.
      */
     @SuppressWarnings("rawtypes")
     public OrdersResult sendOrdersBatch(List instruments) {
-        String accountId;
+        List<String> accountIds;
         try {
-            accountId = AccountService.getActiveAccountId();
+            accountIds = AccountService.getOrderAccountIds();
         } catch (DatabaseException e) {
             log.error("Ошибка получения account ID из БД", e);
             return new OrdersResult(
@@ -39,26 +48,70 @@ public class OrdersBusinessService {
                     "Ошибка получения Account ID из БД. " + e.getMessage()
             );
         }
-        return sendOrdersBatch(instruments, accountId);
+
+        OrdersService ordersService = new OrdersService(
+                ConnectorConfig.getApiToken(),
+                GrpcChannelManager.getInstance().getChannel(ConnectorConfig.API_URL, ConnectorConfig.API_PORT)
+        );
+        if (accountIds.size() == 1) {
+            return sendOrdersBatch(instruments, accountIds.get(0), ordersService);
+        }
+        return sendOrdersBatchParallel(instruments, accountIds, ordersService);
     }
 
     /**
-     * Основная логика отправки + сохранение в public.orders.
+     * По потоку на счёт: заявки разных счетов не ждут друг друга, общий темп держит лимитер API
      */
     @SuppressWarnings("rawtypes")
-    private OrdersResult sendOrdersBatch(List instruments, String accountId) {
-        log.info("=========================================");
-        log.info("НАЧАЛО ОТПРАВКИ ЗАЯВОК");
-        log.info("=========================================");
-        log.info("Account ID: {}", accountId);
-        log.info("Количество инструментов: {}", instruments.size());
-        log.info("=========================================");
+    private OrdersResult sendOrdersBatchParallel(List instruments, List<String> accountIds,
+                                                 OrdersService ordersService) {
+        log.info("📤 Параллельная отправка заявок по {} счетам", accountIds.size());
+        ExecutorService executor = Executors.newFixedThreadPool(accountIds.size(), r -> {
+            Thread thread = new Thread(r, "orders-batch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<OrdersResult>> futures = new ArrayList<>();
+            for (String accountId : accountIds) {
+                futures.add(executor.submit(() -> sendOrdersBatch(instruments, accountId, ordersService)));
+            }
 
-        OrdersService ordersService = new OrdersService(
-                ConnectorConfig.getApiToken(),
-                ConnectorConfig.API_URL,
-                ConnectorConfig.API_PORT
-        );
+            int successCount = 0;
+            int errorCount = 0;
+            StringBuilder errors = new StringBuilder();
+            for (int i = 0; i < futures.size(); i++) {
+                String accountId = accountIds.get(i);
+                try {
+                    OrdersResult result = futures.get(i).get();
+                    successCount += result.getSuccessCount();
+                    errorCount += result.getErrorCount();
+                    if (result.hasErrors()) {
+                        errors.append(String.format("Счёт %s:%n%s", accountId, result.getErrors()));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    errors.append(String.format("Счёт %s: отправка прервана%n", accountId));
+                    errorCount++;
+                } catch (ExecutionException e) {
+                    log.error("Ошибка отправки заявок по счёту {}", accountId, e.getCause());
+                    errors.append(String.format("Счёт %s: %s%n", accountId, e.getCause().getMessage()));
+                    errorCount++;
+                }
+            }
+            return new OrdersResult(successCount, errorCount, errors.toString());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Основная логика отправки + сохранение в public.orders.
+     */
+    @SuppressWarnings("rawtypes")
+    private OrdersResult sendOrdersBatch(List instruments, String accountId, OrdersService ordersService) {
+        log.info("📤 Отправка заявок: account={}, инструментов={}", accountId, instruments.size());
+        long batchStart = System.nanoTime();
 
         int successCount = 0;
         int errorCount = 0;
@@ -68,10 +121,8 @@ public class OrdersBusinessService {
             for (Object obj : instruments) {
                 Instrument instrument = (Instrument) obj;
                 try {
-                    log.info("Обработка инструмента: {}", instrument.getName());
-                    log.info("FIGI: {}", instrument.getFigi());
-                    log.info("ISIN: {}", instrument.getIsin());
-                    log.info("Приоритет: {}", instrument.getPriority());
+                    log.debug("Инструмент {} (FIGI={}, ISIN={}, приоритет={})", instrument.getName(),
+                            instrument.getFigi(), instrument.getIsin(), instrument.getPriority());
 
                     BigDecimal effectiveBuyPrice = instrument.getEffectiveBuyPrice();
 
@@ -89,19 +140,15 @@ public class OrdersBusinessService {
                             && instrument.getBuyQuantity() > 0) {
 
                         if (ordersRepository.hasActiveTodayOrder(
+                                accountId,
                                 instrument.getFigi(),
                                 OrderDirection.ORDER_DIRECTION_BUY.name())) {
 
-                            log.warn("Пропускаем BUY по {} (FIGI={}): уже есть активная заявка сегодня",
-                                    instrument.getName(), instrument.getFigi());
+                            OrderEventLogger.skip("BUY", instrument.getFigi(), "активная заявка сегодня");
                         } else {
-                            log.info("--- ЗАЯВКА НА ПОКУПКУ ---");
-                            if (instrument.getManualBuyPrice() != null) {
-                                log.info("Цена покупки (MANUAL): {}", effectiveBuyPrice);
-                            } else {
-                                log.info("Цена покупки (AUTO): {}", effectiveBuyPrice);
-                            }
-                            log.info("Количество: {}", instrument.getBuyQuantity());
+                            log.debug("BUY {}: цена {} ({}), количество {}", instrument.getFigi(), effectiveBuyPrice,
+                                    instrument.getManualBuyPrice() != null ? "MANUAL" : "AUTO",
+                                    instrument.getBuyQuantity());
 
                             PostOrderResponse buyResponse = ordersService.postBuyOrder(
                                     accountId,
@@ -123,8 +170,6 @@ public class OrdersBusinessService {
                                     null,
                                     submittedAt
                             );
-
-                            Thread.sleep(AppConstants.ORDERSDELAYMILLIS);
                         }
                     }
 
@@ -134,21 +179,16 @@ public class OrdersBusinessService {
                             && instrument.getSellQuantity() > 0) {
 
                         if (ordersRepository.hasActiveTodayOrder(
+                                accountId,
                                 instrument.getFigi(),
                                 OrderDirection.ORDER_DIRECTION_SELL.name())) {
 
-                            log.warn("Пропускаем SELL по {} (FIGI={}): уже есть активная заявка сегодня",
-                                    instrument.getName(), instrument.getFigi());
+                            OrderEventLogger.skip("SELL", instrument.getFigi(), "активная заявка сегодня");
                         } else {
-                            log.info("--- ЗАЯВКА НА ПРОДАЖУ ---");
-                            if (instrument.getManualSellPrice() != null) {
-                                log.info("Цена продажи (MANUAL): {}", effectiveSellPrice);
-                            } else if (instrument.getSellPriceFixed() != null) {
-                                log.info("Цена продажи (FIXED): {}", effectiveSellPrice);
-                            } else {
-                                log.info("Цена продажи (AUTO): {}", effectiveSellPrice);
-                            }
-                            log.info("Количество: {}", instrument.getSellQuantity());
+                            log.debug("SELL {}: цена {} ({}), количество {}", instrument.getFigi(), effectiveSellPrice,
+                                    instrument.getManualSellPrice() != null ? "MANUAL"
+                                            : instrument.getSellPriceFixed() != null ? "FIXED" : "AUTO",
+                                    instrument.getSellQuantity());
 
                             PostOrderResponse sellResponse = ordersService.postSellOrder(
                                     accountId,
@@ -170,8 +210,6 @@ public class OrdersBusinessService {
                                     null,
                                     submittedAt
                             );
-
-                            Thread.sleep(AppConstants.ORDERSDELAYMILLIS);
                         }
                     }
 
@@ -184,13 +222,9 @@ public class OrdersBusinessService {
                 }
             }
         } finally {
-            ordersService.shutdown();
-            log.info("=========================================");
-            log.info("ЗАВЕРШЕНИЕ ОТПРАВКИ ЗАЯВОК");
-            log.info("=========================================");
-            log.info("Успешных заявок: {}", successCount);
-            log.info("Ошибок: {}", errorCount);
-            log.info("=========================================");
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - batchStart);
+            OrderEventLogger.batch(accountId, instruments.size(), successCount, errorCount, elapsedMs);
+            log.info("✅ Отправка заявок завершена: успешно={}, ошибок={}, {} мс", successCount, errorCount, elapsedMs);
         }
 
         return new OrdersResult(successCount, errorCount, errors.toString());
@@ -232,7 +266,8 @@ public class OrdersBusinessService {
             order.setSubmittedAt(submittedAt);
 
             ordersRepository.save(order);
-            log.info("Заявка сохранена в БД: {} ({}) submitted_at={}",
+            OrderJournal.getInstance().record(OrderEvent.Type.ACK, order);
+            log.debug("Заявка сохранена в БД: {} ({}) submitted_at={}",
                     order.getMyOrderId(), direction, submittedAt);
         } catch (Exception e) {
             log.error("Не удалось сохранить заявку в БД по инструменту {}: {}",
@@ -1,5 +1,9 @@
 package com.algotrading.tinkoffinvestgui.service;
 
+import com.algotrading.tinkoffinvestgui.api.GrpcChannelManager;
+import com.algotrading.tinkoffinvestgui.api.OrdersService;
+import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
+import com.algotrading.tinkoffinvestgui.metrics.MetricsRegistry;
 import com.algotrading.tinkoffinvestgui.repository.InstrumentsRepository;
 import com.algotrading.tinkoffinvestgui.repository.OrdersRepository;
 import com.algotrading.tinkoffinvestgui.repository.ParametersRepository;
@@ -10,6 +14,9 @@ import java.time.DayOfWeek;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -18,6 +25,9 @@ import java.util.concurrent.TimeUnit;
  * Планировщик:
  * 1) Ежедневно в заданное время запускает подготовку данных и выставление BUY-заявок.
  * 2) В фоне каждые N секунд запускает OrderTracker для отслеживания статусов и Stop-on-Fill.
+ *
+ * Счета из parameters.account1, account2, … ведутся отдельными трекерами со своим состоянием;
+ * их тики идут параллельно (по потоку на счёт), канал Orders API и лимитер запросов — общие.
  */
 public class OrdersScheduler {
 
@@ -27,7 +37,8 @@ public class OrdersScheduler {
     private final InstrumentsRepository instrumentsRepository;
     private final OrdersRepository ordersRepository;
     private final DailyDataPreparationService dataPreparationService;
-    private final OrderTracker orderTracker;
+    private final Map<String, OrderTracker> orderTrackers = new LinkedHashMap<>();
+    private final OrdersService ordersService;
     private final Runnable ordersTask;
     private final ScheduledExecutorService scheduler;
 
@@ -35,7 +46,10 @@ public class OrdersScheduler {
     private LocalDate lastExecutionDate = null;
     private Runnable tableRefreshCallback;
 
-    private LocalTime dailyExecutionTime = LocalTime.of(9, 0);
+    /** Время ежедневного выставления заявок по умолчанию (МСК); его же использует внутридневной бэктест */
+    public static final LocalTime DEFAULT_DAILY_EXECUTION_TIME = LocalTime.of(9, 0);
+
+    private LocalTime dailyExecutionTime = DEFAULT_DAILY_EXECUTION_TIME;
     private int orderCheckIntervalSeconds = 5;
 
     public OrdersScheduler(ParametersRepository parametersRepository,
@@ -51,12 +65,21 @@ public class OrdersScheduler {
         this.tableRefreshCallback = tableRefreshCallback;
 
         this.dataPreparationService = new DailyDataPreparationService(instrumentsRepository);
-        this.scheduler = Executors.newScheduledThreadPool(2);
 
-        String accountId = getActiveAccountId();
-        this.orderTracker = new OrderTracker(ordersRepository, instrumentsRepository, accountId);
+        this.ordersService = new OrdersService(
+                ConnectorConfig.getApiToken(),
+                GrpcChannelManager.getInstance().getChannel(ConnectorConfig.API_URL, ConnectorConfig.API_PORT)
+        );
+        List<String> accountIds = getAccountIds();
+        for (int i = 0; i < accountIds.size(); i++) {
+            String accountId = accountIds.get(i);
+            orderTrackers.put(accountId,
+                    new OrderTracker(ordersRepository, instrumentsRepository, accountId, i == 0, ordersService));
+        }
+        // Поток на трекер каждого счёта + поток ежедневной задачи
+        this.scheduler = Executors.newScheduledThreadPool(orderTrackers.size() + 1);
 
-        log.info("OrdersScheduler инициализирован с OrderTracker для аккаунта {}", accountId);
+        log.info("OrdersScheduler инициализирован с OrderTracker для счетов {}", orderTrackers.keySet());
     }
 
     public void start() {
@@ -70,8 +93,15 @@ public class OrdersScheduler {
         log.info("Запуск OrdersScheduler. Ежедневное время: {}, интервал проверки заявок: {} сек",
                 dailyExecutionTime, orderCheckIntervalSeconds);
 
+        // Восстановление активных заявок из журнала — до первой проверки статусов
+        for (OrderTracker orderTracker : orderTrackers.values()) {
+            scheduler.execute(orderTracker::restoreFromJournal);
+            orderTracker.startTradesStream();
+        }
         scheduleDailyTask();
-        scheduleOrderMonitoring();
+        for (OrderTracker orderTracker : orderTrackers.values()) {
+            scheduleOrderMonitoring(orderTracker);
+        }
     }
 
     private void scheduleDailyTask() {
@@ -83,7 +113,9 @@ public class OrdersScheduler {
         scheduler.scheduleAtFixedRate(
                 () -> {
                     try {
-                        executeDailyTask();
+                        MetricsRegistry.getInstance()
+                                .timer(MetricsRegistry.SCHEDULER_TICK, "task", "daily_task")
+                                .record(this::executeDailyTask);
                     } catch (Exception e) {
                         log.error("Ошибка в ежедневной задаче", e);
                     }
@@ -94,15 +126,18 @@ public class OrdersScheduler {
         );
     }
 
-    private void scheduleOrderMonitoring() {
-        log.info("Мониторинг заявок запланирован: каждые {} сек", orderCheckIntervalSeconds);
+    private void scheduleOrderMonitoring(OrderTracker orderTracker) {
+        log.info("Мониторинг заявок счёта {} запланирован: каждые {} сек",
+                orderTracker.getAccountId(), orderCheckIntervalSeconds);
 
         scheduler.scheduleAtFixedRate(
                 () -> {
                     try {
-                        orderTracker.checkAndProcessPendingOrders();
+                        MetricsRegistry.getInstance()
+                                .timer(MetricsRegistry.SCHEDULER_TICK, "task", "order_tracker")
+                                .record(orderTracker::checkAndProcessPendingOrders);
                     } catch (Exception e) {
-                        log.error("Ошибка мониторинга заявок", e);
+                        log.error("Ошибка мониторинга заявок счёта {}", orderTracker.getAccountId(), e);
                     }
                 },
                 5,
@@ -128,7 +163,9 @@ public class OrdersScheduler {
 
         try {
             log.info("Шаг 1: подготовка дневных данных (копирование инструментов, расчёт цен)");
-            boolean prepared = dataPreparationService.prepareDailyData();
+            boolean prepared = MetricsRegistry.getInstance()
+                    .timer(MetricsRegistry.SCHEDULER_TICK, "task", "daily_prepare")
+                    .record(dataPreparationService::prepareDailyData);
 
             if (!prepared) {
                 log.warn("Подготовка данных не завершилась успешно, заявки не будут выставлены");
@@ -184,12 +221,12 @@ public class OrdersScheduler {
         log.info("Интервал проверки заявок установлен: {} сек", seconds);
     }
 
-    private String getActiveAccountId() {
+    private List<String> getAccountIds() {
         try {
-            return AccountService.getActiveAccountId();
+            return AccountService.getAccountIds();
         } catch (Exception e) {
-            log.error("Ошибка получения активного Account ID, используется заглушка", e);
-            return "default_account";
+            log.error("Ошибка получения Account ID, используется заглушка", e);
+            return List.of("default_account");
         }
     }
 
@@ -203,7 +240,10 @@ public class OrdersScheduler {
 
         try {
             scheduler.shutdownNow();
-            orderTracker.shutdown();
+            for (OrderTracker orderTracker : orderTrackers.values()) {
+                orderTracker.shutdown();
+            }
+            ordersService.shutdown();
 
             if (!scheduler.awaitTermination(10, TimeUnit.SECONDS)) {
                 log.warn("Scheduler не успел корректно остановиться");
@@ -224,8 +264,9 @@ public class OrdersScheduler {
     @Override
     public String toString() {
         return String.format(
-                "OrdersScheduler{status=%s, dailyTime=%s, orderCheckInterval=%ds}",
+                "OrdersScheduler{status=%s, accounts=%s, dailyTime=%s, orderCheckInterval=%ds}",
                 isRunning ? "RUNNING" : "STOPPED",
+                orderTrackers.keySet(),
                 dailyExecutionTime,
                 orderCheckIntervalSeconds
         );
@@ -4,6 +4,8 @@ import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
 import com.algotrading.tinkoffinvestgui.entity.Instrument;
 import com.algotrading.tinkoffinvestgui.exception.DatabaseException;
 import com.algotrading.tinkoffinvestgui.model.Order;
+import com.algotrading.tinkoffinvestgui.model.OrderEvent;
+import com.algotrading.tinkoffinvestgui.model.OrderStatus;
 import com.algotrading.tinkoffinvestgui.repository.InstrumentsRepository;
 import com.algotrading.tinkoffinvestgui.repository.OrdersRepository;
 import com.algotrading.tinkoffinvestgui.util.MoneyConverter;
@@ -13,11 +15,18 @@ import org.slf4j.LoggerFactory;
 import ru.tinkoff.piapi.contract.v1.OrderState;
 
 import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Сервис, который при старте приложения подтягивает активные заявки из API
  * и синхронизирует их с таблицей public.orders.
+ *
+ * Локальное состояние берётся из журнала {@link OrderJournal}; в БД идёт один пакетный
+ * запрос по заявкам, которых нет в журнале, вместо запроса на каждую заявку.
  */
 public class OrdersStartupService {
 
@@ -32,28 +41,66 @@ public class OrdersStartupService {
     public void syncActiveOrdersOnStartup() {
         log.info("Синхронизация активных заявок с API при старте приложения...");
 
-        String token = ConnectorConfig.getApiToken();
-        String accountId;
+        List<String> accountIds;
         try {
-            accountId = AccountService.getActiveAccountId();
+            accountIds = AccountService.getAccountIds();
         } catch (DatabaseException e) {
             log.error("Не удалось получить Account ID из БД для синхронизации заявок", e);
             return;
         }
 
-        TinkoffApiService apiService = new TinkoffApiService(token, accountId);
+        // Журнал и справочник инструментов читаются один раз на все счета
+        Map<String, Order> known = new HashMap<>();
+        Map<String, Instrument> instrumentsByFigi = new HashMap<>();
+        try {
+            for (Order order : OrderJournal.getInstance().replay().getOrders().values()) {
+                if (order.getExchangeOrderId() != null) {
+                    known.put(order.getExchangeOrderId(), order);
+                }
+            }
+            for (Instrument instrument : instrumentsRepository.findAll()) {
+                if (instrument.getFigi() != null) {
+                    instrumentsByFigi.put(instrument.getFigi(), instrument);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Ошибка при синхронизации заявок с API", e);
+            return;
+        }
+
+        for (String accountId : accountIds) {
+            syncAccount(accountId, known, instrumentsByFigi);
+        }
+    }
+
+    /**
+     * Синхронизация активных заявок одного счёта
+     */
+    private void syncAccount(String accountId, Map<String, Order> known, Map<String, Instrument> instrumentsByFigi) {
+        TinkoffApiService apiService = new TinkoffApiService(ConnectorConfig.getApiToken(), accountId);
 
         try {
             List<OrderState> apiOrders = apiService.getOrders();
-            log.info("Из API получено {} активных заявок", apiOrders.size());
+            log.info("Из API получено {} активных заявок по счёту {}", apiOrders.size(), accountId);
 
             int created = 0;
             int updated = 0;
 
+            // Известные заявки: сначала из журнала, остальные — одним запросом к public.orders
+            Set<String> missing = new HashSet<>();
+            for (OrderState apiOrder : apiOrders) {
+                if (!known.containsKey(apiOrder.getOrderId())) {
+                    missing.add(apiOrder.getOrderId());
+                }
+            }
+            for (Order order : ordersRepository.findByExchangeOrderIds(missing)) {
+                known.put(order.getExchangeOrderId(), order);
+            }
+
             for (OrderState apiOrder : apiOrders) {
                 String exchangeOrderId = apiOrder.getOrderId();
 
-                Order existing = ordersRepository.findByExchangeOrderId(exchangeOrderId);
+                Order existing = known.get(exchangeOrderId);
 
                 if (existing == null) {
                     // Создаём новую запись
@@ -64,7 +111,7 @@ public class OrdersStartupService {
                     order.setAccountId(accountId);
                     order.setFigi(apiOrder.getFigi());
 
-                    Instrument instrument = instrumentsRepository.findByFigi(apiOrder.getFigi());
+                    Instrument instrument = instrumentsByFigi.get(apiOrder.getFigi());
                     if (instrument != null) {
                         order.setInstrumentName(instrument.getName());
                         order.setTicker(instrument.getIsin());
@@ -100,41 +147,42 @@ public class OrdersStartupService {
                     order.setSubmittedAt(null); // точного времени выставления API не даёт здесь
 
                     ordersRepository.save(order);
+                    OrderJournal.getInstance().record(OrderEvent.Type.STATUS, order);
                     created++;
                 } else {
+                    String newStatus = normalizeStatus(apiOrder.getExecutionReportStatus().name());
+                    if (newStatus.equals(existing.getStatus())
+                            && apiOrder.getLotsExecuted() == existing.getLotsExecuted()) {
+                        // Журнал уже отражает актуальное состояние
+                        continue;
+                    }
+
                     // Обновляем существующую запись
                     existing.setLotsExecuted(apiOrder.getLotsExecuted());
                     existing.setAverageExecutionPrice(
                             MoneyConverter.toBigDecimal(apiOrder.getExecutedOrderPrice()));
-                    String rawStatus = apiOrder.getExecutionReportStatus().name();
-                    existing.setStatus(normalizeStatus(rawStatus));
+                    existing.setStatus(newStatus);
                     existing.setTotalOrderAmount(
                             MoneyConverter.toBigDecimal(apiOrder.getTotalOrderAmount()));
 
                     ordersRepository.update(existing);
+                    OrderJournal.getInstance().record(OrderEvent.Type.STATUS, existing);
                     updated++;
                 }
             }
 
-            log.info("Синхронизация заявок завершена: создано {}, обновлено {}", created, updated);
+            log.info("Синхронизация заявок счёта {} завершена: создано {}, обновлено {}", accountId, created, updated);
         } catch (Exception e) {
-            log.error("Ошибка при синхронизации заявок с API", e);
+            log.error("Ошибка при синхронизации заявок счёта {} с API", accountId, e);
         } finally {
             apiService.close();
         }
     }
 
     /**
-     * Нормализация статуса из EXECUTION_REPORT_STATUS_* в короткий вид.
+     * Нормализация статуса из EXECUTION_REPORT_STATUS_* в короткий вид (как в public.orders).
      */
     private String normalizeStatus(String rawStatus) {
-        if (rawStatus == null) {
-            return "UNKNOWN";
-        }
-        String s = rawStatus.replace("EXECUTION_REPORT_STATUS_", "");
-        if ("PARTIALLYFILL".equals(s)) {
-            return "PARTIALLY_FILLED";
-        }
-        return s;
+        return OrderStatus.normalize(rawStatus).name();
     }
 }
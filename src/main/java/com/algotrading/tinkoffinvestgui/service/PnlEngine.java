@@ -0,0 +1,166 @@
+package com.algotrading.tinkoffinvestgui.service;
+
+import com.algotrading.tinkoffinvestgui.model.FifoPosition;
+import com.algotrading.tinkoffinvestgui.model.Trade;
+import com.algotrading.tinkoffinvestgui.repository.PnlRepository;
+import com.algotrading.tinkoffinvestgui.repository.TradesRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Позиции и реализованный P&L по FIFO поверх public.trades.
+ *
+ * Учитываются только сделки с id выше сохранённой отметки: пачка новых сделок применяется
+ * к лотам в памяти и сохраняется вместе с отметкой одной транзакцией (PnlRepository),
+ * так что обновление не пересчитывает историю. Лоты и итоги читаются из БД один раз.
+ * Стоимость единицы — цена + НКД на бумагу; комиссии копятся отдельно.
+ * Сделки считаются неизменными после учёта; сделка за прошлый период, загруженная
+ * позже более новых, встаёт в очередь лотов в порядке загрузки.
+ */
+public class PnlEngine {
+    private static final Logger log = LoggerFactory.getLogger(PnlEngine.class);
+    private static final PnlEngine INSTANCE = new PnlEngine();
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final TradesRepository tradesRepository = new TradesRepository();
+    private final PnlRepository repository = new PnlRepository();
+
+    private final Map<String, FifoPosition> positions = new HashMap<>();
+    private long watermark;
+    private boolean loaded;
+
+    private PnlEngine() {
+    }
+
+    public static PnlEngine getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Учесть сделки, появившиеся после отметки
+     *
+     * @return число учтённых сделок
+     */
+    public synchronized int update() {
+        long started = System.currentTimeMillis();
+        ensureLoaded();
+        int processed = 0;
+        try {
+            while (true) {
+                List<Trade> batch = tradesRepository.findAfterId(watermark, BATCH_SIZE);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                // Внутри пачки — по времени сделки, чтобы лоты вставали в хронологическом порядке
+                batch.sort(Comparator.comparing(Trade::getTradeDate, Comparator.nullsFirst(Comparator.naturalOrder()))
+                        .thenComparing(Trade::getId));
+
+                Map<String, FifoPosition> changed = new LinkedHashMap<>();
+                Map<String, PnlRepository.DailyPnl> daily = new LinkedHashMap<>();
+                long lastId = watermark;
+                for (Trade trade : batch) {
+                    apply(trade, changed, daily);
+                    lastId = Math.max(lastId, trade.getId());
+                }
+                repository.saveBatch(changed.values(), daily.values(), lastId);
+                watermark = lastId;
+                processed += batch.size();
+
+                if (batch.size() < BATCH_SIZE) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            // Лоты в памяти могли уйти вперёд несохранённой пачки — перечитаем состояние из БД
+            positions.clear();
+            loaded = false;
+            throw e;
+        }
+        if (processed > 0) {
+            log.info("📊 P&L: учтено {} сделок за {} мс, отметка {}",
+                    processed, System.currentTimeMillis() - started, watermark);
+        }
+        return processed;
+    }
+
+    private void apply(Trade trade, Map<String, FifoPosition> changed, Map<String, PnlRepository.DailyPnl> daily) {
+        if (trade.getQuantity() <= 0 || trade.getPrice() == null || trade.getFigi() == null) {
+            log.warn("⚠️ P&L: пропущена сделка без количества или цены: {}", trade.getTradeId());
+            return;
+        }
+        String key = trade.getAccountId() + "|" + trade.getFigi();
+        FifoPosition position = positions.computeIfAbsent(key,
+                k -> new FifoPosition(trade.getAccountId(), trade.getFigi()));
+        if (trade.getInstrumentName() != null) {
+            position.setInstrumentName(trade.getInstrumentName());
+        }
+
+        long quantity = trade.getQuantity();
+        double aciPerUnit = trade.getAci() != null ? trade.getAci().doubleValue() / quantity : 0;
+        double unitValue = trade.getPrice().doubleValue() + aciPerUnit;
+        double fee = trade.getCommission() != null ? trade.getCommission().doubleValue() : 0;
+        long signedQuantity = trade.getDirection() != null && trade.getDirection().contains("BUY")
+                ? quantity
+                : -quantity;
+
+        double realized = position.apply(signedQuantity, unitValue, fee);
+        changed.put(key, position);
+
+        LocalDate day = trade.getTradeDate() != null
+                ? trade.getTradeDate().atZone(ZoneId.systemDefault()).toLocalDate()
+                : LocalDate.now();
+        PnlRepository.DailyPnl dayPnl = daily.computeIfAbsent(key + "|" + day,
+                k -> new PnlRepository.DailyPnl(trade.getAccountId(), day, trade.getFigi()));
+        dayPnl.realizedPnl += realized;
+        dayPnl.commission += fee;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        long started = System.currentTimeMillis();
+        positions.clear();
+        for (FifoPosition position : repository.findPositions()) {
+            positions.put(position.getAccountId() + "|" + position.getFigi(), position);
+        }
+        watermark = repository.getWatermark();
+        loaded = true;
+        log.info("✅ P&L загружен из БД: {} позиций, отметка {}, за {} мс",
+                positions.size(), watermark, System.currentTimeMillis() - started);
+    }
+
+    /**
+     * Позиции счёта (копии — для отображения вне потока обновления), по убыванию чистого P&L
+     */
+    public synchronized List<FifoPosition> getPositions(String accountId) {
+        ensureLoaded();
+        List<FifoPosition> result = new ArrayList<>();
+        for (FifoPosition position : positions.values()) {
+            if (accountId.equals(position.getAccountId())) {
+                result.add(new FifoPosition(position.getAccountId(), position.getFigi(),
+                        position.getInstrumentName(), position.getLotQuantities(), position.getLotPrices(),
+                        position.getRealizedPnl(), position.getCommission(), position.getTradesCount()));
+            }
+        }
+        result.sort(Comparator.comparingDouble(FifoPosition::getNetPnl).reversed());
+        return result;
+    }
+
+    /**
+     * P&L счёта по дням за последние days дней, от новых к старым
+     */
+    public List<PnlRepository.DailyPnl> getDailyPnl(String accountId, int days) {
+        return repository.findDaily(accountId, LocalDate.now().minusDays(days - 1));
+    }
+}
@@ -0,0 +1,677 @@
+package com.algotrading.tinkoffinvestgui.service;
+
+import com.algotrading.tinkoffinvestgui.util.ArrayStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Портфельный бэктест стратегии "ловец дна".
+ *
+ * В отличие от BondStrategyBacktestService (каждая облигация отдельно, капитал не ограничен),
+ * здесь одна временная шкала по всем облигациям:
+ * - общий денежный счёт, покупка только на свободные деньги (с комиссией);
+ * - размер позиции — buy_quantity из instruments (или значение по умолчанию);
+ * - при нехватке денег первыми покупаются бумаги с меньшим priority;
+ * - ежедневная переоценка портфеля по цене закрытия (кривая капитала).
+ *
+ * Сигналы считаются по истории ДО текущего дня (как в ежедневной подготовке цен):
+ * buy = вчерашнее закрытие − k·σ, лимитная покупка исполняется, если low ≤ buy;
+ * продажа — по таргету (high ≥ target) или по закрытию через MAX_HOLDING_DAYS дней.
+ *
+ * Ряды свечей — примитивные массивы, общий поток событий строится k-way слиянием
+ * через бинарную кучу индексов облигаций (без объектов на каждую свечу).
+ * Волатильность окна считается по префиксным суммам ряда, поэтому один набор рядов
+ * можно прогонять многократно (walk-forward) без пересчёта статистики.
+ */
+public class PortfolioBacktestEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(PortfolioBacktestEngine.class);
+
+    private static final int TRADING_DAYS_PER_YEAR = 252;
+    private static final int MAX_HOLDING_DAYS = 30;
+    private static final long SECONDS_PER_DAY = 86_400L;
+
+    private final double volatilityMultiplier;
+    private final double profitMargin;
+    private final double commission;
+    private final int analysisPeriodMonths;
+
+    public PortfolioBacktestEngine(double volatilityMultiplier, double profitMargin,
+                                   double commission, int analysisPeriodMonths) {
+        this.volatilityMultiplier = volatilityMultiplier;
+        this.profitMargin = profitMargin;
+        this.commission = commission;
+        this.analysisPeriodMonths = analysisPeriodMonths;
+    }
+
+    /**
+     * Прогон портфельной симуляции
+     *
+     * @param bonds ряды свечей (должны начинаться за analysisPeriodMonths до startDate)
+     */
+    public PortfolioReport run(List<BondSeries> bonds, LocalDate startDate, LocalDate endDate,
+                               PortfolioSettings settings) {
+        long started = System.nanoTime();
+        int n = bonds.size();
+        BondSeries[] series = bonds.toArray(new BondSeries[0]);
+
+        long startDay = startDate.toEpochDay();
+        long endDay = endDate.toEpochDay();
+
+        // Состояние рядов: следующая свеча и окно анализа [windowStart, cursor)
+        int[] cursor = new int[n];
+        int[] windowStart = new int[n];
+        double[] lastClose = new double[n];
+
+        // Позиции
+        int[] positionLots = new int[n];
+        double[] entryPrice = new double[n];
+        double[] entryCommission = new double[n];
+        double[] targetPrice = new double[n];
+        double[] entryVolatility = new double[n];
+        long[] entryDay = new long[n];
+        int openPositions = 0;
+        int maxOpenPositions = 0;
+
+        double cash = settings.getInitialCapital();
+        double positionsValue = 0;
+        double tradedNotional = 0;
+
+        List<PortfolioTrade> trades = new ArrayList<>();
+        LongArray equityDays = new LongArray();
+        DoubleArray equity = new DoubleArray();
+        DoubleArray cashShare = new DoubleArray();
+
+        // Ряды могут быть длиннее прогона (walk-forward): начинаем с начала окна анализа
+        long warmupFrom = startDate.minusMonths(analysisPeriodMonths).toEpochDay();
+        DayHeap heap = new DayHeap(series, cursor);
+        for (int b = 0; b < n; b++) {
+            cursor[b] = lowerBound(series[b].days, warmupFrom);
+            windowStart[b] = cursor[b];
+            if (cursor[b] < series[b].size()) {
+                heap.push(b);
+            }
+        }
+
+        int[] today = new int[n];
+        int[] candidates = new int[n];
+        double[] candidateBuyPrice = new double[n];
+
+        while (!heap.isEmpty()) {
+            long day = heap.peekDay();
+            if (day > endDay) {
+                break;
+            }
+
+            // Все облигации со свечой за этот день
+            int todayCount = 0;
+            while (!heap.isEmpty() && heap.peekDay() == day) {
+                today[todayCount++] = heap.poll();
+            }
+
+            if (day >= startDay) {
+                // 1. Выходы — до входов, чтобы освободившиеся деньги были доступны в тот же день
+                for (int i = 0; i < todayCount; i++) {
+                    int b = today[i];
+                    if (positionLots[b] == 0) {
+                        continue;
+                    }
+                    BondSeries s = series[b];
+                    int c = cursor[b];
+                    int holdingDays = (int) (day - entryDay[b]);
+                    double exitPrice;
+                    String reason;
+                    if (s.high[c] >= targetPrice[b]) {
+                        exitPrice = Math.max(s.open[c], targetPrice[b]);
+                        reason = "таргет";
+                    } else if (holdingDays >= MAX_HOLDING_DAYS) {
+                        exitPrice = s.close[c];
+                        reason = "таймаут";
+                    } else {
+                        continue;
+                    }
+                    double notional = positionLots[b] * exitPrice * s.unitFactor;
+                    double sellCommission = notional * commission;
+                    cash += notional - sellCommission;
+                    tradedNotional += notional;
+                    positionsValue -= positionLots[b] * lastClose[b] * s.unitFactor;
+                    trades.add(closeTrade(s, positionLots[b], entryDay[b], entryPrice[b], entryVolatility[b],
+                            entryCommission[b], day, exitPrice, sellCommission, reason));
+                    positionLots[b] = 0;
+                    openPositions--;
+                }
+
+                // 2. Кандидаты на вход: сигнал по окну до вчерашнего дня включительно
+                long windowFrom = LocalDate.ofEpochDay(day).minusMonths(analysisPeriodMonths).toEpochDay();
+                int candidateCount = 0;
+                for (int i = 0; i < todayCount; i++) {
+                    int b = today[i];
+                    if (positionLots[b] > 0) {
+                        continue;
+                    }
+                    BondSeries s = series[b];
+                    int c = cursor[b];
+                    while (windowStart[b] < c && s.days[windowStart[b]] < windowFrom) {
+                        windowStart[b]++;
+                    }
+                    int from = windowStart[b];
+                    int count = c - from;
+                    if (count < 2) {
+                        continue;
+                    }
+                    double mean = (s.prefixSum[c] - s.prefixSum[from]) / count;
+                    double meanSq = (s.prefixSumSq[c] - s.prefixSumSq[from]) / count;
+                    double volatility = Math.sqrt(Math.max(0, meanSq - mean * mean));
+                    double buyPrice = s.close[c - 1] - volatilityMultiplier * volatility;
+                    if (buyPrice > 0 && s.low[c] <= buyPrice) {
+                        candidateBuyPrice[b] = Math.min(buyPrice, s.open[c]);
+                        entryVolatility[b] = volatility;
+                        candidates[candidateCount++] = b;
+                    }
+                }
+
+                // 3. Входы по приоритету, затем по глубине просадки к вчерашнему закрытию
+                if (candidateCount > 0) {
+                    sortCandidates(candidates, candidateCount, series, cursor, candidateBuyPrice);
+                    for (int i = 0; i < candidateCount; i++) {
+                        if (settings.getMaxPositions() > 0 && openPositions >= settings.getMaxPositions()) {
+                            break;
+                        }
+                        int b = candidates[i];
+                        BondSeries s = series[b];
+                        double price = candidateBuyPrice[b];
+                        double unitCost = price * s.unitFactor * (1 + commission);
+                        int lots = s.lots > 0 ? s.lots : settings.getDefaultLots();
+                        if (lots * unitCost > cash) {
+                            lots = (int) Math.floor(cash / unitCost);
+                        }
+                        if (lots <= 0) {
+                            continue;
+                        }
+                        double notional = lots * price * s.unitFactor;
+                        double buyCommission = notional * commission;
+                        cash -= notional + buyCommission;
+                        tradedNotional += notional;
+
+                        positionLots[b] = lots;
+                        entryPrice[b] = price;
+                        entryCommission[b] = buyCommission;
+                        entryDay[b] = day;
+                        double targetProfit = price * profitMargin;
+                        targetPrice[b] = price + price * commission + targetProfit
+                                + (price + targetProfit) * commission;
+                        // Переоценка начнётся с текущего закрытия (шаг 4)
+                        lastClose[b] = price;
+                        positionsValue += lots * price * s.unitFactor;
+                        openPositions++;
+                    }
+                    maxOpenPositions = Math.max(maxOpenPositions, openPositions);
+                }
+            }
+
+            // 4. Сдвиг рядов: переоценка позиций, следующая свеча в кучу
+            for (int i = 0; i < todayCount; i++) {
+                int b = today[i];
+                BondSeries s = series[b];
+                int c = cursor[b];
+                double close = s.close[c];
+                if (positionLots[b] > 0) {
+                    positionsValue += positionLots[b] * (close - lastClose[b]) * s.unitFactor;
+                }
+                lastClose[b] = close;
+                cursor[b] = c + 1;
+                if (cursor[b] < s.size()) {
+                    heap.push(b);
+                }
+            }
+
+            if (day >= startDay) {
+                double totalEquity = cash + positionsValue;
+                equityDays.add(day);
+                equity.add(totalEquity);
+                cashShare.add(totalEquity > 0 ? cash / totalEquity : 1.0);
+            }
+        }
+
+        // Закрыть открытые позиции по последней цене в конце периода
+        for (int b = 0; b < n; b++) {
+            if (positionLots[b] == 0) {
+                continue;
+            }
+            BondSeries s = series[b];
+            double notional = positionLots[b] * lastClose[b] * s.unitFactor;
+            double sellCommission = notional * commission;
+            cash += notional - sellCommission;
+            tradedNotional += notional;
+            trades.add(closeTrade(s, positionLots[b], entryDay[b], entryPrice[b], entryVolatility[b],
+                    entryCommission[b], Math.min(endDay, Math.max(entryDay[b], equityDays.last(endDay))),
+                    lastClose[b], sellCommission, "конец периода"));
+            positionLots[b] = 0;
+        }
+
+        PortfolioReport report = buildReport(startDate, endDate, settings, cash, tradedNotional,
+                maxOpenPositions, trades, equityDays.toArray(), equity.toArray(), cashShare.toArray());
+        log.debug("✅ Портфельный бэктест: {} облигаций, {} сделок, итог {}₽, просадка {}%, Sharpe {}, {} мс",
+                n, trades.size(),
+                String.format("%.2f", report.getFinalEquity()),
+                String.format("%.2f", report.getMaxDrawdownPercent()),
+                String.format("%.2f", report.getSharpe()),
+                (System.nanoTime() - started) / 1_000_000);
+        return report;
+    }
+
+    private PortfolioTrade closeTrade(BondSeries s, int lots, long buyDay, double buyPrice, double volatility,
+                                      double buyCommission, long sellDay, double sellPrice,
+                                      double sellCommission, String reason) {
+        PortfolioTrade trade = new PortfolioTrade();
+        trade.figi = s.figi;
+        trade.ticker = s.ticker;
+        trade.name = s.name;
+        trade.lots = lots;
+        trade.buyDate = LocalDate.ofEpochDay(buyDay);
+        trade.buyPrice = buyPrice;
+        trade.volatility = volatility;
+        trade.sellDate = LocalDate.ofEpochDay(sellDay);
+        trade.sellPrice = sellPrice;
+        trade.holdingDays = (int) (sellDay - buyDay);
+        trade.commission = buyCommission + sellCommission;
+        double invested = lots * buyPrice * s.unitFactor;
+        trade.profit = lots * (sellPrice - buyPrice) * s.unitFactor - trade.commission;
+        trade.profitPercent = invested > 0 ? trade.profit / invested * 100 : 0;
+        trade.exitReason = reason;
+        return trade;
+    }
+
+    private PortfolioReport buildReport(LocalDate startDate, LocalDate endDate, PortfolioSettings settings,
+                                        double finalCash, double tradedNotional, int maxOpenPositions,
+                                        List<PortfolioTrade> trades, long[] days, double[] equity,
+                                        double[] cashShare) {
+        PortfolioReport report = new PortfolioReport();
+        report.startDate = startDate;
+        report.endDate = endDate;
+        report.initialCapital = settings.getInitialCapital();
+        report.finalEquity = finalCash;
+        report.trades = trades;
+        report.equityDays = days;
+        report.equity = equity;
+        report.maxConcurrentPositions = maxOpenPositions;
+
+        double initial = settings.getInitialCapital();
+        report.totalReturnPercent = initial > 0 ? (finalCash / initial - 1) * 100 : 0;
+        double years = Math.max(1, endDate.toEpochDay() - startDate.toEpochDay() + 1) / 365.25;
+        report.annualReturnPercent = initial > 0 && finalCash > 0
+                ? (Math.pow(finalCash / initial, 1 / years) - 1) * 100
+                : 0;
+
+        report.maxDrawdownPercent = maxDrawdownPercent(initial, equity);
+        report.sharpe = sharpe(initial, equity);
+
+        // Оборот: объём сделок (покупки + продажи) к среднему капиталу, в год
+        double avgEquity = equity.length > 0 ? ArrayStats.mean(equity) : initial;
+        report.annualTurnover = avgEquity > 0 ? tradedNotional / avgEquity / years : 0;
+        report.avgCashSharePercent = cashShare.length > 0
+                ? ArrayStats.mean(cashShare) * 100
+                : 100;
+
+        int profitable = 0;
+        for (PortfolioTrade t : trades) {
+            if (t.profit > 0) {
+                profitable++;
+            }
+        }
+        report.profitableTrades = profitable;
+        report.winRate = trades.isEmpty() ? 0 : profitable * 100.0 / trades.size();
+        return report;
+    }
+
+    /**
+     * Максимальная просадка дневной кривой капитала, %
+     */
+    static double maxDrawdownPercent(double initial, double[] equity) {
+        double peak = initial;
+        double maxDrawdown = 0;
+        for (double e : equity) {
+            peak = Math.max(peak, e);
+            if (peak > 0) {
+                maxDrawdown = Math.max(maxDrawdown, (peak - e) / peak);
+            }
+        }
+        return maxDrawdown * 100;
+    }
+
+    /**
+     * Sharpe по дневным доходностям (безрисковая ставка = 0), в годовом выражении
+     */
+    static double sharpe(double initial, double[] equity) {
+        if (equity.length < 2) {
+            return 0;
+        }
+        double sum = 0;
+        double sumSq = 0;
+        int count = 0;
+        double prev = initial;
+        for (double e : equity) {
+            if (prev > 0) {
+                double r = e / prev - 1;
+                sum += r;
+                sumSq += r * r;
+                count++;
+            }
+            prev = e;
+        }
+        if (count == 0) {
+            return 0;
+        }
+        double mean = sum / count;
+        double std = Math.sqrt(Math.max(0, sumSq / count - mean * mean));
+        return std > 0 ? mean / std * Math.sqrt(TRADING_DAYS_PER_YEAR) : 0;
+    }
+
+    /**
+     * Первый индекс с днём >= day
+     */
+    private static int lowerBound(long[] days, long day) {
+        int lo = 0;
+        int hi = days.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (days[mid] < day) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Сортировка кандидатов: priority ↑, затем относительная просадка цены покупки ↓.
+     * Вставками — кандидатов в один день немного.
+     */
+    private static void sortCandidates(int[] candidates, int count, BondSeries[] series, int[] cursor,
+                                       double[] buyPrice) {
+        for (int i = 1; i < count; i++) {
+            int b = candidates[i];
+            int j = i - 1;
+            while (j >= 0 && compareCandidates(candidates[j], b, series, cursor, buyPrice) > 0) {
+                candidates[j + 1] = candidates[j];
+                j--;
+            }
+            candidates[j + 1] = b;
+        }
+    }
+
+    private static int compareCandidates(int a, int b, BondSeries[] series, int[] cursor, double[] buyPrice) {
+        int byPriority = Integer.compare(series[a].priority, series[b].priority);
+        if (byPriority != 0) {
+            return byPriority;
+        }
+        double discountA = buyPrice[a] / series[a].close[cursor[a] - 1];
+        double discountB = buyPrice[b] / series[b].close[cursor[b] - 1];
+        return Double.compare(discountA, discountB);
+    }
+
+    // ========== СТРУКТУРЫ ==========
+
+    /**
+     * Бинарная min-куча индексов облигаций по дате следующей свечи (k-way слияние рядов)
+     */
+    private static final class DayHeap {
+        private final BondSeries[] series;
+        private final int[] cursor;
+        private final int[] heap;
+        private int size;
+
+        DayHeap(BondSeries[] series, int[] cursor) {
+            this.series = series;
+            this.cursor = cursor;
+            this.heap = new int[series.length];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        long peekDay() {
+            return day(heap[0]);
+        }
+
+        void push(int b) {
+            int i = size++;
+            heap[i] = b;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (less(heap[parent], heap[i])) {
+                    break;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        int poll() {
+            int top = heap[0];
+            heap[0] = heap[--size];
+            int i = 0;
+            while (true) {
+                int left = 2 * i + 1;
+                if (left >= size) {
+                    break;
+                }
+                int right = left + 1;
+                int smallest = right < size && less(heap[right], heap[left]) ? right : left;
+                if (less(heap[i], heap[smallest])) {
+                    break;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+            return top;
+        }
+
+        private long day(int b) {
+            return series[b].days[cursor[b]];
+        }
+
+        private boolean less(int a, int b) {
+            long da = day(a);
+            long db = day(b);
+            return da < db || (da == db && a < b);
+        }
+
+        private void swap(int i, int j) {
+            int t = heap[i];
+            heap[i] = heap[j];
+            heap[j] = t;
+        }
+    }
+
+    private static final class LongArray {
+        private long[] data = new long[256];
+        private int size;
+
+        void add(long value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+
+        long last(long defaultValue) {
+            return size > 0 ? data[size - 1] : defaultValue;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+
+    private static final class DoubleArray {
+        private double[] data = new double[256];
+        private int size;
+
+        void add(double value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+
+        double[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+
+    /**
+     * Ряд дневных свечей облигации + параметры позиции
+     */
+    public static class BondSeries {
+        final String figi;
+        final String ticker;
+        final String name;
+        /** Перевод цены (% от номинала) в рубли за один лот */
+        final double unitFactor;
+        final int lots;
+        final int priority;
+        final long[] days;
+        final double[] open;
+        final double[] high;
+        final double[] low;
+        final double[] close;
+        /** Префиксные суммы close и close² — статистика любого окна за O(1), общая для всех прогонов */
+        final double[] prefixSum;
+        final double[] prefixSumSq;
+
+        /**
+         * @param lots     размер позиции в лотах (0 — взять из настроек)
+         * @param priority приоритет покупки (меньше — раньше)
+         */
+        public BondSeries(String figi, String ticker, String name, double nominal, int lots, int priority,
+                          CandlesColumnarFormat.RowGroup candles) {
+            this.figi = figi;
+            this.ticker = ticker;
+            this.name = name;
+            this.unitFactor = nominal / 100.0;
+            this.lots = lots;
+            this.priority = priority;
+            this.days = new long[candles.size()];
+            for (int i = 0; i < days.length; i++) {
+                days[i] = Math.floorDiv(candles.times[i], SECONDS_PER_DAY);
+            }
+            this.open = candles.open;
+            this.high = candles.high;
+            this.low = candles.low;
+            this.close = candles.close;
+            this.prefixSum = new double[days.length + 1];
+            this.prefixSumSq = new double[days.length + 1];
+            for (int i = 0; i < days.length; i++) {
+                prefixSum[i + 1] = prefixSum[i] + close[i];
+                prefixSumSq[i + 1] = prefixSumSq[i] + close[i] * close[i];
+            }
+        }
+
+        public int size() {
+            return days.length;
+        }
+    }
+
+    /**
+     * Настройки портфеля
+     */
+    public static class PortfolioSettings {
+        private double initialCapital = 1_000_000;
+        private int defaultLots = 10;
+        private int maxPositions = 0;
+
+        public double getInitialCapital() { return initialCapital; }
+        public void setInitialCapital(double initialCapital) { this.initialCapital = initialCapital; }
+
+        public int getDefaultLots() { return defaultLots; }
+        public void setDefaultLots(int defaultLots) { this.defaultLots = defaultLots; }
+
+        /** 0 — без ограничения числа одновременных позиций */
+        public int getMaxPositions() { return maxPositions; }
+        public void setMaxPositions(int maxPositions) { this.maxPositions = maxPositions; }
+    }
+
+    /**
+     * Сделка портфельного бэктеста (в рублях, с учётом лотов и номинала)
+     */
+    public static class PortfolioTrade {
+        private String figi;
+        private String ticker;
+        private String name;
+        private int lots;
+        private LocalDate buyDate;
+        private double buyPrice;
+        private double volatility;
+        private LocalDate sellDate;
+        private double sellPrice;
+        private int holdingDays;
+        private double commission;
+        private double profit;
+        private double profitPercent;
+        private String exitReason;
+
+        public String getFigi() { return figi; }
+        public String getTicker() { return ticker; }
+        public String getName() { return name; }
+        public int getLots() { return lots; }
+        public LocalDate getBuyDate() { return buyDate; }
+        public double getBuyPrice() { return buyPrice; }
+        public double getVolatility() { return volatility; }
+        public LocalDate getSellDate() { return sellDate; }
+        public double getSellPrice() { return sellPrice; }
+        public int getHoldingDays() { return holdingDays; }
+        public double getCommission() { return commission; }
+        public double getProfit() { return profit; }
+        public double getProfitPercent() { return profitPercent; }
+        public String getExitReason() { return exitReason; }
+    }
+
+    /**
+     * Итог портфельного бэктеста
+     */
+    public static class PortfolioReport {
+        private LocalDate startDate;
+        private LocalDate endDate;
+        private double initialCapital;
+        private double finalEquity;
+        private double totalReturnPercent;
+        private double annualReturnPercent;
+        private double maxDrawdownPercent;
+        private double sharpe;
+        private double annualTurnover;
+        private double avgCashSharePercent;
+        private int maxConcurrentPositions;
+        private int profitableTrades;
+        private double winRate;
+        private List<PortfolioTrade> trades;
+        private long[] equityDays;
+        private double[] equity;
+
+        public LocalDate getStartDate() { return startDate; }
+        public LocalDate getEndDate() { return endDate; }
+        public double getInitialCapital() { return initialCapital; }
+        public double getFinalEquity() { return finalEquity; }
+        public double getTotalReturnPercent() { return totalReturnPercent; }
+        public double getAnnualReturnPercent() { return annualReturnPercent; }
+        public double getMaxDrawdownPercent() { return maxDrawdownPercent; }
+        public double getSharpe() { return sharpe; }
+        public double getAnnualTurnover() { return annualTurnover; }
+        public double getAvgCashSharePercent() { return avgCashSharePercent; }
+        public int getMaxConcurrentPositions() { return maxConcurrentPositions; }
+        public int getProfitableTrades() { return profitableTrades; }
+        public double getWinRate() { return winRate; }
+        public List<PortfolioTrade> getTrades() { return trades; }
+        /** Дни кривой капитала (epoch day) */
+        public long[] getEquityDays() { return equityDays; }
+        /** Капитал на конец дня, ₽ */
+        public double[] getEquity() { return equity; }
+    }
+}
@@ -8,6 +8,8 @@ import ru.tinkoff.piapi.contract.v1.*;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * Сервис для работы с портфелем
@@ -26,18 +28,24 @@ public class PortfolioService {
         List<Position> positions = new ArrayList<>();
         BigDecimal totalValue = BigDecimal.ZERO;
         BigDecimal totalProfitLoss = BigDecimal.ZERO;
+
+        // Цены всех позиций — одним запросом GetLastPrices
+        Map<String, BigDecimal> lastPrices = MarketSnapshotService.getInstance().getLastPrices(
+                response.getPositionsList().stream()
+                        .map(PortfolioPosition::getFigi)
+                        .collect(Collectors.toList()));
         
         for (PortfolioPosition apiPosition : response.getPositionsList()) {
             String figi = apiPosition.getFigi();
             
             try {
                 var instrument = apiService.getInstrumentByFigi(figi);
-                var lastPrice = apiService.getLastPrice(figi);
                 
                 BigDecimal quantity = MoneyConverter.toBigDecimal(apiPosition.getQuantity());
                 BigDecimal averagePrice = apiPosition.hasAveragePositionPrice() ?
                         MoneyConverter.toBigDecimal(apiPosition.getAveragePositionPrice()) : BigDecimal.ZERO;
-                BigDecimal currentPrice = MoneyConverter.toBigDecimal(lastPrice.getPrice());
+                BigDecimal currentPrice = lastPrices.containsKey(figi) ? lastPrices.get(figi) :
+                        MoneyConverter.toBigDecimal(apiPosition.getCurrentPrice());
                 
                 Position position = new Position.Builder()
                         .figi(figi)
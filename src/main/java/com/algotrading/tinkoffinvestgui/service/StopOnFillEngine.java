@@ -0,0 +1,370 @@
+package com.algotrading.tinkoffinvestgui.service;
+
+import com.algotrading.tinkoffinvestgui.api.GrpcChannelManager;
+import com.algotrading.tinkoffinvestgui.api.OrdersService;
+import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
+import com.algotrading.tinkoffinvestgui.entity.Instrument;
+import com.algotrading.tinkoffinvestgui.metrics.MetricsRegistry;
+import com.algotrading.tinkoffinvestgui.model.Order;
+import com.algotrading.tinkoffinvestgui.model.OrderEvent;
+import com.algotrading.tinkoffinvestgui.repository.InstrumentsRepository;
+import com.algotrading.tinkoffinvestgui.repository.OrdersRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.tinkoff.piapi.contract.v1.OrderDirection;
+import ru.tinkoff.piapi.contract.v1.OrderState;
+import ru.tinkoff.piapi.contract.v1.PostOrderResponse;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stop-on-Fill: выставляет SELL на исполненный объём BUY ровно один раз.
+ *
+ * - Индекс родитель → дочерние SELL держится в памяти (ConcurrentHashMap) и один раз
+ *   заполняется из public.orders и журнала; проверка «SELL уже есть» не ходит в БД.
+ * - Клиентский order_id дочерней заявки выводится из id родителя и покрытого объёма,
+ *   поэтому повторная отправка (второй наблюдатель, рестарт) дедуплицируется брокером.
+ * - При доисполнении BUY прирост лотов добавляется к ещё не тронутой SELL через ReplaceOrder,
+ *   а если такой нет (SELL уже частично исполнена или снята) — выставляется новая SELL на дельту.
+ *
+ * Все наблюдатели исполнений (OrderTracker, синхронизация в PortfolioPanel) должны
+ * идти через {@link #onParentFill(Order)}. Если отправка или замена не удалась, покрытие
+ * остаётся неполным ({@link #isCovered(Order)} = false) — наблюдатель повторяет вызов,
+ * а повтор идёт с тем же id/ключом.
+ */
+public class StopOnFillEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(StopOnFillEngine.class);
+    private static final StopOnFillEngine INSTANCE = new StopOnFillEngine();
+
+    private final OrdersRepository ordersRepository = new OrdersRepository();
+    private final InstrumentsRepository instrumentsRepository = new InstrumentsRepository();
+    private final OrderJournal journal = OrderJournal.getInstance();
+
+    /** parent my_order_id → состояние покрытия */
+    private final Map<String, ParentState> index = new ConcurrentHashMap<>();
+    private volatile boolean seeded = false;
+    private volatile OrdersService ordersService;
+
+    private StopOnFillEngine() {
+    }
+
+    public static StopOnFillEngine getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Детерминированный клиентский id дочерней SELL: один и тот же для одного
+     * родителя и одного покрытого объёма (UUID v3, 36 символов — лимит order_id API)
+     */
+    static String childOrderId(String parentOrderId, long coveredLotsAfter) {
+        String key = "sof:" + parentOrderId + ":" + coveredLotsAfter;
+        return UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    /**
+     * Добавляет в индекс дочерние заявки, известные из журнала (вызывается при восстановлении)
+     */
+    public void registerChildren(Collection<Order> orders) {
+        ensureSeeded();
+        for (Order order : orders) {
+            if (order.getParentOrderId() != null) {
+                register(order);
+            }
+        }
+    }
+
+    /**
+     * Обработка исполнения BUY (полного или частичного).
+     * Идемпотентно: повторный вызов с тем же объёмом ничего не выставляет.
+     *
+     * @return новые дочерние SELL-заявки (пустой список, если покрывать нечего)
+     */
+    public List<Order> onParentFill(Order buyOrder) {
+        if (buyOrder.getDirection() != OrderDirection.ORDER_DIRECTION_BUY) {
+            return Collections.emptyList();
+        }
+        ensureSeeded();
+
+        long filledLots = filledLots(buyOrder);
+        ParentState state = index.computeIfAbsent(buyOrder.getMyOrderId(), id -> new ParentState());
+
+        // Блокировка на родителя: разные BUY обрабатываются параллельно, один и тот же — строго по очереди
+        synchronized (state) {
+            long delta = filledLots - state.coveredLots;
+            if (delta <= 0) {
+                log.debug("Stop-on-Fill для {} уже выставлен: покрыто {} из {} лотов",
+                        buyOrder.getMyOrderId(), state.coveredLots, filledLots);
+                return Collections.emptyList();
+            }
+
+            Instrument instrument = instrumentsRepository.findByFigi(buyOrder.getFigi());
+            if (instrument == null) {
+                log.error("Инструмент не найден для FIGI: {}", buyOrder.getFigi());
+                return Collections.emptyList();
+            }
+
+            BigDecimal sellPrice = instrument.getSellPrice();
+            if (sellPrice == null || sellPrice.signum() <= 0) {
+                log.error("Некорректная цена продажи для {}, sellPrice={}", instrument.getName(), sellPrice);
+                return Collections.emptyList();
+            }
+
+            String childId = childOrderId(buyOrder.getMyOrderId(), state.coveredLots + delta);
+
+            Order amendable = findAmendable(state);
+            if (amendable != null) {
+                AmendResult result = amend(amendable, delta, childId);
+                if (result == AmendResult.DONE) {
+                    state.coveredLots += delta;
+                    return List.of(amendable);
+                }
+                if (result == AmendResult.FAILED) {
+                    // Исход замены неизвестен — не выставляем вторую SELL, наблюдатель повторит с тем же ключом
+                    return Collections.emptyList();
+                }
+            }
+
+            Order sellOrder = state.children.get(childId);
+            if (sellOrder == null) {
+                sellOrder = createSellOrder(buyOrder, instrument, sellPrice, childId, delta);
+                ordersRepository.save(sellOrder);
+                state.children.put(childId, sellOrder);
+                journal.record(OrderEvent.Type.SOF_CHILD_CREATED, sellOrder);
+                log.info("SELL Stop-on-Fill создана: {} на {} лотов (родитель {})",
+                        childId, delta, buyOrder.getMyOrderId());
+            } else {
+                // Прошлая попытка упала (например, таймаут) — повтор с тем же id, брокер не задвоит
+                log.warn("⚠️ Повторная отправка SELL {} (статус {})", childId, sellOrder.getStatus());
+            }
+
+            if (!post(buyOrder, sellOrder)) {
+                return Collections.emptyList();
+            }
+            state.coveredLots += delta;
+            return List.of(sellOrder);
+        }
+    }
+
+    /**
+     * Покрыт ли исполненный объём BUY дочерними SELL (false — нужен повтор {@link #onParentFill(Order)})
+     */
+    public boolean isCovered(Order buyOrder) {
+        return getCoveredLots(buyOrder.getMyOrderId()) >= filledLots(buyOrder);
+    }
+
+    private static long filledLots(Order buyOrder) {
+        return buyOrder.getLotsExecuted() > 0 ? buyOrder.getLotsExecuted() : buyOrder.getLotsRequested();
+    }
+
+    /**
+     * Покрытый SELL-заявками объём для родительской BUY
+     */
+    public long getCoveredLots(String parentOrderId) {
+        ensureSeeded();
+        ParentState state = index.get(parentOrderId);
+        return state != null ? state.coveredLots : 0L;
+    }
+
+    public void shutdown() {
+        OrdersService service = ordersService;
+        if (service != null) {
+            service.shutdown();
+            ordersService = null;
+        }
+    }
+
+    /**
+     * Последняя дочерняя SELL, которую можно увеличить: на бирже, не исполнялась
+     */
+    private Order findAmendable(ParentState state) {
+        Order last = null;
+        for (Order child : state.children.values()) {
+            last = child;
+        }
+        if (last == null || !isCovering(last) || last.getLotsExecuted() > 0
+                || OrderJournal.isTerminal(last.getStatus())) {
+            return null;
+        }
+        return last;
+    }
+
+    /**
+     * Увеличивает количество SELL на delta через ReplaceOrder.
+     * Перед заменой сверяет состояние с биржей: если по SELL уже прошли сделки,
+     * замена выставила бы лишние лоты — тогда возвращает SKIPPED и выставляется новая SELL.
+     */
+    private AmendResult amend(Order sellOrder, long delta, String idempotencyKey) {
+        try {
+            OrderState current = getOrdersService().getOrderState(sellOrder.getAccountId(),
+                    sellOrder.getExchangeOrderId());
+            if (current.getLotsExecuted() > 0 || OrderJournal.isTerminal(current.getExecutionReportStatus().name())) {
+                log.debug("SELL {} уже исполняется ({}), замена невозможна", sellOrder.getMyOrderId(),
+                        current.getExecutionReportStatus());
+                return AmendResult.SKIPPED;
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ Не удалось проверить SELL {} перед заменой: {}", sellOrder.getMyOrderId(), e.getMessage());
+            return AmendResult.SKIPPED;
+        }
+
+        long newLots = sellOrder.getLotsRequested() + delta;
+        try {
+            PostOrderResponse response = getOrdersService().replaceOrder(
+                    sellOrder.getAccountId(),
+                    sellOrder.getExchangeOrderId(),
+                    (int) newLots,
+                    sellOrder.getPrice(),
+                    idempotencyKey
+            );
+
+            sellOrder.setExchangeOrderId(response.getOrderId());
+            sellOrder.setLotsRequested(newLots);
+            sellOrder.setStatus(response.getExecutionReportStatus().name());
+            ordersRepository.update(sellOrder);
+            journal.record(OrderEvent.Type.REPLACE, sellOrder);
+
+            log.info("SELL {} увеличена до {} лотов (+{}), новый exchangeOrderId={}",
+                    sellOrder.getMyOrderId(), newLots, delta, response.getOrderId());
+            return AmendResult.DONE;
+        } catch (Exception e) {
+            log.error("❌ Ошибка ReplaceOrder для SELL {}", sellOrder.getMyOrderId(), e);
+            return AmendResult.FAILED;
+        }
+    }
+
+    private boolean post(Order buyOrder, Order sellOrder) {
+        try {
+            PostOrderResponse response = getOrdersService().postSellOrder(
+                    sellOrder.getAccountId(),
+                    sellOrder.getFigi(),
+                    (int) sellOrder.getLotsRequested(),
+                    sellOrder.getPrice(),
+                    sellOrder.getMyOrderId()
+            );
+
+            sellOrder.setExchangeOrderId(response.getOrderId());
+            sellOrder.setStatus(response.getExecutionReportStatus().name());
+            sellOrder.setErrorMessage(null);
+            sellOrder.setSubmittedAt(Instant.now());
+            ordersRepository.update(sellOrder);
+            journal.record(OrderEvent.Type.ACK, sellOrder);
+
+            if (buyOrder.getExecutedAt() != null) {
+                MetricsRegistry.getInstance()
+                        .timer(MetricsRegistry.ORDER_FILL_TO_SOF, "direction", "SELL")
+                        .record(Duration.between(buyOrder.getExecutedAt(), sellOrder.getSubmittedAt()));
+            }
+
+            log.info("SELL заявка выставлена на бирже: exchangeOrderId={}", response.getOrderId());
+            return true;
+        } catch (Exception apiEx) {
+            log.error("Ошибка выставления SELL заявки на бирже", apiEx);
+            sellOrder.setStatus("ERROR");
+            sellOrder.setErrorMessage("Ошибка API при выставлении SELL: " + apiEx.getMessage());
+            ordersRepository.update(sellOrder);
+            journal.record(OrderEvent.Type.REJECT, sellOrder);
+            return false;
+        }
+    }
+
+    private Order createSellOrder(Order buyOrder, Instrument instrument, BigDecimal sellPrice,
+                                  String childId, long lots) {
+        Order sellOrder = new Order();
+        sellOrder.setMyOrderId(childId);
+        sellOrder.setAccountId(buyOrder.getAccountId());
+        sellOrder.setFigi(buyOrder.getFigi());
+        sellOrder.setTicker(instrument.getFigi());
+        sellOrder.setInstrumentName(instrument.getName());
+        sellOrder.setDirection(OrderDirection.ORDER_DIRECTION_SELL);
+        sellOrder.setOrderType("LIMIT");
+        sellOrder.setLotsRequested(lots);
+        sellOrder.setLotsExecuted(0L);
+        sellOrder.setPrice(sellPrice);
+        sellOrder.setStatus("PENDING");
+        sellOrder.setParentOrderId(buyOrder.getMyOrderId());
+        sellOrder.setParentFillTime(buyOrder.getExecutedAt() != null ? buyOrder.getExecutedAt() : Instant.now());
+        sellOrder.setCreatedAt(Instant.now());
+        return sellOrder;
+    }
+
+    /**
+     * Однократное заполнение индекса из public.orders
+     */
+    private void ensureSeeded() {
+        if (seeded) {
+            return;
+        }
+        synchronized (this) {
+            if (seeded) {
+                return;
+            }
+            List<Order> children = ordersRepository.findStopOnFillChildren(OrderJournal.replayDays());
+            for (Order child : children) {
+                register(child);
+            }
+            seeded = true;
+            log.info("✅ Индекс Stop-on-Fill заполнен: родителей={}, дочерних SELL={}", index.size(), children.size());
+        }
+    }
+
+    private void register(Order child) {
+        ParentState state = index.computeIfAbsent(child.getParentOrderId(), id -> new ParentState());
+        synchronized (state) {
+            Order previous = state.children.put(child.getMyOrderId(), child);
+            boolean wasCovering = previous != null && isCovering(previous);
+            if (isCovering(child) && !wasCovering) {
+                state.coveredLots += child.getLotsRequested();
+            } else if (!isCovering(child) && wasCovering) {
+                state.coveredLots -= previous.getLotsRequested();
+            }
+        }
+    }
+
+    /**
+     * Покрывает ли дочерняя заявка объём родителя (ушла на биржу и не отклонена)
+     */
+    static boolean isCovering(Order child) {
+        String status = child.getStatus();
+        return child.getExchangeOrderId() != null
+                && !"ERROR".equals(status)
+                && !"REJECTED".equals(status)
+                && !"EXECUTION_REPORT_STATUS_REJECTED".equals(status);
+    }
+
+    private OrdersService getOrdersService() {
+        OrdersService service = ordersService;
+        if (service == null) {
+            synchronized (this) {
+                if (ordersService == null) {
+                    ordersService = new OrdersService(
+                            ConnectorConfig.getApiToken(),
+                            GrpcChannelManager.getInstance().getChannel(ConnectorConfig.API_URL, ConnectorConfig.API_PORT)
+                    );
+                }
+                service = ordersService;
+            }
+        }
+        return service;
+    }
+
+    private enum AmendResult { DONE, SKIPPED, FAILED }
+
+    /**
+     * Дочерние SELL одного родителя и покрытый ими объём
+     */
+    private static class ParentState {
+        private final Map<String, Order> children = new LinkedHashMap<>();
+        private long coveredLots;
+    }
+}
@@ -1,4 +1,7 @@
 package com.algotrading.tinkoffinvestgui.service;
+import com.algotrading.tinkoffinvestgui.api.ApiRateLimiter;
+import com.algotrading.tinkoffinvestgui.api.ApiRetry;
+import com.algotrading.tinkoffinvestgui.api.RpcMetricsInterceptor;
 import com.google.protobuf.Timestamp;
 import java.time.LocalDate;
 import java.time.ZoneId;
@@ -68,8 +71,9 @@ public class TinkoffApiService {
             }
         };
 
-        // Применяем interceptor к каналу
-        Channel interceptedChannel = ClientInterceptors.intercept(channel, authInterceptor);
+        // Применяем interceptor'ы к каналу (авторизация + общий лимитер запросов + метрики)
+        Channel interceptedChannel = ClientInterceptors.intercept(channel,
+                authInterceptor, ApiRateLimiter.getInstance().interceptor(), RpcMetricsInterceptor.getInstance());
 
         // Создаем стабы (заглушки) для всех сервисов
         this.operationsStub = OperationsServiceGrpc.newBlockingStub(interceptedChannel);
@@ -86,7 +90,7 @@ public class TinkoffApiService {
         PortfolioRequest request = PortfolioRequest.newBuilder()
                 .setAccountId(accountId)
                 .build();
-        return operationsStub.getPortfolio(request);
+        return ApiRetry.execute("GetPortfolio", () -> operationsStub.getPortfolio(request));
     }
 
     /**
@@ -96,7 +100,7 @@ public class TinkoffApiService {
         GetOrdersRequest request = GetOrdersRequest.newBuilder()
                 .setAccountId(accountId)
                 .build();
-        GetOrdersResponse response = ordersStub.getOrders(request);
+        GetOrdersResponse response = ApiRetry.execute("GetOrders", () -> ordersStub.getOrders(request));
         return response.getOrdersList();
     }
 
@@ -115,7 +119,7 @@ public class TinkoffApiService {
                 .setOrderId(java.util.UUID.randomUUID().toString())
                 .build();
 
-        PostOrderResponse response = ordersStub.postOrder(request);
+        PostOrderResponse response = ApiRetry.execute("PostOrder " + figi, () -> ordersStub.postOrder(request));
         return response.getOrderId();
     }
 
@@ -156,7 +160,8 @@ public class TinkoffApiService {
                 .setState(OperationState.OPERATION_STATE_EXECUTED)
                 .build();
 
-        OperationsResponse response = operationsStub.getOperations(request);
+        OperationsResponse response = ApiRetry.execute("GetOperations",
+                () -> operationsStub.getOperations(request));
         return response.getOperationsList();
     }
 
@@ -168,18 +173,21 @@ public class TinkoffApiService {
                 .setIdType(InstrumentIdType.INSTRUMENT_ID_TYPE_FIGI)
                 .setId(figi)
                 .build();
-        InstrumentResponse response = instrumentsStub.getInstrumentBy(request);
+        InstrumentResponse response = ApiRetry.execute("GetInstrumentBy " + figi,
+                () -> instrumentsStub.getInstrumentBy(request));
         return response.getInstrument();
     }
 
     /**
-     * Получить последнюю цену инструмента
+     * Получить последнюю цену инструмента.
+     * Для списка инструментов используйте {@link MarketSnapshotService#getLastPrices} — один запрос на все FIGI.
      */
     public LastPrice getLastPrice(String figi) {
         GetLastPricesRequest request = GetLastPricesRequest.newBuilder()
                 .addFigi(figi)
                 .build();
-        GetLastPricesResponse response = marketDataStub.getLastPrices(request);
+        GetLastPricesResponse response = ApiRetry.execute("GetLastPrices " + figi,
+                () -> marketDataStub.getLastPrices(request));
 
         if (response.getLastPricesCount() == 0) {
             throw new RuntimeException("Не удалось получить цену для " + figi);
@@ -193,7 +201,7 @@ public class TinkoffApiService {
      */
     public List<Account> getAccounts() {
         GetAccountsRequest request = GetAccountsRequest.newBuilder().build();
-        GetAccountsResponse response = usersStub.getAccounts(request);
+        GetAccountsResponse response = ApiRetry.execute("GetAccounts", () -> usersStub.getAccounts(request));
         return response.getAccountsList();
     }
 
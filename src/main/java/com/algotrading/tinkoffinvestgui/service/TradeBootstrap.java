@@ -0,0 +1,329 @@
+package com.algotrading.tinkoffinvestgui.service;
+
+import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Monte Carlo (блочный бутстрэп) сделок бэктеста.
+ *
+ * Сделки группируются в блоки "облигация × месяц покупки" — внутри блока сохраняется
+ * корреляция соседних сделок по одной бумаге. Каждый ресэмпл — столько же блоков,
+ * выбранных с возвращением и выложенных подряд; по нему считаются суммарная прибыль,
+ * максимальная просадка накопленной прибыли (₽) и винрейт.
+ *
+ * Сделки и сводки блоков (сумма, выигрыши, мин/макс накопленной прибыли, внутренняя
+ * просадка) хранятся в примитивных массивах, так что ресэмпл стоит O(блоков).
+ * Ресэмплы раскладываются по ForkJoinPool диапазонами индексов, каждый лист пишет
+ * в свой участок массивов результатов.
+ */
+public class TradeBootstrap {
+
+    private static final Logger log = LoggerFactory.getLogger(TradeBootstrap.class);
+
+    private static final int DEFAULT_RESAMPLES = 10_000;
+    private static final int RESAMPLES_PER_TASK = 256;
+    private static final double[] PERCENTILES = {5, 25, 50, 75, 95};
+
+    private final int resamples;
+    private final long seed;
+
+    public TradeBootstrap() {
+        this(readResamples(), System.nanoTime());
+    }
+
+    public TradeBootstrap(int resamples, long seed) {
+        this.resamples = resamples;
+        this.seed = seed;
+    }
+
+    /**
+     * Бутстрэп по сделкам отчёта (null — сделок нет)
+     */
+    public BootstrapResult run(BondStrategyBacktestService.BacktestReport report) {
+        long started = System.currentTimeMillis();
+        TradeSample sample = TradeSample.of(report.getBondResults());
+        if (sample.size() == 0) {
+            return null;
+        }
+
+        double[] totalProfit = new double[resamples];
+        double[] maxDrawdown = new double[resamples];
+        double[] winRate = new double[resamples];
+        ForkJoinPool.commonPool().invoke(new ResampleTask(sample, 0, resamples,
+                new SplittableRandom(seed), totalProfit, maxDrawdown, winRate));
+
+        BootstrapResult result = new BootstrapResult();
+        result.resamples = resamples;
+        result.trades = sample.size();
+        result.blocks = sample.blockCount();
+        result.observedMaxDrawdown = sample.observedMaxDrawdown();
+        result.lossProbability = shareAtMost(totalProfit, 0) * 100;
+        result.totalProfit = percentiles(totalProfit);
+        result.maxDrawdown = percentiles(maxDrawdown);
+        result.winRate = percentiles(winRate);
+        result.elapsedMs = System.currentTimeMillis() - started;
+
+        log.info("📊 Бутстрэп: {} ресэмплов × {} сделок ({} блоков) за {} мс, прибыль P5..P95: {} .. {}₽, P(убыток)={}%",
+                resamples, sample.size(), sample.blockCount(), result.elapsedMs,
+                String.format("%.2f", result.totalProfit[0]),
+                String.format("%.2f", result.totalProfit[PERCENTILES.length - 1]),
+                String.format("%.1f", result.lossProbability));
+        return result;
+    }
+
+    private static double[] percentiles(double[] values) {
+        Arrays.sort(values);
+        double[] result = new double[PERCENTILES.length];
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            int index = (int) Math.round(PERCENTILES[i] / 100.0 * (values.length - 1));
+            result[i] = values[index];
+        }
+        return result;
+    }
+
+    private static double shareAtMost(double[] values, double threshold) {
+        int count = 0;
+        for (double v : values) {
+            if (v <= threshold) {
+                count++;
+            }
+        }
+        return (double) count / values.length;
+    }
+
+    private static int readResamples() {
+        String value = ConnectorConfig.getPropertyValue("backtest.bootstrap.resamples");
+        if (value == null || value.trim().isEmpty()) {
+            return DEFAULT_RESAMPLES;
+        }
+        try {
+            return Math.max(100, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            return DEFAULT_RESAMPLES;
+        }
+    }
+
+    /**
+     * Диапазон ресэмплов; делится пополам до RESAMPLES_PER_TASK.
+     * Генератор расщепляется вместе с задачей — результат не зависит от порядка выполнения.
+     */
+    private static final class ResampleTask extends RecursiveAction {
+        private final TradeSample sample;
+        private final int from;
+        private final int to;
+        private final SplittableRandom random;
+        private final double[] totalProfit;
+        private final double[] maxDrawdown;
+        private final double[] winRate;
+
+        ResampleTask(TradeSample sample, int from, int to, SplittableRandom random,
+                     double[] totalProfit, double[] maxDrawdown, double[] winRate) {
+            this.sample = sample;
+            this.from = from;
+            this.to = to;
+            this.random = random;
+            this.totalProfit = totalProfit;
+            this.maxDrawdown = maxDrawdown;
+            this.winRate = winRate;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= RESAMPLES_PER_TASK) {
+                for (int r = from; r < to; r++) {
+                    resample(r);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            ResampleTask left = new ResampleTask(sample, from, mid, random.split(),
+                    totalProfit, maxDrawdown, winRate);
+            ResampleTask right = new ResampleTask(sample, mid, to, random.split(),
+                    totalProfit, maxDrawdown, winRate);
+            invokeAll(left, right);
+        }
+
+        /**
+         * Ресэмпл по сводкам блоков: O(число блоков), а не O(число сделок).
+         * Просадка точная: либо внутри блока, либо от пика до блока к минимуму внутри блока.
+         */
+        private void resample(int r) {
+            TradeSample s = sample;
+            int blocks = s.blockCount();
+
+            double cumulative = 0;
+            double peak = 0;
+            double drawdown = 0;
+            int wins = 0;
+            int trades = 0;
+            for (int i = 0; i < blocks; i++) {
+                int block = random.nextInt(blocks);
+                drawdown = Math.max(drawdown, Math.max(s.blockDrawdown[block],
+                        peak - (cumulative + s.blockMinPrefix[block])));
+                peak = Math.max(peak, cumulative + s.blockMaxPrefix[block]);
+                cumulative += s.blockSum[block];
+                wins += s.blockWins[block];
+                trades += s.blockLength[block];
+            }
+            totalProfit[r] = cumulative;
+            maxDrawdown[r] = drawdown;
+            winRate[r] = trades > 0 ? wins * 100.0 / trades : 0;
+        }
+    }
+
+    /**
+     * Сделки в примитивных массивах, упорядоченные по блокам (облигация × месяц покупки)
+     */
+    private static final class TradeSample {
+        private final double[] profit;
+        private final long[] sellDay;
+        private final int[] blockLength;
+        // Сводки блоков по накопленной прибыли внутри блока
+        private final double[] blockSum;
+        private final int[] blockWins;
+        private final double[] blockMinPrefix;
+        private final double[] blockMaxPrefix;
+        private final double[] blockDrawdown;
+
+        private TradeSample(double[] profit, long[] sellDay, int[] blockStart, int[] blockLength) {
+            this.profit = profit;
+            this.sellDay = sellDay;
+            this.blockLength = blockLength;
+            int blocks = blockStart.length;
+            this.blockSum = new double[blocks];
+            this.blockWins = new int[blocks];
+            this.blockMinPrefix = new double[blocks];
+            this.blockMaxPrefix = new double[blocks];
+            this.blockDrawdown = new double[blocks];
+            for (int b = 0; b < blocks; b++) {
+                double cumulative = 0;
+                double min = Double.POSITIVE_INFINITY;
+                double max = Double.NEGATIVE_INFINITY;
+                double peak = 0;
+                double drawdown = 0;
+                int wins = 0;
+                for (int t = blockStart[b]; t < blockStart[b] + blockLength[b]; t++) {
+                    cumulative += profit[t];
+                    if (profit[t] > 0) {
+                        wins++;
+                    }
+                    min = Math.min(min, cumulative);
+                    max = Math.max(max, cumulative);
+                    peak = Math.max(peak, cumulative);
+                    drawdown = Math.max(drawdown, peak - cumulative);
+                }
+                blockSum[b] = cumulative;
+                blockWins[b] = wins;
+                blockMinPrefix[b] = min;
+                blockMaxPrefix[b] = max;
+                blockDrawdown[b] = drawdown;
+            }
+        }
+
+        static TradeSample of(List<BondStrategyBacktestService.BondBacktestResult> bondResults) {
+            int total = 0;
+            for (BondStrategyBacktestService.BondBacktestResult bond : bondResults) {
+                total += bond.getTrades().size();
+            }
+            double[] profit = new double[total];
+            long[] sellDay = new long[total];
+            List<int[]> blocks = new ArrayList<>();
+
+            int index = 0;
+            for (BondStrategyBacktestService.BondBacktestResult bond : bondResults) {
+                List<BondStrategyBacktestService.Trade> trades = new ArrayList<>(bond.getTrades());
+                trades.sort(Comparator.comparing(BondStrategyBacktestService.Trade::getBuyDate));
+                long currentMonth = Long.MIN_VALUE;
+                for (BondStrategyBacktestService.Trade trade : trades) {
+                    LocalDate buy = trade.getBuyDate();
+                    long month = buy.getYear() * 12L + buy.getMonthValue();
+                    if (month != currentMonth) {
+                        blocks.add(new int[]{index, 0});
+                        currentMonth = month;
+                    }
+                    blocks.get(blocks.size() - 1)[1]++;
+                    profit[index] = trade.getProfit();
+                    sellDay[index] = trade.getSellDate() != null ? trade.getSellDate().toEpochDay() : buy.toEpochDay();
+                    index++;
+                }
+            }
+
+            int[] blockStart = new int[blocks.size()];
+            int[] blockLength = new int[blocks.size()];
+            for (int i = 0; i < blocks.size(); i++) {
+                blockStart[i] = blocks.get(i)[0];
+                blockLength[i] = blocks.get(i)[1];
+            }
+            return new TradeSample(profit, sellDay, blockStart, blockLength);
+        }
+
+        int size() {
+            return profit.length;
+        }
+
+        int blockCount() {
+            return blockLength.length;
+        }
+
+        /**
+         * Просадка накопленной прибыли в фактическом порядке закрытия сделок
+         */
+        double observedMaxDrawdown() {
+            Integer[] order = new Integer[profit.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingLong(i -> sellDay[i]));
+            double cumulative = 0;
+            double peak = 0;
+            double drawdown = 0;
+            for (int i : order) {
+                cumulative += profit[i];
+                peak = Math.max(peak, cumulative);
+                drawdown = Math.max(drawdown, peak - cumulative);
+            }
+            return drawdown;
+        }
+    }
+
+    /**
+     * Перцентили P5, P25, P50, P75, P95 по ресэмплам
+     */
+    public static class BootstrapResult {
+        private int resamples;
+        private int trades;
+        private int blocks;
+        private double[] totalProfit;
+        private double[] maxDrawdown;
+        private double[] winRate;
+        private double observedMaxDrawdown;
+        private double lossProbability;
+        private long elapsedMs;
+
+        public static double[] getPercentileLevels() { return PERCENTILES.clone(); }
+
+        public int getResamples() { return resamples; }
+        public int getTrades() { return trades; }
+        public int getBlocks() { return blocks; }
+        /** Суммарная прибыль, ₽ */
+        public double[] getTotalProfit() { return totalProfit; }
+        /** Максимальная просадка накопленной прибыли, ₽ */
+        public double[] getMaxDrawdown() { return maxDrawdown; }
+        /** Винрейт, % */
+        public double[] getWinRate() { return winRate; }
+        public double getObservedMaxDrawdown() { return observedMaxDrawdown; }
+        /** Доля ресэмплов с суммарной прибылью ≤ 0, % */
+        public double getLossProbability() { return lossProbability; }
+        public long getElapsedMs() { return elapsedMs; }
+    }
+}
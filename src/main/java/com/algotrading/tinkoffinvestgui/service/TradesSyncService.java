@@ -1,6 +1,7 @@
 package com.algotrading.tinkoffinvestgui.service;
 
 import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
+import com.algotrading.tinkoffinvestgui.model.CouponSchedule;
 import com.algotrading.tinkoffinvestgui.model.Trade;
 import com.algotrading.tinkoffinvestgui.repository.InstrumentsRepository;
 import com.algotrading.tinkoffinvestgui.repository.TradesRepository;
@@ -11,9 +12,11 @@ import org.slf4j.LoggerFactory;
 import ru.tinkoff.piapi.contract.v1.*;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
+import java.util.List;
 
 /**
  * Сервис синхронизации сделок с Tinkoff API
@@ -26,14 +29,22 @@ public class TradesSyncService {
     private final InstrumentsRepository instrumentsRepository = new InstrumentsRepository();
 
     /**
-     * Синхронизация сделок за сегодня
+     * Синхронизация сделок за сегодня по всем счетам
      */
     public void syncTodayTrades() {
+        List<String> accountIds;
         try {
-            String accountId = AccountService.getActiveAccountId();
-            syncTradesForPeriod(accountId, LocalDate.now(), LocalDate.now());
+            accountIds = AccountService.getAccountIds();
         } catch (Exception e) {
             log.error("Ошибка синхронизации сделок за сегодня", e);
+            return;
+        }
+        for (String accountId : accountIds) {
+            try {
+                syncTradesForPeriod(accountId, LocalDate.now(), LocalDate.now());
+            } catch (Exception e) {
+                log.error("Ошибка синхронизации сделок за сегодня по счёту {}", accountId, e);
+            }
         }
     }
 
@@ -160,11 +171,36 @@ public class TradesSyncService {
         BigDecimal payment = MoneyConverter.toBigDecimal(operation.getPayment());
         trade.setTradeAmount(payment.abs());
 
-        // ✅ КОМИССИЯ - вычисляем как разницу между payment и (price * quantity)
-        // Для покупки: payment = -(price * quantity + commission)
-        // Для продажи: payment = price * quantity - commission
+        // ✅ НКД и доходность к погашению — по купонному графику в памяти, без запросов к API
+        BigDecimal aci = BigDecimal.ZERO;
+        BigDecimal yieldValue = BigDecimal.ZERO;
+        CouponSchedule schedule = "bond".equalsIgnoreCase(operation.getInstrumentType())
+                ? CouponScheduleStore.getInstance().get(operation.getFigi())
+                : null;
+        if (schedule != null && schedule.getNominal() > 0) {
+            LocalDate tradeDay = timestampToInstant(operation.getDate()).atZone(ZoneId.systemDefault()).toLocalDate();
+            LocalDate settlement = BondYieldCalculator.settlementDate(tradeDay);
+            double aciPerBond = BondYieldCalculator.accruedInterest(schedule, settlement);
+            aci = BigDecimal.valueOf(aciPerBond * trade.getQuantity()).setScale(2, RoundingMode.HALF_UP);
+
+            double cleanPricePercent = trade.getPrice().doubleValue() / schedule.getNominal() * 100;
+            double ytm = BondYieldCalculator.yieldToMaturity(schedule, cleanPricePercent, settlement);
+            if (!Double.isNaN(ytm)) {
+                yieldValue = BigDecimal.valueOf(ytm).setScale(4, RoundingMode.HALF_UP);
+            }
+            log.debug("📋 НКД {} (на бумагу {}), доходность {}% на {}", aci, aciPerBond, yieldValue, settlement);
+        }
+
+        // ✅ КОМИССИЯ - вычисляем как разницу между payment и (price * quantity + НКД)
+        // Для покупки: payment = -(price * quantity + НКД + commission)
+        // Для продажи: payment = price * quantity + НКД - commission
         BigDecimal priceTotal = trade.getPrice().multiply(BigDecimal.valueOf(trade.getQuantity()));
-        BigDecimal commission = payment.abs().subtract(priceTotal).abs();
+        BigDecimal commission = "BUY".equals(direction)
+                ? payment.abs().subtract(priceTotal).subtract(aci)
+                : priceTotal.add(aci).subtract(payment.abs());
+        if (commission.signum() < 0) {
+            commission = BigDecimal.ZERO;
+        }
 
         // Если комиссия получилась слишком большой (>10% от суммы), значит ошибка в расчёте
         if (commission.compareTo(priceTotal.multiply(BigDecimal.valueOf(0.1))) > 0) {
@@ -176,23 +212,16 @@ public class TradesSyncService {
         log.debug("💰 Расчётная комиссия: {} (payment={}, price*qty={})",
                 commission, payment, priceTotal);
 
-        // ✅ НКД и доходность - пока недоступны в данной версии API
-        // Попробуем извлечь из OperationTrade если есть
-        BigDecimal aci = BigDecimal.ZERO;
         if (operation.getTradesCount() > 0) {
             log.debug("📋 Операция содержит {} внутренних сделок", operation.getTradesCount());
             for (OperationTrade opTrade : operation.getTradesList()) {
                 log.debug("  - Trade: datetime={}, quantity={}, price={}",
                         opTrade.getDateTime(), opTrade.getQuantity(), opTrade.getPrice());
-
-                // НКД может быть в поле yield_relative или отдельно
-                // Но в текущей protobuf схеме эти поля могут отсутствовать
-                // Оставляем для будущих версий API
             }
         }
 
         trade.setAci(aci);
-        trade.setYieldValue(BigDecimal.ZERO);
+        trade.setYieldValue(yieldValue);
 
         // Дата сделки
         trade.setTradeDate(timestampToInstant(operation.getDate()));
@@ -0,0 +1,379 @@
+package com.algotrading.tinkoffinvestgui.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Walk-forward оптимизация стратегии "ловец дна".
+ *
+ * История режется на фолды: обучающее окно trainMonths → тестовое окно testMonths,
+ * шаг — testMonths. На каждом обучающем окне перебирается сетка параметров
+ * (k волатильности, маржа, период анализа) и выбирается лучший по Sharpe;
+ * лучший набор прогоняется на следующем тестовом окне. Тестовые окна склеиваются
+ * в одну out-of-sample кривую капитала (капитал переходит из фолда в фолд).
+ *
+ * Свечи загружаются один раз и переиспользуются всеми прогонами: движок
+ * начинает каждый прогон с бинарного поиска начала окна анализа в рядах.
+ * Обучающие прогоны (фолд × набор параметров) независимы и идут параллельно.
+ */
+public class WalkForwardOptimizer {
+
+    private static final Logger log = LoggerFactory.getLogger(WalkForwardOptimizer.class);
+
+    private final double commission;
+
+    public WalkForwardOptimizer(double commission) {
+        this.commission = commission;
+    }
+
+    public WalkForwardReport run(List<PortfolioBacktestEngine.BondSeries> series,
+                                 LocalDate startDate, LocalDate endDate,
+                                 PortfolioBacktestEngine.PortfolioSettings portfolio,
+                                 WalkForwardSettings settings) throws Exception {
+        long started = System.currentTimeMillis();
+
+        List<Fold> folds = buildFolds(startDate, endDate, settings);
+        if (folds.isEmpty()) {
+            throw new Exception(String.format(
+                    "Период %s - %s короче одного фолда (%d мес. обучения + %d мес. теста)",
+                    startDate, endDate, settings.getTrainMonths(), settings.getTestMonths()));
+        }
+        List<StrategyParams> grid = settings.buildGrid();
+        log.info("🧪 Walk-forward: {} фолдов × {} наборов параметров, {} облигаций",
+                folds.size(), grid.size(), series.size());
+
+        // 1. Обучение: все пары (фолд, параметры) параллельно
+        double[][] trainScore = new double[folds.size()][grid.size()];
+        PortfolioBacktestEngine.PortfolioReport[][] trainReports =
+                new PortfolioBacktestEngine.PortfolioReport[folds.size()][grid.size()];
+        int tasks = folds.size() * grid.size();
+        IntStream.range(0, tasks).parallel().forEach(task -> {
+            int f = task / grid.size();
+            int p = task % grid.size();
+            Fold fold = folds.get(f);
+            PortfolioBacktestEngine.PortfolioReport report =
+                    engineFor(grid.get(p)).run(series, fold.trainStart, fold.trainEnd, portfolio);
+            trainReports[f][p] = report;
+            trainScore[f][p] = report.getTrades().size() >= settings.getMinTrades()
+                    ? report.getSharpe()
+                    : Double.NEGATIVE_INFINITY;
+        });
+
+        // 2. Тест: лучший набор фолда на следующем окне, капитал переходит дальше
+        WalkForwardReport result = new WalkForwardReport();
+        result.startDate = startDate;
+        result.endDate = endDate;
+        result.initialCapital = portfolio.getInitialCapital();
+        result.combinationsEvaluated = tasks;
+
+        double capital = portfolio.getInitialCapital();
+        List<long[]> dayChunks = new ArrayList<>();
+        List<double[]> equityChunks = new ArrayList<>();
+        double inSampleAnnualSum = 0;
+        int trades = 0;
+
+        for (int f = 0; f < folds.size(); f++) {
+            Fold fold = folds.get(f);
+            int best = bestIndex(trainScore[f], trainReports[f]);
+            StrategyParams params = grid.get(best);
+            PortfolioBacktestEngine.PortfolioReport train = trainReports[f][best];
+
+            PortfolioBacktestEngine.PortfolioSettings testSettings = copyWithCapital(portfolio, capital);
+            PortfolioBacktestEngine.PortfolioReport test =
+                    engineFor(params).run(series, fold.testStart, fold.testEnd, testSettings);
+
+            FoldResult foldResult = new FoldResult();
+            foldResult.trainStart = fold.trainStart;
+            foldResult.trainEnd = fold.trainEnd;
+            foldResult.testStart = fold.testStart;
+            foldResult.testEnd = fold.testEnd;
+            foldResult.params = params;
+            foldResult.trainSharpe = train.getSharpe();
+            foldResult.trainReturnPercent = train.getTotalReturnPercent();
+            foldResult.testSharpe = test.getSharpe();
+            foldResult.testReturnPercent = test.getTotalReturnPercent();
+            foldResult.testMaxDrawdownPercent = test.getMaxDrawdownPercent();
+            foldResult.testTrades = test.getTrades().size();
+            result.folds.add(foldResult);
+
+            log.info("📊 Фолд {}: обучение {} - {} → {}, тест {} - {}: {}%, Sharpe {}",
+                    f + 1, fold.trainStart, fold.trainEnd, params,
+                    fold.testStart, fold.testEnd,
+                    String.format("%.2f", test.getTotalReturnPercent()),
+                    String.format("%.2f", test.getSharpe()));
+
+            inSampleAnnualSum += train.getAnnualReturnPercent();
+            trades += test.getTrades().size();
+            dayChunks.add(test.getEquityDays());
+            equityChunks.add(test.getEquity());
+            capital = test.getFinalEquity();
+        }
+
+        result.equityDays = concatLongs(dayChunks);
+        result.equity = concatDoubles(equityChunks);
+        result.finalEquity = capital;
+        result.totalTrades = trades;
+
+        double initial = portfolio.getInitialCapital();
+        LocalDate oosStart = folds.get(0).testStart;
+        LocalDate oosEnd = folds.get(folds.size() - 1).testEnd;
+        double years = Math.max(1, oosEnd.toEpochDay() - oosStart.toEpochDay() + 1) / 365.25;
+        result.outOfSampleStart = oosStart;
+        result.outOfSampleEnd = oosEnd;
+        result.totalReturnPercent = (capital / initial - 1) * 100;
+        result.annualReturnPercent = capital > 0 ? (Math.pow(capital / initial, 1 / years) - 1) * 100 : -100;
+        result.maxDrawdownPercent = PortfolioBacktestEngine.maxDrawdownPercent(initial, result.equity);
+        result.sharpe = PortfolioBacktestEngine.sharpe(initial, result.equity);
+        double inSampleAnnual = inSampleAnnualSum / folds.size();
+        result.inSampleAnnualReturnPercent = inSampleAnnual;
+        result.efficiency = Math.abs(inSampleAnnual) > 1e-9 ? result.annualReturnPercent / inSampleAnnual : 0;
+        result.elapsedMs = System.currentTimeMillis() - started;
+
+        log.info("✅ Walk-forward: OOS {} - {}: доходность {}% (год. {}%), просадка {}%, Sharpe {}, "
+                        + "эффективность {}, {} прогонов за {} мс",
+                oosStart, oosEnd,
+                String.format("%.2f", result.totalReturnPercent),
+                String.format("%.2f", result.annualReturnPercent),
+                String.format("%.2f", result.maxDrawdownPercent),
+                String.format("%.2f", result.sharpe),
+                String.format("%.2f", result.efficiency),
+                tasks + folds.size(), result.elapsedMs);
+        return result;
+    }
+
+    private PortfolioBacktestEngine engineFor(StrategyParams params) {
+        return new PortfolioBacktestEngine(params.volatilityMultiplier, params.profitMargin,
+                commission, params.analysisPeriodMonths);
+    }
+
+    /**
+     * Лучший набор по Sharpe; при равенстве — по доходности
+     */
+    private static int bestIndex(double[] scores, PortfolioBacktestEngine.PortfolioReport[] reports) {
+        int best = 0;
+        for (int p = 1; p < scores.length; p++) {
+            if (scores[p] > scores[best]
+                    || (scores[p] == scores[best]
+                    && reports[p].getTotalReturnPercent() > reports[best].getTotalReturnPercent())) {
+                best = p;
+            }
+        }
+        return best;
+    }
+
+    private static List<Fold> buildFolds(LocalDate startDate, LocalDate endDate, WalkForwardSettings settings) {
+        List<Fold> folds = new ArrayList<>();
+        LocalDate trainStart = startDate;
+        while (true) {
+            LocalDate testStart = trainStart.plusMonths(settings.getTrainMonths());
+            if (testStart.isAfter(endDate)) {
+                break;
+            }
+            LocalDate testEnd = testStart.plusMonths(settings.getTestMonths()).minusDays(1);
+            if (testEnd.isAfter(endDate)) {
+                testEnd = endDate;
+            }
+            folds.add(new Fold(trainStart, testStart.minusDays(1), testStart, testEnd));
+            trainStart = trainStart.plusMonths(settings.getTestMonths());
+        }
+        return folds;
+    }
+
+    private static PortfolioBacktestEngine.PortfolioSettings copyWithCapital(
+            PortfolioBacktestEngine.PortfolioSettings source, double capital) {
+        PortfolioBacktestEngine.PortfolioSettings copy = new PortfolioBacktestEngine.PortfolioSettings();
+        copy.setInitialCapital(capital);
+        copy.setDefaultLots(source.getDefaultLots());
+        copy.setMaxPositions(source.getMaxPositions());
+        return copy;
+    }
+
+    private static long[] concatLongs(List<long[]> chunks) {
+        long[] result = new long[chunks.stream().mapToInt(c -> c.length).sum()];
+        int offset = 0;
+        for (long[] chunk : chunks) {
+            System.arraycopy(chunk, 0, result, offset, chunk.length);
+            offset += chunk.length;
+        }
+        return result;
+    }
+
+    private static double[] concatDoubles(List<double[]> chunks) {
+        double[] result = new double[chunks.stream().mapToInt(c -> c.length).sum()];
+        int offset = 0;
+        for (double[] chunk : chunks) {
+            System.arraycopy(chunk, 0, result, offset, chunk.length);
+            offset += chunk.length;
+        }
+        return result;
+    }
+
+    private static final class Fold {
+        final LocalDate trainStart;
+        final LocalDate trainEnd;
+        final LocalDate testStart;
+        final LocalDate testEnd;
+
+        Fold(LocalDate trainStart, LocalDate trainEnd, LocalDate testStart, LocalDate testEnd) {
+            this.trainStart = trainStart;
+            this.trainEnd = trainEnd;
+            this.testStart = testStart;
+            this.testEnd = testEnd;
+        }
+    }
+
+    // ========== НАСТРОЙКИ И РЕЗУЛЬТАТЫ ==========
+
+    /**
+     * Набор параметров стратегии
+     */
+    public static class StrategyParams {
+        private final double volatilityMultiplier;
+        private final double profitMargin;
+        private final int analysisPeriodMonths;
+
+        public StrategyParams(double volatilityMultiplier, double profitMargin, int analysisPeriodMonths) {
+            this.volatilityMultiplier = volatilityMultiplier;
+            this.profitMargin = profitMargin;
+            this.analysisPeriodMonths = analysisPeriodMonths;
+        }
+
+        public double getVolatilityMultiplier() { return volatilityMultiplier; }
+        public double getProfitMargin() { return profitMargin; }
+        public int getAnalysisPeriodMonths() { return analysisPeriodMonths; }
+
+        @Override
+        public String toString() {
+            return String.format("k=%.2f, маржа=%.2f%%, окно=%d мес.",
+                    volatilityMultiplier, profitMargin * 100, analysisPeriodMonths);
+        }
+    }
+
+    /**
+     * Окна и сетка перебора
+     */
+    public static class WalkForwardSettings {
+        private int trainMonths = 12;
+        private int testMonths = 3;
+        private int minTrades = 5;
+        private double[] volatilityMultipliers = {0.8, 1.0, 1.2, 1.5, 2.0};
+        private double[] profitMargins = {0.004, 0.008, 0.012, 0.016};
+        private int[] analysisPeriods = {2, 3, 4, 6};
+
+        public int getTrainMonths() { return trainMonths; }
+        public void setTrainMonths(int trainMonths) { this.trainMonths = trainMonths; }
+
+        public int getTestMonths() { return testMonths; }
+        public void setTestMonths(int testMonths) { this.testMonths = testMonths; }
+
+        /** Меньше сделок на обучении — набор не рассматривается */
+        public int getMinTrades() { return minTrades; }
+        public void setMinTrades(int minTrades) { this.minTrades = minTrades; }
+
+        public double[] getVolatilityMultipliers() { return volatilityMultipliers; }
+        public void setVolatilityMultipliers(double[] values) { this.volatilityMultipliers = values; }
+
+        public double[] getProfitMargins() { return profitMargins; }
+        public void setProfitMargins(double[] values) { this.profitMargins = values; }
+
+        public int[] getAnalysisPeriods() { return analysisPeriods; }
+        public void setAnalysisPeriods(int[] values) { this.analysisPeriods = values; }
+
+        /** Самое длинное окно анализа — столько истории нужно до начала периода */
+        public int getMaxAnalysisPeriod() {
+            return Arrays.stream(analysisPeriods).max().orElse(4);
+        }
+
+        List<StrategyParams> buildGrid() {
+            List<StrategyParams> grid = new ArrayList<>();
+            for (double k : volatilityMultipliers) {
+                for (double margin : profitMargins) {
+                    for (int months : analysisPeriods) {
+                        grid.add(new StrategyParams(k, margin, months));
+                    }
+                }
+            }
+            return grid;
+        }
+    }
+
+    /**
+     * Результат одного фолда
+     */
+    public static class FoldResult {
+        private LocalDate trainStart;
+        private LocalDate trainEnd;
+        private LocalDate testStart;
+        private LocalDate testEnd;
+        private StrategyParams params;
+        private double trainSharpe;
+        private double trainReturnPercent;
+        private double testSharpe;
+        private double testReturnPercent;
+        private double testMaxDrawdownPercent;
+        private int testTrades;
+
+        public LocalDate getTrainStart() { return trainStart; }
+        public LocalDate getTrainEnd() { return trainEnd; }
+        public LocalDate getTestStart() { return testStart; }
+        public LocalDate getTestEnd() { return testEnd; }
+        public StrategyParams getParams() { return params; }
+        public double getTrainSharpe() { return trainSharpe; }
+        public double getTrainReturnPercent() { return trainReturnPercent; }
+        public double getTestSharpe() { return testSharpe; }
+        public double getTestReturnPercent() { return testReturnPercent; }
+        public double getTestMaxDrawdownPercent() { return testMaxDrawdownPercent; }
+        public int getTestTrades() { return testTrades; }
+    }
+
+    /**
+     * Итог walk-forward: фолды и склеенная out-of-sample кривая
+     */
+    public static class WalkForwardReport {
+        private LocalDate startDate;
+        private LocalDate endDate;
+        private LocalDate outOfSampleStart;
+        private LocalDate outOfSampleEnd;
+        private double initialCapital;
+        private double finalEquity;
+        private double totalReturnPercent;
+        private double annualReturnPercent;
+        private double inSampleAnnualReturnPercent;
+        private double efficiency;
+        private double maxDrawdownPercent;
+        private double sharpe;
+        private int totalTrades;
+        private int combinationsEvaluated;
+        private long elapsedMs;
+        private final List<FoldResult> folds = new ArrayList<>();
+        private long[] equityDays;
+        private double[] equity;
+
+        public LocalDate getStartDate() { return startDate; }
+        public LocalDate getEndDate() { return endDate; }
+        public LocalDate getOutOfSampleStart() { return outOfSampleStart; }
+        public LocalDate getOutOfSampleEnd() { return outOfSampleEnd; }
+        public double getInitialCapital() { return initialCapital; }
+        public double getFinalEquity() { return finalEquity; }
+        public double getTotalReturnPercent() { return totalReturnPercent; }
+        public double getAnnualReturnPercent() { return annualReturnPercent; }
+        /** Средняя годовая доходность лучших наборов на обучении */
+        public double getInSampleAnnualReturnPercent() { return inSampleAnnualReturnPercent; }
+        /** OOS годовая доходность / IS годовая доходность */
+        public double getEfficiency() { return efficiency; }
+        public double getMaxDrawdownPercent() { return maxDrawdownPercent; }
+        public double getSharpe() { return sharpe; }
+        public int getTotalTrades() { return totalTrades; }
+        public int getCombinationsEvaluated() { return combinationsEvaluated; }
+        public long getElapsedMs() { return elapsedMs; }
+        public List<FoldResult> getFolds() { return folds; }
+        public long[] getEquityDays() { return equityDays; }
+        public double[] getEquity() { return equity; }
+    }
+}
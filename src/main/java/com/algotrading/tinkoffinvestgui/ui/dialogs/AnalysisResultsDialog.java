@@ -9,80 +9,101 @@ import org.slf4j.LoggerFactory;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * Диалог результатов анализа облигаций
+ * Диалог результатов анализа облигаций.
+ * В потоковом режиме открывается сразу и обновляется снимками топа по ходу анализа;
+ * кнопка «Остановить» и закрытие окна прерывают анализ.
  */
 public class AnalysisResultsDialog extends JDialog {
     
     private static final Logger log = LoggerFactory.getLogger(AnalysisResultsDialog.class);
+
+    private static final String[] COLUMNS = {
+        "Тикер", "Название", "FIGI", "Валюта", "Погашение", "Dlong", "Риск",
+        "Волатильность,%", "Ср.дн.объём (лот)", "Тек. цена", "Средняя цена",
+        "Изменение, %", "Тренд", "Доходность,%", "Цена покупки", "Цена продажи", "Скидка,%",
+        "Прибыль без ком.,%", "Чистая прибыль,%", "Комиссии,₽",
+        "Комиссии,% от покупки", "Балл"
+    };
     
-    private final List<BondsAnalysisService.BondAnalysisResult> results;
+    private List<BondsAnalysisService.BondAnalysisResult> results = Collections.emptyList();
     private final ParametersRepository paramsRepo;
+    private final ParametersRepository.StrategyParameters params;
+    private final AtomicBoolean stopped = new AtomicBoolean(false);
+
+    private DefaultTableModel tableModel;
+    private JTable table;
+    private JLabel infoLabel;
+    private JButton stopButton;
+    private boolean refreshing;
 
     public AnalysisResultsDialog(JFrame parent, List<BondsAnalysisService.BondAnalysisResult> results) {
+        this(parent);
+        showResults(results);
+        finish();
+    }
+
+    /**
+     * Пустой диалог для потокового анализа: строки приходят через showProgress
+     */
+    public AnalysisResultsDialog(JFrame parent) {
         super(parent, "Результаты анализа облигаций", false);
-        this.results = results;
         this.paramsRepo = new ParametersRepository();
+        this.params = paramsRepo.getStrategyParameters();
         
         setSize(1800, 800);
         setLocationRelativeTo(parent);
         initializeUI();
+
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                stopped.set(true);
+            }
+        });
+    }
+
+    /**
+     * Анализ нужно прервать (кнопка «Остановить» или окно закрыто); читается из потока анализа
+     */
+    public boolean isStopped() {
+        return stopped.get();
+    }
+
+    /**
+     * Промежуточный топ (вызывать в EDT)
+     */
+    public void showProgress(List<BondsAnalysisService.BondAnalysisResult> top, int processed, int total) {
+        showResults(top);
+        infoLabel.setText(String.format("⏳ Анализ: %d/%d облигаций | Лучших: %d | Клик для просмотра деталей",
+                processed, total, top.size()));
+    }
+
+    /**
+     * Анализ завершён или остановлен (вызывать в EDT)
+     */
+    public void finish() {
+        stopButton.setEnabled(false);
+        infoLabel.setText(String.format("%sНайдено облигаций: %d | Клик для просмотра деталей",
+                stopped.get() ? "⏹ Анализ остановлен. " : "", results.size()));
     }
 
     private void initializeUI() {
-        log.info("📊 Отображение результатов анализа: {} облигаций", results.size());
-        
         setLayout(new BorderLayout(10, 10));
-        
-        String[] columns = {
-            "Тикер", "Название", "FIGI", "Валюта", "Погашение", "Dlong", "Риск",
-            "Волатильность,%", "Ср.дн.объём (лот)", "Тек. цена", "Средняя цена",
-            "Изменение, %", "Тренд", "Цена покупки", "Цена продажи", "Скидка,%",
-            "Прибыль без ком.,%", "Чистая прибыль,%", "Комиссии,₽",
-            "Комиссии,% от покупки", "Балл"
-        };
-        
-        Object[][] data = new Object[results.size()][columns.length];
-        for (int i = 0; i < results.size(); i++) {
-            BondsAnalysisService.BondAnalysisResult r = results.get(i);
-            ParametersRepository.StrategyParameters params = paramsRepo.getStrategyParameters();
-            BondStrategyCalculator.StrategyRecommendation strategy = 
-                BondStrategyCalculator.calculatePrices(r, params);
-            
-            int col = 0;
-            data[i][col++] = r.getTicker();
-            data[i][col++] = r.getName();
-            data[i][col++] = r.getFigi();
-            data[i][col++] = r.getNominalCurrency();
-            data[i][col++] = r.getMaturityDate() != null ? r.getMaturityDate().toString() : "-";
-            data[i][col++] = String.format("%.2f", r.getDlong());
-            data[i][col++] = r.getRiskLevel();
-            data[i][col++] = String.format("%.4f%%", (r.getVolatility() / r.getAvgPrice()) * 100);
-            data[i][col++] = String.format("%.0f", r.getAvgDailyVolume());
-            data[i][col++] = String.format("%.2f₽", r.getCurrentPrice());
-            data[i][col++] = String.format("%.2f₽", r.getAvgPrice());
-            data[i][col++] = String.format("%.2f%%", r.getPriceChangePercent());
-            data[i][col++] = String.format("%.4f", r.getTrend());
-            data[i][col++] = strategy.getBuyPrice();
-            data[i][col++] = strategy.getSellPrice();
-            data[i][col++] = String.format("%.2f%%", strategy.getDiscountPercent());
-            data[i][col++] = String.format("%.2f%%", strategy.getProfitWithoutCommission());
-            data[i][col++] = String.format("%.2f%%", strategy.getNetProfit());
-            data[i][col++] = String.format("%.2f₽", strategy.getTotalCommissions());
-            
-            double commissionPercent = (strategy.getTotalCommissions() / strategy.getBuyPrice().doubleValue()) * 100;
-            data[i][col++] = String.format("%.3f%%", commissionPercent);
-            data[i][col++] = String.format("%.2f", r.getScore());
-        }
-        
-        JTable table = new JTable(new DefaultTableModel(data, columns));
+
+        tableModel = new DefaultTableModel(COLUMNS, 0);
+        table = new JTable(tableModel);
         table.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
         table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         
         table.getSelectionModel().addListSelectionListener(e -> {
-            if (!e.getValueIsAdjusting()) {
+            if (!e.getValueIsAdjusting() && !refreshing) {
                 int selectedRow = table.getSelectedRow();
                 if (selectedRow >= 0) {
                     BondsAnalysisService.BondAnalysisResult analysis = results.get(selectedRow);
@@ -100,20 +121,85 @@ public class AnalysisResultsDialog extends JDialog {
         add(scrollPane, BorderLayout.CENTER);
         
         JPanel infoPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
-        JLabel infoLabel = new JLabel(String.format("Найдено облигаций: %d | Клик для просмотра деталей", 
-            results.size()));
+        infoLabel = new JLabel("⏳ Анализ облигаций...");
         infoLabel.setFont(new Font("Arial", Font.BOLD, 13));
         infoPanel.add(infoLabel);
         
         add(infoPanel, BorderLayout.NORTH);
         
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        stopButton = new JButton("⏹ Остановить");
+        stopButton.addActionListener(e -> {
+            stopped.set(true);
+            stopButton.setEnabled(false);
+            log.info("⏹ Остановка анализа облигаций по запросу пользователя");
+        });
+        buttonPanel.add(stopButton);
+
         JButton closeButton = new JButton("Закрыть");
         closeButton.addActionListener(e -> dispose());
         buttonPanel.add(closeButton);
         
         add(buttonPanel, BorderLayout.SOUTH);
     }
+
+    /**
+     * Перестроить строки таблицы; выделение сохраняется по FIGI без открытия деталей
+     */
+    private void showResults(List<BondsAnalysisService.BondAnalysisResult> newResults) {
+        log.debug("📊 Отображение результатов анализа: {} облигаций", newResults.size());
+
+        int selectedRow = table.getSelectedRow();
+        String selectedFigi = selectedRow >= 0 ? results.get(selectedRow).getFigi() : null;
+
+        refreshing = true;
+        try {
+            results = newResults;
+            tableModel.setRowCount(0);
+            for (int i = 0; i < results.size(); i++) {
+                BondsAnalysisService.BondAnalysisResult r = results.get(i);
+                tableModel.addRow(toRow(r));
+                if (r.getFigi().equals(selectedFigi)) {
+                    table.setRowSelectionInterval(i, i);
+                }
+            }
+        } finally {
+            refreshing = false;
+        }
+    }
+
+    private Object[] toRow(BondsAnalysisService.BondAnalysisResult r) {
+        BondStrategyCalculator.StrategyRecommendation strategy =
+            BondStrategyCalculator.calculatePrices(r, params);
+
+        Object[] row = new Object[COLUMNS.length];
+        int col = 0;
+        row[col++] = r.getTicker();
+        row[col++] = r.getName();
+        row[col++] = r.getFigi();
+        row[col++] = r.getNominalCurrency();
+        row[col++] = r.getMaturityDate() != null ? r.getMaturityDate().toString() : "-";
+        row[col++] = String.format("%.2f", r.getDlong());
+        row[col++] = r.getRiskLevel();
+        row[col++] = String.format("%.4f%%", (r.getVolatility() / r.getAvgPrice()) * 100);
+        row[col++] = String.format("%.0f", r.getAvgDailyVolume());
+        row[col++] = String.format("%.2f₽", r.getCurrentPrice());
+        row[col++] = String.format("%.2f₽", r.getAvgPrice());
+        row[col++] = String.format("%.2f%%", r.getPriceChangePercent());
+        row[col++] = String.format("%.4f", r.getTrend());
+        row[col++] = Double.isNaN(r.getYieldToMaturity()) ? "-" : String.format("%.2f%%", r.getYieldToMaturity());
+        row[col++] = strategy.getBuyPrice();
+        row[col++] = strategy.getSellPrice();
+        row[col++] = String.format("%.2f%%", strategy.getDiscountPercent());
+        row[col++] = String.format("%.2f%%", strategy.getProfitWithoutCommission());
+        row[col++] = String.format("%.2f%%", strategy.getNetProfit());
+        row[col++] = String.format("%.2f₽", strategy.getTotalCommissions());
+
+        double commissionPercent = (strategy.getTotalCommissions() / strategy.getBuyPrice().doubleValue()) * 100;
+        row[col++] = String.format("%.3f%%", commissionPercent);
+        row[col++] = String.format("%.2f", r.getScore());
+        return row;
+    }
     
     private void showStrategyDetails(
             BondsAnalysisService.BondAnalysisResult analysis,
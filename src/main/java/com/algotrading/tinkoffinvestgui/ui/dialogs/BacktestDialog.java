@@ -1,12 +1,17 @@
 package com.algotrading.tinkoffinvestgui.ui.dialogs;
 
 import com.algotrading.tinkoffinvestgui.service.BondStrategyBacktestService;
+import com.algotrading.tinkoffinvestgui.service.OrdersScheduler;
+import com.algotrading.tinkoffinvestgui.service.PortfolioBacktestEngine;
+import com.algotrading.tinkoffinvestgui.service.WalkForwardOptimizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import ru.tinkoff.piapi.contract.v1.CandleInterval;
 
 import javax.swing.*;
 import java.awt.*;
 import java.time.LocalDate;
+import java.time.LocalTime;
 
 /**
  * Диалог параметров бэктестинга
@@ -24,15 +29,28 @@ public class BacktestDialog extends JDialog {
     private JCheckBox dlongCheckbox;
     private JCheckBox riskCheckbox;
     private JTextField volumeField;
+    private JCheckBox portfolioCheckbox;
+    private JTextField capitalField;
+    private JTextField defaultLotsField;
+    private JTextField maxPositionsField;
+    private JCheckBox walkForwardCheckbox;
+    private JTextField trainMonthsField;
+    private JTextField testMonthsField;
+    private JComboBox<String> executionCandlesCombo;
+    private JTextField executionTimeField;
     
     private LocalDate startDate;
     private LocalDate endDate;
     private BondStrategyBacktestService.BacktestFilters filters;
+    private PortfolioBacktestEngine.PortfolioSettings portfolioSettings;
+    private WalkForwardOptimizer.WalkForwardSettings walkForwardSettings;
+    private CandleInterval intradayInterval;
+    private LocalTime executionTime;
     private boolean confirmed = false;
 
     public BacktestDialog(JFrame parent) {
         super(parent, "Параметры бэктестинга", true);
-        setSize(500, 550);
+        setSize(500, 860);
         setLocationRelativeTo(parent);
         initializeUI();
     }
@@ -57,7 +75,7 @@ public class BacktestDialog extends JDialog {
         
         add(descArea, BorderLayout.NORTH);
         
-        JPanel paramsPanel = new JPanel(new GridLayout(9, 2, 10, 10));
+        JPanel paramsPanel = new JPanel(new GridLayout(18, 2, 10, 10));
         paramsPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 10, 20));
         
         JLabel startDateLabel = new JLabel("Дата начала:");
@@ -92,6 +110,42 @@ public class BacktestDialog extends JDialog {
         volumeField = new JTextField("2000");
         volumeField.setToolTipText("0 = без фильтра, 2000 = отфильтровать низколиквидные");
         
+        JLabel portfolioLabel = new JLabel("Портфельный режим:");
+        portfolioCheckbox = new JCheckBox();
+        portfolioCheckbox.setToolTipText("Общий капитал, одновременные позиции, дневная переоценка");
+        
+        JLabel capitalLabel = new JLabel("Начальный капитал (₽):");
+        capitalField = new JTextField("1000000");
+        
+        JLabel defaultLotsLabel = new JLabel("Лотов на позицию:");
+        defaultLotsField = new JTextField("10");
+        defaultLotsField.setToolTipText("Если в instruments не задан buy_quantity");
+        
+        JLabel maxPositionsLabel = new JLabel("Макс. позиций (0 = без лимита):");
+        maxPositionsField = new JTextField("0");
+        
+        JLabel walkForwardLabel = new JLabel("Walk-forward оптимизация:");
+        walkForwardCheckbox = new JCheckBox();
+        walkForwardCheckbox.setToolTipText("Подбор k/маржи/окна на обучении, проверка на следующем периоде");
+        
+        JLabel trainMonthsLabel = new JLabel("Обучение (мес.):");
+        trainMonthsField = new JTextField("12");
+        
+        JLabel testMonthsLabel = new JLabel("Тест (мес.):");
+        testMonthsField = new JTextField("3");
+        
+        JLabel executionCandlesLabel = new JLabel("Исполнение по свечам:");
+        executionCandlesCombo = new JComboBox<>(new String[]{"Дневные (close)", "Часовые", "Минутные"});
+        executionCandlesCombo.setToolTipText("Часовые/минутные: заявки в заданное время, исполнение по low/high");
+        
+        JLabel executionTimeLabel = new JLabel("Время заявок (МСК):");
+        executionTimeField = new JTextField(OrdersScheduler.DEFAULT_DAILY_EXECUTION_TIME.toString());
+        
+        executionCandlesCombo.addActionListener(e -> updatePortfolioFields());
+        portfolioCheckbox.addActionListener(e -> updatePortfolioFields());
+        walkForwardCheckbox.addActionListener(e -> updatePortfolioFields());
+        updatePortfolioFields();
+        
         paramsPanel.add(startDateLabel);
         paramsPanel.add(startDateField);
         paramsPanel.add(endDateLabel);
@@ -110,6 +164,24 @@ public class BacktestDialog extends JDialog {
         paramsPanel.add(riskCheckbox);
         paramsPanel.add(volumeLabel);
         paramsPanel.add(volumeField);
+        paramsPanel.add(portfolioLabel);
+        paramsPanel.add(portfolioCheckbox);
+        paramsPanel.add(capitalLabel);
+        paramsPanel.add(capitalField);
+        paramsPanel.add(defaultLotsLabel);
+        paramsPanel.add(defaultLotsField);
+        paramsPanel.add(maxPositionsLabel);
+        paramsPanel.add(maxPositionsField);
+        paramsPanel.add(walkForwardLabel);
+        paramsPanel.add(walkForwardCheckbox);
+        paramsPanel.add(trainMonthsLabel);
+        paramsPanel.add(trainMonthsField);
+        paramsPanel.add(testMonthsLabel);
+        paramsPanel.add(testMonthsField);
+        paramsPanel.add(executionCandlesLabel);
+        paramsPanel.add(executionCandlesCombo);
+        paramsPanel.add(executionTimeLabel);
+        paramsPanel.add(executionTimeField);
         
         add(paramsPanel, BorderLayout.CENTER);
         
@@ -142,6 +214,38 @@ public class BacktestDialog extends JDialog {
             filters.excludeHighRisk = riskCheckbox.isSelected();
             filters.minAvgDailyVolume = Double.parseDouble(volumeField.getText());
             
+            portfolioSettings = null;
+            walkForwardSettings = null;
+            if (portfolioCheckbox.isSelected() || walkForwardCheckbox.isSelected()) {
+                portfolioSettings = new PortfolioBacktestEngine.PortfolioSettings();
+                portfolioSettings.setInitialCapital(Double.parseDouble(capitalField.getText().trim()));
+                portfolioSettings.setDefaultLots(Integer.parseInt(defaultLotsField.getText().trim()));
+                portfolioSettings.setMaxPositions(Integer.parseInt(maxPositionsField.getText().trim()));
+                if (portfolioSettings.getInitialCapital() <= 0) {
+                    throw new IllegalArgumentException("Начальный капитал должен быть больше 0");
+                }
+            }
+            intradayInterval = null;
+            executionTime = null;
+            if (executionCandlesCombo.getSelectedIndex() > 0) {
+                if (portfolioCheckbox.isSelected() || walkForwardCheckbox.isSelected()) {
+                    throw new IllegalArgumentException(
+                        "Внутридневное исполнение доступно только для бэктеста по облигациям");
+                }
+                intradayInterval = executionCandlesCombo.getSelectedIndex() == 1
+                    ? CandleInterval.CANDLE_INTERVAL_HOUR
+                    : CandleInterval.CANDLE_INTERVAL_1_MIN;
+                executionTime = LocalTime.parse(executionTimeField.getText().trim());
+            }
+            if (walkForwardCheckbox.isSelected()) {
+                walkForwardSettings = new WalkForwardOptimizer.WalkForwardSettings();
+                walkForwardSettings.setTrainMonths(Integer.parseInt(trainMonthsField.getText().trim()));
+                walkForwardSettings.setTestMonths(Integer.parseInt(testMonthsField.getText().trim()));
+                if (walkForwardSettings.getTrainMonths() <= 0 || walkForwardSettings.getTestMonths() <= 0) {
+                    throw new IllegalArgumentException("Окна обучения и теста должны быть больше 0");
+                }
+            }
+            
             confirmed = true;
             dispose();
         } catch (Exception ex) {
@@ -149,8 +253,28 @@ public class BacktestDialog extends JDialog {
         }
     }
     
+    private void updatePortfolioFields() {
+        // Walk-forward работает на портфельном движке
+        boolean walkForward = walkForwardCheckbox.isSelected();
+        boolean enabled = portfolioCheckbox.isSelected() || walkForward;
+        capitalField.setEnabled(enabled);
+        defaultLotsField.setEnabled(enabled);
+        maxPositionsField.setEnabled(enabled);
+        trainMonthsField.setEnabled(walkForward);
+        testMonthsField.setEnabled(walkForward);
+        executionTimeField.setEnabled(executionCandlesCombo.getSelectedIndex() > 0);
+    }
+    
+    /**
+     * @return {startDate, endDate, filters, portfolioSettings (null — бэктест по облигациям),
+     *          walkForwardSettings (null — без оптимизации),
+     *          intradayInterval и executionTime (null — исполнение по дневным закрытиям)}
+     */
     public Object[] showDialog() {
         setVisible(true);
-        return confirmed ? new Object[]{startDate, endDate, filters} : null;
+        return confirmed
+            ? new Object[]{startDate, endDate, filters, portfolioSettings, walkForwardSettings,
+                           intradayInterval, executionTime}
+            : null;
     }
 }
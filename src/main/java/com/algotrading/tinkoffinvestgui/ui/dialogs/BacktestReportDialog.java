@@ -1,6 +1,7 @@
 package com.algotrading.tinkoffinvestgui.ui.dialogs;
 
 import com.algotrading.tinkoffinvestgui.service.BondStrategyBacktestService;
+import com.algotrading.tinkoffinvestgui.service.TradeBootstrap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,7 +55,12 @@ public class BacktestReportDialog extends JDialog {
         addStatLabel(statsPanel, "Период анализа:", 
             String.format("%d мес.", report.getAnalysisPeriodMonths()));
         
-        add(statsPanel, BorderLayout.NORTH);
+        JPanel northPanel = new JPanel(new BorderLayout());
+        northPanel.add(statsPanel, BorderLayout.NORTH);
+        if (report.getBootstrap() != null) {
+            northPanel.add(createBootstrapPanel(report.getBootstrap()), BorderLayout.CENTER);
+        }
+        add(northPanel, BorderLayout.NORTH);
         
         String[] columns = {
             "Тикер", "Название", "FIGI", "Dlong", "Ср.дн.объём", "Сделок",
@@ -122,6 +128,44 @@ public class BacktestReportDialog extends JDialog {
         add(bottomPanel, BorderLayout.SOUTH);
     }
     
+    /**
+     * Перцентили бутстрэпа: насколько результат устойчив к перестановке сделок
+     */
+    private JPanel createBootstrapPanel(TradeBootstrap.BootstrapResult bootstrap) {
+        double[] levels = TradeBootstrap.BootstrapResult.getPercentileLevels();
+        String[] columns = new String[levels.length + 2];
+        columns[0] = "Показатель";
+        for (int i = 0; i < levels.length; i++) {
+            columns[i + 1] = String.format("P%.0f", levels[i]);
+        }
+        columns[columns.length - 1] = "Факт";
+        
+        Object[][] data = new Object[3][columns.length];
+        fillBootstrapRow(data[0], "Общая прибыль,₽", bootstrap.getTotalProfit(), report.getTotalProfit(), "%.2f");
+        fillBootstrapRow(data[1], "Макс. просадка,₽", bootstrap.getMaxDrawdown(),
+            bootstrap.getObservedMaxDrawdown(), "%.2f");
+        fillBootstrapRow(data[2], "Винрейт,%", bootstrap.getWinRate(), report.getWinRate(), "%.1f");
+        
+        JTable table = new JTable(new DefaultTableModel(data, columns));
+        table.setEnabled(false);
+        
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.setBorder(BorderFactory.createTitledBorder(String.format(
+            "Бутстрэп: %d ресэмплов, %d блоков (облигация × месяц), P(убыток) = %.1f%%",
+            bootstrap.getResamples(), bootstrap.getBlocks(), bootstrap.getLossProbability())));
+        panel.add(table.getTableHeader(), BorderLayout.NORTH);
+        panel.add(table, BorderLayout.CENTER);
+        return panel;
+    }
+    
+    private void fillBootstrapRow(Object[] row, String name, double[] values, double actual, String format) {
+        row[0] = name;
+        for (int i = 0; i < values.length; i++) {
+            row[i + 1] = String.format(format, values[i]);
+        }
+        row[row.length - 1] = String.format(format, actual);
+    }
+    
     private void addStatLabel(JPanel panel, String label, String value) {
         JLabel labelComp = new JLabel(label);
         labelComp.setFont(new Font("Arial", Font.BOLD, 11));
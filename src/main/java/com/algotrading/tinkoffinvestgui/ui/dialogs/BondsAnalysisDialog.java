@@ -1,10 +1,15 @@
 package com.algotrading.tinkoffinvestgui.ui.dialogs;
 
+import com.algotrading.tinkoffinvestgui.service.BondScreener;
+import com.algotrading.tinkoffinvestgui.service.BondUniverseService;
 import com.algotrading.tinkoffinvestgui.service.BondsAnalysisService;
+import com.algotrading.tinkoffinvestgui.ui.utils.AsyncTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
 
 /**
@@ -20,16 +25,20 @@ public class BondsAnalysisDialog extends JDialog {
     private JTextField maxMonthsField;
     private JCheckBox dlongCheckbox;
     private JCheckBox riskCheckbox;
+    private JCheckBox floatingCheckbox;
     private JTextField volumeField;
+    private JLabel matchCountLabel;
+    private BondScreener screener;
     
     private BondsAnalysisService.BondsFilterCriteria result;
     private boolean confirmed = false;
 
     public BondsAnalysisDialog(JFrame parent) {
         super(parent, "Параметры анализа облигаций", true);
-        setSize(450, 450);
+        setSize(450, 500);
         setLocationRelativeTo(parent);
         initializeUI();
+        loadScreener();
     }
 
     private void initializeUI() {
@@ -37,7 +46,7 @@ public class BondsAnalysisDialog extends JDialog {
         
         setLayout(new BorderLayout(10, 10));
         
-        JPanel filtersPanel = new JPanel(new GridLayout(9, 2, 10, 10));
+        JPanel filtersPanel = new JPanel(new GridLayout(10, 2, 10, 10));
         filtersPanel.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
         
         JLabel currencyLabel = new JLabel("Валюта:");
@@ -61,6 +70,10 @@ public class BondsAnalysisDialog extends JDialog {
         riskCheckbox = new JCheckBox();
         riskCheckbox.setSelected(true);
         
+        JLabel floatingLabel = new JLabel("Без плавающего купона:");
+        floatingCheckbox = new JCheckBox();
+        floatingCheckbox.setSelected(false);
+
         JLabel volumeLabel = new JLabel("Мин. ср.дневн. объём (лотов):");
         volumeField = new JTextField("2000");
         volumeField.setToolTipText("0 = без фильтра, 2000 = отфильтровать низколиквидные");
@@ -77,6 +90,8 @@ public class BondsAnalysisDialog extends JDialog {
         filtersPanel.add(dlongCheckbox);
         filtersPanel.add(riskLabel);
         filtersPanel.add(riskCheckbox);
+        filtersPanel.add(floatingLabel);
+        filtersPanel.add(floatingCheckbox);
         filtersPanel.add(volumeLabel);
         filtersPanel.add(volumeField);
         
@@ -85,6 +100,37 @@ public class BondsAnalysisDialog extends JDialog {
         infoLabel.setHorizontalAlignment(SwingConstants.CENTER);
         filtersPanel.add(new JLabel(""));
         filtersPanel.add(infoLabel);
+
+        matchCountLabel = new JLabel("Подходит облигаций: загрузка справочника...");
+        matchCountLabel.setFont(new Font("Arial", Font.BOLD, 12));
+        matchCountLabel.setToolTipText("Без учёта фильтра по объёму — он считается по свечам при анализе");
+        filtersPanel.add(new JLabel(""));
+        filtersPanel.add(matchCountLabel);
+
+        // Счётчик совпадений пересчитывается на каждое изменение фильтра
+        currencyCombo.addActionListener(e -> updateMatchCount());
+        amortCheckbox.addActionListener(e -> updateMatchCount());
+        dlongCheckbox.addActionListener(e -> updateMatchCount());
+        riskCheckbox.addActionListener(e -> updateMatchCount());
+        floatingCheckbox.addActionListener(e -> updateMatchCount());
+        DocumentListener fieldListener = new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                updateMatchCount();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                updateMatchCount();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                updateMatchCount();
+            }
+        };
+        minDaysField.getDocument().addDocumentListener(fieldListener);
+        maxMonthsField.getDocument().addDocumentListener(fieldListener);
         
         add(filtersPanel, BorderLayout.CENTER);
         
@@ -101,15 +147,52 @@ public class BondsAnalysisDialog extends JDialog {
         add(buttonsPanel, BorderLayout.SOUTH);
     }
     
+    private void loadScreener() {
+        screener = BondUniverseService.getInstance().getLoadedScreener();
+        if (screener != null) {
+            updateMatchCount();
+            return;
+        }
+        AsyncTask.execute(
+                () -> BondUniverseService.getInstance().getScreener(),
+                loaded -> {
+                    screener = loaded;
+                    updateMatchCount();
+                },
+                error -> {
+                    log.warn("⚠️ Справочник облигаций не загружен: {}", error.getMessage());
+                    matchCountLabel.setText("Подходит облигаций: нет данных");
+                }
+        );
+    }
+
+    private void updateMatchCount() {
+        if (screener == null) {
+            return;
+        }
+        try {
+            int count = screener.count(readCriteria());
+            matchCountLabel.setText(String.format("Подходит облигаций: %d из %d", count, screener.size()));
+        } catch (NumberFormatException e) {
+            matchCountLabel.setText("Подходит облигаций: --");
+        }
+    }
+
+    private BondsAnalysisService.BondsFilterCriteria readCriteria() {
+        BondsAnalysisService.BondsFilterCriteria criteria = new BondsAnalysisService.BondsFilterCriteria();
+        criteria.setNominalCurrency((String) currencyCombo.getSelectedItem());
+        criteria.setWithoutAmortization(amortCheckbox.isSelected());
+        criteria.setMinDaysToMaturity(Integer.parseInt(minDaysField.getText().trim()));
+        criteria.setMaxMonthsToMaturity(Integer.parseInt(maxMonthsField.getText().trim()));
+        criteria.setRequireDlong(dlongCheckbox.isSelected());
+        criteria.setExcludeHighRisk(riskCheckbox.isSelected());
+        criteria.setExcludeFloatingCoupon(floatingCheckbox.isSelected());
+        return criteria;
+    }
+
     private void onStart() {
         try {
-            result = new BondsAnalysisService.BondsFilterCriteria();
-            result.setNominalCurrency((String) currencyCombo.getSelectedItem());
-            result.setWithoutAmortization(amortCheckbox.isSelected());
-            result.setMinDaysToMaturity(Integer.parseInt(minDaysField.getText()));
-            result.setMaxMonthsToMaturity(Integer.parseInt(maxMonthsField.getText()));
-            result.setRequireDlong(dlongCheckbox.isSelected());
-            result.setExcludeHighRisk(riskCheckbox.isSelected());
+            result = readCriteria();
             
             double minVolume = Double.parseDouble(volumeField.getText());
             result.setMinAvgDailyVolume(minVolume);
@@ -8,6 +8,9 @@ import ru.tinkoff.piapi.contract.v1.CandleInterval;
 import javax.swing.*;
 import java.awt.*;
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * Диалог экспорта свечей в CSV
@@ -20,12 +23,13 @@ public class CandlesExportDialog extends JDialog {
     private JComboBox<String> intervalCombo;
     private JTextField fromField;
     private JTextField toField;
+    private JComboBox<CandlesExportService.ExportFormat> formatCombo;
     private JButton exportButton;
 
     public CandlesExportDialog(JFrame parent) {
         super(parent, "Экспорт свечей в CSV", true);
         setLayout(new BorderLayout(10, 10));
-        setSize(500, 350);
+        setSize(520, 380);
         setLocationRelativeTo(parent);
         initializeUI();
     }
@@ -33,16 +37,15 @@ public class CandlesExportDialog extends JDialog {
     private void initializeUI() {
         log.info("📥 Открытие диалога экспорта свечей");
         
-        JPanel inputPanel = new JPanel(new GridLayout(4, 2, 10, 10));
+        JPanel inputPanel = new JPanel(new GridLayout(5, 2, 10, 10));
         inputPanel.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
         
         JLabel figiLabel = new JLabel("FIGI:");
         figiField = new JTextField();
-        figiField.setToolTipText("Например: BBG004730N88");
+        figiField.setToolTipText("Например: BBG004730N88. Несколько FIGI — через запятую");
         
         JLabel intervalLabel = new JLabel("Интервал:");
-        String[] intervals = {"1 мин", "1 час", "1 день", "1 неделя", "1 месяц", "15 мин", "5 мин", "1 квартал"};
-        intervalCombo = new JComboBox<>(intervals);
+        intervalCombo = new JComboBox<>(CandlesExportService.INTERVAL_NAMES);
         intervalCombo.setSelectedItem("1 день");
         
         JLabel fromLabel = new JLabel("От (дата):");
@@ -63,6 +66,11 @@ public class CandlesExportDialog extends JDialog {
         inputPanel.add(fromField);
         inputPanel.add(toLabel);
         inputPanel.add(toField);
+
+        JLabel formatLabel = new JLabel("Формат:");
+        formatCombo = new JComboBox<>(CandlesExportService.ExportFormat.values());
+        inputPanel.add(formatLabel);
+        inputPanel.add(formatCombo);
         
         add(inputPanel, BorderLayout.CENTER);
         
@@ -70,12 +78,11 @@ public class CandlesExportDialog extends JDialog {
         infoPanel.setLayout(new BoxLayout(infoPanel, BoxLayout.Y_AXIS));
         infoPanel.setBorder(BorderFactory.createEmptyBorder(10, 15, 10, 15));
         
-        String downloadsPath = System.getProperty("user.home");
-        JLabel info1 = new JLabel("CSV формат: Date,Open,High,Low,Close,Volume");
+        JLabel info1 = new JLabel("CSV формат: [Figi,]Date,Open,High,Low,Close,Volume (время UTC)");
         info1.setFont(new Font("Arial", Font.PLAIN, 11));
         JLabel info2 = new JLabel("Имя файла: {FIGI}_{YYYYMMDD}-{YYYYMMDD}.csv");
         info2.setFont(new Font("Arial", Font.PLAIN, 11));
-        JLabel info3 = new JLabel("Путь сохранения: " + downloadsPath);
+        JLabel info3 = new JLabel("Путь сохранения: export.dir из invest.properties или ~/Downloads");
         info3.setFont(new Font("Arial", Font.PLAIN, 11));
         
         infoPanel.add(info1);
@@ -101,8 +108,12 @@ public class CandlesExportDialog extends JDialog {
     
     private void onExport() {
         try {
-            String figi = figiField.getText().trim();
-            if (figi.isEmpty()) {
+            List<String> figis = Arrays.stream(figiField.getText().split("[,;\\s]+"))
+                    .map(String::trim)
+                    .filter(f -> !f.isEmpty())
+                    .distinct()
+                    .collect(Collectors.toList());
+            if (figis.isEmpty()) {
                 JOptionPane.showMessageDialog(this, "Введите FIGI!", "Ошибка", JOptionPane.ERROR_MESSAGE);
                 return;
             }
@@ -110,8 +121,11 @@ public class CandlesExportDialog extends JDialog {
             LocalDate from = LocalDate.parse(fromField.getText().trim());
             LocalDate to = LocalDate.parse(toField.getText().trim());
             String intervalName = (String) intervalCombo.getSelectedItem();
+            CandlesExportService.ExportFormat format =
+                    (CandlesExportService.ExportFormat) formatCombo.getSelectedItem();
             
-            log.info("📥 Экспорт свечей: FIGI={}, период {} - {}, интервал={}", figi, from, to, intervalName);
+            log.info("📥 Экспорт свечей: FIGI={}, период {} - {}, интервал={}, формат={}",
+                    figis, from, to, intervalName, format);
             
             exportButton.setEnabled(false);
             exportButton.setText("Экспорт...");
@@ -121,7 +135,7 @@ public class CandlesExportDialog extends JDialog {
                 protected String doInBackground() {
                     CandlesExportService service = new CandlesExportService();
                     CandleInterval interval = CandlesExportService.getCandleInterval(intervalName);
-                    return service.exportCandlesToCsv(figi, from, to, interval);
+                    return service.exportCandles(figis, from, to, interval, format);
                 }
                 
                 @Override
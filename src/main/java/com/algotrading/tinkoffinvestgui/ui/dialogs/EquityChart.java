@@ -0,0 +1,70 @@
+package com.algotrading.tinkoffinvestgui.ui.dialogs;
+
+import javax.swing.*;
+import java.awt.*;
+import java.time.LocalDate;
+
+/**
+ * Кривая капитала по дням (линия) с уровнем начального капитала
+ */
+class EquityChart extends JPanel {
+    private static final int PADDING = 50;
+
+    private final long[] days;
+    private final double[] equity;
+    private final double initialCapital;
+
+    EquityChart(long[] days, double[] equity, double initialCapital) {
+        this.days = days;
+        this.equity = equity;
+        this.initialCapital = initialCapital;
+        setPreferredSize(new Dimension(1200, 300));
+        setBackground(Color.WHITE);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        if (equity.length < 2) {
+            g.drawString("Нет данных для графика", PADDING, PADDING);
+            return;
+        }
+        Graphics2D g2 = (Graphics2D) g;
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        double min = initialCapital;
+        double max = initialCapital;
+        for (double e : equity) {
+            min = Math.min(min, e);
+            max = Math.max(max, e);
+        }
+        if (max - min < 1e-9) {
+            max = min + 1;
+        }
+
+        int width = getWidth() - 2 * PADDING;
+        int height = getHeight() - 2 * PADDING;
+
+        g2.setColor(Color.LIGHT_GRAY);
+        int baseY = PADDING + (int) ((max - initialCapital) / (max - min) * height);
+        g2.drawLine(PADDING, baseY, PADDING + width, baseY);
+
+        g2.setColor(new Color(30, 100, 200));
+        int prevX = PADDING;
+        int prevY = PADDING + (int) ((max - equity[0]) / (max - min) * height);
+        for (int i = 1; i < equity.length; i++) {
+            int x = PADDING + (int) ((long) i * width / (equity.length - 1));
+            int y = PADDING + (int) ((max - equity[i]) / (max - min) * height);
+            g2.drawLine(prevX, prevY, x, y);
+            prevX = x;
+            prevY = y;
+        }
+
+        g2.setColor(Color.DARK_GRAY);
+        g2.drawString(String.format("%.0f₽", max), 5, PADDING - 5);
+        g2.drawString(String.format("%.0f₽", min), 5, PADDING + height + 15);
+        g2.drawString(LocalDate.ofEpochDay(days[0]).toString(), PADDING, getHeight() - 10);
+        String last = LocalDate.ofEpochDay(days[days.length - 1]).toString();
+        g2.drawString(last, PADDING + width - g2.getFontMetrics().stringWidth(last), getHeight() - 10);
+    }
+}
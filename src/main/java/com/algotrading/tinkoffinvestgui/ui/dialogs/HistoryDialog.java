@@ -0,0 +1,188 @@
+package com.algotrading.tinkoffinvestgui.ui.dialogs;
+
+import com.algotrading.tinkoffinvestgui.model.Order;
+import com.algotrading.tinkoffinvestgui.model.Trade;
+import com.algotrading.tinkoffinvestgui.repository.OrdersRepository;
+import com.algotrading.tinkoffinvestgui.repository.TradesRepository;
+import com.algotrading.tinkoffinvestgui.ui.utils.AsyncTask;
+import com.algotrading.tinkoffinvestgui.ui.utils.LazyTableModel;
+import com.algotrading.tinkoffinvestgui.ui.utils.TableUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import java.awt.*;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * История заявок и сделок за выбранный период.
+ *
+ * Таблицы подгружаются страницами по мере прокрутки (keyset по (дата, id)),
+ * поэтому в памяти только просмотренные строки; сводка по периоду считается
+ * агрегатом на стороне БД и от прокрутки не зависит.
+ */
+public class HistoryDialog extends JDialog {
+
+    private static final Logger log = LoggerFactory.getLogger(HistoryDialog.class);
+
+    private static final int PAGE_SIZE = 200;
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm:ss");
+
+    private static final String[] PERIODS = {"30 дней", "90 дней", "365 дней", "Всё время"};
+    private static final int[] PERIOD_DAYS = {30, 90, 365, 0};
+
+    private final OrdersRepository ordersRepository = new OrdersRepository();
+    private final TradesRepository tradesRepository = new TradesRepository();
+
+    private final JComboBox<String> periodCombo = new JComboBox<>(PERIODS);
+    private final JLabel ordersSummaryLabel = new JLabel(" ");
+    private final JLabel tradesSummaryLabel = new JLabel(" ");
+    private final JLabel ordersLoadedLabel = new JLabel(" ");
+    private final JLabel tradesLoadedLabel = new JLabel(" ");
+
+    private LazyTableModel<Order> ordersModel;
+    private LazyTableModel<Trade> tradesModel;
+    private Instant since;
+
+    public HistoryDialog(JFrame parent) {
+        super(parent, "История заявок и сделок", false);
+        setSize(1300, 750);
+        setLocationRelativeTo(parent);
+        initializeUI();
+        reload();
+    }
+
+    private void initializeUI() {
+        setLayout(new BorderLayout(10, 10));
+
+        JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 5));
+        topPanel.add(new JLabel("Период:"));
+        periodCombo.setSelectedIndex(0);
+        periodCombo.addActionListener(e -> reload());
+        topPanel.add(periodCombo);
+
+        ordersModel = new LazyTableModel<>(
+                new String[]{"ID", "Инструмент", "Направление", "Кол-во", "Цена",
+                        "Исполнено", "Статус", "Создана", "Выставлена"},
+                PAGE_SIZE,
+                (after, limit) -> ordersRepository.findHistoryPage(since, after, limit),
+                HistoryDialog::toOrderRow);
+        ordersModel.setOnPageLoaded(model -> ordersLoadedLabel.setText(loadedText(model)));
+
+        tradesModel = new LazyTableModel<>(
+                new String[]{"ID", "Инструмент", "Направление", "Кол-во", "Цена",
+                        "Сумма", "Комиссия", "НКД", "Дата сделки"},
+                PAGE_SIZE,
+                (after, limit) -> tradesRepository.findPage(since, after, limit),
+                HistoryDialog::toTradeRow);
+        tradesModel.setOnPageLoaded(model -> tradesLoadedLabel.setText(loadedText(model)));
+
+        JTabbedPane tabs = new JTabbedPane();
+        tabs.addTab("Заявки", createTab(ordersModel, ordersSummaryLabel, ordersLoadedLabel));
+        tabs.addTab("Сделки", createTab(tradesModel, tradesSummaryLabel, tradesLoadedLabel));
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        JButton closeButton = new JButton("Закрыть");
+        closeButton.addActionListener(e -> dispose());
+        buttonPanel.add(closeButton);
+
+        add(topPanel, BorderLayout.NORTH);
+        add(tabs, BorderLayout.CENTER);
+        add(buttonPanel, BorderLayout.SOUTH);
+    }
+
+    private JPanel createTab(LazyTableModel<?> model, JLabel summaryLabel, JLabel loadedLabel) {
+        JTable table = new JTable(model);
+        TableUtils.addCopyMenu(table);
+
+        summaryLabel.setFont(new Font("Arial", Font.BOLD, 12));
+        JPanel infoPanel = new JPanel(new BorderLayout());
+        infoPanel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+        infoPanel.add(summaryLabel, BorderLayout.CENTER);
+        infoPanel.add(loadedLabel, BorderLayout.EAST);
+
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(infoPanel, BorderLayout.NORTH);
+        panel.add(new JScrollPane(table), BorderLayout.CENTER);
+        return panel;
+    }
+
+    /**
+     * Смена периода: сводки пересчитываются, таблицы начинаются с первой страницы
+     */
+    private void reload() {
+        int days = PERIOD_DAYS[periodCombo.getSelectedIndex()];
+        since = days > 0 ? Instant.now().minus(days, ChronoUnit.DAYS) : Instant.EPOCH;
+        Instant periodStart = since;
+        log.info("📊 История с {}", days > 0 ? periodStart : "начала");
+
+        ordersSummaryLabel.setText("Загрузка...");
+        tradesSummaryLabel.setText("Загрузка...");
+        ordersModel.reload();
+        tradesModel.reload();
+
+        AsyncTask.execute(
+                () -> ordersRepository.getStatistics(periodStart),
+                stats -> ordersSummaryLabel.setText(stats.toString()),
+                error -> {
+                    log.error("❌ Ошибка сводки по заявкам", error);
+                    ordersSummaryLabel.setText("Ошибка: " + error.getMessage());
+                }
+        );
+        AsyncTask.execute(
+                () -> tradesRepository.getStatistics(periodStart),
+                stats -> tradesSummaryLabel.setText(stats.toString()),
+                error -> {
+                    log.error("❌ Ошибка сводки по сделкам", error);
+                    tradesSummaryLabel.setText("Ошибка: " + error.getMessage());
+                }
+        );
+    }
+
+    private static String loadedText(LazyTableModel<?> model) {
+        return "Загружено: " + model.getLoadedCount() + (model.hasMore() ? " (прокрутите для продолжения)" : "");
+    }
+
+    private static Object[] toOrderRow(Order order) {
+        String direction = order.getDirection() != null
+                ? order.getDirection().name().replace("ORDER_DIRECTION_", "")
+                : "";
+        return new Object[]{
+                order.getId(),
+                order.getInstrumentName() != null ? order.getInstrumentName() : order.getFigi(),
+                direction,
+                order.getLotsRequested(),
+                formatMoney(order.getPrice()),
+                order.getLotsExecuted(),
+                order.getStatus() != null ? order.getStatus() : "UNKNOWN",
+                formatTime(order.getCreatedAt()),
+                formatTime(order.getSubmittedAt())
+        };
+    }
+
+    private static Object[] toTradeRow(Trade trade) {
+        return new Object[]{
+                trade.getId(),
+                trade.getInstrumentName() != null ? trade.getInstrumentName() : trade.getFigi(),
+                trade.getDirection() != null ? trade.getDirection().replace("ORDER_DIRECTION_", "") : "",
+                trade.getQuantity(),
+                formatMoney(trade.getPrice()),
+                formatMoney(trade.getTradeAmount()),
+                formatMoney(trade.getCommission()),
+                formatMoney(trade.getAci()),
+                formatTime(trade.getTradeDate())
+        };
+    }
+
+    private static String formatMoney(BigDecimal value) {
+        return value != null ? String.format("%.2f ₽", value) : "--";
+    }
+
+    private static String formatTime(Instant time) {
+        return time != null ? time.atZone(ZoneId.systemDefault()).format(DATE_TIME_FORMATTER) : "--";
+    }
+}
@@ -0,0 +1,109 @@
+package com.algotrading.tinkoffinvestgui.ui.dialogs;
+
+import com.algotrading.tinkoffinvestgui.service.PortfolioBacktestEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.util.List;
+
+/**
+ * Диалог отчёта портфельного бэктеста: сводка, кривая капитала, сделки
+ */
+public class PortfolioBacktestReportDialog extends JDialog {
+
+    private static final Logger log = LoggerFactory.getLogger(PortfolioBacktestReportDialog.class);
+
+    private final PortfolioBacktestEngine.PortfolioReport report;
+
+    public PortfolioBacktestReportDialog(JFrame parent, PortfolioBacktestEngine.PortfolioReport report) {
+        super(parent, "Результаты портфельного бэктеста", false);
+        this.report = report;
+
+        setSize(1400, 850);
+        setLocationRelativeTo(parent);
+        initializeUI();
+    }
+
+    private void initializeUI() {
+        log.info("📊 Отображение портфельного отчёта: {} сделок", report.getTrades().size());
+
+        setLayout(new BorderLayout(10, 10));
+
+        JPanel statsPanel = new JPanel(new GridLayout(3, 8, 15, 10));
+        statsPanel.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
+
+        addStatLabel(statsPanel, "Период:",
+            String.format("%s — %s", report.getStartDate(), report.getEndDate()));
+        addStatLabel(statsPanel, "Начальный капитал:", String.format("%.2f₽", report.getInitialCapital()));
+        addStatLabel(statsPanel, "Итоговый капитал:", String.format("%.2f₽", report.getFinalEquity()));
+        addStatLabel(statsPanel, "Доходность:", String.format("%.2f%%", report.getTotalReturnPercent()));
+        addStatLabel(statsPanel, "Годовая доходность:", String.format("%.2f%%", report.getAnnualReturnPercent()));
+        addStatLabel(statsPanel, "Макс. просадка:", String.format("%.2f%%", report.getMaxDrawdownPercent()));
+        addStatLabel(statsPanel, "Sharpe:", String.format("%.2f", report.getSharpe()));
+        addStatLabel(statsPanel, "Оборот (в год):", String.format("%.1fx", report.getAnnualTurnover()));
+        addStatLabel(statsPanel, "Сделок:", String.valueOf(report.getTrades().size()));
+        addStatLabel(statsPanel, "Винрейт:",
+            String.format("%d (%.1f%%)", report.getProfitableTrades(), report.getWinRate()));
+        addStatLabel(statsPanel, "Макс. позиций:", String.valueOf(report.getMaxConcurrentPositions()));
+        addStatLabel(statsPanel, "Ср. доля кэша:", String.format("%.1f%%", report.getAvgCashSharePercent()));
+
+        add(statsPanel, BorderLayout.NORTH);
+
+        String[] columns = {
+            "Тикер", "Название", "FIGI", "Лотов", "Дата покупки", "Цена покупки,%",
+            "Волатильность", "Дата продажи", "Цена продажи,%", "Удержание,дн",
+            "Комиссия,₽", "Прибыль,₽", "Прибыль,%", "Выход"
+        };
+
+        List<PortfolioBacktestEngine.PortfolioTrade> trades = report.getTrades();
+        Object[][] data = new Object[trades.size()][columns.length];
+        for (int i = 0; i < trades.size(); i++) {
+            PortfolioBacktestEngine.PortfolioTrade t = trades.get(i);
+            data[i][0] = t.getTicker();
+            data[i][1] = t.getName();
+            data[i][2] = t.getFigi();
+            data[i][3] = t.getLots();
+            data[i][4] = t.getBuyDate();
+            data[i][5] = String.format("%.2f", t.getBuyPrice());
+            data[i][6] = String.format("%.4f", t.getVolatility());
+            data[i][7] = t.getSellDate();
+            data[i][8] = String.format("%.2f", t.getSellPrice());
+            data[i][9] = t.getHoldingDays();
+            data[i][10] = String.format("%.2f₽", t.getCommission());
+            data[i][11] = String.format("%.2f₽", t.getProfit());
+            data[i][12] = String.format("%.2f%%", t.getProfitPercent());
+            data[i][13] = t.getExitReason();
+        }
+
+        JTable table = new JTable(new DefaultTableModel(data, columns));
+        table.setAutoResizeMode(JTable.AUTO_RESIZE_ALL_COLUMNS);
+        table.setAutoCreateRowSorter(true);
+
+        JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT,
+            new EquityChart(report.getEquityDays(), report.getEquity(), report.getInitialCapital()),
+            new JScrollPane(table));
+        splitPane.setResizeWeight(0.4);
+        add(splitPane, BorderLayout.CENTER);
+
+        JButton closeButton = new JButton("Закрыть");
+        closeButton.addActionListener(e -> dispose());
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        buttonPanel.add(closeButton);
+        add(buttonPanel, BorderLayout.SOUTH);
+    }
+
+    private void addStatLabel(JPanel panel, String label, String value) {
+        JLabel labelComp = new JLabel(label);
+        labelComp.setFont(new Font("Arial", Font.BOLD, 11));
+
+        JLabel valueComp = new JLabel(value);
+        valueComp.setFont(new Font("Arial", Font.PLAIN, 11));
+
+        panel.add(labelComp);
+        panel.add(valueComp);
+    }
+}
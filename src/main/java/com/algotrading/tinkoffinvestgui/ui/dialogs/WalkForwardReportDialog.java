@@ -0,0 +1,105 @@
+package com.algotrading.tinkoffinvestgui.ui.dialogs;
+
+import com.algotrading.tinkoffinvestgui.service.WalkForwardOptimizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.util.List;
+
+/**
+ * Диалог отчёта walk-forward: склеенная out-of-sample кривая и результаты по фолдам
+ */
+public class WalkForwardReportDialog extends JDialog {
+
+    private static final Logger log = LoggerFactory.getLogger(WalkForwardReportDialog.class);
+
+    private final WalkForwardOptimizer.WalkForwardReport report;
+
+    public WalkForwardReportDialog(JFrame parent, WalkForwardOptimizer.WalkForwardReport report) {
+        super(parent, "Walk-forward: out-of-sample результаты", false);
+        this.report = report;
+
+        setSize(1400, 850);
+        setLocationRelativeTo(parent);
+        initializeUI();
+    }
+
+    private void initializeUI() {
+        log.info("📊 Отображение walk-forward отчёта: {} фолдов", report.getFolds().size());
+
+        setLayout(new BorderLayout(10, 10));
+
+        JPanel statsPanel = new JPanel(new GridLayout(3, 8, 15, 10));
+        statsPanel.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
+
+        addStatLabel(statsPanel, "OOS период:",
+            String.format("%s — %s", report.getOutOfSampleStart(), report.getOutOfSampleEnd()));
+        addStatLabel(statsPanel, "Фолдов:", String.valueOf(report.getFolds().size()));
+        addStatLabel(statsPanel, "Итоговый капитал:", String.format("%.2f₽", report.getFinalEquity()));
+        addStatLabel(statsPanel, "OOS доходность:", String.format("%.2f%%", report.getTotalReturnPercent()));
+        addStatLabel(statsPanel, "OOS годовая:", String.format("%.2f%%", report.getAnnualReturnPercent()));
+        addStatLabel(statsPanel, "IS годовая (ср.):", String.format("%.2f%%", report.getInSampleAnnualReturnPercent()));
+        addStatLabel(statsPanel, "Эффективность:", String.format("%.2f", report.getEfficiency()));
+        addStatLabel(statsPanel, "Макс. просадка:", String.format("%.2f%%", report.getMaxDrawdownPercent()));
+        addStatLabel(statsPanel, "Sharpe:", String.format("%.2f", report.getSharpe()));
+        addStatLabel(statsPanel, "Сделок:", String.valueOf(report.getTotalTrades()));
+        addStatLabel(statsPanel, "Прогонов:", String.valueOf(report.getCombinationsEvaluated()));
+        addStatLabel(statsPanel, "Время:", String.format("%.1f сек.", report.getElapsedMs() / 1000.0));
+
+        add(statsPanel, BorderLayout.NORTH);
+
+        String[] columns = {
+            "Обучение с", "Обучение по", "Тест с", "Тест по", "k", "Маржа,%", "Окно,мес",
+            "IS Sharpe", "IS доходн.,%", "OOS Sharpe", "OOS доходн.,%", "OOS просадка,%", "OOS сделок"
+        };
+
+        List<WalkForwardOptimizer.FoldResult> folds = report.getFolds();
+        Object[][] data = new Object[folds.size()][columns.length];
+        for (int i = 0; i < folds.size(); i++) {
+            WalkForwardOptimizer.FoldResult f = folds.get(i);
+            data[i][0] = f.getTrainStart();
+            data[i][1] = f.getTrainEnd();
+            data[i][2] = f.getTestStart();
+            data[i][3] = f.getTestEnd();
+            data[i][4] = String.format("%.2f", f.getParams().getVolatilityMultiplier());
+            data[i][5] = String.format("%.2f", f.getParams().getProfitMargin() * 100);
+            data[i][6] = f.getParams().getAnalysisPeriodMonths();
+            data[i][7] = String.format("%.2f", f.getTrainSharpe());
+            data[i][8] = String.format("%.2f", f.getTrainReturnPercent());
+            data[i][9] = String.format("%.2f", f.getTestSharpe());
+            data[i][10] = String.format("%.2f", f.getTestReturnPercent());
+            data[i][11] = String.format("%.2f", f.getTestMaxDrawdownPercent());
+            data[i][12] = f.getTestTrades();
+        }
+
+        JTable table = new JTable(new DefaultTableModel(data, columns));
+        table.setAutoResizeMode(JTable.AUTO_RESIZE_ALL_COLUMNS);
+
+        JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT,
+            new EquityChart(report.getEquityDays(), report.getEquity(), report.getInitialCapital()),
+            new JScrollPane(table));
+        splitPane.setResizeWeight(0.5);
+        add(splitPane, BorderLayout.CENTER);
+
+        JButton closeButton = new JButton("Закрыть");
+        closeButton.addActionListener(e -> dispose());
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        buttonPanel.add(closeButton);
+        add(buttonPanel, BorderLayout.SOUTH);
+    }
+
+    private void addStatLabel(JPanel panel, String label, String value) {
+        JLabel labelComp = new JLabel(label);
+        labelComp.setFont(new Font("Arial", Font.BOLD, 11));
+
+        JLabel valueComp = new JLabel(value);
+        valueComp.setFont(new Font("Arial", Font.PLAIN, 11));
+
+        panel.add(labelComp);
+        panel.add(valueComp);
+    }
+}
@@ -0,0 +1,119 @@
+package com.algotrading.tinkoffinvestgui.ui.panels;
+
+import com.algotrading.tinkoffinvestgui.metrics.MetricsRegistry;
+import com.algotrading.tinkoffinvestgui.metrics.Timer;
+import com.algotrading.tinkoffinvestgui.ui.utils.TableUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+
+/**
+ * Вкладка «Диагностика»: таймеры (RPC, SQL, планировщик, заявки), счётчики и gauge
+ * из {@link MetricsRegistry}. Таблицы обновляются раз в 2 секунды, пока вкладка видна.
+ */
+public class DiagnosticsPanel extends JPanel {
+    private static final Logger log = LoggerFactory.getLogger(DiagnosticsPanel.class);
+    private static final int REFRESH_INTERVAL_MS = 2000;
+
+    private static final String[] TIMER_COLUMNS = {
+            "Метрика", "Метка", "Кол-во", "Среднее, мс", "p50, мс", "p95, мс", "p99, мс", "Макс, мс", "Всего, с"
+    };
+    private static final String[] VALUE_COLUMNS = {"Метрика", "Метка", "Значение"};
+
+    private final DefaultTableModel timersModel = readOnlyModel(TIMER_COLUMNS);
+    private final DefaultTableModel valuesModel = readOnlyModel(VALUE_COLUMNS);
+    private final javax.swing.Timer refreshTimer;
+
+    public DiagnosticsPanel() {
+        setLayout(new BorderLayout(10, 10));
+        setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+        JTable timersTable = new JTable(timersModel);
+        timersTable.setAutoCreateRowSorter(true);
+        TableUtils.addCopyMenu(timersTable);
+
+        JTable valuesTable = new JTable(valuesModel);
+        valuesTable.setAutoCreateRowSorter(true);
+        TableUtils.addCopyMenu(valuesTable);
+
+        JScrollPane timersScroll = new JScrollPane(timersTable);
+        timersScroll.setBorder(BorderFactory.createTitledBorder("⏱ Задержки"));
+        JScrollPane valuesScroll = new JScrollPane(valuesTable);
+        valuesScroll.setBorder(BorderFactory.createTitledBorder("📊 Счётчики и состояние"));
+
+        JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT, timersScroll, valuesScroll);
+        split.setResizeWeight(0.7);
+        add(split, BorderLayout.CENTER);
+
+        JButton resetButton = new JButton("Сбросить метрики");
+        resetButton.addActionListener(e -> {
+            MetricsRegistry.getInstance().reset();
+            log.info("Метрики сброшены из вкладки «Диагностика»");
+            refresh();
+        });
+        JPanel bottom = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        bottom.add(resetButton);
+        bottom.add(new JLabel("Также доступно через JMX и http://127.0.0.1:<metrics.http.port>/metrics"));
+        add(bottom, BorderLayout.SOUTH);
+
+        refreshTimer = new javax.swing.Timer(REFRESH_INTERVAL_MS, e -> {
+            if (isShowing()) {
+                refresh();
+            }
+        });
+        refreshTimer.start();
+    }
+
+    private void refresh() {
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+
+        timersModel.setRowCount(0);
+        for (Timer timer : registry.getTimers()) {
+            Timer.Snapshot s = timer.snapshot();
+            timersModel.addRow(new Object[]{
+                    timer.getName(),
+                    timer.getLabelValue(),
+                    s.getCount(),
+                    round(s.getMeanMs()),
+                    round(s.getPercentileMs(0.50)),
+                    round(s.getPercentileMs(0.95)),
+                    round(s.getPercentileMs(0.99)),
+                    round(s.getMaxMs()),
+                    round(s.getTotalMs() / 1000.0)
+            });
+        }
+
+        valuesModel.setRowCount(0);
+        for (MetricsRegistry.Counter counter : registry.getCounters()) {
+            valuesModel.addRow(new Object[]{counter.getName(), counter.getLabelValue(), counter.get()});
+        }
+        for (MetricsRegistry.Gauge gauge : registry.getGauges()) {
+            valuesModel.addRow(new Object[]{gauge.getName(), gauge.getLabelValue(), round(gauge.get())});
+        }
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10.0) / 10.0;
+    }
+
+    private static DefaultTableModel readOnlyModel(String[] columns) {
+        return new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+
+            @Override
+            public Class<?> getColumnClass(int column) {
+                return column >= 2 ? Number.class : String.class;
+            }
+        };
+    }
+
+    public void stopAutoRefresh() {
+        refreshTimer.stop();
+    }
+}
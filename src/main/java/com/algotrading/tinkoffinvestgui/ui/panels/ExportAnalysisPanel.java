@@ -1,12 +1,17 @@
 package com.algotrading.tinkoffinvestgui.ui.panels;
 
 import ru.tinkoff.piapi.contract.v1.BondsResponse;
+import ru.tinkoff.piapi.contract.v1.CandleInterval;
 import com.algotrading.tinkoffinvestgui.api.BondsService;
 import com.algotrading.tinkoffinvestgui.api.CandlesApiService;
 import com.algotrading.tinkoffinvestgui.repository.BondsRepository;
 import com.algotrading.tinkoffinvestgui.repository.ParametersRepository;
+import com.algotrading.tinkoffinvestgui.service.BondScreener;
+import com.algotrading.tinkoffinvestgui.service.BondUniverseService;
 import com.algotrading.tinkoffinvestgui.service.BondsAnalysisService;
 import com.algotrading.tinkoffinvestgui.service.BondStrategyBacktestService;
+import com.algotrading.tinkoffinvestgui.service.PortfolioBacktestEngine;
+import com.algotrading.tinkoffinvestgui.service.WalkForwardOptimizer;
 import com.algotrading.tinkoffinvestgui.ui.utils.AsyncTask;
 import com.algotrading.tinkoffinvestgui.ui.utils.DialogUtils;
 import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
@@ -15,6 +20,8 @@ import com.algotrading.tinkoffinvestgui.ui.dialogs.BacktestDialog;
 import com.algotrading.tinkoffinvestgui.ui.dialogs.CandlesExportDialog;
 import com.algotrading.tinkoffinvestgui.ui.dialogs.AnalysisResultsDialog;
 import com.algotrading.tinkoffinvestgui.ui.dialogs.BacktestReportDialog;
+import com.algotrading.tinkoffinvestgui.ui.dialogs.PortfolioBacktestReportDialog;
+import com.algotrading.tinkoffinvestgui.ui.dialogs.WalkForwardReportDialog;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -187,18 +194,21 @@ public class ExportAnalysisPanel extends JPanel {
                     log.info("✅ Получено облигаций из API: {}", bonds.size());
 
                     BondsRepository repository = new BondsRepository();
-                    int exportedCount = repository.exportBonds(bonds);
-                    int totalRows = repository.getRowCount();
+                    BondsRepository.SyncResult syncResult = repository.syncBonds(bonds);
+                    BondUniverseService.getInstance().update(bonds);
+                    int activeCount = repository.getRowCount();
 
-                    log.info("💾 Экспорт завершен. Экспортировано: {}, Всего строк: {}", exportedCount, totalRows);
-                    return new Object[]{exportedCount, totalRows};
+                    log.info("💾 Экспорт завершен: {}, активных облигаций: {}", syncResult, activeCount);
+                    return new Object[]{syncResult, activeCount};
                 },
                 result -> {
-                    int exportedCount = (int) ((Object[]) result)[0];
-                    int totalRows = (int) ((Object[]) result)[1];
+                    BondsRepository.SyncResult syncResult = (BondsRepository.SyncResult) ((Object[]) result)[0];
+                    int activeCount = (int) ((Object[]) result)[1];
                     DialogUtils.showSuccess(parentFrame,
-                            String.format("✅ Экспорт завершен!\n\nЭкспортировано в public.exportdata:\n• %d облигаций\n• Всего строк: %d",
-                                    exportedCount, totalRows));
+                            String.format("✅ Экспорт завершен!\n\npublic.exportdata:\n• новых: %d\n• изменено: %d\n"
+                                            + "• неактивно: %d\n• без изменений: %d\n• Активных облигаций: %d",
+                                    syncResult.getInserted(), syncResult.getUpdated(), syncResult.getDeactivated(),
+                                    syncResult.getUnchanged(), activeCount));
                     bondsButton.setEnabled(true);
                     bondsButton.setText("📥 Экспортировать облигации в БД");
                 },
@@ -234,23 +244,33 @@ public class ExportAnalysisPanel extends JPanel {
     private void runBondsAnalysis(BondsAnalysisService.BondsFilterCriteria criteria) {
         log.info("🚀 Запуск анализа облигаций с критериями: {}", criteria);
 
+        // Окно результатов открывается сразу и наполняется лучшими по ходу анализа
+        int topK = BondsAnalysisService.resolveTopK();
+        AnalysisResultsDialog resultsDialog = new AnalysisResultsDialog(parentFrame);
+        resultsDialog.setVisible(true);
+
+        BondsAnalysisService.AnalysisListener listener = new BondsAnalysisService.AnalysisListener() {
+            @Override
+            public void onProgress(List<BondsAnalysisService.BondAnalysisResult> top, int processed, int total) {
+                SwingUtilities.invokeLater(() -> resultsDialog.showProgress(top, processed, total));
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return resultsDialog.isStopped();
+            }
+        };
+
         AsyncTask.execute(
                 () -> {
-                    BondsService bondsService = new BondsService(
-                            ConnectorConfig.getApiToken(),
-                            ConnectorConfig.API_URL,
-                            ConnectorConfig.API_PORT
-                    );
-                    log.info("📡 Получение списка облигаций из API...");
-                    BondsResponse response = bondsService.getBonds();
-                    List bonds = response.getInstrumentsList();
-                    log.info("✅ Получено облигаций из API: {}", bonds.size());
+                    BondScreener screener = BondUniverseService.getInstance().getScreener();
+                    log.info("✅ Облигаций в справочнике: {}", screener.size());
 
                     // ✅ ИСПРАВЛЕНИЕ: ФИЛЬТРАЦИЯ ПЕРЕД АНАЛИЗОМ
                     BondsAnalysisService analysisService = new BondsAnalysisService();
 
                     log.info("🔍 Фильтрация облигаций по критериям...");
-                    List filteredBonds = analysisService.filterBonds(bonds, criteria);
+                    List filteredBonds = analysisService.filterBonds(screener, criteria);
                     log.info("✅ После фильтрации осталось облигаций: {}", filteredBonds.size());
 
                     CandlesApiService candlesService = new CandlesApiService(
@@ -259,9 +279,9 @@ public class ExportAnalysisPanel extends JPanel {
                             ConnectorConfig.API_PORT
                     );
 
-                    log.info("📊 Анализ {} отфильтрованных облигаций...", filteredBonds.size());
+                    log.info("📊 Анализ {} отфильтрованных облигаций (топ-{})...", filteredBonds.size(), topK);
                     List<BondsAnalysisService.BondAnalysisResult> results =
-                            analysisService.analyzeBonds(filteredBonds, candlesService, criteria);
+                            analysisService.analyzeBonds(filteredBonds, candlesService, criteria, topK, listener);
                     log.info("✅ Анализ завершен. Найдено облигаций: {}", results.size());
                     return results;
                 },
@@ -270,17 +290,17 @@ public class ExportAnalysisPanel extends JPanel {
                     List<BondsAnalysisService.BondAnalysisResult> bondResults =
                             (List<BondsAnalysisService.BondAnalysisResult>) results;
 
-                    if (bondResults.isEmpty()) {
+                    if (bondResults.isEmpty() && !resultsDialog.isStopped()) {
+                        resultsDialog.dispose();
                         DialogUtils.showWarning(parentFrame,
                                 "⚠️ Облигаций не найдено по заданным критериям");
                     } else {
-                        log.info("📊 Открытие окна результатов анализа");
-                        AnalysisResultsDialog resultsDialog = new AnalysisResultsDialog(parentFrame, bondResults);
-                        resultsDialog.setVisible(true);
+                        resultsDialog.finish();
                     }
                 },
                 error -> {
                     log.error("❌ Ошибка анализа облигаций", error);
+                    resultsDialog.finish();
                     DialogUtils.showError(parentFrame, "❌ Ошибка: " + error.getMessage());
                 }
         );
@@ -305,6 +325,12 @@ public class ExportAnalysisPanel extends JPanel {
         java.time.LocalDate startDate = (java.time.LocalDate) params[0];
         java.time.LocalDate endDate = (java.time.LocalDate) params[1];
         BondStrategyBacktestService.BacktestFilters filters = (BondStrategyBacktestService.BacktestFilters) params[2];
+        PortfolioBacktestEngine.PortfolioSettings portfolioSettings =
+                params.length > 3 ? (PortfolioBacktestEngine.PortfolioSettings) params[3] : null;
+        WalkForwardOptimizer.WalkForwardSettings walkForwardSettings =
+                params.length > 4 ? (WalkForwardOptimizer.WalkForwardSettings) params[4] : null;
+        CandleInterval intradayInterval = params.length > 5 ? (CandleInterval) params[5] : null;
+        java.time.LocalTime executionTime = params.length > 6 ? (java.time.LocalTime) params[6] : null;
 
         log.info("🚀 Запуск бэктеста: {} - {}", startDate, endDate);
 
@@ -323,15 +349,37 @@ public class ExportAnalysisPanel extends JPanel {
                             bondsRepo,
                             paramsRepo
                     );
+                    if (walkForwardSettings != null) {
+                        log.info("📊 Выполнение walk-forward оптимизации...");
+                        return backtestService.runWalkForward(startDate, endDate, filters,
+                                portfolioSettings, walkForwardSettings);
+                    }
+                    if (intradayInterval != null) {
+                        log.info("📊 Выполнение внутридневного бэктеста...");
+                        return backtestService.runIntradayBacktest(startDate, endDate, filters,
+                                intradayInterval, executionTime);
+                    }
+                    if (portfolioSettings != null) {
+                        log.info("📊 Выполнение портфельного бэктеста...");
+                        return backtestService.runPortfolioBacktest(startDate, endDate, filters, portfolioSettings);
+                    }
                    log.info("📊 Выполнение бэктеста стратегии...");
                     BondStrategyBacktestService.BacktestReport report = backtestService.runBacktest(startDate, endDate, filters);
                     log.info("✅ Бэктест завершен. Облигаций: {}, Сделок: {}", report.getTotalBonds(), report.getTotalTrades());
                     return report;
                 },
                 report -> {
+                    log.info("📊 Открытие окна результатов бэктеста");
+                    if (report instanceof WalkForwardOptimizer.WalkForwardReport walkForwardReport) {
+                        new WalkForwardReportDialog(parentFrame, walkForwardReport).setVisible(true);
+                        return;
+                    }
+                    if (report instanceof PortfolioBacktestEngine.PortfolioReport portfolioReport) {
+                        new PortfolioBacktestReportDialog(parentFrame, portfolioReport).setVisible(true);
+                        return;
+                    }
                     BondStrategyBacktestService.BacktestReport backtestReport =
                             (BondStrategyBacktestService.BacktestReport) report;
-                    log.info("📊 Открытие окна результатов бэктеста");
                     BacktestReportDialog reportDialog = new BacktestReportDialog(parentFrame, backtestReport);
                     reportDialog.setVisible(true);
                 },
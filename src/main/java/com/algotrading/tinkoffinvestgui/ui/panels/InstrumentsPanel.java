@@ -4,12 +4,15 @@ import com.algotrading.tinkoffinvestgui.config.AppConstants;
 import com.algotrading.tinkoffinvestgui.entity.Instrument;
 import com.algotrading.tinkoffinvestgui.repository.InstrumentsRepository;
 import com.algotrading.tinkoffinvestgui.service.AccountService;
+import com.algotrading.tinkoffinvestgui.service.MarketDataStreamManager;
+import com.algotrading.tinkoffinvestgui.service.MarketSnapshotService;
 import com.algotrading.tinkoffinvestgui.service.OrdersBusinessService;
 //import com.algotrading.tinkoffinvestgui.service.OrdersService;
 import com.algotrading.tinkoffinvestgui.ui.dialogs.InstrumentDialog;
 import com.algotrading.tinkoffinvestgui.ui.dialogs.OrdersJsonDialog;
 import com.algotrading.tinkoffinvestgui.ui.utils.AsyncTask;
 import com.algotrading.tinkoffinvestgui.ui.utils.DialogUtils;
+import com.algotrading.tinkoffinvestgui.ui.utils.LivePriceBuffer;
 import com.algotrading.tinkoffinvestgui.ui.utils.TableUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,6 +21,8 @@ import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableColumn;
 import java.awt.*;
+import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -40,6 +45,9 @@ public class InstrumentsPanel extends JPanel {
         this.parentFrame = parentFrame;
         this.instrumentsRepository = new InstrumentsRepository();
         initializeUI();
+        // Колонка «Текущая цена» обновляется из стрима пачками по таймеру
+        new LivePriceBuffer(instrumentsTable, 2, AppConstants.INSTRUMENTS_TABLE_COLUMNS.length - 1,
+                price -> price).start();
     }
 
     private void initializeUI() {
@@ -117,7 +125,7 @@ public class InstrumentsPanel extends JPanel {
         refreshInstrumentsButton.setText("Загрузка...");
 
         AsyncTask.execute(
-                () -> instrumentsRepository.findAll(),
+                () -> warmUpPrices(instrumentsRepository.findAll()),
                 instruments -> {
                     log.info("✅ Загружено инструментов: {}", instruments.size());
                     updateInstrumentsTable(instruments);
@@ -133,6 +141,28 @@ public class InstrumentsPanel extends JPanel {
         );
     }
 
+    /**
+     * Загружает последние цены всех инструментов одним запросом GetLastPrices.
+     * Ошибка API не мешает показать таблицу — колонка цены останется пустой.
+     */
+    private List<Instrument> warmUpPrices(List<Instrument> instruments) {
+        try {
+            List<String> figis = new ArrayList<>();
+            for (Instrument instrument : instruments) {
+                figis.add(instrument.getFigi());
+            }
+            MarketSnapshotService.getInstance().getLastPrices(figis);
+
+            // Дальше цены и минутные свечи приходят из стрима
+            MarketDataStreamManager stream = MarketDataStreamManager.getInstance();
+            stream.subscribeLastPrices(figis);
+            stream.subscribeCandles(figis);
+        } catch (Exception e) {
+            log.warn("⚠️ Не удалось загрузить текущие цены инструментов: {}", e.getMessage());
+        }
+        return instruments;
+    }
+
     /**
      * Обновление таблицы инструментов
      */
@@ -143,7 +173,8 @@ public class InstrumentsPanel extends JPanel {
             return;
         }
 
-        Object[][] data = new Object[instruments.size()][11];
+        MarketSnapshotService snapshot = MarketSnapshotService.getInstance();
+        Object[][] data = new Object[instruments.size()][12];
         for (int i = 0; i < instruments.size(); i++) {
             Instrument inst = instruments.get(i);
             data[i][0] = inst.getId();              // ✅ СКРЫТАЯ КОЛОНКА
@@ -157,6 +188,8 @@ public class InstrumentsPanel extends JPanel {
             data[i][8] = inst.getSellQuantity();
             data[i][9] = inst.getSellPrice();
             data[i][10] = inst.getManualSellPrice();
+            BigDecimal lastPrice = snapshot.getCachedLastPrice(inst.getFigi());
+            data[i][11] = lastPrice != null ? lastPrice : "--";
         }
 
         instrumentsTable.setModel(new DefaultTableModel(data, AppConstants.INSTRUMENTS_TABLE_COLUMNS));
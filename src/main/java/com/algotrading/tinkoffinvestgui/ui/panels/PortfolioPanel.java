@@ -3,13 +3,23 @@ package com.algotrading.tinkoffinvestgui.ui.panels;
 import com.algotrading.tinkoffinvestgui.api.AccountsApiService;
 import com.algotrading.tinkoffinvestgui.api.PortfolioService;
 import com.algotrading.tinkoffinvestgui.config.ConnectorConfig;
+import com.algotrading.tinkoffinvestgui.model.FifoPosition;
 import com.algotrading.tinkoffinvestgui.model.Order;
+import com.algotrading.tinkoffinvestgui.model.OrderEvent;
+import com.algotrading.tinkoffinvestgui.model.OrderStatus;
 import com.algotrading.tinkoffinvestgui.repository.OrdersRepository;
+import com.algotrading.tinkoffinvestgui.repository.PnlRepository;
 import com.algotrading.tinkoffinvestgui.service.AccountService;
+import com.algotrading.tinkoffinvestgui.service.MarketDataStreamManager;
+import com.algotrading.tinkoffinvestgui.service.MarketSnapshotService;
+import com.algotrading.tinkoffinvestgui.service.PnlEngine;
+import com.algotrading.tinkoffinvestgui.service.OrderJournal;
 import com.algotrading.tinkoffinvestgui.service.TinkoffApiService;
 import com.algotrading.tinkoffinvestgui.ui.utils.AsyncTask;
 import com.algotrading.tinkoffinvestgui.ui.utils.DialogUtils;
+import com.algotrading.tinkoffinvestgui.ui.utils.LivePriceBuffer;
 import com.algotrading.tinkoffinvestgui.ui.utils.TableUtils;
+import com.algotrading.tinkoffinvestgui.ui.dialogs.HistoryDialog;
 import com.algotrading.tinkoffinvestgui.repository.TradesRepository;
 import com.algotrading.tinkoffinvestgui.service.TradesSyncService;
 import com.algotrading.tinkoffinvestgui.model.Trade;
@@ -20,6 +30,8 @@ import ru.tinkoff.piapi.contract.v1.*;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
@@ -52,6 +64,11 @@ public class PortfolioPanel extends JPanel {
     private JScrollPane tradesScroll;
     private JButton tradesButton;
     private ScheduledExecutorService tradesSyncExecutor;
+    private JLabel pnlSummaryLabel;
+    private JTable pnlTable;
+    private JScrollPane pnlScroll;
+    private JTable dailyPnlTable;
+    private JScrollPane dailyPnlScroll;
 
     private ScheduledExecutorService portfolioUpdateExecutor;
     private ScheduledExecutorService orderTrackerExecutor;  // >>> НОВЫЙ EXECUTOR ДЛЯ ТРЕКЕРА
@@ -60,9 +77,25 @@ public class PortfolioPanel extends JPanel {
     private final TradesRepository tradesRepository = new TradesRepository();
     private final TradesSyncService tradesSyncService = new TradesSyncService();
 
+    /** Колонка «Текущая цена» в таблице позиций */
+    private static final int PORTFOLIO_PRICE_COLUMN = 6;
+
+    /** Колонки P&L по инструментам и по дням */
+    private static final String[] PNL_COLUMNS = {
+            "Инструмент", "Открыто", "Средняя цена", "Реализовано", "Комиссии", "Итого", "Сделок"
+    };
+    private static final String[] DAILY_PNL_COLUMNS = {"День", "Реализовано", "Комиссии", "Итого"};
+    private static final int DAILY_PNL_DAYS = 30;
+
+    /** Последний id сделки в public.trades на момент последнего обновления позиций */
+    private volatile long lastTradeId = -1;
+
     public PortfolioPanel(JFrame parentFrame) {
         this.parentFrame = parentFrame;
         initializeUI();
+        // Текущая цена позиций обновляется из стрима пачками по таймеру
+        new LivePriceBuffer(portfolioTable, 0, PORTFOLIO_PRICE_COLUMN,
+                price -> String.format("%.2f", price)).start();
     }
 
     private void initializeUI() {
@@ -99,13 +132,17 @@ public class PortfolioPanel extends JPanel {
         buttonsPanel.add(ordersButton);
         buttonsPanel.add(tradesButton);
 
+        JButton historyButton = new JButton("История");
+        historyButton.addActionListener(e -> new HistoryDialog(parentFrame).setVisible(true));
+        buttonsPanel.add(historyButton);
+
         // Таблицы
         String[] accountColumns = {"ID", "Название", "Тип", "Статус"};
         accountsTable = new JTable(new DefaultTableModel(new Object[][]{}, accountColumns));
         accountsTable.setFillsViewportHeight(false);
         TableUtils.addCopyMenu(accountsTable);
 
-        String[] portfolioColumns = {"FIGI", "Тикер", "Тип", "Класс", "Кол-во", "Средняя цена", "Общая стоимость"};
+        String[] portfolioColumns = {"FIGI", "Тикер", "Тип", "Класс", "Кол-во", "Средняя цена", "Текущая цена", "Общая стоимость"};
         portfolioTable = new JTable(new DefaultTableModel(new Object[][]{}, portfolioColumns));
         portfolioTable.setFillsViewportHeight(false);
         TableUtils.addCopyMenu(portfolioTable);
@@ -126,15 +163,27 @@ public class PortfolioPanel extends JPanel {
         tradesTable.setFillsViewportHeight(false);
         TableUtils.addCopyMenu(tradesTable);
 
+        pnlTable = new JTable(new DefaultTableModel(new Object[][]{}, PNL_COLUMNS));
+        pnlTable.setFillsViewportHeight(false);
+        TableUtils.addCopyMenu(pnlTable);
+
+        dailyPnlTable = new JTable(new DefaultTableModel(new Object[][]{}, DAILY_PNL_COLUMNS));
+        dailyPnlTable.setFillsViewportHeight(false);
+        TableUtils.addCopyMenu(dailyPnlTable);
+
         accountsScroll = new JScrollPane(accountsTable);
         portfolioScroll = new JScrollPane(portfolioTable);
         ordersScroll = new JScrollPane(ordersTable);
         tradesScroll = new JScrollPane(tradesTable);
+        pnlScroll = new JScrollPane(pnlTable);
+        dailyPnlScroll = new JScrollPane(dailyPnlTable);
 
         setTablePreferredHeight(accountsScroll, accountsTable, 3);
         setTablePreferredHeight(portfolioScroll, portfolioTable, 10);
         setTablePreferredHeight(ordersScroll, ordersTable, 8);
         setTablePreferredHeight(tradesScroll, tradesTable, 8);
+        setTablePreferredHeight(pnlScroll, pnlTable, 8);
+        setTablePreferredHeight(dailyPnlScroll, dailyPnlTable, 8);
 
         // Верхняя панель
         JPanel topPanel = new JPanel();
@@ -174,6 +223,15 @@ public class PortfolioPanel extends JPanel {
         centerPanel.add(tradesLabel);
         centerPanel.add(tradesScroll);
 
+        centerPanel.add(Box.createVerticalStrut(15));
+        pnlSummaryLabel = new JLabel("Реализованный P&L (FIFO): --");
+        pnlSummaryLabel.setFont(new Font("Arial", Font.BOLD, 12));
+        centerPanel.add(pnlSummaryLabel);
+        JPanel pnlPanel = new JPanel(new GridLayout(1, 2, 10, 0));
+        pnlPanel.add(pnlScroll);
+        pnlPanel.add(dailyPnlScroll);
+        centerPanel.add(pnlPanel);
+
         add(topPanel, BorderLayout.NORTH);
         add(centerPanel, BorderLayout.CENTER);
     }
@@ -210,15 +268,13 @@ public class PortfolioPanel extends JPanel {
      * Запуск автоматического обновления портфеля и трекера заявок
      */
     public void startAutoUpdate() {
-        log.info("⏰ Запуск автоматического обновления портфеля каждые {} минут", PORTFOLIO_UPDATE_INTERVAL_MINUTES);
+        log.info("⏰ Запуск автоматического обновления заявок каждые {} минут", PORTFOLIO_UPDATE_INTERVAL_MINUTES);
 
-        // Обновление портфеля
+        // Цены позиций приходят из MarketDataStream, состав портфеля обновляется
+        // после появления новых сделок (см. syncTrades)
         portfolioUpdateExecutor = Executors.newScheduledThreadPool(1);
         portfolioUpdateExecutor.scheduleAtFixedRate(
-                () -> {
-                    showPortfolio();
-                    refreshOrders();
-                },
+                this::refreshOrders,
                 PORTFOLIO_UPDATE_INTERVAL_MINUTES,
                 PORTFOLIO_UPDATE_INTERVAL_MINUTES,
                 TimeUnit.MINUTES
@@ -335,7 +391,7 @@ public class PortfolioPanel extends JPanel {
                         );
 
                         AsyncTask.execute(
-                                () -> portfolioService.getPortfolio(accountId),
+                                () -> warmUpPrices(portfolioService.getPortfolio(accountId)),
                                 portfolio -> {
                                     log.info("✅ Получен портфель, позиций: {}", portfolio.getPositionsCount());
                                     updatePortfolioTable(portfolio);
@@ -381,7 +437,7 @@ public class PortfolioPanel extends JPanel {
                             ConnectorConfig.API_URL,
                             ConnectorConfig.API_PORT
                     );
-                    return service.getPortfolio(displayAccountId);
+                    return warmUpPrices(service.getPortfolio(displayAccountId));
                 },
                 portfolio -> {
                     log.info("✅ Получен портфель для {}, позиций: {}",
@@ -399,6 +455,25 @@ public class PortfolioPanel extends JPanel {
         );
     }
 
+    /**
+     * Загружает последние цены всех позиций одним запросом (в фоновом потоке),
+     * чтобы таблица потом читала их из кэша снимка без обращения к API,
+     * и подписывает позиции на стрим цен.
+     */
+    private PortfolioResponse warmUpPrices(PortfolioResponse portfolio) {
+        try {
+            List<String> figis = new java.util.ArrayList<>();
+            for (PortfolioPosition position : portfolio.getPositionsList()) {
+                figis.add(position.getFigi());
+            }
+            MarketSnapshotService.getInstance().getLastPrices(figis);
+            MarketDataStreamManager.getInstance().subscribeLastPrices(figis);
+        } catch (Exception e) {
+            log.warn("⚠️ Не удалось загрузить последние цены портфеля: {}", e.getMessage());
+        }
+        return portfolio;
+    }
+
     /**
      * >>> РЕШЕНИЕ 1: Обновление заявок с синхронизацией статусов
      */
@@ -443,50 +518,67 @@ public class PortfolioPanel extends JPanel {
     }
 
     /**
-     * >>> РЕШЕНИЕ 1+2: Синхронизация статусов активных заявок с API
+     * >>> РЕШЕНИЕ 1+2: Синхронизация статусов активных заявок с API (по всем счетам)
      */
     private void syncOrderStatuses() {
+        List<String> accountIds;
         try {
-            String accountId;
-            try {
-                accountId = AccountService.getActiveAccountId();
-            } catch (Exception e) {
-                log.error("Не удалось получить account ID для синхронизации", e);
-                return;
-            }
+            accountIds = AccountService.getAccountIds();
+        } catch (Exception e) {
+            log.error("Не удалось получить account ID для синхронизации", e);
+            return;
+        }
 
+        for (int i = 0; i < accountIds.size(); i++) {
+            // Заявки без account_id (старые записи) относятся к первому счёту
+            syncOrderStatuses(accountIds.get(i), i == 0);
+        }
+    }
+
+    /**
+     * Синхронизация заявок одного счёта: каждая заявка сверяется только с GetOrders своего счёта
+     */
+    private void syncOrderStatuses(String accountId, boolean primary) {
+        try {
             TinkoffApiService apiService = new TinkoffApiService(
                     ConnectorConfig.getApiToken(),
                     accountId
             );
 
             try {
-                // Получаем активные заявки с биржи
+                // Получаем активные заявки с биржи (исполненные GetOrders не возвращает —
+                // исполнения и Stop-on-Fill отслеживает OrderTracker)
                 List<OrderState> apiOrders = apiService.getOrders();
-                log.debug("📡 Получено активных заявок с биржи: {}", apiOrders.size());
+                log.debug("📡 Получено активных заявок с биржи по счёту {}: {}", accountId, apiOrders.size());
 
                 // Обновляем статусы в БД
                 for (OrderState apiOrder : apiOrders) {
                     Order dbOrder = ordersRepository.findByExchangeOrderId(apiOrder.getOrderId());
                     if (dbOrder != null) {
-                        String newStatus = apiOrder.getExecutionReportStatus().name()
-                                .replace("EXECUTION_REPORT_STATUS_", "");
+                        String newStatus = OrderStatus.normalize(apiOrder.getExecutionReportStatus().name()).name();
 
                         if (!newStatus.equals(dbOrder.getStatus())) {
+                            String oldStatus = dbOrder.getStatus();
                             dbOrder.setStatus(newStatus);
                             dbOrder.setLotsExecuted(apiOrder.getLotsExecuted());
                             ordersRepository.update(dbOrder);
+                            OrderJournal.getInstance().record(OrderEvent.Type.STATUS, dbOrder);
                             log.info("✓ Обновлён статус заявки {}: {} → {}",
-                                    dbOrder.getMyOrderId(), dbOrder.getStatus(), newStatus);
+                                    dbOrder.getMyOrderId(), oldStatus, newStatus);
                         }
                     }
                 }
 
-                // Проверяем отменённые заявки (которых уже нет на бирже)
+                // Проверяем отменённые заявки этого счёта (которых уже нет на бирже)
                 List<Order> todayOrders = ordersRepository.findTodayOrders();
                 for (Order dbOrder : todayOrders) {
                     if (dbOrder.getExchangeOrderId() == null) continue;
 
+                    boolean ownAccount = dbOrder.getAccountId() == null
+                            ? primary
+                            : accountId.equals(dbOrder.getAccountId());
+                    if (!ownAccount) continue;
+
                     // Пропускаем уже завершённые заявки
                     if (dbOrder.getStatus().equals("FILLED") ||
                             dbOrder.getStatus().equals("CANCELLED") ||
@@ -498,10 +590,11 @@ public class PortfolioPanel extends JPanel {
                             .anyMatch(api -> api.getOrderId().equals(dbOrder.getExchangeOrderId()));
 
                     if (!existsOnExchange) {
-                        log.info("⚠️ Заявка {} не найдена на бирже, помечаем как CANCELLED",
-                                dbOrder.getMyOrderId());
+                        log.info("⚠️ Заявка {} не найдена на бирже (счёт {}), помечаем как CANCELLED",
+                                dbOrder.getMyOrderId(), accountId);
                         dbOrder.setStatus("CANCELLED");
                         ordersRepository.update(dbOrder);
+                        OrderJournal.getInstance().record(OrderEvent.Type.CANCEL, dbOrder);
                     }
                 }
 
@@ -509,7 +602,7 @@ public class PortfolioPanel extends JPanel {
                 apiService.close();
             }
         } catch (Exception e) {
-            log.error("Ошибка синхронизации статусов заявок", e);
+            log.error("Ошибка синхронизации статусов заявок по счёту {}", accountId, e);
         }
     }
 
@@ -585,14 +678,14 @@ public class PortfolioPanel extends JPanel {
                         List<Trade> trades = tradesRepository.findTodayTrades();
                         log.info("📊 Загружено сделок из БД для отображения: {}", trades.size());
 
-                        return trades;
+                        return new Object[]{trades, loadPnl()};
                     } catch (Exception e) {
                         log.error("❌ Ошибка в процессе обновления сделок", e);
                         throw new RuntimeException("Ошибка обновления: " + e.getMessage(), e);
                     }
                 },
-                trades -> {
-                    List<Trade> tradesList = (List<Trade>) trades;
+                result -> {
+                    List<Trade> tradesList = (List<Trade>) ((Object[]) result)[0];
                     log.info("✅ Получено сделок из БД: {}", tradesList.size());
 
                     if (tradesList.isEmpty()) {
@@ -600,6 +693,7 @@ public class PortfolioPanel extends JPanel {
                     }
 
                     updateTradesTable(tradesList);
+                    updatePnlTables((PnlView) ((Object[]) result)[1]);
                     tradesButton.setEnabled(true);
                     tradesButton.setText("Обновить сделки");
                 },
@@ -631,11 +725,78 @@ public class PortfolioPanel extends JPanel {
     private void syncTrades() {
         try {
             tradesSyncService.syncTodayTrades();
+
+            // Новые сделки меняют состав портфеля — только тогда перезапрашиваем позиции
+            long tradeId = tradesRepository.findMaxId();
+            if (lastTradeId >= 0 && tradeId != lastTradeId) {
+                log.info("📊 Новые сделки (последний id {} → {}), обновляем позиции", lastTradeId, tradeId);
+                SwingUtilities.invokeLater(this::showPortfolio);
+            }
+            lastTradeId = tradeId;
+
+            PnlView pnl = loadPnl();
+            SwingUtilities.invokeLater(() -> updatePnlTables(pnl));
         } catch (Exception e) {
             log.error("Ошибка фоновой синхронизации сделок", e);
         }
     }
 
+    /**
+     * Учесть новые сделки в P&L и прочитать итоги активного счёта (фоновый поток)
+     */
+    private PnlView loadPnl() {
+        PnlEngine engine = PnlEngine.getInstance();
+        engine.update();
+        String accountId = AccountService.getActiveAccountId();
+        return new PnlView(engine.getPositions(accountId), engine.getDailyPnl(accountId, DAILY_PNL_DAYS));
+    }
+
+    /**
+     * Обновление таблиц P&L (вызывается в EDT)
+     */
+    private void updatePnlTables(PnlView pnl) {
+        double realized = 0;
+        double commission = 0;
+        Object[][] data = new Object[pnl.positions.size()][PNL_COLUMNS.length];
+        for (int i = 0; i < pnl.positions.size(); i++) {
+            FifoPosition position = pnl.positions.get(i);
+            realized += position.getRealizedPnl();
+            commission += position.getCommission();
+
+            data[i][0] = position.getInstrumentName() != null ? position.getInstrumentName() : position.getFigi();
+            data[i][1] = position.getOpenQuantity();
+            data[i][2] = position.getOpenQuantity() != 0
+                    ? String.format("%.2f ₽", position.getAverageOpenPrice())
+                    : "--";
+            data[i][3] = String.format("%.2f ₽", position.getRealizedPnl());
+            data[i][4] = String.format("%.2f ₽", position.getCommission());
+            data[i][5] = String.format("%.2f ₽", position.getNetPnl());
+            data[i][6] = position.getTradesCount();
+        }
+        pnlTable.setModel(new DefaultTableModel(data, PNL_COLUMNS));
+        adjustTableHeight(pnlScroll, pnlTable, 15);
+
+        double today = 0;
+        Object[][] dailyData = new Object[pnl.daily.size()][DAILY_PNL_COLUMNS.length];
+        for (int i = 0; i < pnl.daily.size(); i++) {
+            PnlRepository.DailyPnl daily = pnl.daily.get(i);
+            if (daily.day.equals(LocalDate.now())) {
+                today = daily.getNetPnl();
+            }
+            dailyData[i][0] = daily.day;
+            dailyData[i][1] = String.format("%.2f ₽", daily.realizedPnl);
+            dailyData[i][2] = String.format("%.2f ₽", daily.commission);
+            dailyData[i][3] = String.format("%.2f ₽", daily.getNetPnl());
+        }
+        dailyPnlTable.setModel(new DefaultTableModel(dailyData, DAILY_PNL_COLUMNS));
+        adjustTableHeight(dailyPnlScroll, dailyPnlTable, 15);
+
+        pnlSummaryLabel.setText(String.format(
+                "Реализованный P&L (FIFO): %.2f ₽ | Комиссии: %.2f ₽ | Итого: %.2f ₽ | Сегодня: %.2f ₽",
+                realized, commission, realized - commission, today));
+        log.debug("🔄 Таблицы P&L обновлены: инструментов {}, дней {}", data.length, dailyData.length);
+    }
+
     /**
      * Обновление таблицы сделок
      */
@@ -723,7 +884,8 @@ public class PortfolioPanel extends JPanel {
             return;
         }
 
-        Object[][] data = new Object[portfolio.getPositionsCount()][7];
+        MarketSnapshotService snapshot = MarketSnapshotService.getInstance();
+        Object[][] data = new Object[portfolio.getPositionsCount()][8];
         for (int i = 0; i < portfolio.getPositionsCount(); i++) {
             PortfolioPosition position = portfolio.getPositions(i);
             String figi = PortfolioService.getFigi(position);
@@ -744,11 +906,14 @@ public class PortfolioPanel extends JPanel {
             data[i][3] = classCode;
             data[i][4] = quantity;
             data[i][5] = avgPrice;
-            data[i][6] = cost;
+
+            BigDecimal lastPrice = snapshot.getCachedLastPrice(position.getFigi());
+            data[i][PORTFOLIO_PRICE_COLUMN] = lastPrice != null ? String.format("%.2f", lastPrice) : "--";
+            data[i][7] = cost;
         }
 
         portfolioTable.setModel(new DefaultTableModel(data,
-                new String[]{"FIGI", "Тикер", "Тип", "Класс", "Кол-во", "Средняя цена", "Общая стоимость"}));
+                new String[]{"FIGI", "Тикер", "Тип", "Класс", "Кол-во", "Средняя цена", "Текущая цена", "Общая стоимость"}));
         adjustTableHeight(portfolioScroll, portfolioTable, 20);
         log.debug("🔄 Портфель обновлён, строк: {}, позиций: {}", data.length, portfolio.getPositionsCount());
     }
@@ -776,4 +941,17 @@ public class PortfolioPanel extends JPanel {
                 return status.name();
         }
     }
+
+    /**
+     * Данные P&L для отображения
+     */
+    private static class PnlView {
+        final List<FifoPosition> positions;
+        final List<PnlRepository.DailyPnl> daily;
+
+        PnlView(List<FifoPosition> positions, List<PnlRepository.DailyPnl> daily) {
+            this.positions = positions;
+            this.daily = daily;
+        }
+    }
 }
@@ -0,0 +1,146 @@
+package com.algotrading.tinkoffinvestgui.ui.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Модель таблицы с постраничной подгрузкой (keyset-пагинация в репозитории).
+ *
+ * Хранит уже отформатированные строки; следующая страница запрашивается в фоне,
+ * когда таблица отрисовывает строку ближе PREFETCH_ROWS к концу загруженного.
+ * Курсор — последний элемент предыдущей страницы.
+ */
+public class LazyTableModel<T> extends AbstractTableModel {
+
+    private static final Logger log = LoggerFactory.getLogger(LazyTableModel.class);
+
+    private static final int PREFETCH_ROWS = 20;
+
+    /**
+     * Загрузка страницы после элемента after (null — первая страница); вызывается в фоне
+     */
+    public interface PageLoader<T> {
+        List<T> load(T after, int limit) throws Exception;
+    }
+
+    /**
+     * Элемент → значения колонок
+     */
+    public interface RowMapper<T> {
+        Object[] toRow(T item);
+    }
+
+    private final String[] columns;
+    private final PageLoader<T> loader;
+    private final RowMapper<T> mapper;
+    private final int pageSize;
+    private final List<Object[]> rows = new ArrayList<>();
+
+    private T last;
+    private boolean hasMore = true;
+    private boolean loading;
+    private int generation;
+    private Consumer<LazyTableModel<T>> onPageLoaded = model -> { };
+
+    public LazyTableModel(String[] columns, int pageSize, PageLoader<T> loader, RowMapper<T> mapper) {
+        this.columns = columns;
+        this.pageSize = pageSize;
+        this.loader = loader;
+        this.mapper = mapper;
+    }
+
+    public void setOnPageLoaded(Consumer<LazyTableModel<T>> onPageLoaded) {
+        this.onPageLoaded = onPageLoaded;
+    }
+
+    /**
+     * Сбросить загруженное и запросить первую страницу (например, при смене периода)
+     */
+    public void reload() {
+        generation++;
+        int size = rows.size();
+        rows.clear();
+        last = null;
+        hasMore = true;
+        loading = false;
+        if (size > 0) {
+            fireTableRowsDeleted(0, size - 1);
+        }
+        loadNextPage();
+    }
+
+    /**
+     * Запросить следующую страницу, если она есть и ещё не грузится (вызывать из EDT)
+     */
+    public void loadNextPage() {
+        if (loading || !hasMore) {
+            return;
+        }
+        loading = true;
+        int requestGeneration = generation;
+        T after = last;
+        AsyncTask.execute(
+                () -> loader.load(after, pageSize),
+                page -> {
+                    if (requestGeneration != generation) {
+                        return; // страница устаревшего запроса (период сменился)
+                    }
+                    loading = false;
+                    hasMore = page.size() == pageSize;
+                    if (!page.isEmpty()) {
+                        int from = rows.size();
+                        for (T item : page) {
+                            rows.add(mapper.toRow(item));
+                        }
+                        last = page.get(page.size() - 1);
+                        fireTableRowsInserted(from, rows.size() - 1);
+                    }
+                    onPageLoaded.accept(this);
+                },
+                error -> {
+                    if (requestGeneration == generation) {
+                        loading = false;
+                        hasMore = false;
+                        log.error("❌ Ошибка загрузки страницы: {}", error.getMessage());
+                        onPageLoaded.accept(this);
+                    }
+                }
+        );
+    }
+
+    public int getLoadedCount() {
+        return rows.size();
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columns[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        if (rowIndex >= rows.size() - PREFETCH_ROWS) {
+            loadNextPage();
+        }
+        return rows.get(rowIndex)[columnIndex];
+    }
+}
@@ -0,0 +1,105 @@
+package com.algotrading.tinkoffinvestgui.ui.utils;
+
+import com.algotrading.tinkoffinvestgui.service.MarketDataStreamManager;
+
+import javax.swing.*;
+import javax.swing.table.TableModel;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Колонка цены таблицы, обновляемая из MarketDataStream.
+ *
+ * Поток gRPC только кладёт цену в карту FIGI → последняя цена; таймер Swing раз в
+ * FLUSH_INTERVAL_MS переносит накопленное в таблицу. Сколько бы тиков ни пришло,
+ * на инструмент приходится одно изменение ячейки за интервал, а строка ищется
+ * по индексу FIGI → строки (перестраивается при смене модели таблицы).
+ */
+public class LivePriceBuffer {
+
+    private static final int FLUSH_INTERVAL_MS = 250;
+
+    private final JTable table;
+    private final int figiColumn;
+    private final int priceColumn;
+    private final Function<BigDecimal, Object> formatter;
+
+    private final Map<String, BigDecimal> pending = new ConcurrentHashMap<>();
+    private final Timer timer;
+
+    private TableModel indexedModel;
+    private Map<String, List<Integer>> rowsByFigi = new HashMap<>();
+
+    /**
+     * @param figiColumn  колонка модели с FIGI
+     * @param priceColumn колонка модели с ценой
+     * @param formatter   значение ячейки по цене
+     */
+    public LivePriceBuffer(JTable table, int figiColumn, int priceColumn, Function<BigDecimal, Object> formatter) {
+        this.table = table;
+        this.figiColumn = figiColumn;
+        this.priceColumn = priceColumn;
+        this.formatter = formatter;
+        this.timer = new Timer(FLUSH_INTERVAL_MS, e -> flush());
+        this.timer.setCoalesce(true);
+    }
+
+    /**
+     * Подписка на цены стрима и запуск таймера
+     */
+    public void start() {
+        MarketDataStreamManager.getInstance().addListener((figi, point) -> pending.put(figi, point.getPrice()));
+        timer.start();
+    }
+
+    /**
+     * Перенос накопленных цен в таблицу (EDT)
+     */
+    private void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        TableModel model = table.getModel();
+        if (model.getColumnCount() <= Math.max(figiColumn, priceColumn)) {
+            pending.clear();
+            return;
+        }
+        if (model != indexedModel) {
+            reindex(model);
+        }
+
+        for (String figi : pending.keySet()) {
+            BigDecimal price = pending.remove(figi);
+            List<Integer> rows = rowsByFigi.get(figi);
+            if (price == null || rows == null) {
+                continue;
+            }
+            Object value = formatter.apply(price);
+            for (int row : rows) {
+                if (row < model.getRowCount() && figi.equals(model.getValueAt(row, figiColumn))) {
+                    model.setValueAt(value, row, priceColumn);
+                } else {
+                    // Строки модели поменялись без смены модели — перестроим индекс на следующем тике
+                    indexedModel = null;
+                }
+            }
+        }
+    }
+
+    private void reindex(TableModel model) {
+        Map<String, List<Integer>> index = new HashMap<>();
+        for (int row = 0; row < model.getRowCount(); row++) {
+            Object figi = model.getValueAt(row, figiColumn);
+            if (figi != null) {
+                index.computeIfAbsent(figi.toString(), k -> new ArrayList<>(1)).add(row);
+            }
+        }
+        rowsByFigi = index;
+        indexedModel = model;
+    }
+}
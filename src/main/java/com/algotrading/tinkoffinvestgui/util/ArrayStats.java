@@ -0,0 +1,207 @@
+package com.algotrading.tinkoffinvestgui.util;
+
+/**
+ * Статистика по диапазону [from, to) примитивного массива без копирования и стримов.
+ *
+ * Горячие места — окна волатильности в бэктесте (на каждый день, облигацию и комбинацию
+ * параметров), подготовка цен, снимок метрик. Поэтому:
+ * - дисперсия считается за один проход по сдвинутым данным (x − x[from]): это так же
+ *   устойчиво, как два прохода, для цен около номинала без потери точности на x² ~ 10⁴;
+ * - суммы накапливаются в четыре независимых аккумулятора — сложения соседних
+ *   итераций не ждут друг друга, и JIT раскладывает цикл по конвейеру/регистрам;
+ * - наклон МНК — по центрированному x (Σx и Σx² известны в замкнутом виде).
+ *
+ * Дисперсия — популяционная (деление на n), как во всех прежних расчётах волатильности.
+ */
+public final class ArrayStats {
+
+    private ArrayStats() {
+    }
+
+    public static double sum(double[] values, int from, int to) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = from;
+        for (; i + 3 < to; i += 4) {
+            s0 += values[i];
+            s1 += values[i + 1];
+            s2 += values[i + 2];
+            s3 += values[i + 3];
+        }
+        for (; i < to; i++) {
+            s0 += values[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    public static double mean(double[] values, int from, int to) {
+        return to > from ? sum(values, from, to) / (to - from) : 0;
+    }
+
+    public static double mean(double[] values) {
+        return mean(values, 0, values.length);
+    }
+
+    public static double mean(long[] values, int from, int to) {
+        long s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = from;
+        for (; i + 3 < to; i += 4) {
+            s0 += values[i];
+            s1 += values[i + 1];
+            s2 += values[i + 2];
+            s3 += values[i + 3];
+        }
+        for (; i < to; i++) {
+            s0 += values[i];
+        }
+        return to > from ? (double) ((s0 + s1) + (s2 + s3)) / (to - from) : 0;
+    }
+
+    /**
+     * Популяционная дисперсия за один проход (0 для пустого диапазона)
+     */
+    public static double variance(double[] values, int from, int to) {
+        int n = to - from;
+        if (n <= 0) {
+            return 0;
+        }
+        double shift = values[from];
+        double s0 = 0, s1 = 0, q0 = 0, q1 = 0;
+        int i = from;
+        for (; i + 1 < to; i += 2) {
+            double d0 = values[i] - shift;
+            double d1 = values[i + 1] - shift;
+            s0 += d0;
+            s1 += d1;
+            q0 += d0 * d0;
+            q1 += d1 * d1;
+        }
+        if (i < to) {
+            double d = values[i] - shift;
+            s0 += d;
+            q0 += d * d;
+        }
+        double s = s0 + s1;
+        double variance = ((q0 + q1) - s * s / n) / n;
+        return Math.max(0, variance);
+    }
+
+    /**
+     * Стандартное отклонение (волатильность)
+     */
+    public static double stdDev(double[] values, int from, int to) {
+        return Math.sqrt(variance(values, from, to));
+    }
+
+    public static double stdDev(double[] values) {
+        return stdDev(values, 0, values.length);
+    }
+
+    /**
+     * Наклон МНК y = a + b·x по x = 0..n−1 (0, если точек меньше двух)
+     */
+    public static double slope(double[] values, int from, int to) {
+        int n = to - from;
+        if (n < 2) {
+            return 0;
+        }
+        // Σ(x − x̄)·y; Σ(x − x̄)² = n(n² − 1)/12
+        double center = (n - 1) / 2.0;
+        double c0 = 0, c1 = 0;
+        int i = from;
+        int x = 0;
+        for (; i + 1 < to; i += 2, x += 2) {
+            c0 += (x - center) * values[i];
+            c1 += (x + 1 - center) * values[i + 1];
+        }
+        if (i < to) {
+            c0 += (x - center) * values[i];
+        }
+        double sxx = (double) n * ((double) n * n - 1) / 12.0;
+        return (c0 + c1) / sxx;
+    }
+
+    public static double min(double[] values, int from, int to) {
+        double m0 = Double.POSITIVE_INFINITY, m1 = Double.POSITIVE_INFINITY;
+        int i = from;
+        for (; i + 1 < to; i += 2) {
+            m0 = Math.min(m0, values[i]);
+            m1 = Math.min(m1, values[i + 1]);
+        }
+        if (i < to) {
+            m0 = Math.min(m0, values[i]);
+        }
+        return Math.min(m0, m1);
+    }
+
+    public static double max(double[] values, int from, int to) {
+        double m0 = Double.NEGATIVE_INFINITY, m1 = Double.NEGATIVE_INFINITY;
+        int i = from;
+        for (; i + 1 < to; i += 2) {
+            m0 = Math.max(m0, values[i]);
+            m1 = Math.max(m1, values[i + 1]);
+        }
+        if (i < to) {
+            m0 = Math.max(m0, values[i]);
+        }
+        return Math.max(m0, m1);
+    }
+
+    /**
+     * Размах max − min
+     */
+    public static double range(double[] values, int from, int to) {
+        return to > from ? max(values, from, to) - min(values, from, to) : 0;
+    }
+
+    /**
+     * Среднее, дисперсия, минимум и максимум за один проход
+     */
+    public static Summary summarize(double[] values, int from, int to) {
+        int n = to - from;
+        if (n <= 0) {
+            return new Summary(0, 0, 0, Double.NaN, Double.NaN);
+        }
+        double shift = values[from];
+        double s = 0;
+        double q = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            double v = values[i];
+            double d = v - shift;
+            s += d;
+            q += d * d;
+            min = Math.min(min, v);
+            max = Math.max(max, v);
+        }
+        double variance = Math.max(0, (q - s * s / n) / n);
+        return new Summary(n, shift + s / n, variance, min, max);
+    }
+
+    /**
+     * Итог {@link #summarize}
+     */
+    public static class Summary {
+        private final int count;
+        private final double mean;
+        private final double variance;
+        private final double min;
+        private final double max;
+
+        Summary(int count, double mean, double variance, double min, double max) {
+            this.count = count;
+            this.mean = mean;
+            this.variance = variance;
+            this.min = min;
+            this.max = max;
+        }
+
+        public int getCount() { return count; }
+        public double getMean() { return mean; }
+        public double getVariance() { return variance; }
+        public double getStdDev() { return Math.sqrt(variance); }
+        public double getMin() { return min; }
+        public double getMax() { return max; }
+        public double getRange() { return max - min; }
+    }
+}
@@ -0,0 +1,40 @@
+package com.algotrading.tinkoffinvestgui.util;
+
+import com.google.protobuf.MessageOrBuilder;
+import com.google.protobuf.util.JsonFormat;
+
+/**
+ * Ленивое JSON-представление protobuf сообщения для логов.
+ * Сериализация выполняется только в toString(), т.е. только если уровень логгера включён:
+ *
+ * <pre>
+ * if (log.isDebugEnabled()) {
+ *     log.debug("📤 Запрос: {}", LazyJson.of(request));
+ * }
+ * </pre>
+ */
+public final class LazyJson {
+
+    private static final JsonFormat.Printer PRINTER = JsonFormat.printer()
+            .includingDefaultValueFields()
+            .omittingInsignificantWhitespace();
+
+    private final MessageOrBuilder message;
+
+    private LazyJson(MessageOrBuilder message) {
+        this.message = message;
+    }
+
+    public static LazyJson of(MessageOrBuilder message) {
+        return new LazyJson(message);
+    }
+
+    @Override
+    public String toString() {
+        try {
+            return PRINTER.print(message);
+        } catch (Exception e) {
+            return message.getClass().getSimpleName() + "<не удалось сериализовать: " + e.getMessage() + ">";
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.algotrading.tinkoffinvestgui.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.tinkoff.piapi.contract.v1.MoneyValue;
+import ru.tinkoff.piapi.contract.v1.PostOrderResponse;
+
+import java.math.BigDecimal;
+
+/**
+ * Компактный журнал событий заявок: одно событие — одна строка "ключ=значение".
+ *
+ * Пишется в отдельный логгер "order-events" (см. logback.xml: асинхронный аппендер
+ * logs/order-events.log), вместо многострочных дампов в OrdersService/OrdersBusinessService.
+ * Пример:
+ * <pre>
+ * event=ACK dir=BUY figi=BBG00... qty=10 price=98.5 orderId=... status=EXECUTION_REPORT_STATUS_NEW lotsExec=0 ms=84
+ * </pre>
+ */
+public final class OrderEventLogger {
+
+    private static final Logger events = LoggerFactory.getLogger("order-events");
+
+    private OrderEventLogger() {
+    }
+
+    /**
+     * Заявка отправлена на биржу
+     */
+    public static void submit(String direction, String accountId, String figi, int quantity, BigDecimal price,
+                              String clientOrderId) {
+        if (events.isInfoEnabled()) {
+            events.info("event=SUBMIT dir={} account={} figi={} qty={} price={} clientId={}",
+                    direction, accountId, figi, quantity, price, clientOrderId);
+        }
+    }
+
+    /**
+     * Ответ биржи на PostOrder
+     */
+    public static void ack(String direction, String figi, int quantity, BigDecimal price,
+                           PostOrderResponse response, long latencyMs) {
+        if (events.isInfoEnabled()) {
+            events.info("event=ACK dir={} figi={} qty={} price={} orderId={} status={} lotsExec={} execPrice={} amount={} ms={}",
+                    direction, figi, quantity, price,
+                    response.getOrderId(),
+                    response.getExecutionReportStatus(),
+                    response.getLotsExecuted(),
+                    toPlainString(response.getExecutedOrderPrice()),
+                    toPlainString(response.getTotalOrderAmount()),
+                    latencyMs);
+        }
+    }
+
+    /**
+     * Отказ API / ошибка отправки
+     */
+    public static void reject(String direction, String figi, int quantity, BigDecimal price, String reason) {
+        events.warn("event=REJECT dir={} figi={} qty={} price={} reason=\"{}\"",
+                direction, figi, quantity, price, reason);
+    }
+
+    /**
+     * Заявка отменена
+     */
+    public static void cancel(String accountId, String orderId) {
+        events.info("event=CANCEL account={} orderId={}", accountId, orderId);
+    }
+
+    /**
+     * Заявка заменена (ReplaceOrder): старый и новый id биржи
+     */
+    public static void replace(String accountId, String oldOrderId, String newOrderId, int quantity,
+                               BigDecimal price) {
+        events.info("event=REPLACE account={} orderId={} newOrderId={} qty={} price={}",
+                accountId, oldOrderId, newOrderId, quantity, price);
+    }
+
+    /**
+     * Заявка пропущена бизнес-логикой (дубликат, нет цены и т.п.)
+     */
+    public static void skip(String direction, String figi, String reason) {
+        if (events.isInfoEnabled()) {
+            events.info("event=SKIP dir={} figi={} reason=\"{}\"", direction, figi, reason);
+        }
+    }
+
+    /**
+     * Итог пакетной отправки
+     */
+    public static void batch(String accountId, int instruments, int success, int errors, long elapsedMs) {
+        events.info("event=BATCH account={} instruments={} ok={} errors={} ms={}",
+                accountId, instruments, success, errors, elapsedMs);
+    }
+
+    private static String toPlainString(MoneyValue value) {
+        if (value.getUnits() == 0 && value.getNano() == 0) {
+            return "0";
+        }
+        return BigDecimal.valueOf(value.getUnits())
+                .add(BigDecimal.valueOf(value.getNano(), 9))
+                .stripTrailingZeros()
+                .toPlainString();
+    }
+}
@@ -0,0 +1,20 @@
+-- Журнал событий заявок (раньше создавался из OrderEventsRepository при первом обращении)
+CREATE TABLE IF NOT EXISTS public.order_events (
+    id                BIGSERIAL PRIMARY KEY,
+    event_time        TIMESTAMPTZ NOT NULL DEFAULT now(),
+    event_type        VARCHAR(32) NOT NULL,
+    my_order_id       VARCHAR(64) NOT NULL,
+    exchange_order_id VARCHAR(64),
+    parent_order_id   VARCHAR(64),
+    account_id        VARCHAR(64),
+    figi              VARCHAR(32),
+    instrument_name   VARCHAR(255),
+    direction         VARCHAR(32),
+    lots_requested    BIGINT,
+    lots_executed     BIGINT,
+    price             NUMERIC(19, 9),
+    average_price     NUMERIC(19, 9),
+    status            VARCHAR(64),
+    message           TEXT
+);
+CREATE INDEX IF NOT EXISTS idx_order_events_time ON public.order_events (event_time);
@@ -0,0 +1,31 @@
+-- Статус заявки: вместо свободной строки (PENDING / EXECUTION_REPORT_STATUS_FILL / FILL ...)
+-- перечисление public.order_status; старые значения приводятся к короткому виду.
+ALTER TABLE public.orders ADD COLUMN IF NOT EXISTS submitted_at TIMESTAMPTZ;
+
+DO $$
+BEGIN
+    CREATE TYPE public.order_status AS ENUM (
+        'PENDING', 'NEW', 'PARTIALLY_FILLED', 'FILLED', 'CANCELLED', 'REJECTED', 'ERROR', 'UNKNOWN'
+    );
+EXCEPTION
+    WHEN duplicate_object THEN NULL;
+END $$;
+
+ALTER TABLE public.orders ALTER COLUMN status DROP DEFAULT;
+
+ALTER TABLE public.orders ALTER COLUMN status TYPE public.order_status USING (
+    CASE upper(replace(status::text, 'EXECUTION_REPORT_STATUS_', ''))
+        WHEN 'FILL' THEN 'FILLED'
+        WHEN 'PARTIALLYFILL' THEN 'PARTIALLY_FILLED'
+        WHEN 'PENDING' THEN 'PENDING'
+        WHEN 'NEW' THEN 'NEW'
+        WHEN 'PARTIALLY_FILLED' THEN 'PARTIALLY_FILLED'
+        WHEN 'FILLED' THEN 'FILLED'
+        WHEN 'CANCELLED' THEN 'CANCELLED'
+        WHEN 'REJECTED' THEN 'REJECTED'
+        WHEN 'ERROR' THEN 'ERROR'
+        ELSE 'UNKNOWN'
+    END
+)::public.order_status;
+
+ALTER TABLE public.orders ALTER COLUMN status SET DEFAULT 'PENDING';
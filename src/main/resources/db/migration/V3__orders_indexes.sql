@@ -0,0 +1,9 @@
+-- Индексы под горячие запросы OrdersRepository (обновление портфеля каждые 5 сек., планировщик)
+CREATE INDEX IF NOT EXISTS idx_orders_status ON public.orders (status);
+CREATE INDEX IF NOT EXISTS idx_orders_figi_direction_created ON public.orders (figi, direction, created_at);
+CREATE INDEX IF NOT EXISTS idx_orders_exchange_order_id ON public.orders (exchange_order_id);
+CREATE INDEX IF NOT EXISTS idx_orders_created_at ON public.orders (created_at);
+CREATE INDEX IF NOT EXISTS idx_orders_parent_order_id ON public.orders (parent_order_id)
+    WHERE parent_order_id IS NOT NULL;
+
+ANALYZE public.orders;
@@ -0,0 +1,5 @@
+-- Keyset-пагинация истории: порядок (время, id) целиком берётся из индекса
+CREATE INDEX IF NOT EXISTS idx_orders_created_id ON public.orders (created_at, id);
+DROP INDEX IF EXISTS public.idx_orders_created_at;
+
+CREATE INDEX IF NOT EXISTS idx_trades_trade_date_id ON public.trades (trade_date, id);
@@ -0,0 +1,15 @@
+-- Инкрементальная синхронизация справочника облигаций (public.exportdata) вместо TRUNCATE + полной перезаливки
+ALTER TABLE public.exportdata
+    ADD COLUMN IF NOT EXISTS row_hash   VARCHAR(64),
+    ADD COLUMN IF NOT EXISTS is_active  BOOLEAN NOT NULL DEFAULT TRUE,
+    ADD COLUMN IF NOT EXISTS updated_at TIMESTAMPTZ NOT NULL DEFAULT now();
+
+-- Дубликаты FIGI (ручные вставки, прерванный экспорт) мешают уникальному индексу
+DELETE FROM public.exportdata a
+USING public.exportdata b
+WHERE a.field01 = b.field01
+  AND a.ctid > b.ctid;
+
+CREATE UNIQUE INDEX IF NOT EXISTS uq_exportdata_figi ON public.exportdata (field01);
+
+ANALYZE public.exportdata;
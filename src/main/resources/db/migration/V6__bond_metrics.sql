@@ -0,0 +1,21 @@
+-- Ночной снимок метрик облигаций по дневным свечам (окна 1/3/4/6 мес.) для анализа и фильтра объёма в бэктесте
+CREATE TABLE IF NOT EXISTS public.bond_metrics (
+    snapshot_date       DATE             NOT NULL,
+    window_months       SMALLINT         NOT NULL,
+    figi                VARCHAR(32)      NOT NULL,
+    candles_count       INTEGER          NOT NULL,
+    volatility          DOUBLE PRECISION NOT NULL,
+    avg_daily_volume    DOUBLE PRECISION NOT NULL,
+    avg_price           DOUBLE PRECISION NOT NULL,
+    first_close         DOUBLE PRECISION NOT NULL,
+    last_close          DOUBLE PRECISION NOT NULL,
+    min_price           DOUBLE PRECISION NOT NULL,
+    max_price           DOUBLE PRECISION NOT NULL,
+    trend               DOUBLE PRECISION NOT NULL,
+    computed_at         TIMESTAMPTZ      NOT NULL DEFAULT now(),
+    PRIMARY KEY (snapshot_date, window_months, figi)
+);
+
+-- Фильтр бэктеста: последний снимок, окно, объём не ниже порога
+CREATE INDEX IF NOT EXISTS idx_bond_metrics_window_volume
+    ON public.bond_metrics (window_months, snapshot_date, avg_daily_volume);
@@ -0,0 +1,16 @@
+-- Купонный график облигаций (GetBondCoupons) для НКД, доходности и купонного дохода в бэктесте
+CREATE TABLE IF NOT EXISTS public.bond_coupons (
+    figi            VARCHAR(32)      NOT NULL,
+    coupon_date     DATE             NOT NULL,
+    pay_one_bond    DOUBLE PRECISION NOT NULL,
+    coupon_period   INTEGER          NOT NULL,
+    PRIMARY KEY (figi, coupon_date)
+);
+
+-- Номинал и погашение на момент загрузки графика; synced_at — для инкрементального обновления
+CREATE TABLE IF NOT EXISTS public.bond_coupon_sync (
+    figi            VARCHAR(32)      PRIMARY KEY,
+    nominal         DOUBLE PRECISION NOT NULL,
+    maturity_date   DATE,
+    synced_at       TIMESTAMPTZ      NOT NULL DEFAULT now()
+);
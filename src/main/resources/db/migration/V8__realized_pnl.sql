@@ -0,0 +1,31 @@
+-- Реализованный P&L по FIFO: позиции с открытыми лотами, итоги по дням и отметка обработанных сделок
+CREATE TABLE IF NOT EXISTS public.pnl_positions (
+    account_id      VARCHAR(64)        NOT NULL,
+    figi            VARCHAR(32)        NOT NULL,
+    instrument_name VARCHAR(255),
+    lot_quantities  BIGINT[]           NOT NULL DEFAULT '{}',
+    lot_prices      DOUBLE PRECISION[] NOT NULL DEFAULT '{}',
+    realized_pnl    DOUBLE PRECISION   NOT NULL DEFAULT 0,
+    commission      DOUBLE PRECISION   NOT NULL DEFAULT 0,
+    trades_count    INTEGER            NOT NULL DEFAULT 0,
+    updated_at      TIMESTAMPTZ        NOT NULL DEFAULT now(),
+    PRIMARY KEY (account_id, figi)
+);
+
+CREATE TABLE IF NOT EXISTS public.pnl_daily (
+    account_id      VARCHAR(64)      NOT NULL,
+    trade_day       DATE             NOT NULL,
+    figi            VARCHAR(32)      NOT NULL,
+    realized_pnl    DOUBLE PRECISION NOT NULL DEFAULT 0,
+    commission      DOUBLE PRECISION NOT NULL DEFAULT 0,
+    PRIMARY KEY (account_id, trade_day, figi)
+);
+
+-- Одна строка: id последней учтённой сделки public.trades
+CREATE TABLE IF NOT EXISTS public.pnl_watermark (
+    id              SMALLINT    PRIMARY KEY DEFAULT 1 CHECK (id = 1),
+    last_trade_id   BIGINT      NOT NULL DEFAULT 0,
+    updated_at      TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+INSERT INTO public.pnl_watermark (id, last_trade_id) VALUES (1, 0) ON CONFLICT (id) DO NOTHING;
@@ -0,0 +1,56 @@
+package com.algotrading.tinkoffinvestgui.repository;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Регрессия планов горячих запросов OrdersRepository.
+ *
+ * Применяет миграции и требует, чтобы ни один запрос не читал public.orders seq scan'ом.
+ * Идёт только против отдельной, одноразовой БД, заданной системными свойствами:
+ *
+ *   mvn test -Dtest.db.url=jdbc:postgresql://localhost:5432/invest_test \
+ *            -Dtest.db.username=... -Dtest.db.password=...
+ *
+ * invest.properties (рабочая база) не используется никогда; без test.db.url
+ * или без доступной БД тест пропускается.
+ */
+class SchemaMigratorQueryPlanTest {
+
+    private static String url;
+    private static String username;
+    private static String password;
+
+    @BeforeAll
+    static void requireTestDatabase() {
+        url = System.getProperty("test.db.url");
+        username = System.getProperty("test.db.username", "");
+        password = System.getProperty("test.db.password", "");
+        assumeTrue(url != null && !url.isBlank(), "test.db.url не задан — проверка планов пропущена");
+
+        boolean available;
+        try (Connection ignored = DriverManager.getConnection(url, username, password)) {
+            available = true;
+        } catch (Exception e) {
+            available = false;
+        }
+        assumeTrue(available, "PostgreSQL " + url + " недоступна — проверка планов пропущена");
+    }
+
+    @Test
+    void hotOrderQueriesUseIndexes() {
+        SchemaMigrator migrator = new SchemaMigrator(url, username, password);
+        migrator.migrate();
+
+        List<String> problems = migrator.checkQueryPlans();
+
+        assertEquals(List.of(), problems, "Запросы читают public.orders без индекса: " + problems);
+    }
+}